@@ -7,12 +7,8 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.util.Arrays;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 
 /**
  * This plug-in filter aligns each row of the image to a user-specified row (or
@@ -28,6 +24,8 @@ public class AlignWaveforms implements ExtendedPlugInFilter, DialogListener
 	private static int seedIndex = 0;
 	private static int loIndex = 0;
 	private static int hiIndex = 1;
+	private static final String[] paddingTypes = WaveformUtils.PaddingType.stringValues();
+	private static int paddingChoice = WaveformUtils.PaddingType.POWER_OF_2.ordinal();
 	private int width, height;
 	private GenericDialog gd;
 	private float[] seedPixels;
@@ -67,6 +65,7 @@ public class AlignWaveforms implements ExtendedPlugInFilter, DialogListener
 		gd.addNumericField("Waveform to align with:", seedIndex, 0);
 		gd.addNumericField("Start index", loIndex, 0);
 		gd.addNumericField("End index", hiIndex, 0);
+		gd.addChoice("Pad records to", paddingTypes, paddingTypes[paddingChoice]);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -84,6 +83,7 @@ public class AlignWaveforms implements ExtendedPlugInFilter, DialogListener
 		seedIndex = (int)gd.getNextNumber();
 		loIndex = (int)gd.getNextNumber();
 		hiIndex = (int)gd.getNextNumber();
+		paddingChoice = gd.getNextChoiceIndex();
 
 		boolean noError = (!gd.invalidNumber()
 				&& seedIndex >= 0
@@ -104,14 +104,8 @@ public class AlignWaveforms implements ExtendedPlugInFilter, DialogListener
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
-		
-		execute(pixelsDouble, Tools.toDouble(seedWaveform), loIndex, hiIndex);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
 		
+		execute(pixels, seedWaveform, loIndex, hiIndex, WaveformUtils.PaddingType.values()[paddingChoice]);
 	}
 
 	/**
@@ -132,6 +126,29 @@ public class AlignWaveforms implements ExtendedPlugInFilter, DialogListener
 	 *                     {@code seedWaveform} to be used for alignment
 	 */
 	public static void execute(double[] waveforms, double[] seedWaveform, int from, int to)
+	{
+		execute(waveforms, seedWaveform, from, to, WaveformUtils.PaddingType.POWER_OF_2);
+	}
+
+	/**
+	 * Performs an in-place alignment of each array segment in {@code waveforms}
+	 * with {@code seedWavefom} within the specified range of indices, as
+	 * described in {@link #execute(double[], double[], int, int) execute},
+	 * except that the cross-correlations are computed with records
+	 * zero-padded to the length determined by {@code paddingType}. Note that
+	 * with little or no padding, the cross-correlation is circular.
+	 * <p>
+	 * @param waveforms	   array of concatenated waveforms, each of length
+	 *                     {@code seedWaveform.length}
+	 * @param seedWaveform	array with which to align each signal in
+	 *                     {@code waveforms}
+	 * @param from	        start index (inclusive) of subsection of
+	 *                     {@code seedWaveform} to be used for alignment
+	 * @param to           end index (exclusive) of subsection of
+	 *                     {@code seedWaveform} to be used for alignment
+	 * @param paddingType  method of choosing padded record length
+	 */
+	public static void execute(double[] waveforms, double[] seedWaveform, int from, int to, WaveformUtils.PaddingType paddingType)
 	{
 		final int w = seedWaveform.length;
 
@@ -139,47 +156,139 @@ public class AlignWaveforms implements ExtendedPlugInFilter, DialogListener
 		final int h = waveforms.length / w;
 
 		// compute padded waveform length
-		final int pw = w + WaveformUtils.amountToPadToNextPowerOf2(w);
+		final int pw = paddingType.paddedLength(w);
+
+		// obtain FFT plan once for all records
+		final FFTPlan plan = FFTPlan.getPlan(pw);
 
 		// initialize seed waveform copy and compute FFT
-		final double[] seedRe = new double[pw];
-		final double[] seedIm = new double[pw];
-		System.arraycopy(seedWaveform, from, seedRe, from, to - from);
-		FastFourierTransformer.transformInPlace(new double[][]{seedRe, seedIm}, DftNormalization.STANDARD, TransformType.FORWARD);
-
-		// loop over each waveform
-		for (int i = 0; i < h; i++) {
-			// compute row offset
-			int offset = i * w;
-
-			// initialize waveform copies
-			double[] tempRe = new double[pw];
-			double[] tempIm = new double[pw];
-			for (int j = 0; j < w; j++) {
-				tempRe[j] = (double)waveforms[offset + j];
-			}
+		final double[] seed = new double[pw];
+		System.arraycopy(seedWaveform, from, seed, from, to - from);
+		plan.realTransform(seed, true);
 
-			// compute cross-correlation
-			FastFourierTransformer.transformInPlace(new double[][]{tempRe, tempIm}, DftNormalization.STANDARD, TransformType.FORWARD);
-			double[] corrRe = new double[pw];
-			double[] corrIm = new double[pw];
-			for (int j = 0; j < pw; j++) {
-				corrRe[j] = tempRe[j] * seedRe[j] + tempIm[j] * seedIm[j];
-				corrIm[j] = tempRe[j] * seedIm[j] - tempIm[j] * seedRe[j];
-			}
-			FastFourierTransformer.transformInPlace(new double[][]{corrRe, corrIm}, DftNormalization.STANDARD, TransformType.INVERSE);
+		// process ranges of records in parallel, allocating temporary padded array once per range
+		RecordParallelExecutor.execute(h, (fromRecord, toRecord) -> {
+			final double[] corr = new double[pw];
 
-			// find index of maximum value of cross-correlation array
-			int maxIndex = WaveformUtils.maxIndex(corrRe);
+			for (int i = fromRecord; i < toRecord; i++) {
+				// compute row offset
+				int offset = i * w;
 
-			// because of symmetry of fft, shift > pw/2 corresponds to leftward (negative) rotation
-			if (maxIndex >= pw / 2) {
-				maxIndex -= pw;
+				// copy current record into padded array, and reset padded portion to zero
+				System.arraycopy(waveforms, offset, corr, 0, w);
+				Arrays.fill(corr, w, pw, 0.0);
+
+				// compute cross-correlation; spectra are in packed format, so the
+				// DC and Nyquist components are real-valued
+				plan.realTransform(corr, true);
+				corr[0] *= seed[0];
+				for (int j = 1; j < (pw + 1) / 2; j++) {
+					double tempRe = corr[2 * j - 1];
+					double tempIm = corr[2 * j];
+					corr[2 * j - 1] = tempRe * seed[2 * j - 1] + tempIm * seed[2 * j];
+					corr[2 * j] = tempRe * seed[2 * j] - tempIm * seed[2 * j - 1];
+				}
+				if (pw % 2 == 0) {
+					corr[pw - 1] *= seed[pw - 1];
+				}
+				plan.realTransform(corr, false);
+
+				// find index of maximum value of cross-correlation array
+				int maxIndex = WaveformUtils.maxIndex(corr);
+
+				// because of symmetry of fft, shift > pw/2 corresponds to leftward (negative) rotation
+				if (maxIndex >= pw / 2) {
+					maxIndex -= pw;
+				}
+
+				// rotate waveform in place
+				WaveformUtils.rotateArrayInPlace(waveforms, maxIndex, offset, offset + w);
 			}
+		});
+	}
+
+	/**
+	 * Performs an in-place alignment of each array segment in {@code waveforms}
+	 * with {@code seedWavefom} within the specified range of indices, as
+	 * described in {@link #execute(double[], double[], int, int) execute},
+	 * except that the cross-correlations are computed with records
+	 * zero-padded to the length determined by {@code paddingType}. Note that
+	 * with little or no padding, the cross-correlation is circular. Each
+	 * record is copied into a double-precision padded array for computing the
+	 * cross-correlation, so no double-precision copy of the entire input array
+	 * is required.
+	 * <p>
+	 * @param waveforms	   array of concatenated waveforms, each of length
+	 *                     {@code seedWaveform.length}
+	 * @param seedWaveform	array with which to align each signal in
+	 *                     {@code waveforms}
+	 * @param from	        start index (inclusive) of subsection of
+	 *                     {@code seedWaveform} to be used for alignment
+	 * @param to           end index (exclusive) of subsection of
+	 *                     {@code seedWaveform} to be used for alignment
+	 * @param paddingType  method of choosing padded record length
+	 */
+	public static void execute(float[] waveforms, float[] seedWaveform, int from, int to, WaveformUtils.PaddingType paddingType)
+	{
+		final int w = seedWaveform.length;
+
+		// determine number of records
+		final int h = waveforms.length / w;
+
+		// compute padded waveform length
+		final int pw = paddingType.paddedLength(w);
 
-			// rotate waveform in place
-			WaveformUtils.rotateArrayInPlace(waveforms, maxIndex, offset, offset + w);
+		// obtain FFT plan once for all records
+		final FFTPlan plan = FFTPlan.getPlan(pw);
+
+		// initialize seed waveform copy and compute FFT
+		final double[] seed = new double[pw];
+		for (int j = from; j < to; j++) {
+			seed[j] = seedWaveform[j];
 		}
+		plan.realTransform(seed, true);
+
+		// process ranges of records in parallel, allocating temporary padded array once per range
+		RecordParallelExecutor.execute(h, (fromRecord, toRecord) -> {
+			final double[] corr = new double[pw];
+
+			for (int i = fromRecord; i < toRecord; i++) {
+				// compute row offset
+				int offset = i * w;
+
+				// copy current record into padded array, and reset padded portion to zero
+				for (int j = 0; j < w; j++) {
+					corr[j] = waveforms[offset + j];
+				}
+				Arrays.fill(corr, w, pw, 0.0);
+
+				// compute cross-correlation; spectra are in packed format, so the
+				// DC and Nyquist components are real-valued
+				plan.realTransform(corr, true);
+				corr[0] *= seed[0];
+				for (int j = 1; j < (pw + 1) / 2; j++) {
+					double tempRe = corr[2 * j - 1];
+					double tempIm = corr[2 * j];
+					corr[2 * j - 1] = tempRe * seed[2 * j - 1] + tempIm * seed[2 * j];
+					corr[2 * j] = tempRe * seed[2 * j] - tempIm * seed[2 * j - 1];
+				}
+				if (pw % 2 == 0) {
+					corr[pw - 1] *= seed[pw - 1];
+				}
+				plan.realTransform(corr, false);
+
+				// find index of maximum value of cross-correlation array
+				int maxIndex = WaveformUtils.maxIndex(corr);
+
+				// because of symmetry of fft, shift > pw/2 corresponds to leftward (negative) rotation
+				if (maxIndex >= pw / 2) {
+					maxIndex -= pw;
+				}
+
+				// rotate waveform in place
+				WaveformUtils.rotateArrayInPlace(waveforms, maxIndex, offset, offset + w);
+			}
+		});
 	}
 
 	@Override
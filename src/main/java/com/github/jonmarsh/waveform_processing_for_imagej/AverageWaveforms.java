@@ -6,7 +6,6 @@ import ij.ImageStack;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Computes the mean waveform from a set of input waveforms.  Each row in the 
@@ -69,10 +68,9 @@ public class AverageWaveforms implements ExtendedPlugInFilter
 		
 		// get pixel array reference for current input data
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
 		// do averaging
-		double[] avg = execute(pixelsDouble, width);
+		double[] avg = execute(pixels, width);
 		
 		// copy average waveform into output pixel array
 		for (int i=0; i<width; i++) {
@@ -114,6 +112,41 @@ public class AverageWaveforms implements ExtendedPlugInFilter
 		
 		return avgWaveform;
 	}
+
+	/**
+	 * Returns a single array of size {@code recordLength} that is the element-by-element
+	 * average of each record in {@code waveforms}.  {@code waveforms} is a one-dimensional
+	 * array composed of a series of concatenated waveforms, each of size {@code recordLength}.
+	 * 
+	 * @param waveforms		array of concatenated waveforms, assumed to of length {@code recordLength}
+	 * @param recordLength	size of each record in {@code waveforms}
+	 * @return				array of size {@code recordLength} that represents the 
+	 *						element-by-element average of each record in {@code waveforms}
+	 *						(null if {@code waveforms==null}, {@code recordLength>waveforms.length}, or {@code recordLength<=0})
+	 */
+	public static double[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms == null || recordLength > waveforms.length || recordLength <= 0) {
+			return null;
+		}
+		
+		double[] avgWaveform = new double[recordLength];
+		int numRecords = waveforms.length/recordLength;
+		
+		// loop over elements in output average waveform
+		for (int i=0; i<recordLength; i++) {
+			
+			double sum = 0.0;
+			
+			// loop over all input waveform values at index i
+			for (int j=0; j<numRecords; j++) {
+				sum += waveforms[j*recordLength+i];
+			}
+			avgWaveform[i] = sum/numRecords;
+		}
+		
+		return avgWaveform;
+	}
 	
 	// no dialog is displayed for this plugin, but we use this method to get a reference to the PlugInFilterRunner
 	@Override
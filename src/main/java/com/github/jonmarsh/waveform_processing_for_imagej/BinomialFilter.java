@@ -7,7 +7,6 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 
 /**
@@ -79,13 +78,8 @@ public class BinomialFilter implements ExtendedPlugInFilter, DialogListener
     public void run(ImageProcessor ip) 
     {
         float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 		
-		execute(pixelsDouble, width, nPasses);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		execute(pixels, width, nPasses);
     }
 
 	/**
@@ -108,38 +102,87 @@ public class BinomialFilter implements ExtendedPlugInFilter, DialogListener
 			// compute number of records
 			int numRecords = waveforms.length/recordLength;
 			
-			// loop over all records
-			for (int i=0; i<numRecords; i++) {
+			// process ranges of records in parallel
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				for (int i=fromRecord; i<toRecord; i++) {
 				
-				// compute row offset
-				int offset = i*recordLength;
+					// compute row offset
+					int offset = i*recordLength;
 				
-				// perform specified number of passes on current record
-				for (int passNumber=0; passNumber<nPasses; passNumber++) {
+					// perform specified number of passes on current record
+					for (int passNumber=0; passNumber<nPasses; passNumber++) {
 					
-					// temporary variables for first and last filtered values
-					double firstValue = 0.5*(waveforms[offset] + waveforms[offset+1]);
-					double lastValue = 0.5*(waveforms[offset+recordLength-2] + waveforms[offset+recordLength-1]);
+						// temporary variables for first and last filtered values
+						double firstValue = 0.5*(waveforms[offset] + waveforms[offset+1]);
+						double lastValue = 0.5*(waveforms[offset+recordLength-2] + waveforms[offset+recordLength-1]);
 					
-					// more temporary variables for next loop
-					double previousValue = waveforms[offset];
-					double currentValue = waveforms[offset+1];
+						// more temporary variables for next loop
+						double previousValue = waveforms[offset];
+						double currentValue = waveforms[offset+1];
 					
-					// loop over all values of current waveform except for ends
-					for (int j=1; j<recordLength-1; j++) {
-						double filteredValue = 0.25*(previousValue + currentValue + currentValue + waveforms[offset+j+1]);
-						previousValue = currentValue;
-						currentValue = waveforms[offset+j+1];
-						waveforms[offset+j] = filteredValue;
-					}
+						// loop over all values of current waveform except for ends
+						for (int j=1; j<recordLength-1; j++) {
+							double filteredValue = 0.25*(previousValue + currentValue + currentValue + waveforms[offset+j+1]);
+							previousValue = currentValue;
+							currentValue = waveforms[offset+j+1];
+							waveforms[offset+j] = filteredValue;
+						}
 					
-					// take care of endpoints
-					waveforms[offset] = firstValue;
-					waveforms[offset+recordLength-1] = lastValue;
+						// take care of endpoints
+						waveforms[offset] = firstValue;
+						waveforms[offset+recordLength-1] = lastValue;
 					
+					}
+				
 				}
+			});
+			
+		}
+		
+	}
+	
+	/**
+	 * Applies a binomial filter (i.e., a [1, 2, 1] kernel) to each record in 
+	 * {@code waveforms} the specified number of times, as described in
+	 * {@link #execute(double[], int, int) execute}. All passes are performed on
+	 * a double-precision copy of one record at a time, so results are rounded
+	 * to single precision only once.
+	 * 
+	 * @param waveforms		one-dimensional array composed of a series of concatenated 
+	 *						records, each of size equal to {@code recordLength}
+	 * @param recordLength	size of each record in {@code waveforms}
+	 * @param nPasses		number of filter passes (larger numbers yield more smoothing)
+	 */
+	public static void execute(float[] waveforms, int recordLength, int nPasses)
+	{
+		if (waveforms != null && recordLength > 2 && nPasses >= 0 && waveforms.length%recordLength == 0) {
+						
+			// compute number of records
+			int numRecords = waveforms.length/recordLength;
+			
+			// process ranges of records in parallel, allocating double-precision record copy once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] currentWaveformCopy = new double[recordLength];
+			
+
+				for (int i=fromRecord; i<toRecord; i++) {
+				
+					// compute row offset
+					int offset = i*recordLength;
+				
+					for (int j=0; j<recordLength; j++) {
+						currentWaveformCopy[j] = waveforms[offset+j];
+					}
 				
-			}
+					// perform specified number of passes on current record
+					execute(currentWaveformCopy, recordLength, nPasses);
+				
+					for (int j=0; j<recordLength; j++) {
+						waveforms[offset+j] = (float)currentWaveformCopy[j];
+					}
+				
+				}
+			});
 			
 		}
 		
@@ -8,9 +8,8 @@ import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
 import java.awt.AWTEvent;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.math3.util.FastMath;
 
 
@@ -26,8 +25,16 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 	private static double samplingIntervalMicrosec = 0.0025;
 	private static double cutoffFreqMHz = 100.0;
 	private static int numPoles = 1;
+	private static final String[] paddingTypes = WaveformUtils.PaddingType.stringValues();
+	private static int paddingChoice = WaveformUtils.PaddingType.POWER_OF_2.ordinal();
+	private static final String[] implementationTypes = new String[]{"Frequency domain (FFT)", "Time domain (zero-phase IIR)"};
+	private static int implementationChoiceIndex = 0;
 	private boolean isLowPass = true;
 
+	// frequency responses are cached so that preview refreshes and repeated calls with the same parameters reuse them
+	private static final ConcurrentHashMap<ResponseKey, double[]> RESPONSE_CACHE = new ConcurrentHashMap<>();
+	private static final int MAX_CACHED_RESPONSES = 32;
+
 	int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 
 	@Override
@@ -57,9 +64,11 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 
 		gd = new GenericDialog("Butterworth Filter...");
 		gd.addChoice("Filter type", filterTypes, filterTypes[filterChoiceIndex]);
+		gd.addChoice("Implementation", implementationTypes, implementationTypes[implementationChoiceIndex]);
 		gd.addNumericField("Cutoff frequency", cutoffFreqMHz, 3, 8, "MHz");
 		gd.addNumericField("Number of poles", numPoles, 0, 3, "");
 		gd.addNumericField("Sampling interval", samplingIntervalMicrosec, 4, 8, "µs");
+		gd.addChoice("Pad records to", paddingTypes, paddingTypes[paddingChoice]);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -75,13 +84,16 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 	public boolean dialogItemChanged(GenericDialog gd, AWTEvent e)
 	{
 		filterChoiceIndex = gd.getNextChoiceIndex();
+		implementationChoiceIndex = gd.getNextChoiceIndex();
 		cutoffFreqMHz = gd.getNextNumber();
 		numPoles = (int) gd.getNextNumber();
 		samplingIntervalMicrosec = gd.getNextNumber();
+		paddingChoice = gd.getNextChoiceIndex();
 
 		isLowPass = (filterChoiceIndex == 0);
 
-		return (numPoles >= 1 && samplingIntervalMicrosec > 0.0 && cutoffFreqMHz > 0.0 && !gd.invalidNumber());
+		return (numPoles >= 1 && samplingIntervalMicrosec > 0.0 && cutoffFreqMHz > 0.0 && !gd.invalidNumber()
+				&& (implementationChoiceIndex == 0 || zeroPhaseCutoffIsValid(samplingIntervalMicrosec, cutoffFreqMHz, numPoles, isLowPass)));
 	}
 
 	@Override
@@ -89,7 +101,26 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 	{
 		float[] pixels = (float[])ip.getPixels();
 		
-		execute(pixels, width, samplingIntervalMicrosec, cutoffFreqMHz, numPoles, isLowPass);
+		if (implementationChoiceIndex == 0) {
+			execute(pixels, width, samplingIntervalMicrosec, cutoffFreqMHz, numPoles, isLowPass, WaveformUtils.PaddingType.values()[paddingChoice]);
+		} else {
+			executeZeroPhase(pixels, width, samplingIntervalMicrosec, cutoffFreqMHz, numPoles, isLowPass);
+		}
+	}
+
+	// Returns cached frequency-domain coefficients, computing and caching them if necessary; returned arrays must not be modified
+	private static double[] getFreqDomainCoeffs(double samplingIntervalMicrosec, int length, double cutoffFreqMHz, int numPoles, boolean isLowPass)
+	{
+		ResponseKey key = new ResponseKey(samplingIntervalMicrosec, length, cutoffFreqMHz, numPoles, isLowPass);
+		double[] coeffs = RESPONSE_CACHE.get(key);
+		if (coeffs == null) {
+			coeffs = computeFreqDomainCoeffs(samplingIntervalMicrosec, length, cutoffFreqMHz, numPoles, isLowPass);
+			if (RESPONSE_CACHE.size() >= MAX_CACHED_RESPONSES) {
+				RESPONSE_CACHE.clear();
+			}
+			RESPONSE_CACHE.put(key, coeffs);
+		}
+		return coeffs;
 	}
 
 	private static double[] computeFreqDomainCoeffs(double samplingIntervalMicrosec, int length, double cutoffFreqMHz, int numPoles, boolean isLowPass)
@@ -98,15 +129,9 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 		double samplingRateMHz = 1.0 / samplingIntervalMicrosec;
 		double deltaFMHz = samplingRateMHz / ((double) length);
 
-		double fRatio;
 		coeffs[0] = isLowPass ? 1.0 : 0.0;
-		fRatio = deltaFMHz * (length / 2) / cutoffFreqMHz;
-		if (!isLowPass) {
-			fRatio = 1.0 / fRatio;
-		}
-		coeffs[length / 2] = 1.0 / Math.hypot(1.0, FastMath.pow(fRatio, 2 * numPoles));
-		for (int i = 1; i < length / 2; i++) {
-			fRatio = i * deltaFMHz / cutoffFreqMHz;
+		for (int i = 1; i <= length / 2; i++) {
+			double fRatio = i * deltaFMHz / cutoffFreqMHz;
 			if (!isLowPass) {
 				fRatio = 1.0 / fRatio;
 			}
@@ -138,6 +163,28 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 	 * @param	isLowPass					set to true for low-pass filter, false for high-pass filter
 	 */
 	public static final void execute(float[] waveforms, int recordLength, double samplingIntervalMicrosec, double cutoffFreqMHz, int numPoles, boolean isLowPass)
+	{
+		execute(waveforms, recordLength, samplingIntervalMicrosec, cutoffFreqMHz, numPoles, isLowPass, WaveformUtils.PaddingType.POWER_OF_2);
+	}
+
+	/**
+	 * Applies a Butterworth filter to each waveform in {@code waveforms}, as
+	 * described in
+	 * {@link #execute(float[], int, double, double, int, boolean) execute},
+	 * except that each record is zero-padded to the length determined by
+	 * {@code paddingType} before Fourier transforming. Padding to the next
+	 * fast length (or not padding at all) avoids the nearly twofold increase
+	 * in work incurred by padding some record lengths to the next power of 2.
+	 *
+	 * @param	waveforms					input waveforms concatenated into 1-D array
+	 * @param	recordLength				length of each waveform in points
+	 * @param	samplingIntervalMicrosec	sampling interval in microseconds
+	 * @param	cutoffFreqMHz				filter cutoff frequency in MHz
+	 * @param	numPoles					number of poles
+	 * @param	isLowPass					set to true for low-pass filter, false for high-pass filter
+	 * @param	paddingType					method of choosing padded record length
+	 */
+	public static final void execute(float[] waveforms, int recordLength, double samplingIntervalMicrosec, double cutoffFreqMHz, int numPoles, boolean isLowPass, WaveformUtils.PaddingType paddingType)
 	{
 		if (recordLength > waveforms.length 
 			|| recordLength < 1 
@@ -147,42 +194,245 @@ public class ButterworthFilter implements ExtendedPlugInFilter, DialogListener
 			return;
 		}
 		
-		// pad waveforms to power-of-2 length if necessary
-		int paddedWidth = recordLength + WaveformUtils.amountToPadToNextPowerOf2(recordLength);
+		// determine padded record length
+		int paddedWidth = paddingType.paddedLength(recordLength);
 
 		// compute filter coefficients for padded waveforms
-		double[] filterCoeffs = computeFreqDomainCoeffs(samplingIntervalMicrosec, paddedWidth, cutoffFreqMHz, numPoles, isLowPass);
+		double[] filterCoeffs = getFreqDomainCoeffs(samplingIntervalMicrosec, paddedWidth, cutoffFreqMHz, numPoles, isLowPass);
 
 		// determine number of records in input array
 		int h = waveforms.length / recordLength;
 
-		// perform computations on row-by-row basis
-		for (int i = 0; i < h; i++) {
+		// obtain FFT plan once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedWidth);
+
+		// process ranges of records in parallel, allocating temporary padded arrays once per range
+		RecordParallelExecutor.execute(h, (fromRecord, toRecord) -> {
+			double[] a = new double[paddedWidth];
+
+			// perform computations on row-by-row basis
+			for (int i = fromRecord; i < toRecord; i++) {
 
-			// row offset
-			int offset = i * recordLength;
+				// row offset
+				int offset = i * recordLength;
 
-			// initialize real and imaginary temporary arrays for padded data
-			double[] re = new double[paddedWidth];
-			double[] im = new double[paddedWidth];
+				// copy original values into temporary padded array, and reset padded portion to zero
+				for (int j = 0; j < recordLength; j++) {
+					a[j] = (double) waveforms[offset + j];
+				}
+				Arrays.fill(a, recordLength, paddedWidth, 0.0);
 
-			// copy original values into temporary padded real array (imaginary portion is already initialized to zero)
-			for (int j = 0; j < recordLength; j++) {
-				re[j] = (double) waveforms[offset + j];
+				// filter using real-input FFT; spectrum is in packed format, and
+				// because filter coefficients are symmetric, only the non-negative
+				// frequency coefficients are needed
+				plan.realTransform(a, true);
+				a[0] *= filterCoeffs[0];
+				for (int j = 1; j < (paddedWidth + 1) / 2; j++) {
+					a[2 * j - 1] *= filterCoeffs[j];
+					a[2 * j] *= filterCoeffs[j];
+				}
+				if (paddedWidth % 2 == 0) {
+					a[paddedWidth - 1] *= filterCoeffs[paddedWidth / 2];
+				}
+				plan.realTransform(a, false);
+
+				// copy data into original waveform array, truncating at original width
+				for (int j = 0; j < recordLength; j++) {
+					waveforms[offset + j] = (float) a[j];
+				}
 			}
+		});
+	}
+
+	/**
+	 * Applies a zero-phase Butterworth filter to each waveform in
+	 * {@code waveforms} in the time domain. The filter is designed as a cascade
+	 * of second-order (biquad) sections, plus one first-order section if
+	 * {@code numPoles} is odd, obtained from the analog Butterworth prototype
+	 * with the bilinear transform, and each record is filtered forward and then
+	 * backward so that the net phase shift is zero. Because the magnitude
+	 * response is applied twice, the design cutoff frequency is adjusted so
+	 * that the overall response is down by 3 dB at {@code cutoffFreqMHz}, as
+	 * for the frequency-domain filter. To reduce transients, each record is
+	 * extended at both ends by odd reflection about its end points, and the
+	 * filter state is initialized to its steady-state value for the first
+	 * point of each pass. No FFT or padding is required, and the cost is
+	 * linear in the record length. If {@code recordLength>waveforms.length},
+	 * {@code recordLength<1}, {@code samplingIntervalMicrosec<=0.0},
+	 * {@code cutoffFreqMHz<=0.0}, {@code numPoles<1}, or the adjusted cutoff
+	 * frequency is not below the Nyquist frequency, the method returns without
+	 * modifying {@code waveforms}.
+	 *
+	 * @param	waveforms					input waveforms concatenated into 1-D array
+	 * @param	recordLength				length of each waveform in points
+	 * @param	samplingIntervalMicrosec	sampling interval in microseconds
+	 * @param	cutoffFreqMHz				filter cutoff frequency in MHz
+	 * @param	numPoles					number of poles
+	 * @param	isLowPass					set to true for low-pass filter, false for high-pass filter
+	 */
+	public static final void executeZeroPhase(float[] waveforms, int recordLength, double samplingIntervalMicrosec, double cutoffFreqMHz, int numPoles, boolean isLowPass)
+	{
+		if (recordLength > waveforms.length
+			|| recordLength < 1
+			|| samplingIntervalMicrosec <= 0.0
+			|| cutoffFreqMHz <= 0.0
+			|| numPoles < 1
+			|| !zeroPhaseCutoffIsValid(samplingIntervalMicrosec, cutoffFreqMHz, numPoles, isLowPass)) {
+			return;
+		}
+
+		double[][] sections = computeSecondOrderSections(samplingIntervalMicrosec, zeroPhaseDesignCutoff(cutoffFreqMHz, numPoles, isLowPass), numPoles, isLowPass);
 
-			// filter
-			FastFourierTransformer.transformInPlace(new double[][]{re, im}, DftNormalization.STANDARD, TransformType.FORWARD);
-			for (int j = 0; j < paddedWidth; j++) {
-				re[j] *= filterCoeffs[j];
-				im[j] *= filterCoeffs[j];
+		// length of odd extension at each end of a record
+		int extensionLength = Math.min(3 * (numPoles + 1), recordLength - 1);
+		int extendedLength = recordLength + 2 * extensionLength;
+
+		// determine number of records in input array
+		int h = waveforms.length / recordLength;
+
+		// process ranges of records in parallel, allocating temporary extended arrays once per range
+		RecordParallelExecutor.execute(h, (fromRecord, toRecord) -> {
+			double[] a = new double[extendedLength];
+
+			for (int i = fromRecord; i < toRecord; i++) {
+
+				// row offset
+				int offset = i * recordLength;
+
+				// copy original values into extended array, reflecting oddly about end points
+				double first = waveforms[offset];
+				double last = waveforms[offset + recordLength - 1];
+				for (int j = 0; j < extensionLength; j++) {
+					a[j] = 2.0 * first - waveforms[offset + extensionLength - j];
+					a[extendedLength - 1 - j] = 2.0 * last - waveforms[offset + recordLength - 1 - extensionLength + j];
+				}
+				for (int j = 0; j < recordLength; j++) {
+					a[extensionLength + j] = waveforms[offset + j];
+				}
+
+				// filter forward, then backward
+				filterSections(a, sections, true);
+				filterSections(a, sections, false);
+
+				// copy data into original waveform array, discarding extensions
+				for (int j = 0; j < recordLength; j++) {
+					waveforms[offset + j] = (float) a[extensionLength + j];
+				}
+			}
+		});
+	}
+
+	// Cutoff frequency for a single pass such that the forward-backward response is down by 3 dB at cutoffFreqMHz
+	private static double zeroPhaseDesignCutoff(double cutoffFreqMHz, int numPoles, boolean isLowPass)
+	{
+		double factor = FastMath.pow(Math.sqrt(2.0) - 1.0, 0.5 / numPoles);
+		return isLowPass ? cutoffFreqMHz / factor : cutoffFreqMHz * factor;
+	}
+
+	private static boolean zeroPhaseCutoffIsValid(double samplingIntervalMicrosec, double cutoffFreqMHz, int numPoles, boolean isLowPass)
+	{
+		return numPoles >= 1 && zeroPhaseDesignCutoff(cutoffFreqMHz, numPoles, isLowPass) * samplingIntervalMicrosec < 0.5;
+	}
+
+	/*
+	 * Returns coefficients {b0, b1, b2, a1, a2} of each section of a digital
+	 * Butterworth filter, obtained from the analog prototype by the bilinear
+	 * transform with prewarped cutoff frequency. Sections are of the form
+	 * H(z)=(b0+b1/z+b2/z^2)/(1+a1/z+a2/z^2); a first-order section for odd
+	 * numPoles has b2=a2=0.
+	 */
+	private static double[][] computeSecondOrderSections(double samplingIntervalMicrosec, double cutoffFreqMHz, int numPoles, boolean isLowPass)
+	{
+		int numSections = (numPoles + 1) / 2;
+		double[][] sections = new double[numSections][];
+		double k = Math.tan(Math.PI * cutoffFreqMHz * samplingIntervalMicrosec);
+		double k2 = k * k;
+
+		for (int i = 0; i < numPoles / 2; i++) {
+			double d = 2.0 * Math.sin(Math.PI * (2 * i + 1) / (2.0 * numPoles));
+			double norm = 1.0 / (1.0 + d * k + k2);
+			double b0 = isLowPass ? k2 * norm : norm;
+			double b1 = isLowPass ? 2.0 * b0 : -2.0 * b0;
+			sections[i] = new double[]{b0, b1, b0, 2.0 * (k2 - 1.0) * norm, (1.0 - d * k + k2) * norm};
+		}
+		if (numPoles % 2 != 0) {
+			double norm = 1.0 / (1.0 + k);
+			double b0 = isLowPass ? k * norm : norm;
+			double b1 = isLowPass ? b0 : -b0;
+			sections[numSections - 1] = new double[]{b0, b1, 0.0, (k - 1.0) * norm, 0.0};
+		}
+
+		return sections;
+	}
+
+	// Filters a in place through cascaded sections (transposed direct form II), in forward or reverse order of samples,
+	// with each section's state initialized to its steady-state value for the first input sample
+	private static void filterSections(double[] a, double[][] sections, boolean isForward)
+	{
+		int n = a.length;
+		int start = isForward ? 0 : n - 1;
+		int step = isForward ? 1 : -1;
+
+		for (double[] section : sections) {
+			double b0 = section[0], b1 = section[1], b2 = section[2], a1 = section[3], a2 = section[4];
+
+			// steady-state response to a constant input equal to the first sample
+			double x0 = a[start];
+			double y0 = x0 * (b0 + b1 + b2) / (1.0 + a1 + a2);
+			double z1 = y0 - b0 * x0;
+			double z2 = b2 * x0 - a2 * y0;
+
+			for (int j = 0, index = start; j < n; j++, index += step) {
+				double x = a[index];
+				double y = b0 * x + z1;
+				z1 = b1 * x - a1 * y + z2;
+				z2 = b2 * x - a2 * y;
+				a[index] = y;
 			}
-			FastFourierTransformer.transformInPlace(new double[][]{re, im}, DftNormalization.STANDARD, TransformType.INVERSE);
+		}
+	}
+
+	// Key identifying a cached frequency response
+	private static final class ResponseKey
+	{
+		private final double samplingIntervalMicrosec;
+		private final int length;
+		private final double cutoffFreqMHz;
+		private final int numPoles;
+		private final boolean isLowPass;
 
-			// copy data into original waveform array, truncating at original width
-			for (int j = 0; j < recordLength; j++) {
-				waveforms[offset + j] = (float) re[j];
+		ResponseKey(double samplingIntervalMicrosec, int length, double cutoffFreqMHz, int numPoles, boolean isLowPass)
+		{
+			this.samplingIntervalMicrosec = samplingIntervalMicrosec;
+			this.length = length;
+			this.cutoffFreqMHz = cutoffFreqMHz;
+			this.numPoles = numPoles;
+			this.isLowPass = isLowPass;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof ResponseKey)) {
+				return false;
 			}
+			ResponseKey k = (ResponseKey) o;
+			return Double.compare(samplingIntervalMicrosec, k.samplingIntervalMicrosec) == 0
+					&& length == k.length
+					&& Double.compare(cutoffFreqMHz, k.cutoffFreqMHz) == 0
+					&& numPoles == k.numPoles
+					&& isLowPass == k.isLowPass;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = Double.hashCode(samplingIntervalMicrosec);
+			hash = 31 * hash + length;
+			hash = 31 * hash + Double.hashCode(cutoffFreqMHz);
+			hash = 31 * hash + numPoles;
+			hash = 31 * hash + (isLowPass ? 1 : 0);
+			return hash;
 		}
 	}
 
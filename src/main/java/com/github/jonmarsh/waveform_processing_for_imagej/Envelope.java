@@ -7,8 +7,8 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
+import java.util.Arrays;
 
 /**
  * This plug-in filter computes the envelope (i.e., the magnitude of analytic
@@ -26,6 +26,8 @@ public class Envelope implements ExtendedPlugInFilter, DialogListener
 	private GenericDialog gd;
 	private static boolean subtractMean = true;
 	private static boolean logOutput = true;
+	private static final String[] paddingTypes = WaveformUtils.PaddingType.stringValues();
+	private static int paddingChoice = WaveformUtils.PaddingType.POWER_OF_2.ordinal();
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 	
 	@Override
@@ -52,6 +54,7 @@ public class Envelope implements ExtendedPlugInFilter, DialogListener
 		gd = new GenericDialog("Envelope...");
 		gd.addCheckbox("Subtract mean value", subtractMean);
 		gd.addCheckbox("20Log(10)_Output", logOutput);
+		gd.addChoice("Pad records to", paddingTypes, paddingTypes[paddingChoice]);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -68,6 +71,7 @@ public class Envelope implements ExtendedPlugInFilter, DialogListener
 	{
 	    subtractMean = gd.getNextBoolean();
 		logOutput = gd.getNextBoolean();
+		paddingChoice = gd.getNextChoiceIndex();
 	    
 	    return true;
 	}
@@ -77,21 +81,9 @@ public class Envelope implements ExtendedPlugInFilter, DialogListener
 	{
 		// get pixel values of current processor
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 			    
-		// compute envelopes
-		execute(pixelsDouble, width, subtractMean);
-
-		// compute log values if specified
-		if (logOutput) {
-	    	for (int i=0; i<pixels.length; i++) {
-	    	    pixels[i] = (float)(20.0*Math.log10(pixelsDouble[i]));
-	    	}
-	    } else {
-			for (int i=0; i<pixels.length; i++) {
-	    	    pixels[i] = (float)(pixelsDouble[i]);
-	    	}
-		}	
+		// compute envelopes, with log values if specified
+		execute(pixels, width, subtractMean, WaveformUtils.PaddingType.values()[paddingChoice], logOutput);
 	}
 		
 	/**
@@ -109,39 +101,135 @@ public class Envelope implements ExtendedPlugInFilter, DialogListener
 	 *                     envelope
 	 */
 	public static final void execute(double[] waveforms, int recordLength, boolean subtractMean)
+	{
+		execute(waveforms, recordLength, subtractMean, WaveformUtils.PaddingType.POWER_OF_2);
+	}
+	
+	/**
+	 * Computes envelope (magnitude of analytic signal) of input waveforms, as
+	 * described in {@link #execute(double[], int, boolean) execute}, except
+	 * that each waveform is zero-padded to the length determined by
+	 * {@code paddingType} before computing FFTs.
+	 *
+	 * @param waveforms	   input waveforms concatenated together
+	 * @param recordLength length of each waveform in points
+	 * @param subtractMean set to true to remove any DC offset before computing
+	 *                     envelope
+	 * @param paddingType  method of choosing padded record length
+	 */
+	public static final void execute(double[] waveforms, int recordLength, boolean subtractMean, WaveformUtils.PaddingType paddingType)
 	{
 		int numberOfRecords = waveforms.length/recordLength;
 		
-		int paddedWidth = recordLength + WaveformUtils.amountToPadToNextPowerOf2(recordLength);
+		int paddedWidth = paddingType.paddedLength(recordLength);
+		
+		// obtain FFT plan once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedWidth);
+		
+		// process ranges of records in parallel, allocating temporary padded arrays once per range
+		RecordParallelExecutor.execute(numberOfRecords, (fromRecord, toRecord) -> {
+			double[] waveformCopy = new double[paddedWidth];
 	    	    
-		// perform computations on row-by-row basis
-	    for (int i=0; i<numberOfRecords; i++) {
+			// perform computations on row-by-row basis
+		    for (int i=fromRecord; i<toRecord; i++) {
 			
-	        // compute row offset 
-	        int offset = i*recordLength;
+		        // compute row offset 
+		        int offset = i*recordLength;
 			
-			double valueToSubtract = 0.0;
+				double valueToSubtract = 0.0;
 
-			// compute mean if necessary
-			if (subtractMean) {
-				valueToSubtract = WaveformUtils.mean(waveforms, offset, offset+recordLength);
-			}
+				// compute mean if necessary
+				if (subtractMean) {
+					valueToSubtract = WaveformUtils.mean(waveforms, offset, offset+recordLength);
+				}
 	    	
-			// initialize temporary copy padded array
-			double[] waveformCopy = new double[paddedWidth];
-			for (int j=0; j<recordLength; j++) {
-				waveformCopy[j] = waveforms[offset+j] - valueToSubtract;
-			}
+				// copy current record into temporary padded array, and reset padded portion to zero
+				for (int j=0; j<recordLength; j++) {
+					waveformCopy[j] = waveforms[offset+j] - valueToSubtract;
+				}
+				Arrays.fill(waveformCopy, recordLength, paddedWidth, 0.0);
 	    		    	
-	    	// compute Hilbert Transform
-	    	WaveformUtils.fastHilbertTransformPowerOf2(waveformCopy, true);
+		    	// compute Hilbert Transform
+		    	WaveformUtils.fastHilbertTransform(waveformCopy, true, plan);
 	    	
-	    	// copy magnitude of Hilbert Transform into original waveform array, truncating at original width
-	    	for (int j=0; j<recordLength; j++) {
-				double currentValue = waveforms[offset+j] - valueToSubtract;
-	    	    waveforms[offset+j] = Math.sqrt(waveformCopy[j]*waveformCopy[j] + currentValue*currentValue);
-	    	}
-	   	}
+		    	// copy magnitude of Hilbert Transform into original waveform array, truncating at original width
+		    	for (int j=0; j<recordLength; j++) {
+					double currentValue = waveforms[offset+j] - valueToSubtract;
+		    	    waveforms[offset+j] = Math.sqrt(waveformCopy[j]*waveformCopy[j] + currentValue*currentValue);
+		    	}
+		   	}
+		});
+	}
+    
+	/**
+	 * Computes envelope (magnitude of analytic signal) of input waveforms, as
+	 * described in
+	 * {@link #execute(double[], int, boolean, WaveformUtils.PaddingType) execute},
+	 * optionally converting the result to decibels. Each record is copied into
+	 * a double-precision padded array before transforming, and the mean and
+	 * log values are computed in double precision, so no double-precision copy
+	 * of the entire input array is required.
+	 *
+	 * @param waveforms	       input waveforms concatenated together
+	 * @param recordLength     length of each waveform in points
+	 * @param subtractMean     set to true to remove any DC offset before
+	 *                         computing envelope
+	 * @param paddingType      method of choosing padded record length
+	 * @param logOutput        set to true to output
+	 *                         {@code 20*log10(envelope)}
+	 */
+	public static final void execute(float[] waveforms, int recordLength, boolean subtractMean, WaveformUtils.PaddingType paddingType, boolean logOutput)
+	{
+		int numberOfRecords = waveforms.length/recordLength;
+		
+		int paddedWidth = paddingType.paddedLength(recordLength);
+		
+		// obtain FFT plan once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedWidth);
+		
+		// process ranges of records in parallel, allocating temporary padded arrays once per range
+		RecordParallelExecutor.execute(numberOfRecords, (fromRecord, toRecord) -> {
+			double[] waveformCopy = new double[paddedWidth];
+		
+			// perform computations on row-by-row basis
+			for (int i=fromRecord; i<toRecord; i++) {
+			
+				// compute row offset 
+				int offset = i*recordLength;
+			
+				// copy mean-subtracted record into temporary padded array, and reset padded portion to zero
+				double valueToSubtract = subtractMean ? mean(waveforms, offset, offset+recordLength) : 0.0;
+				for (int j=0; j<recordLength; j++) {
+					waveformCopy[j] = waveforms[offset+j] - valueToSubtract;
+				}
+				Arrays.fill(waveformCopy, recordLength, paddedWidth, 0.0);
+			
+				// compute Hilbert Transform
+				WaveformUtils.fastHilbertTransform(waveformCopy, true, plan);
+			
+				storeMagnitude(waveforms, offset, recordLength, valueToSubtract, waveformCopy, logOutput);
+			}
+		});
+	}
+	
+	// Mean value of float array range, accumulated in double precision
+	private static double mean(float[] a, int from, int to)
+	{
+		double sum = 0.0;
+		for (int i=from; i<to; i++) {
+			sum += a[i];
+		}
+		return sum/(to - from);
+	}
+	
+	// Overwrites one record of waveforms with magnitude of analytic signal, given its Hilbert transform
+	private static void storeMagnitude(float[] waveforms, int offset, int recordLength, double valueToSubtract, double[] hilbert, boolean logOutput)
+	{
+		for (int j=0; j<recordLength; j++) {
+			double currentValue = waveforms[offset+j] - valueToSubtract;
+			double magnitude = Math.sqrt(hilbert[j]*hilbert[j] + currentValue*currentValue);
+			waveforms[offset+j] = (float)(logOutput ? 20.0*Math.log10(magnitude) : magnitude);
+		}
 	}
     
 	@Override
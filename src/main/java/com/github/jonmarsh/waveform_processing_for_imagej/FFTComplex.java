@@ -9,19 +9,17 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.util.ArrayList;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import java.util.Arrays;
 
 /**
  * This plug-in filter computes the real and imaginary part of the FFT (or its 
  * inverse) of each horizontal line in an image.  It works on arbitrarily-sized 
- * record lengths, by zero-padding each record up to the next power of 2, and 
- * implementing a traditional efficient FFT routine.  Both real and imaginary 
- * parts are output, and the input image is left unchanged.
+ * record lengths, by zero-padding each record up to the next power of 2 (or,
+ * optionally, up to the next length with no prime factors greater than 7, or
+ * not at all).  Both real and imaginary parts are output, and the input image
+ * is left unchanged.
  * 
  * @author Jon N. Marsh
  */
@@ -40,6 +38,8 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
 	private static final String[] types = {"Real part", "Imaginary part"};
 	private static int typeChoice = REAL_PART;
 	private static boolean isForward = true;
+	private static final String[] paddingTypes = WaveformUtils.PaddingType.stringValues();
+	private static int paddingChoice = WaveformUtils.PaddingType.POWER_OF_2.ordinal();
 	private boolean hasReal, hasImag, inputImageIsReal;
 	private static final String NO_CHOICE = "< none >";
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING + NO_CHANGES;
@@ -68,7 +68,6 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
         height = impInput.getHeight();
 		stackSize = impInput.getStackSize();
 		title = impInput.getTitle();
-		newWidth = width + WaveformUtils.amountToPadToNextPowerOf2(width);
 		
 		// create list of images with dimensions that match input image parameters
 		useableImageIDs = getUsableImageIDs(impInput);
@@ -89,6 +88,7 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
 		gd.addChoice("Input image \""+impInput.getTitle()+"\" is", types, types[typeChoice]);
 		gd.addChoice("If complex input, select complementary dataset", useableImageTitles, useableImageTitles[useableImageTitles.length - 1]);
 		gd.addCheckbox("Do forward transform (inverse otherwise)", isForward);
+		gd.addChoice("Pad records to", paddingTypes, paddingTypes[paddingChoice]);
 
         gd.addDialogListener(this);
 
@@ -98,6 +98,7 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
         }
 
 		transformTitle = title + " FFT_" + (isForward ? "forward" : "inverse");
+		newWidth = WaveformUtils.PaddingType.values()[paddingChoice].paddedLength(width);
 		
 		// create output real and imaginary images and get references to stacks
 		impRealOutput = IJ.createImage(transformTitle+", real part", "32-bit", newWidth, height, stackSize);
@@ -114,6 +115,7 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
         typeChoice = gd.getNextChoiceIndex();
 		int choiceIndex = gd.getNextChoiceIndex();
 		isForward = gd.getNextBoolean();
+		paddingChoice = gd.getNextChoiceIndex();
 				
 		inputImageIsReal = (typeChoice == REAL_PART);
 		if (inputImageIsReal) {
@@ -143,33 +145,24 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
     public void run(ImageProcessor ip) 
     {
         int currentSlice = pfr.getSliceNumber();
-		double[] pixelsRealInput;
-		double[] pixelsImagInput;
+		float[] pixelsRealInput = null;
+		float[] pixelsImagInput = null;
 		float[] pixelsRealOutput = (float[])(stackRealOutput.getProcessor(currentSlice).getPixels());
 		float[] pixelsImagOutput = (float[])(stackImagOutput.getProcessor(currentSlice).getPixels());
 
 		if (inputImageIsReal) {
-			pixelsRealInput = Tools.toDouble((float[])ip.getPixels());
+			pixelsRealInput = (float[])ip.getPixels();
 			if (hasImag) {
-				pixelsImagInput = Tools.toDouble((float[])(stackImagInput.getProcessor(currentSlice).getPixels()));
-			} else {
-				pixelsImagInput = new double[pixelsRealInput.length];
+				pixelsImagInput = (float[])(stackImagInput.getProcessor(currentSlice).getPixels());
 			}
 		} else {
-			pixelsImagInput = Tools.toDouble((float[])ip.getPixels());
+			pixelsImagInput = (float[])ip.getPixels();
 			if (hasReal) {
-				pixelsRealInput = Tools.toDouble((float[])(stackRealInput.getProcessor(currentSlice).getPixels()));
-			} else {
-				pixelsRealInput = new double[pixelsImagInput.length];
+				pixelsRealInput = (float[])(stackRealInput.getProcessor(currentSlice).getPixels());
 			}
 		}
 		
-		double[][] transform = execute(pixelsRealInput, pixelsImagInput, isForward, width);
-		
-		for (int i=0; i<newWidth*height; i++) {
-			pixelsRealOutput[i] = (float)transform[0][i];
-			pixelsImagOutput[i] = (float)transform[1][i];
-		}
+		execute(pixelsRealInput, pixelsImagInput, isForward, width, WaveformUtils.PaddingType.values()[paddingChoice], pixelsRealOutput, pixelsImagOutput);
     }
 
 	/**
@@ -201,32 +194,62 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
 	 *						
 	 */
 	public static double[][] execute(double[] realWaveforms, double[] imagWaveforms, boolean isForward, int recordLength)
+	{
+		return execute(realWaveforms, imagWaveforms, isForward, recordLength, WaveformUtils.PaddingType.POWER_OF_2);
+	}
+	
+	/**
+	 * Computes FFT of all complex waveforms represented in {@code realWaveforms}
+	 * and {@code imagWaveforms}, as described in 
+	 * {@link #execute(double[], double[], boolean, int) execute}, except that
+	 * input records are zero-padded to the length determined by 
+	 * {@code paddingType}.  With {@code PaddingType.NONE}, the output records
+	 * have the same length as the input records.
+	 * 
+	 * @param realWaveforms	one-dimensional array composed of a series of 
+	 *						concatenated records, each of size equal to {@code recordLength},
+	 *						representing the real part of the input signals
+	 * @param imagWaveforms	one-dimensional array composed of a series of 
+	 *						concatenated records, each of size equal to {@code recordLength},
+	 *						representing the imaginary part of the input signals
+	 * @param isForward		{@code true} for forward transform, {@code false} for inverse
+	 * @param recordLength	size of each record in {@code realWaveforms} and {@code imagWaveforms} 
+	 * @param paddingType	method of choosing padded record length
+	 * @return				two-dimensional array of size {@code 2*numberOfRecords*paddedRecordLength}, 
+	 *						whose first element comprises the concatenated padded 
+	 *						real part of the transforms, and whose second element
+	 *						comprises the concatenated padded imaginary part of the transforms
+	 */
+	public static double[][] execute(double[] realWaveforms, double[] imagWaveforms, boolean isForward, int recordLength, WaveformUtils.PaddingType paddingType)
 	{
 		// compute number of records
 		int numRecords = realWaveforms.length/recordLength;
 		
 		// compute padded record length
-		int paddedRecordLength = recordLength + WaveformUtils.amountToPadToNextPowerOf2(recordLength);
+		int paddedRecordLength = paddingType.paddedLength(recordLength);
 		
 		// initialize output array
 		double[][] output = new double[2][paddedRecordLength*numRecords];
 		
+		// obtain FFT plan and temporary real and imaginary arrays once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedRecordLength);
+		double[] ar = new double[paddedRecordLength];
+		double[] ai = new double[paddedRecordLength];
+		
 		for (int i=0; i<numRecords; i++) {
 			
 			// compute offsets for input and output arrays
 			int offset1 = i*recordLength;
 			int offset2 = i*paddedRecordLength;
 			
-			// initialize temporary real and imaginary waveforms
-			double[] ar = new double[paddedRecordLength];
-			double[] ai = new double[paddedRecordLength];
-
-			// copy values into current temporary real and imaginary waveforms
+			// copy values into current temporary real and imaginary waveforms, and reset padded portions to zero
 			System.arraycopy(realWaveforms, offset1, ar, 0, recordLength);
 			System.arraycopy(imagWaveforms, offset1, ai, 0, recordLength);
+			Arrays.fill(ar, recordLength, paddedRecordLength, 0.0);
+			Arrays.fill(ai, recordLength, paddedRecordLength, 0.0);
 			
 			// perform FFT
-			FastFourierTransformer.transformInPlace(new double[][]{ar, ai}, DftNormalization.STANDARD, isForward ? TransformType.FORWARD : TransformType.INVERSE);
+			plan.transform(ar, ai, isForward);
 			
 			// write values into output array
 			System.arraycopy(ar, 0, output[0], offset2, paddedRecordLength);
@@ -237,6 +260,68 @@ public class FFTComplex implements ExtendedPlugInFilter, DialogListener
 		return output;
 	}	
 	
+	/**
+	 * Computes FFT of all complex waveforms represented in {@code realWaveforms}
+	 * and {@code imagWaveforms}, as described in 
+	 * {@link #execute(double[], double[], boolean, int, WaveformUtils.PaddingType) execute},
+	 * writing the concatenated padded real and imaginary parts of the transforms
+	 * into {@code realOutput} and {@code imagOutput}.  Each record is converted
+	 * to double precision only in a single temporary record, so no 
+	 * double-precision copies of the whole input or output are made.  Either
+	 * input array may be {@code null}, in which case the corresponding part of
+	 * the input signals is taken to be zero.  Input arrays are left unchanged.
+	 * 
+	 * @param realWaveforms	one-dimensional array composed of a series of 
+	 *						concatenated records, each of size equal to {@code recordLength},
+	 *						representing the real part of the input signals, or {@code null}
+	 * @param imagWaveforms	one-dimensional array composed of a series of 
+	 *						concatenated records, each of size equal to {@code recordLength},
+	 *						representing the imaginary part of the input signals, or {@code null}
+	 * @param isForward		{@code true} for forward transform, {@code false} for inverse
+	 * @param recordLength	size of each record in {@code realWaveforms} and {@code imagWaveforms} 
+	 * @param paddingType	method of choosing padded record length
+	 * @param realOutput	array of size {@code numberOfRecords*paddedRecordLength}
+	 *						into which the real part of the transforms is written
+	 * @param imagOutput	array of size {@code numberOfRecords*paddedRecordLength}
+	 *						into which the imaginary part of the transforms is written
+	 */
+	public static void execute(float[] realWaveforms, float[] imagWaveforms, boolean isForward, int recordLength, WaveformUtils.PaddingType paddingType, float[] realOutput, float[] imagOutput)
+	{
+		// compute padded record length and number of records
+		int paddedRecordLength = paddingType.paddedLength(recordLength);
+		int numRecords = realOutput.length/paddedRecordLength;
+		
+		// obtain FFT plan and temporary real and imaginary arrays once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedRecordLength);
+		double[] ar = new double[paddedRecordLength];
+		double[] ai = new double[paddedRecordLength];
+		
+		for (int i=0; i<numRecords; i++) {
+			
+			// compute offsets for input and output arrays
+			int offset1 = i*recordLength;
+			int offset2 = i*paddedRecordLength;
+			
+			// copy values into current temporary real and imaginary waveforms, and reset padded portions to zero
+			for (int j=0; j<recordLength; j++) {
+				ar[j] = (realWaveforms == null) ? 0.0 : realWaveforms[offset1+j];
+				ai[j] = (imagWaveforms == null) ? 0.0 : imagWaveforms[offset1+j];
+			}
+			Arrays.fill(ar, recordLength, paddedRecordLength, 0.0);
+			Arrays.fill(ai, recordLength, paddedRecordLength, 0.0);
+			
+			// perform FFT
+			plan.transform(ar, ai, isForward);
+			
+			// write values into output arrays
+			for (int j=0; j<paddedRecordLength; j++) {
+				realOutput[offset2+j] = (float)ar[j];
+				imagOutput[offset2+j] = (float)ai[j];
+			}
+			
+		}
+	}
+	
 	private int[] getUsableImageIDs(ImagePlus impToMatch)
 	{
 		// get imageID for all open images
@@ -0,0 +1,720 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed plan for fast Fourier transforms of a fixed length. A plan holds
+ * the index permutation and twiddle factor tables for its length, so that
+ * repeated transforms of many records with the same length (the usual case
+ * when processing every row of an image or stack) do not repeat any setup
+ * work. Plans are immutable and are cached per length, so a single plan may be
+ * obtained once with {@link #getPlan(int) getPlan} and shared freely among
+ * threads. Scratch arrays needed by some algorithms are held per thread, so
+ * repeated transforms allocate no memory.
+ * <p>
+ * Any positive length is supported. Powers of 2 use an iterative radix-2
+ * algorithm; lengths whose only prime factors are 2, 3, 5, and 7 use a
+ * mixed-radix algorithm; all other lengths use Bluestein's algorithm, which
+ * expresses the transform as a convolution computed with power-of-2
+ * transforms. Lengths suitable for the first two algorithms can be found with
+ * {@link #nextFastLength(int) nextFastLength}.
+ * </p>
+ * <p>
+ * Complex transforms operate on separate real and imaginary arrays. Real-input
+ * transforms store the non-negative frequency half of the Hermitian-symmetric
+ * spectrum in the packed format described in
+ * {@link #realTransform(double[], boolean) realTransform}. In both cases the
+ * forward transform is unnormalized and the inverse transform is normalized
+ * by {@code 1/n}, consistent with
+ * {@link org.apache.commons.math3.transform.DftNormalization#STANDARD}.
+ * </p>
+ *
+ * @author Jon N. Marsh
+ */
+public final class FFTPlan
+{
+	private static final ConcurrentHashMap<Integer, FFTPlan> PLAN_CACHE = new ConcurrentHashMap<>();
+	private static final int MAX_CACHED_PLANS = 64;
+	private static final int RADIX_2 = 0, MIXED_RADIX = 1, BLUESTEIN = 2;
+	private static final double SQRT_3_OVER_2 = 0.5 * Math.sqrt(3.0);
+
+	private final int n;
+	private final int algorithm;
+	private final double[] cosTable;
+	private final double[] sinTable;
+	private final int[] bitReversedIndices;
+	private final int[] factors;
+	private final int[] sourceIndices;
+	private final int[] cycleLeaders;
+	private final FFTPlan halfLengthPlan;
+	private final FFTPlan convolutionPlan;
+	private final double[] chirpCos;
+	private final double[] chirpSin;
+	private final double[] chirpSpectrumRe;
+	private final double[] chirpSpectrumIm;
+
+	// scratch arrays, allocated once per thread that uses this plan
+	private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+	/**
+	 * Private constructor; use {@link #getPlan(int) getPlan}.
+	 *
+	 * @param n transform length
+	 */
+	private FFTPlan(int n)
+	{
+		this.n = n;
+
+		// twiddle factors exp(-2*pi*i*k/n) for 0<=k<n
+		cosTable = new double[n];
+		sinTable = new double[n];
+		for (int k = 0; k < n; k++) {
+			double theta = 2.0 * Math.PI * k / n;
+			cosTable[k] = Math.cos(theta);
+			sinTable[k] = Math.sin(theta);
+		}
+
+		if (Integer.bitCount(n) == 1) {
+			algorithm = RADIX_2;
+		} else if (isFastLength(n)) {
+			algorithm = MIXED_RADIX;
+		} else {
+			algorithm = BLUESTEIN;
+		}
+
+		if (algorithm == RADIX_2) {
+			// bit-reversal permutation
+			bitReversedIndices = new int[n];
+			int log2n = Integer.numberOfTrailingZeros(n);
+			for (int i = 0; i < n; i++) {
+				bitReversedIndices[i] = log2n == 0 ? 0 : Integer.reverse(i) >>> (32 - log2n);
+			}
+		} else {
+			bitReversedIndices = null;
+		}
+
+		if (algorithm == MIXED_RADIX) {
+			// factors in the order in which butterfly stages are applied
+			factors = factor(n);
+
+			// digit-reversal permutation: input element sourceIndices[p] is
+			// moved to position p before the first stage
+			sourceIndices = new int[n];
+			for (int i = 0; i < n; i++) {
+				int position = 0;
+				int remainder = i;
+				int subLength = n;
+				for (int f = factors.length - 1; f >= 0; f--) {
+					subLength /= factors[f];
+					position += (remainder % factors[f]) * subLength;
+					remainder /= factors[f];
+				}
+				sourceIndices[position] = i;
+			}
+
+			// smallest index of each cycle of the permutation, so that it can
+			// be applied in place
+			boolean[] visited = new boolean[n];
+			int[] leaders = new int[n];
+			int numLeaders = 0;
+			for (int i = 0; i < n; i++) {
+				if (!visited[i] && sourceIndices[i] != i) {
+					leaders[numLeaders++] = i;
+					for (int j = i; !visited[j]; j = sourceIndices[j]) {
+						visited[j] = true;
+					}
+				}
+			}
+			cycleLeaders = new int[numLeaders];
+			System.arraycopy(leaders, 0, cycleLeaders, 0, numLeaders);
+		} else {
+			factors = null;
+			sourceIndices = null;
+			cycleLeaders = null;
+		}
+
+		if (algorithm == BLUESTEIN) {
+			// chirp exp(-i*pi*k^2/n); k^2 is reduced modulo 2n to preserve accuracy
+			chirpCos = new double[n];
+			chirpSin = new double[n];
+			for (int k = 0; k < n; k++) {
+				double theta = Math.PI * (double)(((long)k * k) % (2L * n)) / n;
+				chirpCos[k] = Math.cos(theta);
+				chirpSin[k] = Math.sin(theta);
+			}
+
+			// precompute spectrum of conjugate chirp, arranged for circular convolution
+			int m = Integer.highestOneBit(2 * n - 1) << 1;
+			convolutionPlan = getPlan(m);
+			chirpSpectrumRe = new double[m];
+			chirpSpectrumIm = new double[m];
+			chirpSpectrumRe[0] = chirpCos[0];
+			chirpSpectrumIm[0] = chirpSin[0];
+			for (int k = 1; k < n; k++) {
+				chirpSpectrumRe[k] = chirpSpectrumRe[m - k] = chirpCos[k];
+				chirpSpectrumIm[k] = chirpSpectrumIm[m - k] = chirpSin[k];
+			}
+			convolutionPlan.transform(chirpSpectrumRe, 0, chirpSpectrumIm, 0, 1, true);
+		} else {
+			chirpCos = null;
+			chirpSin = null;
+			convolutionPlan = null;
+			chirpSpectrumRe = null;
+			chirpSpectrumIm = null;
+		}
+
+		// real-input transforms of even length use a complex transform of half the length
+		halfLengthPlan = (n > 1 && n % 2 == 0) ? getPlan(n / 2) : null;
+	}
+
+	/**
+	 * Returns the plan for transforms of length {@code n}, creating and
+	 * caching it if necessary. The cache is cleared when it holds
+	 * {@code MAX_CACHED_PLANS} plans, so that processing many different
+	 * lengths does not retain their tables indefinitely; plans already
+	 * obtained remain valid. This method is thread-safe.
+	 *
+	 * @param n transform length
+	 * @return plan for transforms of length {@code n}
+	 * @throws IllegalArgumentException if {@code n<1}
+	 */
+	public static FFTPlan getPlan(int n)
+	{
+		if (n < 1) {
+			throw new IllegalArgumentException("FFT length must be positive: " + n);
+		}
+
+		FFTPlan plan = PLAN_CACHE.get(n);
+		if (plan == null) {
+			plan = new FFTPlan(n);
+			if (PLAN_CACHE.size() >= MAX_CACHED_PLANS) {
+				PLAN_CACHE.clear();
+			}
+			FFTPlan existingPlan = PLAN_CACHE.putIfAbsent(n, plan);
+			if (existingPlan != null) {
+				plan = existingPlan;
+			}
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Returns {@code true} if the only prime factors of {@code n} are 2, 3,
+	 * 5, and 7, so that transforms of length {@code n} can be computed
+	 * directly rather than with Bluestein's algorithm.
+	 *
+	 * @param n transform length
+	 * @return {@code true} if {@code n} is a positive integer whose only prime
+	 *         factors are 2, 3, 5, and 7
+	 */
+	public static boolean isFastLength(int n)
+	{
+		if (n < 1) {
+			return false;
+		}
+		for (int p : new int[]{2, 3, 5, 7}) {
+			while (n % p == 0) {
+				n /= p;
+			}
+		}
+		return n == 1;
+	}
+
+	/**
+	 * Returns the smallest even integer greater than or equal to {@code n}
+	 * whose only prime factors are 2, 3, 5, and 7. Even lengths are chosen
+	 * because real-input transforms of even length are computed with a complex
+	 * transform of half the length. Lengths less than or equal to 2 are
+	 * returned unchanged.
+	 *
+	 * @param n minimum transform length
+	 * @return smallest even length {@code >=n} with no prime factors greater
+	 *         than 7
+	 */
+	public static int nextFastLength(int n)
+	{
+		if (n <= 2) {
+			return n;
+		}
+		int m = n + (n % 2);
+		while (!isFastLength(m)) {
+			m += 2;
+		}
+		return m;
+	}
+
+	/**
+	 *
+	 * @return transform length of this plan
+	 */
+	public int getLength()
+	{
+		return n;
+	}
+
+	/**
+	 * Computes the discrete Fourier transform (or its inverse) of the complex
+	 * array represented by {@code re} and {@code im} in place. Both arrays
+	 * must have length at least equal to {@link #getLength() getLength()}; only
+	 * the first {@code n} elements are transformed.
+	 *
+	 * @param re        real part of input; overwritten by real part of output
+	 * @param im        imaginary part of input; overwritten by imaginary part
+	 *                  of output
+	 * @param isForward true for forward transform, false for inverse transform
+	 */
+	public void transform(double[] re, double[] im, boolean isForward)
+	{
+		transform(re, 0, im, 0, 1, isForward);
+
+		if (!isForward) {
+			double scale = 1.0 / n;
+			for (int i = 0; i < n; i++) {
+				re[i] *= scale;
+				im[i] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * Computes the discrete Fourier transform of a real-valued input array (or
+	 * its inverse) in place. For even lengths, the even- and odd-indexed
+	 * samples are treated as the real and imaginary parts of a complex
+	 * sequence of half the length, which is transformed and then separated
+	 * into the spectrum of the original sequence. This requires roughly half
+	 * the work of the equivalent complex transform, and no temporary arrays
+	 * are allocated. Odd lengths are computed with a full-length complex
+	 * transform in arrays held per thread.
+	 * <p>
+	 * Because the spectrum of a real sequence is Hermitian-symmetric, only the
+	 * non-negative frequencies are stored, in the same "packed" format used by
+	 * FFTPACK: {@code a[0]} holds the (real) DC component, and
+	 * {@code a[2*k-1]} and {@code a[2*k]} hold the real and imaginary parts of
+	 * the {@code k}<SUP>th</SUP> frequency component for
+	 * {@code 0<k<(n+1)/2}. If {@code n} is even, {@code a[n-1]} holds the
+	 * (real) Nyquist component.
+	 * </p>
+	 *
+	 * @param a         input array of length at least {@code n}; real-valued
+	 *                  samples for forward transform, packed spectrum for
+	 *                  inverse transform
+	 * @param isForward true for forward transform, false for inverse transform
+	 */
+	public void realTransform(double[] a, boolean isForward)
+	{
+		if (n < 2) {
+			return;
+		}
+
+		if (n % 2 != 0) {
+			realTransformOddLength(a, isForward);
+			return;
+		}
+
+		int m = n / 2;
+
+		if (isForward) {
+			// transform even and odd samples as interleaved half-length complex array
+			halfLengthPlan.transform(a, 0, a, 1, 2, true);
+
+			// separate spectra of even and odd samples and combine with
+			// twiddle factors; frequencies k and m-k are computed together so
+			// that the result can be written in place (Nyquist term is
+			// temporarily stored in a[1])
+			double z0Re = a[0];
+			double z0Im = a[1];
+			a[0] = z0Re + z0Im;
+			a[1] = z0Re - z0Im;
+			for (int k = 1; k <= m / 2; k++) {
+				int j = m - k;
+				double zkRe = a[2 * k];
+				double zkIm = a[2 * k + 1];
+				double zjRe = a[2 * j];
+				double zjIm = a[2 * j + 1];
+				double evenRe = 0.5 * (zkRe + zjRe);
+				double evenIm = 0.5 * (zkIm - zjIm);
+				double oddRe = 0.5 * (zkIm + zjIm);
+				double oddIm = -0.5 * (zkRe - zjRe);
+				double c = cosTable[k];
+				double s = sinTable[k];
+				a[2 * k] = evenRe + c * oddRe + s * oddIm;
+				a[2 * k + 1] = evenIm + c * oddIm - s * oddRe;
+				if (j != k) {
+					// for frequency j, even and odd parts are conjugates of
+					// those for k, and twiddle is
+					// exp(-2*pi*i*j/n) = -conj(exp(-2*pi*i*k/n))
+					a[2 * j] = evenRe - c * oddRe - s * oddIm;
+					a[2 * j + 1] = -evenIm + c * oddIm - s * oddRe;
+				}
+			}
+
+			// move Nyquist term to the end to obtain packed format
+			double nyquist = a[1];
+			System.arraycopy(a, 2, a, 1, n - 2);
+			a[n - 1] = nyquist;
+		} else {
+			// move Nyquist term to a[1]
+			double nyquist = a[n - 1];
+			System.arraycopy(a, 1, a, 2, n - 2);
+			a[1] = nyquist;
+
+			// reconstruct half-length complex spectrum in place
+			double x0 = a[0];
+			a[0] = 0.5 * (x0 + nyquist);
+			a[1] = 0.5 * (x0 - nyquist);
+			for (int k = 1; k <= m / 2; k++) {
+				int j = m - k;
+				double xRe = a[2 * k];
+				double xIm = a[2 * k + 1];
+				double yRe = a[2 * j];
+				double yIm = -a[2 * j + 1];
+				double evenRe = 0.5 * (xRe + yRe);
+				double evenIm = 0.5 * (xIm + yIm);
+				double dRe = 0.5 * (xRe - yRe);
+				double dIm = 0.5 * (xIm - yIm);
+				double c = cosTable[k];
+				double s = sinTable[k];
+				double oddRe = c * dRe - s * dIm;
+				double oddIm = c * dIm + s * dRe;
+				a[2 * k] = evenRe - oddIm;
+				a[2 * k + 1] = evenIm + oddRe;
+				if (j != k) {
+					// for frequency j, even and odd parts are conjugates of
+					// those for k
+					a[2 * j] = evenRe + oddIm;
+					a[2 * j + 1] = -evenIm + oddRe;
+				}
+			}
+
+			// inverse transform of interleaved half-length complex array
+			halfLengthPlan.transform(a, 0, a, 1, 2, false);
+			double scale = 1.0 / m;
+			for (int i = 0; i < n; i++) {
+				a[i] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * Real-input transform for odd lengths, computed with a full-length
+	 * complex transform.
+	 */
+	private void realTransformOddLength(double[] a, boolean isForward)
+	{
+		Workspace w = workspace.get();
+		if (w.re == null) {
+			w.re = new double[n];
+			w.im = new double[n];
+		}
+		double[] re = w.re;
+		double[] im = w.im;
+		int nHalf = (n + 1) / 2;
+
+		if (isForward) {
+			System.arraycopy(a, 0, re, 0, n);
+			Arrays.fill(im, 0.0);
+			transform(re, 0, im, 0, 1, true);
+			a[0] = re[0];
+			for (int k = 1; k < nHalf; k++) {
+				a[2 * k - 1] = re[k];
+				a[2 * k] = im[k];
+			}
+		} else {
+			// expand packed spectrum using Hermitian symmetry
+			re[0] = a[0];
+			im[0] = 0.0;
+			for (int k = 1; k < nHalf; k++) {
+				re[k] = re[n - k] = a[2 * k - 1];
+				im[k] = a[2 * k];
+				im[n - k] = -a[2 * k];
+			}
+			transform(re, 0, im, 0, 1, false);
+			double scale = 1.0 / n;
+			for (int i = 0; i < n; i++) {
+				a[i] = re[i] * scale;
+			}
+		}
+	}
+
+	/**
+	 * Unnormalized in-place transform of the complex sequence whose
+	 * {@code k}<SUP>th</SUP> element has real part {@code x[xOffset+k*stride]}
+	 * and imaginary part {@code y[yOffset+k*stride]}. Using a stride allows the
+	 * same routines to operate on separate real and imaginary arrays or on a
+	 * single interleaved array.
+	 */
+	private void transform(double[] x, int xOffset, double[] y, int yOffset, int stride, boolean isForward)
+	{
+		if (n < 2) {
+			return;
+		}
+
+		switch (algorithm) {
+			case RADIX_2:
+				radix2Transform(x, xOffset, y, yOffset, stride, isForward);
+				break;
+			case MIXED_RADIX:
+				mixedRadixTransform(x, xOffset, y, yOffset, stride, isForward);
+				break;
+			default:
+				bluesteinTransform(x, xOffset, y, yOffset, stride, isForward);
+				break;
+		}
+	}
+
+	/**
+	 * Iterative radix-2 decimation-in-time transform.
+	 */
+	private void radix2Transform(double[] x, int xOffset, double[] y, int yOffset, int stride, boolean isForward)
+	{
+		// reorder elements in bit-reversed order
+		for (int i = 0; i < n; i++) {
+			int j = bitReversedIndices[i];
+			if (j > i) {
+				int ii = i * stride;
+				int jj = j * stride;
+				double temp = x[xOffset + ii];
+				x[xOffset + ii] = x[xOffset + jj];
+				x[xOffset + jj] = temp;
+				temp = y[yOffset + ii];
+				y[yOffset + ii] = y[yOffset + jj];
+				y[yOffset + jj] = temp;
+			}
+		}
+
+		// butterflies
+		double sign = isForward ? 1.0 : -1.0;
+		for (int span = 1; span < n; span <<= 1) {
+			int tableStep = n / (2 * span);
+			for (int k = 0; k < span; k++) {
+				double c = cosTable[k * tableStep];
+				double s = sign * sinTable[k * tableStep];
+				for (int i = k; i < n; i += 2 * span) {
+					int p = i * stride;
+					int q = (i + span) * stride;
+					double qRe = x[xOffset + q];
+					double qIm = y[yOffset + q];
+					double tRe = c * qRe + s * qIm;
+					double tIm = c * qIm - s * qRe;
+					double pRe = x[xOffset + p];
+					double pIm = y[yOffset + p];
+					x[xOffset + q] = pRe - tRe;
+					y[yOffset + q] = pIm - tIm;
+					x[xOffset + p] = pRe + tRe;
+					y[yOffset + p] = pIm + tIm;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterative mixed-radix decimation-in-time transform for lengths whose
+	 * only prime factors are 2, 3, 5, and 7. Radix-2, -3, and -4 butterflies
+	 * are computed explicitly; other radices use a direct DFT of the radix
+	 * length.
+	 */
+	private void mixedRadixTransform(double[] x, int xOffset, double[] y, int yOffset, int stride, boolean isForward)
+	{
+		// apply digit-reversal permutation in place, one cycle at a time
+		for (int leader : cycleLeaders) {
+			int p = leader;
+			double tempRe = x[xOffset + p * stride];
+			double tempIm = y[yOffset + p * stride];
+			while (sourceIndices[p] != leader) {
+				int q = sourceIndices[p];
+				x[xOffset + p * stride] = x[xOffset + q * stride];
+				y[yOffset + p * stride] = y[yOffset + q * stride];
+				p = q;
+			}
+			x[xOffset + p * stride] = tempRe;
+			y[yOffset + p * stride] = tempIm;
+		}
+
+		double sign = isForward ? 1.0 : -1.0;
+		Workspace w = workspace.get();
+		double[] tRe = w.butterflyRe;
+		double[] tIm = w.butterflyIm;
+
+		// butterfly stages; each combines radix transforms of length subLength
+		// into transforms of length radix*subLength
+		int subLength = 1;
+		for (int radix : factors) {
+			int length = radix * subLength;
+			int tableStep = n / length;
+			for (int base = 0; base < n; base += length) {
+				for (int k = 0; k < subLength; k++) {
+
+					// load and apply twiddle factors exp(-2*pi*i*r*k/length)
+					for (int r = 0; r < radix; r++) {
+						int index = (base + r * subLength + k) * stride;
+						double re = x[xOffset + index];
+						double im = y[yOffset + index];
+						int t = r * k * tableStep;
+						double c = cosTable[t];
+						double s = sign * sinTable[t];
+						tRe[r] = c * re + s * im;
+						tIm[r] = c * im - s * re;
+					}
+
+					// radix-point DFT, stored at the same positions
+					int i0 = (base + k) * stride;
+					int step = subLength * stride;
+					switch (radix) {
+						case 2: {
+							x[xOffset + i0] = tRe[0] + tRe[1];
+							y[yOffset + i0] = tIm[0] + tIm[1];
+							x[xOffset + i0 + step] = tRe[0] - tRe[1];
+							y[yOffset + i0 + step] = tIm[0] - tIm[1];
+							break;
+						}
+						case 3: {
+							double sumRe = tRe[1] + tRe[2];
+							double sumIm = tIm[1] + tIm[2];
+							double midRe = tRe[0] - 0.5 * sumRe;
+							double midIm = tIm[0] - 0.5 * sumIm;
+							double rotRe = sign * SQRT_3_OVER_2 * (tIm[1] - tIm[2]);
+							double rotIm = -sign * SQRT_3_OVER_2 * (tRe[1] - tRe[2]);
+							x[xOffset + i0] = tRe[0] + sumRe;
+							y[yOffset + i0] = tIm[0] + sumIm;
+							x[xOffset + i0 + step] = midRe + rotRe;
+							y[yOffset + i0 + step] = midIm + rotIm;
+							x[xOffset + i0 + 2 * step] = midRe - rotRe;
+							y[yOffset + i0 + 2 * step] = midIm - rotIm;
+							break;
+						}
+						case 4: {
+							double s02Re = tRe[0] + tRe[2];
+							double s02Im = tIm[0] + tIm[2];
+							double d02Re = tRe[0] - tRe[2];
+							double d02Im = tIm[0] - tIm[2];
+							double s13Re = tRe[1] + tRe[3];
+							double s13Im = tIm[1] + tIm[3];
+							// -i*sign*(t1-t3)
+							double rotRe = sign * (tIm[1] - tIm[3]);
+							double rotIm = -sign * (tRe[1] - tRe[3]);
+							x[xOffset + i0] = s02Re + s13Re;
+							y[yOffset + i0] = s02Im + s13Im;
+							x[xOffset + i0 + step] = d02Re + rotRe;
+							y[yOffset + i0 + step] = d02Im + rotIm;
+							x[xOffset + i0 + 2 * step] = s02Re - s13Re;
+							y[yOffset + i0 + 2 * step] = s02Im - s13Im;
+							x[xOffset + i0 + 3 * step] = d02Re - rotRe;
+							y[yOffset + i0 + 3 * step] = d02Im - rotIm;
+							break;
+						}
+						default: {
+							int radixStep = n / radix;
+							for (int q = 0; q < radix; q++) {
+								double sumRe = tRe[0];
+								double sumIm = tIm[0];
+								for (int r = 1; r < radix; r++) {
+									int t = ((r * q) % radix) * radixStep;
+									double c = cosTable[t];
+									double s = sign * sinTable[t];
+									sumRe += c * tRe[r] + s * tIm[r];
+									sumIm += c * tIm[r] - s * tRe[r];
+								}
+								x[xOffset + i0 + q * step] = sumRe;
+								y[yOffset + i0 + q * step] = sumIm;
+							}
+							break;
+						}
+					}
+				}
+			}
+			subLength = length;
+		}
+	}
+
+	/**
+	 * Bluestein's algorithm for arbitrary lengths. Using the identity
+	 * {@code jk = (j^2 + k^2 - (k-j)^2)/2}, the transform is written as the
+	 * circular convolution of the input multiplied by a chirp with the
+	 * conjugate chirp, which is computed with power-of-2 transforms of
+	 * length at least {@code 2n-1}. Inverse transforms are computed by
+	 * conjugating the input and output of the forward transform.
+	 */
+	private void bluesteinTransform(double[] x, int xOffset, double[] y, int yOffset, int stride, boolean isForward)
+	{
+		int m = convolutionPlan.getLength();
+		double sign = isForward ? 1.0 : -1.0;
+		Workspace w = workspace.get();
+		if (w.convolutionRe == null) {
+			w.convolutionRe = new double[m];
+			w.convolutionIm = new double[m];
+		}
+		double[] aRe = w.convolutionRe;
+		double[] aIm = w.convolutionIm;
+		Arrays.fill(aRe, n, m, 0.0);
+		Arrays.fill(aIm, n, m, 0.0);
+
+		// multiply (conjugated, for inverse) input by chirp
+		for (int k = 0; k < n; k++) {
+			double re = x[xOffset + k * stride];
+			double im = sign * y[yOffset + k * stride];
+			aRe[k] = chirpCos[k] * re + chirpSin[k] * im;
+			aIm[k] = chirpCos[k] * im - chirpSin[k] * re;
+		}
+
+		// circular convolution with conjugate chirp
+		convolutionPlan.transform(aRe, 0, aIm, 0, 1, true);
+		for (int k = 0; k < m; k++) {
+			double re = aRe[k];
+			double im = aIm[k];
+			aRe[k] = re * chirpSpectrumRe[k] - im * chirpSpectrumIm[k];
+			aIm[k] = re * chirpSpectrumIm[k] + im * chirpSpectrumRe[k];
+		}
+		convolutionPlan.transform(aRe, 0, aIm, 0, 1, false);
+
+		// multiply by chirp and normalize convolution (conjugating output, for inverse)
+		double scale = 1.0 / m;
+		for (int k = 0; k < n; k++) {
+			double re = scale * aRe[k];
+			double im = scale * aIm[k];
+			x[xOffset + k * stride] = chirpCos[k] * re + chirpSin[k] * im;
+			y[yOffset + k * stride] = sign * (chirpCos[k] * im - chirpSin[k] * re);
+		}
+	}
+
+	/**
+	 * Scratch arrays used by the transforms of one plan on one thread. The
+	 * arrays for odd-length real transforms and for Bluestein's algorithm are
+	 * allocated when first needed; they are separate because an odd-length real
+	 * transform may itself use Bluestein's algorithm.
+	 */
+	private static final class Workspace
+	{
+		// twiddled inputs of a mixed-radix butterfly
+		final double[] butterflyRe = new double[7];
+		final double[] butterflyIm = new double[7];
+
+		// full-length complex sequence for odd-length real transforms
+		double[] re;
+		double[] im;
+
+		// zero-padded sequence for the convolution in Bluestein's algorithm
+		double[] convolutionRe;
+		double[] convolutionIm;
+	}
+
+	/**
+	 * Factors {@code n} (assumed to have no prime factors greater than 7) into
+	 * radices 4, 2, 3, 5, and 7, in that order.
+	 */
+	private static int[] factor(int n)
+	{
+		int[] f = new int[32];
+		int count = 0;
+		for (int p : new int[]{4, 2, 3, 5, 7}) {
+			while (n % p == 0) {
+				f[count++] = p;
+				n /= p;
+			}
+		}
+		int[] output = new int[count];
+		System.arraycopy(f, 0, output, 0, count);
+		return output;
+	}
+}
@@ -22,8 +22,8 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
+import java.util.Arrays;
 
 /**
  * This plug-in filter computes the Hilbert transform of each horizontal line in
@@ -38,6 +38,8 @@ public class HilbertTransform implements ExtendedPlugInFilter, DialogListener
 {
 	private int width;
 	private static boolean isForward = true;
+	private static final String[] paddingTypes = WaveformUtils.PaddingType.stringValues();
+	private static int paddingChoice = WaveformUtils.PaddingType.POWER_OF_2.ordinal();
 	private GenericDialog gd;
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 
@@ -64,6 +66,7 @@ public class HilbertTransform implements ExtendedPlugInFilter, DialogListener
 	{
 		gd = new GenericDialog("Hilbert Transform");
 		gd.addCheckbox("Forward transform (reverse if unchecked)", isForward);
+		gd.addChoice("Pad records to", paddingTypes, paddingTypes[paddingChoice]);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -79,6 +82,7 @@ public class HilbertTransform implements ExtendedPlugInFilter, DialogListener
 	public boolean dialogItemChanged(GenericDialog gd, AWTEvent e)
 	{
 		isForward = gd.getNextBoolean();
+		paddingChoice = gd.getNextChoiceIndex();
 
 		return true;
 	}
@@ -88,14 +92,9 @@ public class HilbertTransform implements ExtendedPlugInFilter, DialogListener
 	{
 		// get pixel values of current processor
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		// compute envelopes
-		execute(pixelsDouble, isForward, width);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		// compute Hilbert transforms
+		execute(pixels, isForward, width, WaveformUtils.PaddingType.values()[paddingChoice]);
 	}
 
 	/**
@@ -114,28 +113,98 @@ public class HilbertTransform implements ExtendedPlugInFilter, DialogListener
 	 */
 	public static final void execute(double[] waveforms, boolean isForward, int recordLength)
 	{
-		int numberOfRecords = waveforms.length / recordLength;
+		execute(waveforms, isForward, recordLength, WaveformUtils.PaddingType.POWER_OF_2);
+	}
 
-		int paddedWidth = recordLength + WaveformUtils.amountToPadToNextPowerOf2(recordLength);
+	/**
+	 * Computes Hilbert transform of input waveforms, as described in
+	 * {@link #execute(double[], boolean, int) execute}, except that each
+	 * waveform is zero-padded to the length determined by {@code paddingType}
+	 * before computing FFTs.
+	 * <p>
+	 * @param waveforms    input
+	 * @param isForward    {@code true} for forward transform,
+	 *                     {@code false for inverse}
+	 * @param recordLength length of each waveform in points
+	 * @param paddingType  method of choosing padded record length
+	 */
+	public static final void execute(double[] waveforms, boolean isForward, int recordLength, WaveformUtils.PaddingType paddingType)
+	{
+		int numberOfRecords = waveforms.length / recordLength;
 
-		// perform computations on row-by-row basis
-		for (int i = 0; i < numberOfRecords; i++) {
+		int paddedWidth = paddingType.paddedLength(recordLength);
 
-			// compute row offset 
-			int offset = i * recordLength;
+		// obtain FFT plan once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedWidth);
 
-			// initialize temporary padded array copy
+		// process ranges of records in parallel, allocating temporary padded array once per range
+		RecordParallelExecutor.execute(numberOfRecords, (fromRecord, toRecord) -> {
 			double[] waveformCopy = new double[paddedWidth];
-			for (int j = 0; j < recordLength; j++) {
-				waveformCopy[j] = waveforms[offset + j];
+
+			for (int i = fromRecord; i < toRecord; i++) {
+
+				// compute row offset 
+				int offset = i * recordLength;
+
+				// copy current record into temporary padded array, and reset padded portion to zero
+				System.arraycopy(waveforms, offset, waveformCopy, 0, recordLength);
+				Arrays.fill(waveformCopy, recordLength, paddedWidth, 0.0);
+
+				// compute Hilbert transform
+				WaveformUtils.fastHilbertTransform(waveformCopy, isForward, plan);
+
+				// copy transform into original waveform array, truncating at original width
+				System.arraycopy(waveformCopy, 0, waveforms, offset, recordLength);
 			}
+		});
+	}
 
-			// compute Hilbert transform
-			WaveformUtils.fastHilbertTransformPowerOf2(waveformCopy, isForward);
+	/**
+	 * Computes Hilbert transform of input waveforms, as described in
+	 * {@link #execute(double[], boolean, int, WaveformUtils.PaddingType) execute}.
+	 * Each record is copied into a double-precision padded array before
+	 * transforming, so no double-precision copy of the entire input array is
+	 * required.
+	 * <p>
+	 * @param waveforms    input
+	 * @param isForward    {@code true} for forward transform,
+	 *                     {@code false for inverse}
+	 * @param recordLength length of each waveform in points
+	 * @param paddingType  method of choosing padded record length
+	 */
+	public static final void execute(float[] waveforms, boolean isForward, int recordLength, WaveformUtils.PaddingType paddingType)
+	{
+		int numberOfRecords = waveforms.length / recordLength;
 
-			// copy transform into original waveform array, truncating at original width
-			System.arraycopy(waveformCopy, 0, waveforms, offset, recordLength);
-		}
+		int paddedWidth = paddingType.paddedLength(recordLength);
+
+		// obtain FFT plan once for all records
+		FFTPlan plan = FFTPlan.getPlan(paddedWidth);
+
+		// process ranges of records in parallel, allocating temporary padded array once per range
+		RecordParallelExecutor.execute(numberOfRecords, (fromRecord, toRecord) -> {
+			double[] waveformCopy = new double[paddedWidth];
+
+			for (int i = fromRecord; i < toRecord; i++) {
+
+				// compute row offset 
+				int offset = i * recordLength;
+
+				// copy current record into temporary padded array, and reset padded portion to zero
+				for (int j = 0; j < recordLength; j++) {
+					waveformCopy[j] = waveforms[offset + j];
+				}
+				Arrays.fill(waveformCopy, recordLength, paddedWidth, 0.0);
+
+				// compute Hilbert transform
+				WaveformUtils.fastHilbertTransform(waveformCopy, isForward, plan);
+
+				// copy transform into original waveform array, truncating at original width
+				for (int j = 0; j < recordLength; j++) {
+					waveforms[offset + j] = (float) waveformCopy[j];
+				}
+			}
+		});
 	}
 
 	@Override
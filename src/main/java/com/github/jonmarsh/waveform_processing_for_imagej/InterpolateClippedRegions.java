@@ -7,11 +7,8 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * This plugin uses cubic spline interpolation to overwrite data in waveforms
@@ -36,6 +33,7 @@ public class InterpolateClippedRegions implements ExtendedPlugInFilter, DialogLi
 	private int width;
 	private GenericDialog gd;
 	private static double clippingThreshold = 1.0;
+	private static int neighborhoodSize = 0;
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 
 	@Override
@@ -61,6 +59,7 @@ public class InterpolateClippedRegions implements ExtendedPlugInFilter, DialogLi
 	{
 		gd = new GenericDialog("Interpolate Clipped Waveforms With Cubic Spline");
 		gd.addNumericField("Clipping amplitude threshold", clippingThreshold, 4);
+		gd.addNumericField("Valid points on each side of clipped regions (0 for whole waveform)", neighborhoodSize, 0);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -76,28 +75,69 @@ public class InterpolateClippedRegions implements ExtendedPlugInFilter, DialogLi
 	public boolean dialogItemChanged(GenericDialog gd, AWTEvent e)
 	{
 		clippingThreshold = gd.getNextNumber();
+		neighborhoodSize = (int)gd.getNextNumber();
 
-		return (!gd.invalidNumber() && clippingThreshold >= 0.0);
+		return (!gd.invalidNumber() && clippingThreshold >= 0.0 && (neighborhoodSize == 0 || neighborhoodSize >= 2));
 	}
 
 	@Override
 	public void run(ImageProcessor ip)
 	{
-		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
-
-		double[] interpolatedPixels = execute(pixelsDouble, width, clippingThreshold);
-
-		if (interpolatedPixels != null) {
-			for (int i = 0; i < pixels.length; i++) {
-				pixels[i] = (float)interpolatedPixels[i];
-			}
-		}
+		execute((float[])ip.getPixels(), width, clippingThreshold, neighborhoodSize);
 	}
 
+	/**
+	 * Overwrites values in each record of {@code waveforms} whose magnitude is
+	 * greater than or equal to {@code threshold} with values of a cubic spline
+	 * fit through all of the remaining values of the record. Records with no
+	 * clipped values are left unchanged, and records with fewer than four
+	 * valid values are filled with zeros. {@code waveforms} is a
+	 * one-dimensional array composed of a series of concatenated records, each
+	 * of length {@code recordLength}. A null value is returned if
+	 * {@code waveforms} is {@code null}, {@code recordLength<=3},
+	 * {@code waveforms.length<recordLength}, or {@code waveforms.length} is not
+	 * evenly divisible by {@code recordLength}.
+	 *
+	 * @param waveforms    input waveforms concatenated into 1-D array
+	 * @param recordLength length of each waveform in points
+	 * @param threshold    magnitude at or above which values are considered
+	 *                     clipped
+	 * @return copy of {@code waveforms} with clipped values interpolated
+	 */
 	public static final double[] execute(double[] waveforms, int recordLength, double threshold)
 	{
-		if (waveforms == null || recordLength <= 3 || waveforms.length < recordLength || waveforms.length % recordLength != 0) {
+		return execute(waveforms, recordLength, threshold, 0);
+	}
+
+	/**
+	 * Overwrites values in each record of {@code waveforms} whose magnitude is
+	 * greater than or equal to {@code threshold} with values of a cubic spline.
+	 * If {@code neighborhoodSize} is zero, a single spline is fit through all of
+	 * the valid values of the record, as in
+	 * {@link #execute(double[], int, double) execute}. Otherwise each run of
+	 * clipped values is repaired with a spline fit through only the
+	 * {@code neighborhoodSize} valid values on each side of the run; runs that
+	 * are separated by fewer than {@code neighborhoodSize} valid values share
+	 * a single fit, and valid values are left unchanged. Records with no
+	 * clipped values are left unchanged, and records with fewer than four
+	 * valid values are filled with zeros. A null value is returned if
+	 * {@code waveforms} is {@code null}, {@code recordLength<=3},
+	 * {@code waveforms.length<recordLength}, {@code waveforms.length} is not
+	 * evenly divisible by {@code recordLength}, or {@code neighborhoodSize} is
+	 * negative or equal to one.
+	 *
+	 * @param waveforms        input waveforms concatenated into 1-D array
+	 * @param recordLength     length of each waveform in points
+	 * @param threshold        magnitude at or above which values are
+	 *                         considered clipped
+	 * @param neighborhoodSize number of valid values on each side of a clipped
+	 *                         run used for the fit, or {@code 0} to fit the
+	 *                         whole record
+	 * @return copy of {@code waveforms} with clipped values interpolated
+	 */
+	public static final double[] execute(double[] waveforms, int recordLength, double threshold, int neighborhoodSize)
+	{
+		if (waveforms == null || recordLength <= 3 || waveforms.length < recordLength || waveforms.length % recordLength != 0 || neighborhoodSize < 0 || neighborhoodSize == 1) {
 			return null;
 		}
 
@@ -107,62 +147,178 @@ public class InterpolateClippedRegions implements ExtendedPlugInFilter, DialogLi
 		// initialize output array
 		double[] interpolatedWaveforms = Arrays.copyOf(waveforms, waveforms.length);
 
-		// peform computations on a row-by-row basis
-		for (int i = 0; i < numRecords; i++) {
+		// peform computations on ranges of records in parallel
+		RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+
+			// arrays of valid x and y values -- they'll be larger than necessary
+			double[] validX = new double[recordLength];
+			double[] validY = new double[recordLength];
+
+			for (int i = fromRecord; i < toRecord; i++) {
+
+				// offset to current record
+				int offset = i * recordLength;
+
+				// skip records without clipped values
+				int j = 0;
+				while (j < recordLength && Math.abs(waveforms[offset + j]) < threshold) {
+					j++;
+				}
+				if (j == recordLength) {
+					continue;
+				}
+
+				interpolateRecord(interpolatedWaveforms, offset, recordLength, threshold, neighborhoodSize, validX, validY);
+			}
+		});
+
+		return interpolatedWaveforms;
+	}
+
+	/**
+	 * Overwrites values in each record of {@code waveforms} whose magnitude is
+	 * greater than or equal to {@code threshold} with values of a cubic spline,
+	 * as described in {@link #execute(double[], int, double, int) execute}.
+	 * The computation is performed in place; only records containing clipped
+	 * values are converted to double precision and modified. {@code waveforms}
+	 * is left unchanged if it is {@code null}, {@code recordLength<=3},
+	 * {@code waveforms.length<recordLength}, {@code waveforms.length} is not
+	 * evenly divisible by {@code recordLength}, or {@code neighborhoodSize} is
+	 * negative or equal to one.
+	 *
+	 * @param waveforms        input waveforms concatenated into 1-D array
+	 * @param recordLength     length of each waveform in points
+	 * @param threshold        magnitude at or above which values are
+	 *                         considered clipped
+	 * @param neighborhoodSize number of valid values on each side of a clipped
+	 *                         run used for the fit, or {@code 0} to fit the
+	 *                         whole record
+	 */
+	public static final void execute(float[] waveforms, int recordLength, double threshold, int neighborhoodSize)
+	{
+		if (waveforms == null || recordLength <= 3 || waveforms.length < recordLength || waveforms.length % recordLength != 0 || neighborhoodSize < 0 || neighborhoodSize == 1) {
+			return;
+		}
+
+		// compute number of records
+		int numRecords = waveforms.length / recordLength;
 
-			// offset to current record
-			int offset = i * recordLength;
+		// peform computations on ranges of records in parallel
+		RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
 
-			// create arrays of valid x and y values -- they'll be larger than necessary
+			// double-precision copy of current record, and arrays of valid x and y values
+			double[] record = new double[recordLength];
 			double[] validX = new double[recordLength];
 			double[] validY = new double[recordLength];
-			int numberValid = 0;
-			for (int j = 0; j < recordLength; j++) {
-				double value = waveforms[offset + j];
-				if (Math.abs(value) < threshold) {
-					validX[numberValid] = j;
-					validY[numberValid] = value;
-					numberValid++;
+
+			for (int i = fromRecord; i < toRecord; i++) {
+
+				// offset to current record
+				int offset = i * recordLength;
+
+				// skip records without clipped values
+				int j = 0;
+				while (j < recordLength && Math.abs(waveforms[offset + j]) < threshold) {
+					j++;
+				}
+				if (j == recordLength) {
+					continue;
+				}
+
+				for (j = 0; j < recordLength; j++) {
+					record[j] = waveforms[offset + j];
 				}
+				interpolateRecord(record, 0, recordLength, threshold, neighborhoodSize, validX, validY);
+				for (j = 0; j < recordLength; j++) {
+					waveforms[offset + j] = (float)record[j];
+				}
+			}
+		});
+	}
+
+	// Interpolates the clipped values of the record starting at offset in place,
+	// using validX and validY, of at least recordLength elements, as scratch
+	private static void interpolateRecord(double[] waveforms, int offset, int recordLength, double threshold, int neighborhoodSize, double[] validX, double[] validY)
+	{
+		int numberValid = 0;
+		for (int j = 0; j < recordLength; j++) {
+			double value = waveforms[offset + j];
+			if (Math.abs(value) < threshold) {
+				validX[numberValid] = j;
+				validY[numberValid] = value;
+				numberValid++;
 			}
+		}
 
-			// if there are fewer valid points than required for a cubic fit, just fill with zeros
-			if (numberValid < 4) {
+		// if there are fewer valid points than required for a cubic fit, just fill with zeros
+		if (numberValid < 4) {
 
-				Arrays.fill(waveforms, offset, offset + recordLength, 0.0f);
+			Arrays.fill(waveforms, offset, offset + recordLength, 0.0);
 
-			} else if (numberValid < recordLength) {
+		} else if (neighborhoodSize == 0) {
 
-				// compute interpolant coefficients
-				double[][] coeffs = WaveformUtils.cubicSplineInterpolant(Arrays.copyOf(validX, numberValid), Arrays.copyOf(validY, numberValid));
+			// interpolate all points from a single fit; note that extrapolation occurs
+			// if the first or last valid point is not at the end of the waveform
+			double[][] coeffs = WaveformUtils.cubicSplineInterpolant(Arrays.copyOf(validX, numberValid), Arrays.copyOf(validY, numberValid));
+			interpolate(coeffs, validX, 0, numberValid, waveforms, offset, 0, recordLength);
 
-				// create a sorted map to hold spline coefficients (except for last one, which has zero values for all except constant coefficient
-				TreeMap<Double, double[]> splineMap = new TreeMap<>();
-				for (int j = 0; j < numberValid - 1; j++) {
-					splineMap.put(validX[j], new double[]{coeffs[0][j], coeffs[1][j], coeffs[2][j], coeffs[3][j]});
-//					IJ.log("x="+validX[j]+": "+coeffs[0][j]+", "+coeffs[1][j]+", "+coeffs[2][j]+", "+coeffs[3][j]);
+		} else {
+
+			// a gap after valid point m is a run of clipped points; m=-1 is the run at the start
+			for (int m = -1; m < numberValid; m++) {
+				if (gapStart(validX, m) == gapEnd(validX, numberValid, recordLength, m)) {
+					continue;
 				}
 
-				// if first valid point occurs after time zero, we have to extrapolate :-(
-				if (validX[0] != 0.0) {
-					for (int j = 0; j < (int)validX[0]; j++) {
-						double h = j - validX[0];
-						interpolatedWaveforms[offset + j] = (float)(coeffs[0][0] + h * (coeffs[1][0] + h * (coeffs[2][0] + h * coeffs[3][0])));
+				// merge following runs that are closer than the neighborhood size
+				int firstGap = m;
+				int lastGap = m;
+				for (int k = m + 1; k < numberValid && k < lastGap + neighborhoodSize; k++) {
+					if (gapStart(validX, k) < gapEnd(validX, numberValid, recordLength, k)) {
+						lastGap = k;
 					}
 				}
 
-				// interpolate remaining points; note that extrapolation may occur if last point is not at the end of the waveform
-				for (int j = (int)validX[0]; j < recordLength; j++) {
-					Map.Entry<Double, double[]> entry = splineMap.floorEntry((double)j);
-					double h = j - entry.getKey();
-					interpolatedWaveforms[offset + j] = (float)(entry.getValue()[0] + h * (entry.getValue()[1] + h * (entry.getValue()[2] + h * entry.getValue()[3])));
+				// fit the valid points around the runs and interpolate the clipped points
+				int lo = Math.max(0, firstGap + 1 - neighborhoodSize);
+				int hi = Math.min(numberValid, lastGap + 1 + neighborhoodSize);
+				double[][] coeffs = WaveformUtils.cubicSplineInterpolant(Arrays.copyOfRange(validX, lo, hi), Arrays.copyOfRange(validY, lo, hi));
+				for (int k = firstGap; k <= lastGap; k++) {
+					interpolate(coeffs, validX, lo, hi, waveforms, offset, gapStart(validX, k), gapEnd(validX, numberValid, recordLength, k));
 				}
 
+				m = lastGap;
 			}
 
 		}
+	}
 
-		return interpolatedWaveforms;
+	// First clipped index after valid point m
+	private static int gapStart(double[] validX, int m)
+	{
+		return (m < 0) ? 0 : (int)validX[m] + 1;
+	}
+
+	// Index of the first valid point after valid point m, or the record length
+	private static int gapEnd(double[] validX, int numberValid, int recordLength, int m)
+	{
+		return (m + 1 < numberValid) ? (int)validX[m + 1] : recordLength;
+	}
+
+	// Evaluates the spline through knots validX[from..to) at indices fromIndex
+	// to toIndex of a record, advancing a cursor over the knots; indices
+	// outside the knots are extrapolated from the first or last interval
+	private static void interpolate(double[][] coeffs, double[] validX, int from, int to, double[] output, int offset, int fromIndex, int toIndex)
+	{
+		int lastInterval = to - from - 2;
+		int k = 0;
+		for (int j = fromIndex; j < toIndex; j++) {
+			while (k < lastInterval && validX[from + k + 1] <= j) {
+				k++;
+			}
+			double h = j - validX[from + k];
+			output[offset + j] = (float)(coeffs[0][k] + h * (coeffs[1][k] + h * (coeffs[2][k] + h * coeffs[3][k])));
+		}
 	}
 
 	@Override
@@ -5,7 +5,6 @@ import ij.ImagePlus;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Computes the kurtosis of each input waveform and returns the result in a new
@@ -78,9 +77,8 @@ public class Kurtosis implements ExtendedPlugInFilter
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		double[] kurtoses = execute(pixelsDouble, width);
+		double[] kurtoses = execute(pixels, width);
 		for (int i = 0; i < height; i++) {
 			resultPixels[i * resultWidth + (currentSlice - 1)] = (float)kurtoses[i];
 		}
@@ -92,7 +90,9 @@ public class Kurtosis implements ExtendedPlugInFilter
 	 * The kurtosis is computed using a numerically stable algorithm for
 	 * computing higher order statistical moments described by
 	 * <a href="http://people.xiph.org/~tterribe/notes/homs.html">Timothy B.
-	 * Terriberry (2007)</a>. Output is null if {@code waveforms==null}, {@code recordLength<=1},
+	 * Terriberry (2007)</a>; records of at least {@code 2^20} elements are
+	 * divided among several threads and their partial moments merged (see
+	 * {@link Moments}). Output is null if {@code waveforms==null}, {@code recordLength<=1},
 	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
 	 * not evenly divisible by {@code recordLength}.
 	 * <p>
@@ -130,8 +130,87 @@ public class Kurtosis implements ExtendedPlugInFilter
 		return null;
 	}
 
+	/**
+	 * Returns an array representing the kurtosis of each record in
+	 * {@code waveforms}, where each record has {@code recordLength} elements.
+	 * The kurtosis is computed using a numerically stable algorithm for
+	 * computing higher order statistical moments described by
+	 * <a href="http://people.xiph.org/~tterribe/notes/homs.html">Timothy B.
+	 * Terriberry (2007)</a>; records of at least {@code 2^20} elements are
+	 * divided among several threads and their partial moments merged (see
+	 * {@link Moments}). Output is null if {@code waveforms==null}, {@code recordLength<=1},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of kurtosis values of input waveforms
+	 */
+	public static double[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 1 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output array
+			double[] kurtoses = new double[numRecords];
+
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
+
+				// compute row offset
+				int offset = i * recordLength;
+
+				// find kurtosis of current waveform
+				kurtoses[i] = kurtosis(waveforms, offset, offset + recordLength);
+
+			}
+
+			return kurtoses;
+
+		}
+
+		return null;
+	}
+
 	private static double kurtosis(double[] a, int from, int to)
 	{
+		// divide very long records among several threads
+		if (to - from >= Moments.PARALLEL_RECORD_LENGTH) {
+			return Moments.compute(a, from, to).getKurtosis();
+		}
+
+		long n = 0;
+		double mean = 0.0;
+		double m2 = 0.0;
+		double m3 = 0.0;
+		double m4 = 0.0;
+
+		for (int i = from; i < to; i++) {
+			n++;
+			double delta = a[i] - mean;
+			double deltaOverN = delta / n;
+			double deltaOverNSquared = deltaOverN * deltaOverN;
+			double term1 = delta * deltaOverN * (n - 1);
+			mean += deltaOverN;
+			m4 += term1 * deltaOverNSquared * (n * (n - 3) + 3.0) + 6.0 * deltaOverNSquared * m2 - 4.0 * deltaOverN * m3;
+			m3 += deltaOverN * (term1 * (n - 2) - 3.0 * m2);
+			m2 += term1;
+		}
+
+		return (((n * m4) / (m2 * m2)) - 3.0);
+	}
+
+	private static double kurtosis(float[] a, int from, int to)
+	{
+		// divide very long records among several threads
+		if (to - from >= Moments.PARALLEL_RECORD_LENGTH) {
+			return Moments.compute(a, from, to).getKurtosis();
+		}
+
 		long n = 0;
 		double mean = 0.0;
 		double m2 = 0.0;
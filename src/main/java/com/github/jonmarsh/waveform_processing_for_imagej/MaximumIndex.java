@@ -5,7 +5,6 @@ import ij.ImagePlus;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Retrieves the index of maximum value of each input waveform and returns the
@@ -74,9 +73,8 @@ public class MaximumIndex implements ExtendedPlugInFilter
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		int[] maxIndices = execute(pixelsDouble, width);
+		int[] maxIndices = execute(pixels, width);
 		for (int i = 0; i < height; i++) {
 			resultPixels[i * resultWidth + (currentSlice - 1)] = maxIndices[i];
 		}
@@ -135,6 +133,59 @@ public class MaximumIndex implements ExtendedPlugInFilter
 		return null;
 	}
 
+	/**
+	 * Returns an array representing the indices of the maximum values of each
+	 * record in {@code waveforms}, where each record {@code recordLength}
+	 * elements. If a record has more than one point equal to the maximum, the
+	 * returned value is the index of the first instance of the maximum. Output
+	 * is null if {@code waveforms==null}, {@code recordLength<=0},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of indices of maximum values of input waveforms
+	 */
+	public static int[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output array
+			int[] maxIndices = new int[numRecords];
+
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
+
+				// compute row offset
+				int offset = i * recordLength;
+
+				// find minimum of current waveform
+				double currentValue = waveforms[offset];
+				double max = currentValue;
+				int maxIndex = 0;
+				for (int j = 1; j < recordLength; j++) {
+					currentValue = waveforms[offset + j];
+					if (currentValue > max) {
+						max = currentValue;
+						maxIndex = j;
+					}
+				}
+				maxIndices[i] = maxIndex;
+
+			}
+
+			return maxIndices;
+
+		}
+
+		return null;
+	}
+
 	@Override
 	public void setNPasses(int nPasses)
 	{
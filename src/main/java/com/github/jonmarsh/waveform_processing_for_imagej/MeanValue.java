@@ -5,7 +5,6 @@ import ij.ImagePlus;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Computes the mean value of each input waveform and returns the result in a
@@ -72,9 +71,8 @@ public class MeanValue implements ExtendedPlugInFilter
     {
         int currentSlice = pfr.getSliceNumber();
         float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		double[] meanValues = execute(pixelsDouble, width);
+		double[] meanValues = execute(pixels, width);
 		for (int i=0; i<height; i++) {
 			resultPixels[i*resultWidth+(currentSlice-1)] = (float)meanValues[i];
 		}
@@ -124,6 +122,51 @@ public class MeanValue implements ExtendedPlugInFilter
 		
 		return null;
 	}
+
+	/**
+	 * Returns an array representing the mean value of each record in
+	 * {@code waveforms}, where each record has {@code recordLength} elements.
+	 * Output is null if {@code waveforms==null}, {@code recordLength<=0},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 *
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of mean values of input waveforms
+	 */
+	public static double[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length%recordLength == 0) {
+			
+			// compute number of records
+			int numRecords = waveforms.length/recordLength;
+			
+			// allocate output array
+			double[] meanValues = new double[numRecords];
+			
+			// loop over all records
+			for (int i=0; i<numRecords; i++) {
+				
+				// compute row offset
+				int offset = i*recordLength;
+				
+				// find mean value of current waveform
+				double sum = 0.0;
+				for (int j=0; j<recordLength; j++) {
+					sum += waveforms[offset+j];
+				}
+				meanValues[i] = sum/recordLength;
+
+			}
+			
+			return meanValues;
+				
+		}
+		
+		return null;
+	}
 	
 	@Override
     public void setNPasses(int nPasses) {}
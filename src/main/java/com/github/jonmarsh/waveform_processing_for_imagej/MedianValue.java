@@ -5,14 +5,15 @@ import ij.ImagePlus;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Computes the median value of each input waveform and returns the result in a
  * new image. Each row in the input image is assumed to represent a single
  * waveform. The mean value of the {@code i}<SUP>th</SUP> waveform (row) and
  * {@code j}<SUP>th</SUP> slice is displayed in the {@code i}<SUP>th</SUP> row
- * and {@code j}<SUP>th</SUP> column of the output image.
+ * and {@code j}<SUP>th</SUP> column of the output image. Medians are found
+ * by selection for 32-bit images and from a histogram of each row for 8-bit
+ * and 16-bit images, in time proportional to the length of each row.
  *
  * @author Jon N. Marsh
  */
@@ -25,7 +26,7 @@ public class MedianValue implements ExtendedPlugInFilter
     private int width, height, stackSize, resultWidth;
 	private String title, resultTitle;
     private PlugInFilterRunner pfr;
-    private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + FINAL_PROCESSING;
+    private final int flags = DOES_8G + DOES_16 + DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + FINAL_PROCESSING;
 	
 	@Override
     public int setup(String arg, ImagePlus imp) 
@@ -71,10 +72,16 @@ public class MedianValue implements ExtendedPlugInFilter
     public void run(ImageProcessor ip) 
     {
         int currentSlice = pfr.getSliceNumber();
-        float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
+		Object pixels = ip.getPixels();
 
-		double[] medianValues = execute(pixelsDouble, width);
+		double[] medianValues;
+		if (pixels instanceof byte[]) {
+			medianValues = execute((byte[])pixels, width);
+		} else if (pixels instanceof short[]) {
+			medianValues = execute((short[])pixels, width);
+		} else {
+			medianValues = execute((float[])pixels, width);
+		}
 		for (int i=0; i<height; i++) {
 			resultPixels[i*resultWidth+(currentSlice-1)] = (float)medianValues[i];
 		}
@@ -100,8 +107,51 @@ public class MedianValue implements ExtendedPlugInFilter
 			// compute number of records
 			int numRecords = waveforms.length/recordLength;
 			
-			// allocate output array
+			// allocate output array and workspace
+			double[] medianValues = new double[numRecords];
+			double[] scratch = new double[recordLength];
+			
+			// loop over all records
+			for (int i=0; i<numRecords; i++) {
+				
+				// compute row offset
+				int offset = i*recordLength;
+				
+				// find median of current waveform
+				medianValues[i] = WaveformUtils.median(waveforms, offset, offset+recordLength, scratch);
+				
+			}
+			
+			return medianValues;
+				
+		}
+		
+		return null;
+	}
+
+	/**
+	 * Returns an array representing the median value of each record in
+	 * {@code waveforms}, where each record has {@code recordLength} elements.
+	 * Output is null if {@code waveforms==null}, {@code recordLength<=0},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 *
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of median values of input waveforms
+	 */
+	public static double[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length%recordLength == 0) {
+			
+			// compute number of records
+			int numRecords = waveforms.length/recordLength;
+			
+			// allocate output array and workspace
 			double[] medianValues = new double[numRecords];
+			float[] scratch = new float[recordLength];
 			
 			// loop over all records
 			for (int i=0; i<numRecords; i++) {
@@ -110,8 +160,85 @@ public class MedianValue implements ExtendedPlugInFilter
 				int offset = i*recordLength;
 				
 				// find median of current waveform
-				medianValues[i] = WaveformUtils.median(waveforms, offset, offset+recordLength);
+				medianValues[i] = WaveformUtils.median(waveforms, offset, offset+recordLength, scratch);
+				
+			}
+			
+			return medianValues;
+				
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns an array representing the median value of each record in
+	 * {@code waveforms}, where each record has {@code recordLength} unsigned
+	 * 8-bit elements. Medians are computed from a histogram of each record.
+	 * Output is null if {@code waveforms==null}, {@code recordLength<=0},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 *
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of median values of input waveforms
+	 */
+	public static double[] execute(byte[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length%recordLength == 0) {
+			
+			// compute number of records
+			int numRecords = waveforms.length/recordLength;
+			
+			// allocate output array and histogram
+			double[] medianValues = new double[numRecords];
+			int[] histogram = new int[256];
+			
+			// loop over all records
+			for (int i=0; i<numRecords; i++) {
+				int offset = i*recordLength;
+				medianValues[i] = WaveformUtils.median(waveforms, offset, offset+recordLength, histogram);
+			}
+			
+			return medianValues;
 				
+		}
+		
+		return null;
+	}
+
+	/**
+	 * Returns an array representing the median value of each record in
+	 * {@code waveforms}, where each record has {@code recordLength} unsigned
+	 * 16-bit elements. Medians are computed from a histogram spanning the range
+	 * of values in each record. Output is null if {@code waveforms==null},
+	 * {@code recordLength<=0}, {@code waveforms.length<recordLength}, or if
+	 * {@code waveforms.length} is not evenly divisible by
+	 * {@code recordLength}.
+	 *
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of median values of input waveforms
+	 */
+	public static double[] execute(short[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length%recordLength == 0) {
+			
+			// compute number of records
+			int numRecords = waveforms.length/recordLength;
+			
+			// allocate output array and histogram
+			double[] medianValues = new double[numRecords];
+			int[] histogram = new int[65536];
+			
+			// loop over all records
+			for (int i=0; i<numRecords; i++) {
+				int offset = i*recordLength;
+				medianValues[i] = WaveformUtils.median(waveforms, offset, offset+recordLength, histogram);
 			}
 			
 			return medianValues;
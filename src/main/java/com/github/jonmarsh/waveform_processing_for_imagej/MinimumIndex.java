@@ -5,7 +5,6 @@ import ij.ImagePlus;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Retrieves the index of the minimum value of each input waveform and returns
@@ -74,9 +73,8 @@ public class MinimumIndex implements ExtendedPlugInFilter
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		int[] minIndices = execute(pixelsDouble, width);
+		int[] minIndices = execute(pixels, width);
 		for (int i = 0; i < height; i++) {
 			resultPixels[i * resultWidth + (currentSlice - 1)] = minIndices[i];
 		}
@@ -135,6 +133,59 @@ public class MinimumIndex implements ExtendedPlugInFilter
 		return null;
 	}
 
+	/**
+	 * Returns an array representing the indices of the minimum values of each
+	 * record in {@code waveforms}, where each record {@code recordLength}
+	 * elements. If a record has more than one point equal to the minimum, the
+	 * returned value is the index of the first instance of the minimum. Output
+	 * is null if {@code waveforms==null}, {@code recordLength<=0},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of indices of minimum values of input waveforms
+	 */
+	public static int[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output array
+			int[] minIndices = new int[numRecords];
+
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
+
+				// compute row offset
+				int offset = i * recordLength;
+
+				// find minimum of current waveform
+				double currentValue = waveforms[offset];
+				double min = currentValue;
+				int minIndex = 0;
+				for (int j = 1; j < recordLength; j++) {
+					currentValue = waveforms[offset + j];
+					if (currentValue < min) {
+						min = currentValue;
+						minIndex = j;
+					}
+				}
+				minIndices[i] = minIndex;
+
+			}
+
+			return minIndices;
+
+		}
+
+		return null;
+	}
+
 	@Override
 	public void setNPasses(int nPasses)
 	{
@@ -5,7 +5,6 @@ import ij.ImagePlus;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 
 /**
  * Computes the minimum value of each input waveform and returns the result in a
@@ -70,9 +69,8 @@ public class MinimumValue implements ExtendedPlugInFilter
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		double[] minValues = execute(pixelsDouble, width);
+		double[] minValues = execute(pixels, width);
 		for (int i = 0; i < height; i++) {
 			resultPixels[i * resultWidth + (currentSlice - 1)] = (float)minValues[i];
 		}
@@ -127,6 +125,55 @@ public class MinimumValue implements ExtendedPlugInFilter
 		return null;
 	}
 
+	/**
+	 * Returns an array representing the minimum values of each record in
+	 * {@code waveforms}, where each record {@code recordLength} elements.
+	 * Output is null if {@code waveforms==null}, {@code recordLength<=0},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @return array of minimum values of input waveforms
+	 */
+	public static double[] execute(float[] waveforms, int recordLength)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output array
+			double[] minValues = new double[numRecords];
+
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
+
+				// compute row offset
+				int offset = i * recordLength;
+
+				// find minimum of current waveform
+				double currentValue = waveforms[offset];
+				double min = currentValue;
+				for (int j = 1; j < recordLength; j++) {
+					currentValue = waveforms[offset + j];
+					if (currentValue < min) {
+						min = currentValue;
+					}
+				}
+				minValues[i] = min;
+
+			}
+
+			return minValues;
+
+		}
+
+		return null;
+	}
+
 	@Override
 	public void setNPasses(int nPasses)
 	{
@@ -0,0 +1,314 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+/**
+ * Mergeable accumulator for the count, mean, second through fourth central
+ * moments, minimum, and maximum of a set of values. Values are added one at a
+ * time using the numerically stable update described by
+ * <a href="http://people.xiph.org/~tterribe/notes/homs.html">Timothy B.
+ * Terriberry (2007)</a>, and two accumulators over disjoint sets of values are
+ * combined using the pairwise formulas of Chan et al. and Pébay, so that the
+ * statistics of a very long record may be computed from partial results over
+ * separate chunks. {@link #compute(double[], int, int) compute} uses this to
+ * divide a long range of an array among several threads.
+ * <p>
+ * P. Pébay, "Formulas for robust, one-pass parallel computation of
+ * covariances and arbitrary-order statistical moments," Sandia Report
+ * SAND2008-6212 (2008).
+ * </p>
+ * An instance must not be shared among threads while values are being added.
+ *
+ * @author Jon N. Marsh
+ */
+public final class Moments
+{
+	/**
+	 * Length of the chunks into which {@link #compute(double[], int, int)
+	 * compute} divides a range of an array.
+	 */
+	static final int CHUNK_LENGTH = 1 << 16;
+
+	/**
+	 * Record length at or above which the moment-based plug-ins compute each
+	 * record with {@link #compute(double[], int, int) compute}, dividing it
+	 * among several threads, rather than sequentially.
+	 */
+	static final int PARALLEL_RECORD_LENGTH = 1 << 20;
+
+	private long n;
+	private double mean;
+	private double m2;
+	private double m3;
+	private double m4;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Creates an empty accumulator.
+	 */
+	public Moments()
+	{
+	}
+
+	/**
+	 * Removes all values from this accumulator.
+	 */
+	public void clear()
+	{
+		n = 0;
+		mean = 0.0;
+		m2 = 0.0;
+		m3 = 0.0;
+		m4 = 0.0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Adds a single value to this accumulator.
+	 *
+	 * @param x value to add
+	 */
+	public void add(double x)
+	{
+		n++;
+		double delta = x - mean;
+		double deltaOverN = delta / n;
+		double deltaOverNSquared = deltaOverN * deltaOverN;
+		double term1 = delta * deltaOverN * (n - 1);
+		mean += deltaOverN;
+		m4 += term1 * deltaOverNSquared * (n * (n - 3) + 3.0) + 6.0 * deltaOverNSquared * m2 - 4.0 * deltaOverN * m3;
+		m3 += deltaOverN * (term1 * (n - 2) - 3.0 * m2);
+		m2 += term1;
+		if (x < min) {
+			min = x;
+		}
+		if (x > max) {
+			max = x;
+		}
+	}
+
+	/**
+	 * Adds the values in the specified range of an array to this accumulator,
+	 * sequentially in the calling thread.
+	 *
+	 * @param a    input array
+	 * @param from initial index of the range, inclusive
+	 * @param to   final index of the range, exclusive
+	 */
+	public void add(double[] a, int from, int to)
+	{
+		for (int i = from; i < to; i++) {
+			add(a[i]);
+		}
+	}
+
+	/**
+	 * Adds the values in the specified range of an array to this accumulator,
+	 * sequentially in the calling thread.
+	 *
+	 * @param a    input array
+	 * @param from initial index of the range, inclusive
+	 * @param to   final index of the range, exclusive
+	 */
+	public void add(float[] a, int from, int to)
+	{
+		for (int i = from; i < to; i++) {
+			add(a[i]);
+		}
+	}
+
+	/**
+	 * Merges the values accumulated by {@code other} into this accumulator.
+	 * The result is the same, to within rounding error, as if the values added
+	 * to {@code other} had been added to this accumulator. {@code other} is
+	 * left unchanged.
+	 *
+	 * @param other accumulator over a disjoint set of values
+	 */
+	public void combine(Moments other)
+	{
+		if (other.n == 0) {
+			return;
+		}
+		if (n == 0) {
+			n = other.n;
+			mean = other.mean;
+			m2 = other.m2;
+			m3 = other.m3;
+			m4 = other.m4;
+			min = other.min;
+			max = other.max;
+			return;
+		}
+
+		double na = n;
+		double nb = other.n;
+		double nSum = na + nb;
+		double delta = other.mean - mean;
+		double deltaOverN = delta / nSum;
+		double deltaOverNSquared = deltaOverN * deltaOverN;
+		double term1 = delta * deltaOverN * na * nb;
+
+		// higher moments use the lower moments of both parts before they are updated
+		m4 += other.m4 + term1 * deltaOverNSquared * (na * na - na * nb + nb * nb)
+				+ 6.0 * deltaOverNSquared * (na * na * other.m2 + nb * nb * m2)
+				+ 4.0 * deltaOverN * (na * other.m3 - nb * m3);
+		m3 += other.m3 + term1 * deltaOverN * (na - nb) + 3.0 * deltaOverN * (na * other.m2 - nb * m2);
+		m2 += other.m2 + term1;
+		mean += nb * deltaOverN;
+		n += other.n;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Returns the number of values accumulated.
+	 *
+	 * @return number of values
+	 */
+	public long getN()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns the mean of the accumulated values, or {@code NaN} if there are
+	 * none.
+	 *
+	 * @return mean value
+	 */
+	public double getMean()
+	{
+		return (n > 0) ? mean : Double.NaN;
+	}
+
+	/**
+	 * Returns the variance of the accumulated values.
+	 *
+	 * @param useUnbiasedEstimate set to true to normalize by {@code n-1}
+	 *                            instead of {@code n}
+	 * @return variance
+	 */
+	public double getVariance(boolean useUnbiasedEstimate)
+	{
+		double norm = useUnbiasedEstimate ? 1.0 / (n - 1) : 1.0 / n;
+		return m2 * norm;
+	}
+
+	/**
+	 * Returns the skewness of the accumulated values, as computed by
+	 * {@link Skewness}.
+	 *
+	 * @param isSampleSkewness set true to return sample skewness, false to
+	 *                         return population skewness
+	 * @return skewness
+	 */
+	public double getSkewness(boolean isSampleSkewness)
+	{
+		double output = (m3 / n) / Math.pow(m2 / n, 1.5);
+		if (!isSampleSkewness) {
+			output *= Math.sqrt(n * (n - 1)) / (n - 2);
+		}
+		return output;
+	}
+
+	/**
+	 * Returns the excess kurtosis of the accumulated values, as computed by
+	 * {@link Kurtosis}.
+	 *
+	 * @return kurtosis
+	 */
+	public double getKurtosis()
+	{
+		return (((n * m4) / (m2 * m2)) - 3.0);
+	}
+
+	/**
+	 * Returns the smallest accumulated value, or positive infinity if there are
+	 * none.
+	 *
+	 * @return minimum value
+	 */
+	public double getMin()
+	{
+		return min;
+	}
+
+	/**
+	 * Returns the largest accumulated value, or negative infinity if there are
+	 * none.
+	 *
+	 * @return maximum value
+	 */
+	public double getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * Computes the moments of the values in the specified range of an array.
+	 * The range is divided into chunks of equal length, which are accumulated
+	 * in parallel using {@link RecordParallelExecutor}, and the partial
+	 * results are combined pairwise. The division into chunks does not depend
+	 * on the number of threads, so the result is reproducible.
+	 *
+	 * @param a    input array
+	 * @param from initial index of the range, inclusive
+	 * @param to   final index of the range, exclusive
+	 * @return moments of the values in the range
+	 */
+	public static Moments compute(double[] a, int from, int to)
+	{
+		final Moments[] partial = new Moments[numChunks(from, to)];
+		RecordParallelExecutor.execute(partial.length, (fromChunk, toChunk) -> {
+			for (int c = fromChunk; c < toChunk; c++) {
+				int chunkFrom = from + c * CHUNK_LENGTH;
+				partial[c] = new Moments();
+				partial[c].add(a, chunkFrom, Math.min(chunkFrom + CHUNK_LENGTH, to));
+			}
+		});
+		return combineAll(partial);
+	}
+
+	/**
+	 * Computes the moments of the values in the specified range of an array,
+	 * as described in {@link #compute(double[], int, int) compute}.
+	 *
+	 * @param a    input array
+	 * @param from initial index of the range, inclusive
+	 * @param to   final index of the range, exclusive
+	 * @return moments of the values in the range
+	 */
+	public static Moments compute(float[] a, int from, int to)
+	{
+		final Moments[] partial = new Moments[numChunks(from, to)];
+		RecordParallelExecutor.execute(partial.length, (fromChunk, toChunk) -> {
+			for (int c = fromChunk; c < toChunk; c++) {
+				int chunkFrom = from + c * CHUNK_LENGTH;
+				partial[c] = new Moments();
+				partial[c].add(a, chunkFrom, Math.min(chunkFrom + CHUNK_LENGTH, to));
+			}
+		});
+		return combineAll(partial);
+	}
+
+	private static int numChunks(int from, int to)
+	{
+		return Math.max((int)(((long)to - from + CHUNK_LENGTH - 1) / CHUNK_LENGTH), 1);
+	}
+
+	// Combines partial results pairwise in place, so that rounding errors grow with the logarithm of the number of chunks
+	private static Moments combineAll(Moments[] partial)
+	{
+		if (partial[0] == null) {
+			return new Moments();
+		}
+		for (int stride = 1; stride < partial.length; stride *= 2) {
+			for (int c = 0; c + stride < partial.length; c += 2 * stride) {
+				partial[c].combine(partial[c + stride]);
+			}
+		}
+		return partial[0];
+	}
+
+}
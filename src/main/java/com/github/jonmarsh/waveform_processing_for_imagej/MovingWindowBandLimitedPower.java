@@ -9,7 +9,7 @@ import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
 import java.awt.AWTEvent;
 import java.awt.TextField;
-import java.util.Arrays;
+import org.apache.commons.math3.util.MathUtils;
 
 /**
  * This plug-in filter moves a sliding gate along each waveform (horizontal
@@ -17,15 +17,22 @@ import java.util.Arrays;
  * centered around the current index, and then returns the mean value of the log
  * power spectrum within the specified frequency range at that index. The input
  * data are overwritten by the new computed values. The length of the moving
- * window is equal to {@code 2*radius+1}. A plain DFT is used here since the
- * window lengths and integration ranges are typically quite short, and we can
- * use a lookup table for the sine & cosine values.
+ * window is equal to {@code 2*radius+1}. At positions where portions of the
+ * moving window lie outside the bounds of the waveform, the missing values are
+ * treated as zeros.
+ * <p>
+ * For window functions that are sums of cosines (e.g., {@code HAMMING} or
+ * {@code BLACKMAN}), the spectrum is updated recursively with a sliding DFT as
+ * the window moves, and the window is applied in the frequency domain as a
+ * short convolution, so that the cost per output point is proportional to the
+ * number of frequencies in the specified range and independent of the window
+ * length. Other window functions use a direct DFT of each windowed segment.
  * <p>
  * @author Jon N. Marsh
  */
 public class MovingWindowBandLimitedPower implements ExtendedPlugInFilter, DialogListener
 {
-	private int width, height;
+	private int width;
 	private int radius = 1;
 	private static final String[] windowTypes = WaveformUtils.WindowType.stringValues();
 	private static int windowChoice = WaveformUtils.WindowType.HAMMING.ordinal();
@@ -37,11 +44,11 @@ public class MovingWindowBandLimitedPower implements ExtendedPlugInFilter, Dialo
 	private static double windowLengthTime = 0.1;
 	private GenericDialog gd;
 	private int loIndex, hiIndex;
-	private double[][] cosArray;
-	private double[][] sinArray;
-	private double[] weights;
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 
+	// number of sliding updates between exact recomputations of the running sums
+	private static final int REFRESH_INTERVAL = 1024;
+
 	@Override
 	public int setup(String arg, ImagePlus imp)
 	{
@@ -56,7 +63,6 @@ public class MovingWindowBandLimitedPower implements ExtendedPlugInFilter, Dialo
 		}
 
 		width = imp.getWidth();
-		height = imp.getHeight();
 
 		return flags;
 	}
@@ -81,20 +87,9 @@ public class MovingWindowBandLimitedPower implements ExtendedPlugInFilter, Dialo
 			return DONE;
 		}
 
-		// precompute Fourier coefficients, window weights, etc.
-		loIndex = (int)(loFrequency / deltaT);
-		hiIndex = (int)(hiFrequency / deltaT);
-		cosArray = new double[hiIndex - loIndex][width];
-		sinArray = new double[hiIndex - loIndex][width];
-		for (int k = loIndex; k < hiIndex; k++) {
-			double constant = -2 * Math.PI * k / width;
-			for (int n = 0; n < width; n++) {
-				double constant2 = constant * n;
-				cosArray[k - loIndex][n] = Math.cos(constant2);
-				sinArray[k - loIndex][n] = Math.sin(constant2);
-			}
-		}
-		weights = WaveformUtils.windowFunction(WaveformUtils.WindowType.values()[windowChoice], 2 * radius + 1, windowParameter, true);
+		// DFT bin k of a record of length width corresponds to frequency k/(width*deltaT)
+		loIndex = (int)(loFrequency * deltaT * width);
+		hiIndex = Math.max((int)(hiFrequency * deltaT * width), loIndex + 1);
 		radius = (int)(windowLengthTime / deltaT);
 		if (radius % 2 != 0) {
 			radius += 1;
@@ -128,101 +123,439 @@ public class MovingWindowBandLimitedPower implements ExtendedPlugInFilter, Dialo
 	{
 		float[] pixels = (float[])ip.getPixels();
 
-		for (int i = 0; i < height; i++) {	// loop over all waveforms within current slice
-			float[] tempArray = slidingWindowAvgPower(Arrays.copyOfRange(pixels, i * width, (i + 1) * width));
-			for (int j = 0; j < tempArray.length; j++) {
-				pixels[i * width + j] = (float)tempArray[j]; // store computed values in original dataset to re-use memory
-				if (IJ.escapePressed()) // provide option for aborting this potentially long calculation
-				{
-					return;
+		// provide option for aborting this potentially long calculation
+		execute(pixels, width, radius, loIndex, hiIndex, WaveformUtils.WindowType.values()[windowChoice], windowParameter, true);
+
+		IJ.resetMinAndMax();
+	}
+
+	/**
+	 * Applies a moving window with weights specified by {@code windowType} to
+	 * each record in {@code waveforms}, where each record is of length
+	 * {@code recordLength}, and replaces the value at the central point of the
+	 * window with the mean value of the log power spectrum of the windowed
+	 * segment, in decibels, over DFT bins {@code loIndex} (inclusive) to
+	 * {@code hiIndex} (exclusive). Bin {@code k} refers to the frequency
+	 * {@code k/recordLength} in units of the sampling frequency, and the phase
+	 * of each DFT term is referenced to the start of the record. The moving
+	 * window is of length {@code 2*radius+1}, and points of the window that lie
+	 * outside the bounds of the waveform are treated as zeros. Window weights
+	 * are normalized so that they sum to {@code 1.0}. Input waveforms are left
+	 * unchanged if the array representing them is null, {@code radius<0},
+	 * {@code loIndex<0}, {@code hiIndex<=loIndex}, or {@code waveforms.length}
+	 * is not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms	      one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param radius          length of two-sided window function is equal to
+	 *                        {@code 2*radius+1}
+	 * @param loIndex         index of lowest DFT bin in frequency range,
+	 *                        inclusive
+	 * @param hiIndex         index of highest DFT bin in frequency range,
+	 *                        exclusive
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 */
+	public static final void execute(double[] waveforms, int recordLength, int radius, int loIndex, int hiIndex, WaveformUtils.WindowType windowType, double windowParameter)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length % recordLength == 0 && radius >= 0 && loIndex >= 0 && hiIndex > loIndex) {
+
+			BandLimitedPowerTables tables = new BandLimitedPowerTables(recordLength, radius, loIndex, hiIndex, windowType, windowParameter);
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] currentWaveformCopy = new double[recordLength];
+				BandLimitedPowerWorkspace workspace = new BandLimitedPowerWorkspace(tables);
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// copy current waveform
+					System.arraycopy(waveforms, offset, currentWaveformCopy, 0, recordLength);
+
+					// compute values directly into original array
+					movingBandLimitedPower(currentWaveformCopy, tables, workspace, waveforms, offset);
+
 				}
-			}
+			});
+
 		}
+	}
 
-		IJ.resetMinAndMax();
+	/**
+	 * Applies a moving window to each record in {@code waveforms} and replaces
+	 * the value at the central point of the window with the mean value of the
+	 * log power spectrum over a range of frequencies, as described in
+	 * {@link #execute(double[], int, int, int, int, WaveformUtils.WindowType, double) execute}.
+	 * Internal computations are performed on a double-precision copy of one
+	 * record at a time, so no double-precision copy of the entire input array
+	 * is required.
+	 * <p>
+	 * @param waveforms	      one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param radius          length of two-sided window function is equal to
+	 *                        {@code 2*radius+1}
+	 * @param loIndex         index of lowest DFT bin in frequency range,
+	 *                        inclusive
+	 * @param hiIndex         index of highest DFT bin in frequency range,
+	 *                        exclusive
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius, int loIndex, int hiIndex, WaveformUtils.WindowType windowType, double windowParameter)
+	{
+		execute(waveforms, recordLength, radius, loIndex, hiIndex, windowType, windowParameter, false);
+	}
+
+	// Implements execute for float arrays; if abortOnEscape is true, records not yet started when the escape key is
+	// pressed are left unchanged
+	private static void execute(float[] waveforms, int recordLength, int radius, int loIndex, int hiIndex, WaveformUtils.WindowType windowType, double windowParameter, boolean abortOnEscape)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length % recordLength == 0 && radius >= 0 && loIndex >= 0 && hiIndex > loIndex) {
+
+			BandLimitedPowerTables tables = new BandLimitedPowerTables(recordLength, radius, loIndex, hiIndex, windowType, windowParameter);
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] currentWaveformCopy = new double[recordLength];
+				double[] result = new double[recordLength];
+				BandLimitedPowerWorkspace workspace = new BandLimitedPowerWorkspace(tables);
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					if (abortOnEscape && IJ.escapePressed()) {
+						return;
+					}
+
+					// compute row offset
+					int offset = i * recordLength;
 
+					// initialize double-precision copy of current waveform
+					for (int j = 0; j < recordLength; j++) {
+						currentWaveformCopy[j] = waveforms[offset + j];
+					}
+
+					// compute values and copy back into original array
+					movingBandLimitedPower(currentWaveformCopy, tables, workspace, result, 0);
+					for (int j = 0; j < recordLength; j++) {
+						waveforms[offset + j] = (float)result[j];
+					}
+
+				}
+			});
+
+		}
 	}
 
-	/* We use a plain DFT here since the window lengths and integration ranges are usually quite short, and we can use a lookup table for the sin & cos values */
-	private float[] slidingWindowAvgPower(float[] a)
+	// Computes moving band-limited log power of a single waveform, writing results into output starting at outputOffset
+	private static void movingBandLimitedPower(double[] waveform, BandLimitedPowerTables tables, BandLimitedPowerWorkspace workspace, double[] output, int outputOffset)
+	{
+		if (tables.convolutionCoefficients != null) {
+			slidingBandLimitedPower(waveform, tables, workspace, output, outputOffset);
+		} else {
+			directBandLimitedPower(waveform, tables, workspace, output, outputOffset);
+		}
+	}
+
+	/*
+	 * Sliding DFT for cosine-sum windows. With n the absolute sample index,
+	 * N=2*radius+1, and bin k of a record of length W, the windowed DFT at
+	 * position i is
+	 *
+	 *   X(i) = sum_m c[m]*exp(+j*2*PI*m*(i-radius)/N)*S_m(i),  m=-L,...,L
+	 *   S_m(i) = sum_{n=i-radius}^{i+radius} a[n]*exp(-j*2*PI*k*n/W)*exp(-j*2*PI*m*n/N)
+	 *
+	 * where c[m] are the (scaled) Fourier coefficients of the window. Since the
+	 * window spans exactly N samples, the entering and leaving samples of S_m
+	 * share the same phase factor exp(-j*2*PI*m*n/N), so each S_m is updated
+	 * with a single complex multiply per step. All phase factors are read from
+	 * tables using exact integer index arithmetic, and the running sums are
+	 * periodically recomputed to bound accumulated rounding error.
+	 */
+	private static void slidingBandLimitedPower(double[] a, BandLimitedPowerTables tables, BandLimitedPowerWorkspace workspace, double[] output, int outputOffset)
 	{
 		int length = a.length;
-		float[] result = new float[length];
-		double norm = 1.0 / (hiIndex - loIndex);
+		int radius = tables.radius;
+		int windowLength = tables.windowLength;
+		int numBins = tables.numBins;
+		int numTerms = tables.convolutionCoefficients.length;
+		int halfTerms = numTerms / 2;
+		int refreshInterval = Math.max(REFRESH_INTERVAL, windowLength);
+		double[] cosW = tables.cosRecord;
+		double[] sinW = tables.sinRecord;
+		double[] cosN = tables.cosWindow;
+		double[] sinN = tables.sinWindow;
+		double[] c = tables.convolutionCoefficients;
+		double norm = 10.0 / numBins;
+		double[] sumRe = workspace.sumRe;
+		double[] sumIm = workspace.sumIm;
+		int[] inIndices = workspace.inIndices;
+		int[] outIndices = workspace.outIndices;
+		int[] phaseIndex = workspace.phaseIndices;
+
+		// index (i-radius) modulo windowLength, which is also (i+radius+1) modulo windowLength
+		int windowPhase = Math.floorMod(-radius, windowLength);
 
-		// Take care of points near beginning of waveform
-		for (int i = 0; i < radius; i++) {
-			int count = radius + i + 1;
+		for (int i = 0; i < length; i++) {
 
-			// Apply window
-			double[] temp = new double[count];
-			for (int j = 0; j < count; j++) {
-				temp[j] = weights[(radius - i) + j] * a[j];
+			// phase indices m*(i-radius) modulo windowLength for m=-L,...,L
+			phaseIndex[halfTerms] = 0;
+			for (int m = 1; m <= halfTerms; m++) {
+				int index = phaseIndex[halfTerms + m - 1] + windowPhase;
+				if (index >= windowLength) {
+					index -= windowLength;
+				}
+				phaseIndex[halfTerms + m] = index;
+				phaseIndex[halfTerms - m] = (index == 0) ? 0 : windowLength - index;
+			}
+
+			// (re)initialize running sums and record phase indices exactly
+			if (i % refreshInterval == 0) {
+				initializeSlidingSums(a, i, tables, workspace);
 			}
 
-			// Sum over frequencies
+			// apply window in frequency domain and accumulate log power over bins
 			double sum = 0.0;
-			for (int k = loIndex; k < hiIndex; k++) {
-				double sumRe = 0.0;
-				double sumIm = 0.0;
-				for (int j = 0, n = 0; j < count; j++, n++) {
-					sumRe += temp[j] * cosArray[k - loIndex][n];
-					sumIm += temp[j] * sinArray[k - loIndex][n];
+			for (int b = 0, s = 0; b < numBins; b++) {
+				double re = 0.0;
+				double im = 0.0;
+				for (int m = 0; m < numTerms; m++, s++) {
+					double cr = cosN[phaseIndex[m]];
+					double ci = -sinN[phaseIndex[m]];
+					double sr = sumRe[s];
+					double si = sumIm[s];
+					re += c[m] * (cr * sr - ci * si);
+					im += c[m] * (cr * si + ci * sr);
+				}
+				sum += Math.log10(re * re + im * im);
+			}
+			output[outputOffset + i] = norm * sum;
+
+			// slide window by one sample
+			int in = i + radius + 1;
+			int out = i - radius;
+			double aIn = (in < length) ? a[in] : 0.0;
+			double aOut = (out >= 0) ? a[out] : 0.0;
+			for (int b = 0, s = 0; b < numBins; b++) {
+				int inIndex = inIndices[b];
+				int outIndex = outIndices[b];
+				double dr = aIn * cosW[inIndex] - aOut * cosW[outIndex];
+				double di = aIn * sinW[inIndex] - aOut * sinW[outIndex];
+				for (int m = 0; m < numTerms; m++, s++) {
+					double er = cosN[phaseIndex[m]];
+					double ei = sinN[phaseIndex[m]];
+					sumRe[s] += dr * er - di * ei;
+					sumIm[s] += dr * ei + di * er;
+				}
+				inIndex += tables.binStep[b];
+				if (inIndex >= length) {
+					inIndex -= length;
+				}
+				outIndex += tables.binStep[b];
+				if (outIndex >= length) {
+					outIndex -= length;
+				}
+				inIndices[b] = inIndex;
+				outIndices[b] = outIndex;
+			}
+
+			windowPhase += 1;
+			if (windowPhase == windowLength) {
+				windowPhase = 0;
+			}
+		}
+	}
+
+	// Computes running sums of sliding DFT for window centered at index i directly
+	private static void initializeSlidingSums(double[] a, int i, BandLimitedPowerTables tables, BandLimitedPowerWorkspace workspace)
+	{
+		int length = a.length;
+		int radius = tables.radius;
+		int windowLength = tables.windowLength;
+		int numBins = tables.numBins;
+		int numTerms = tables.convolutionCoefficients.length;
+		int halfTerms = numTerms / 2;
+		int from = Math.max(i - radius, 0);
+		int to = Math.min(i + radius, length - 1);
+
+		for (int b = 0, s = 0; b < numBins; b++) {
+			long k = tables.loIndex + b;
+			for (int m = -halfTerms; m <= halfTerms; m++, s++) {
+				double sr = 0.0;
+				double si = 0.0;
+				for (int n = from; n <= to; n++) {
+					int recordIndex = (int)((k * n) % length);
+					int windowIndex = Math.floorMod(m * n, windowLength);
+					double br = a[n] * tables.cosRecord[recordIndex];
+					double bi = a[n] * tables.sinRecord[recordIndex];
+					double er = tables.cosWindow[windowIndex];
+					double ei = tables.sinWindow[windowIndex];
+					sr += br * er - bi * ei;
+					si += br * ei + bi * er;
 				}
-				sum += Math.log10(sumRe * sumRe + sumIm * sumIm);
+				workspace.sumRe[s] = sr;
+				workspace.sumIm[s] = si;
 			}
-			result[i] = (float)(10.0 * sum * norm);
+			workspace.inIndices[b] = (int)Math.floorMod(k * (i + radius + 1), (long)length);
+			workspace.outIndices[b] = (int)Math.floorMod(k * (i - radius), (long)length);
 		}
+	}
+
+	// Direct windowed DFT for window functions that are not sums of cosines
+	private static void directBandLimitedPower(double[] a, BandLimitedPowerTables tables, BandLimitedPowerWorkspace workspace, double[] output, int outputOffset)
+	{
+		int length = a.length;
+		int radius = tables.radius;
+		double[] weights = tables.weights;
+		double[] segment = workspace.segment;
+		double norm = 10.0 / tables.numBins;
 
-		// Take care of middle region
-		for (int i = radius; i < length - radius; i++) {
-			int count = 2 * radius + 1;
+		for (int i = 0; i < length; i++) {
+			int from = Math.max(i - radius, 0);
+			int to = Math.min(i + radius, length - 1);
 
-			// Apply window
-			double[] temp = new double[count];
-			for (int j = i - radius, h = 0; j <= i + radius; j++, h++) {
-				temp[h] = weights[h] * a[j];
+			// apply window
+			for (int n = from, h = from - (i - radius); n <= to; n++, h++) {
+				segment[h] = weights[h] * a[n];
 			}
 
-			// Sum over frequencies
+			// sum over frequencies
 			double sum = 0.0;
-			for (int k = loIndex; k < hiIndex; k++) {
-				double sumRe = 0.0;
-				double sumIm = 0.0;
-				for (int j = 0, n = i - radius; j < count; j++, n++) {
-					sumRe += temp[j] * cosArray[k - loIndex][n];
-					sumIm += temp[j] * sinArray[k - loIndex][n];
+			for (int b = 0; b < tables.numBins; b++) {
+				long k = tables.loIndex + b;
+				int index = (int)((k * from) % length);
+				double re = 0.0;
+				double im = 0.0;
+				for (int n = from, h = from - (i - radius); n <= to; n++, h++) {
+					re += segment[h] * tables.cosRecord[index];
+					im += segment[h] * tables.sinRecord[index];
+					index += tables.binStep[b];
+					if (index >= length) {
+						index -= length;
+					}
 				}
-				sum += Math.log10(sumRe * sumRe + sumIm * sumIm);
+				sum += Math.log10(re * re + im * im);
 			}
-			result[i] = (float)(10.0 * sum * norm);
+			output[outputOffset + i] = norm * sum;
 		}
+	}
+
+	// Lookup tables shared by all records of a given length and window
+	private static final class BandLimitedPowerTables
+	{
+		final int radius;
+		final int windowLength;
+		final int loIndex;
+		final int numBins;
+		final int[] binStep;
+		final double[] cosRecord;
+		final double[] sinRecord;
+		final double[] cosWindow;
+		final double[] sinWindow;
+		final double[] weights;
+		final double[] convolutionCoefficients;
 
-		// Take care of points near end of waveform
-		for (int i = length - radius; i < length; i++) {
-			int count = radius + length - i;
+		BandLimitedPowerTables(int recordLength, int radius, int loIndex, int hiIndex, WaveformUtils.WindowType windowType, double windowParameter)
+		{
+			this.radius = radius;
+			this.windowLength = 2 * radius + 1;
+			this.loIndex = loIndex;
+			this.numBins = hiIndex - loIndex;
 
-			// Apply window
-			double[] temp = new double[count];
-			for (int j = 0; j < count; j++) {
-				temp[j] = weights[j] * a[(i - radius) + j];
+			// exp(-j*2*PI*t/recordLength), t=0,...,recordLength-1
+			cosRecord = new double[recordLength];
+			sinRecord = new double[recordLength];
+			for (int t = 0; t < recordLength; t++) {
+				double theta = MathUtils.TWO_PI * t / recordLength;
+				cosRecord[t] = Math.cos(theta);
+				sinRecord[t] = -Math.sin(theta);
+			}
+			binStep = new int[numBins];
+			for (int b = 0; b < numBins; b++) {
+				binStep[b] = (loIndex + b) % recordLength;
 			}
 
-			// Sum over frequencies
-			double sum = 0.0;
-			for (int k = loIndex; k < hiIndex; k++) {
-				double sumRe = 0.0;
-				double sumIm = 0.0;
-				for (int j = 0, n = (i - radius) + j; j < count; j++, n++) {
-					sumRe += temp[j] * cosArray[k - loIndex][n];
-					sumIm += temp[j] * sinArray[k - loIndex][n];
+			weights = WaveformUtils.windowFunction(windowType, windowLength, windowParameter, true);
+
+			double[] cosineCoefficients = (radius > 0) ? WaveformUtils.cosineSumCoefficients(windowType) : null;
+			if (cosineCoefficients != null) {
+
+				// exp(-j*2*PI*t/windowLength), t=0,...,windowLength-1
+				cosWindow = new double[windowLength];
+				sinWindow = new double[windowLength];
+				for (int t = 0; t < windowLength; t++) {
+					double theta = MathUtils.TWO_PI * t / windowLength;
+					cosWindow[t] = Math.cos(theta);
+					sinWindow[t] = -Math.sin(theta);
+				}
+
+				// window weights are normalized by their sum, as in WaveformUtils.windowFunction
+				double sum = 0.0;
+				for (double w : WaveformUtils.windowFunction(windowType, windowLength, windowParameter, false)) {
+					sum += w;
+				}
+
+				// coefficients of exp(+/-j*2*PI*m*h/windowLength) terms, m=-L,...,L
+				int halfTerms = cosineCoefficients.length - 1;
+				convolutionCoefficients = new double[2 * halfTerms + 1];
+				convolutionCoefficients[halfTerms] = cosineCoefficients[0] / sum;
+				for (int m = 1; m <= halfTerms; m++) {
+					convolutionCoefficients[halfTerms + m] = 0.5 * cosineCoefficients[m] / sum;
+					convolutionCoefficients[halfTerms - m] = 0.5 * cosineCoefficients[m] / sum;
 				}
-				sum += Math.log10(sumRe * sumRe + sumIm * sumIm);
+
+			} else {
+				cosWindow = null;
+				sinWindow = null;
+				convolutionCoefficients = null;
 			}
-			result[i] = (float)(10.0 * sum * norm);
 		}
 
-		return result;
+	}
+
+	// Scratch arrays for one thread: running sums and phase indices, or one windowed segment
+	private static final class BandLimitedPowerWorkspace
+	{
+		final double[] sumRe;
+		final double[] sumIm;
+		final int[] inIndices;
+		final int[] outIndices;
+		final int[] phaseIndices;
+		final double[] segment;
+
+		BandLimitedPowerWorkspace(BandLimitedPowerTables tables)
+		{
+			if (tables.convolutionCoefficients != null) {
+				int numTerms = tables.convolutionCoefficients.length;
+				sumRe = new double[tables.numBins * numTerms];
+				sumIm = new double[tables.numBins * numTerms];
+				inIndices = new int[tables.numBins];
+				outIndices = new int[tables.numBins];
+				phaseIndices = new int[numTerms];
+				segment = null;
+			} else {
+				sumRe = null;
+				sumIm = null;
+				inIndices = null;
+				outIndices = null;
+				phaseIndices = null;
+				segment = new double[tables.windowLength];
+			}
+		}
 	}
 
 	@Override
@@ -0,0 +1,326 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Convolution of waveforms with a symmetric moving window of length
+ * {@code 2*radius+1}, in which the waveform values outside the bounds of each
+ * record are mirrored about the end points. This is the computation shared by
+ * the weighted moving-window plug-ins, e.g. {@link MovingWindowWeightedAverage}
+ * and {@link MovingWindowSumOfSquares}.
+ * <p>
+ * Three algorithms are available, and by default the fastest one for a given
+ * window and record length is chosen automatically:
+ * </p>
+ * <ul>
+ * <li>{@code RUNNING_SUM}: for windows with equal weights (e.g.,
+ * {@code RECTANGLE}), a running sum is updated as the window moves, so the
+ * cost per point is independent of the window length.</li>
+ * <li>{@code DIRECT}: each output point is computed as a weighted sum of
+ * {@code 2*radius+1} values, which is fastest for short windows.</li>
+ * <li>{@code FFT}: the mirrored record is convolved in blocks using
+ * overlap-save with real-input FFTs, so the cost per point grows only
+ * logarithmically with the window length. The spectra of recently used
+ * kernels are cached, so repeated calls with the same window (e.g., during
+ * preview) do not recompute them.</li>
+ * </ul>
+ * <p>
+ * An instance is immutable and may be shared among threads; each thread needs
+ * its own workspace, obtained from {@link #createWorkspace()}.
+ * </p>
+ *
+ * @author Jon N. Marsh
+ */
+public final class MovingWindowConvolution
+{
+	/**
+	 * Algorithm used to compute the convolution.
+	 */
+	public enum Algorithm
+	{
+		DIRECT, FFT, RUNNING_SUM
+	}
+
+	// shortest window for which a running sum is used in place of a direct sum
+	private static final int MIN_RUNNING_SUM_LENGTH = 8;
+
+	// approximate cost of a real-input FFT of length n, in units of multiply-adds, is FFT_COST_FACTOR*n*log2(n)
+	private static final double FFT_COST_FACTOR = 1.5;
+
+	// spectra are cached so that repeated calls with the same kernel and transform length reuse them
+	private static final ConcurrentHashMap<SpectrumKey, double[]> SPECTRUM_CACHE = new ConcurrentHashMap<>();
+	private static final int MAX_CACHED_SPECTRA = 32;
+
+	private final int recordLength;
+	private final int radius;
+	private final double[] weights;
+	private final Algorithm algorithm;
+	private final int fftLength;
+	private final int blockLength;
+	private final FFTPlan plan;
+	private final double[] kernelSpectrum;
+
+	/**
+	 * Creates a convolution of records of length {@code recordLength} with the
+	 * symmetric window whose non-negative half is {@code weights}, i.e., the
+	 * window of length {@code 2*weights.length-1} with values
+	 * {@code weights[radius],...,weights[1],weights[0],weights[1],...,weights[radius]},
+	 * as returned by {@link WaveformUtils#windowFunctionSingleSided}. The
+	 * algorithm is chosen automatically.
+	 *
+	 * @param weights      single-sided window weights, with the central weight
+	 *                     at index {@code 0}
+	 * @param recordLength length of each record; must be greater than
+	 *                     {@code 2*weights.length-1}
+	 */
+	public MovingWindowConvolution(double[] weights, int recordLength)
+	{
+		this(weights, recordLength, null);
+	}
+
+	/**
+	 * Creates a convolution as described in
+	 * {@link #MovingWindowConvolution(double[], int)}, using the specified
+	 * algorithm.
+	 *
+	 * @param weights      single-sided window weights, with the central weight
+	 *                     at index {@code 0}
+	 * @param recordLength length of each record; must be greater than
+	 *                     {@code 2*weights.length-1}
+	 * @param algorithm    algorithm to use, or {@code null} to choose
+	 *                     automatically
+	 * @throws IllegalArgumentException if {@code RUNNING_SUM} is requested for
+	 *                                  weights that are not all equal
+	 */
+	public MovingWindowConvolution(double[] weights, int recordLength, Algorithm algorithm)
+	{
+		this.recordLength = recordLength;
+		this.radius = weights.length - 1;
+		this.weights = weights.clone();
+
+		int windowLength = 2 * radius + 1;
+		int extendedLength = recordLength + 2 * radius;
+		boolean hasEqualWeights = true;
+		for (double w : weights) {
+			hasEqualWeights &= (w == weights[0]);
+		}
+
+		// transform length: long enough that most of each block consists of valid output points,
+		// unless the whole extended record fits in a shorter transform
+		int length = Integer.highestOneBit(Math.max(4 * windowLength, 256) - 1) << 1;
+		if (extendedLength <= length) {
+			length = FFTPlan.nextFastLength(extendedLength);
+		}
+		fftLength = length;
+		blockLength = fftLength - 2 * radius;
+
+		if (algorithm == null) {
+			if (hasEqualWeights && windowLength >= MIN_RUNNING_SUM_LENGTH) {
+				algorithm = Algorithm.RUNNING_SUM;
+			} else {
+				// compare multiply-adds per output point: forward and inverse transforms plus spectrum product
+				double fftCost = (2.0 * FFT_COST_FACTOR * fftLength * (Math.log(fftLength) / Math.log(2.0)) + fftLength) / blockLength;
+				algorithm = (fftCost < windowLength) ? Algorithm.FFT : Algorithm.DIRECT;
+			}
+		} else if (algorithm == Algorithm.RUNNING_SUM && !hasEqualWeights) {
+			throw new IllegalArgumentException("running sum requires equal weights");
+		}
+		this.algorithm = algorithm;
+
+		if (algorithm == Algorithm.FFT) {
+			plan = FFTPlan.getPlan(fftLength);
+			kernelSpectrum = getKernelSpectrum(this.weights, fftLength);
+		} else {
+			plan = null;
+			kernelSpectrum = null;
+		}
+	}
+
+	/**
+	 * Returns the algorithm used to compute the convolution.
+	 *
+	 * @return algorithm
+	 */
+	public Algorithm getAlgorithm()
+	{
+		return algorithm;
+	}
+
+	/**
+	 * Returns a new workspace array for use with
+	 * {@link #convolve(double[], double[], double[], int) convolve}. Each
+	 * thread must use its own workspace.
+	 *
+	 * @return workspace array
+	 */
+	public double[] createWorkspace()
+	{
+		return new double[(algorithm == Algorithm.FFT) ? fftLength : 0];
+	}
+
+	/**
+	 * Convolves one record with the window. On input, elements
+	 * {@code radius} through {@code radius+recordLength-1} of
+	 * {@code extendedWaveform} hold the record; the first and last
+	 * {@code radius} elements are overwritten with values mirrored about the
+	 * end points of the record. The {@code recordLength} output values are
+	 * written into {@code output} starting at index {@code outputOffset}.
+	 *
+	 * @param extendedWaveform array of length {@code recordLength+2*radius}
+	 *                         holding the record starting at index
+	 *                         {@code radius}
+	 * @param workspace        array obtained from {@link #createWorkspace()}
+	 * @param output           output array
+	 * @param outputOffset     index of first output value in {@code output}
+	 */
+	public void convolve(double[] extendedWaveform, double[] workspace, double[] output, int outputOffset)
+	{
+		// mirror waveform values about end points
+		for (int k = 1; k <= radius; k++) {
+			extendedWaveform[radius - k] = extendedWaveform[radius + k];
+			extendedWaveform[radius + recordLength - 1 + k] = extendedWaveform[radius + recordLength - 1 - k];
+		}
+
+		switch (algorithm) {
+			case RUNNING_SUM:
+				runningSum(extendedWaveform, output, outputOffset);
+				break;
+			case FFT:
+				fftConvolution(extendedWaveform, workspace, output, outputOffset);
+				break;
+			default:
+				directConvolution(extendedWaveform, output, outputOffset);
+		}
+	}
+
+	private void directConvolution(double[] e, double[] output, int outputOffset)
+	{
+		for (int j = 0; j < recordLength; j++) {
+			int center = j + radius;
+			double sum = e[center] * weights[0];
+			for (int k = radius; k > 0; k--) {
+				sum += weights[k] * e[center - k];
+			}
+			for (int k = 1; k <= radius; k++) {
+				sum += weights[k] * e[center + k];
+			}
+			output[outputOffset + j] = sum;
+		}
+	}
+
+	// Sliding sum, recomputed directly once per window length to bound accumulated rounding error
+	private void runningSum(double[] e, double[] output, int outputOffset)
+	{
+		int windowLength = 2 * radius + 1;
+		double sum = 0.0;
+		for (int j = 0; j < recordLength; j++) {
+			if (j % windowLength == 0) {
+				sum = 0.0;
+				for (int k = j; k < j + windowLength; k++) {
+					sum += e[k];
+				}
+			} else {
+				sum += e[j + 2 * radius] - e[j - 1];
+			}
+			output[outputOffset + j] = weights[0] * sum;
+		}
+	}
+
+	/*
+	 * Overlap-save convolution. Each segment of fftLength points starting at
+	 * extended index j0 is circularly convolved with the kernel, which is stored
+	 * with its center at index 0 and wrapped around the end of the transform;
+	 * points radius to radius+blockLength-1 of the result are unaffected by
+	 * wrap-around, and are the output values j0,...,j0+blockLength-1.
+	 */
+	private void fftConvolution(double[] e, double[] a, double[] output, int outputOffset)
+	{
+		int extendedLength = recordLength + 2 * radius;
+
+		for (int j0 = 0; j0 < recordLength; j0 += blockLength) {
+
+			// copy segment, zero-filling beyond end of extended record
+			int count = Math.min(fftLength, extendedLength - j0);
+			System.arraycopy(e, j0, a, 0, count);
+			Arrays.fill(a, count, fftLength, 0.0);
+
+			// multiply packed spectrum by real-valued kernel spectrum
+			plan.realTransform(a, true);
+			a[0] *= kernelSpectrum[0];
+			for (int k = 1; k < (fftLength + 1) / 2; k++) {
+				a[2 * k - 1] *= kernelSpectrum[k];
+				a[2 * k] *= kernelSpectrum[k];
+			}
+			if (fftLength % 2 == 0) {
+				a[fftLength - 1] *= kernelSpectrum[fftLength / 2];
+			}
+			plan.realTransform(a, false);
+
+			int numOutputs = Math.min(blockLength, recordLength - j0);
+			System.arraycopy(a, radius, output, outputOffset + j0, numOutputs);
+		}
+	}
+
+	// Returns cached spectrum of the kernel wrapped around index 0 of an array of length fftLength;
+	// the kernel is real and even, so its spectrum is real and only the non-negative frequencies are stored
+	private static double[] getKernelSpectrum(double[] weights, int fftLength)
+	{
+		SpectrumKey key = new SpectrumKey(weights, fftLength);
+		double[] spectrum = SPECTRUM_CACHE.get(key);
+		if (spectrum == null) {
+			double[] h = new double[fftLength];
+			h[0] = weights[0];
+			for (int k = 1; k < weights.length; k++) {
+				h[k] = weights[k];
+				h[fftLength - k] = weights[k];
+			}
+			FFTPlan.getPlan(fftLength).realTransform(h, true);
+			spectrum = new double[fftLength / 2 + 1];
+			spectrum[0] = h[0];
+			for (int k = 1; k < (fftLength + 1) / 2; k++) {
+				spectrum[k] = h[2 * k - 1];
+			}
+			if (fftLength % 2 == 0) {
+				spectrum[fftLength / 2] = h[fftLength - 1];
+			}
+			if (SPECTRUM_CACHE.size() >= MAX_CACHED_SPECTRA) {
+				SPECTRUM_CACHE.clear();
+			}
+			SPECTRUM_CACHE.put(key, spectrum);
+		}
+		return spectrum;
+	}
+
+	// Key identifying a cached kernel spectrum
+	private static final class SpectrumKey
+	{
+		private final double[] weights;
+		private final int fftLength;
+		private final int hash;
+
+		SpectrumKey(double[] weights, int fftLength)
+		{
+			this.weights = weights;
+			this.fftLength = fftLength;
+			this.hash = 31 * Arrays.hashCode(weights) + fftLength;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof SpectrumKey)) {
+				return false;
+			}
+			SpectrumKey k = (SpectrumKey) o;
+			return fftLength == k.fftLength && Arrays.equals(weights, k.weights);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+
+}
@@ -7,9 +7,7 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
-import java.util.Arrays;
 
 /**
  * This plugin filter moves a sliding gate along each waveform (horizontal line)
@@ -18,11 +16,13 @@ import java.util.Arrays;
  * computed values. The length of the moving window is equal to
  * {@code 2*radius+1}. At positions where portions of the moving window lie
  * outside the bounds of the waveform, the waveform values are mirrored about
- * the end points. This plugin utilizes a fast median-filtering algorithm
- * adapted from "Smoothing Scatterplots" by J.H. Friedman and W. Stuetzle
- * (Project Orion, Department of Statistics, Stanford University, 1982).
- * Computation complexity for this algorithm is O({@code n*k}), where {@code n}
- * is the number of records and {@code k} is the window length.
+ * the end points. The values in the window are kept in a pair of indexed
+ * heaps (a max-heap of the values below the median and a min-heap of the
+ * values above it) as described by W. H&auml;rdle and W. Steiger, "Optimal
+ * Median Smoothing," Applied Statistics, 44, 2, 258-264 (1995). Each step
+ * replaces the oldest value in the window with the newest one, so the
+ * computational complexity is O({@code n*log(k)}), where {@code n} is the
+ * number of points and {@code k} is the window length.
  * <p>
  * @author Jon N. Marsh
  */
@@ -79,13 +79,8 @@ public class MovingWindowMedian implements ExtendedPlugInFilter, DialogListener
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		execute(pixelsDouble, width, radius);
-
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		execute(pixels, width, radius);
 	}
 
 	/**
@@ -99,9 +94,10 @@ public class MovingWindowMedian implements ExtendedPlugInFilter, DialogListener
 	 * {@code waveforms.length} is not evenly divisible by {@code recordLength}.
 	 * At positions where a part of the moving window lies outside the bounds of
 	 * the waveform, the waveform values are mirrored around the appropriate end
-	 * point. This method is adapted from an algorithm described in "Smoothing
-	 * Scatterplots" by J.H. Friedman and W. Stuetzle (Project Orion, Department
-	 * of Statistics, Stanford University, 1982).
+	 * point. The median is updated in O({@code log(2*radius+1)}) operations per
+	 * point using a pair of indexed heaps, following W. H&auml;rdle and W.
+	 * Steiger, "Optimal Median Smoothing," Applied Statistics, 44, 2, 258-264
+	 * (1995).
 	 * <p>
 	 * @param waveforms	   one-dimensional array composed of a series of
 	 *                     concatenated records, each of size equal to
@@ -116,146 +112,181 @@ public class MovingWindowMedian implements ExtendedPlugInFilter, DialogListener
 
 		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius > 0) {
 
-			// compute number of records
-			int numRecords = waveforms.length / recordLength;
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new SlidingMedian(radius));
+
+		}
+
+	}
+
+	/**
+	 * Applies a moving median filter to each record in {@code waveforms}, as
+	 * described in {@link #execute(double[], int, int) execute}. Input data is
+	 * overwritten by median-filtered data. Internal computations are performed
+	 * on a double-precision copy of one record at a time, so no
+	 * double-precision copy of the entire input array is required.
+	 * <p>
+	 * @param waveforms	   one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @param radius       radius of moving window; length of two-sided window
+	 *                     function is equal to {@code 2*radius+1}
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius)
+	{
+		int windowLength = 2 * radius + 1;
+
+		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius > 0) {
 
-			// loop over all records
-			for (int i = 0; i < numRecords; i++) {
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new SlidingMedian(radius));
 
-				// compute row offset
-				int offset = i * recordLength;
+		}
 
-				// create temporary copy of current waveform
-				double[] currentWaveformCopy = Arrays.copyOfRange(waveforms, offset, offset + recordLength);
+	}
 
-				// compute median at first point
-				double[] segment = new double[windowLength];
-				segment[radius] = currentWaveformCopy[0];
-				for (int j = 1; j <= radius; j++) {
-					segment[radius + j] = currentWaveformCopy[j];
-					segment[radius - j] = currentWaveformCopy[j];
-				}
-				Arrays.sort(segment);
-				double currentMedian = segment[radius];
-				double newMedian = currentMedian;
-				waveforms[offset] = currentMedian;
-
-				// perform computation at each point in the waveform
-				for (int j = 1; j < recordLength; j++) {
-
-					int indexIn = j + radius;
-					int indexOut = j - (radius + 1);
-					double yIn = elementAt(currentWaveformCopy, recordLength, indexIn);
-					double yOut = elementAt(currentWaveformCopy, recordLength, indexOut);
-
-					// below are the only cases for which the median needs to be recomputed
-					if (yIn > currentMedian) {
-						if (yOut <= currentMedian) {
-							int kPlus = 0;
-							double minPosDiffFromMedian = Double.POSITIVE_INFINITY;
-							double smallestValueGreaterThanMedian = Double.POSITIVE_INFINITY;
-							if (yOut < currentMedian) {
-								for (int k = -radius; k <= radius; k++) {
-									double currentValue = elementAt(currentWaveformCopy, recordLength, j + k);
-									if (currentValue > currentMedian) {
-										kPlus++;
-										if (currentValue - currentMedian < minPosDiffFromMedian) {
-											minPosDiffFromMedian = currentValue - currentMedian;
-											smallestValueGreaterThanMedian = currentValue;
-										}
-									}
-								}
-								if (kPlus >= radius + 1) {
-									newMedian = smallestValueGreaterThanMedian;
-								}
-							} else { // yOut == currentMedian
-								boolean currentMedianExistsInNewSpan = false;
-								for (int k = -radius; k <= radius; k++) {
-									double currentValue = elementAt(currentWaveformCopy, recordLength, j + k);
-									if (currentValue >= currentMedian) {
-										if (currentValue > currentMedian) {
-											kPlus++;
-											if (currentValue - currentMedian < minPosDiffFromMedian) {
-												minPosDiffFromMedian = currentValue - currentMedian;
-												smallestValueGreaterThanMedian = currentValue;
-											}
-										} else {
-											currentMedianExistsInNewSpan = true;
-										}
-									}
-								}
-								if (kPlus == radius + 1) {
-									newMedian = smallestValueGreaterThanMedian;
-								} else {
-									newMedian = currentMedianExistsInNewSpan ? currentMedian : smallestValueGreaterThanMedian;
-								}
-							}
-						}
-					} else if (yIn < currentMedian) {
-						if (yOut >= currentMedian) {
-							int kMinus = 0;
-							double minPosDiffFromMedian = Double.POSITIVE_INFINITY;
-							double largestValueSmallerThanMedian = Double.NEGATIVE_INFINITY;
-							if (yOut > currentMedian) {
-								for (int k = -radius; k <= radius; k++) {
-									double currentValue = elementAt(currentWaveformCopy, recordLength, j + k);
-									if (currentValue < currentMedian) {
-										kMinus++;
-										if (currentMedian - currentValue < minPosDiffFromMedian) {
-											minPosDiffFromMedian = currentMedian - currentValue;
-											largestValueSmallerThanMedian = currentValue;
-										}
-									}
-								}
-								if (kMinus >= radius + 1) {
-									newMedian = largestValueSmallerThanMedian;
-								}
-							} else { // yOut == currentMedian
-								boolean currentMedianExistsInNewSpan = false;
-								for (int k = -radius; k <= radius; k++) {
-									double currentValue = elementAt(currentWaveformCopy, recordLength, j + k);
-									if (currentValue <= currentMedian) {
-										if (currentValue < currentMedian) {
-											kMinus++;
-											if (currentMedian - currentValue < minPosDiffFromMedian) {
-												minPosDiffFromMedian = currentMedian - currentValue;
-												largestValueSmallerThanMedian = currentValue;
-											}
-										} else {
-											currentMedianExistsInNewSpan = true;
-										}
-									}
-								}
-								if (kMinus == radius + 1) {
-									newMedian = largestValueSmallerThanMedian;
-								} else {
-									newMedian = currentMedianExistsInNewSpan ? currentMedian : largestValueSmallerThanMedian;
-								}
-							}
-						}
-					}
-
-					waveforms[offset + j] = newMedian;
-					currentMedian = newMedian;
+	/*
+	 * Window of 2*radius+1 values stored in a ring buffer, together with a heap
+	 * array in which position 0 holds the median, positions -1,...,-radius form a
+	 * max-heap of the values below the median (children of position i are 2*i and
+	 * 2*i-1), and positions 1,...,radius form a min-heap of the values above it
+	 * (children of position i are 2*i and 2*i+1). Heap positions are stored with
+	 * an offset of radius, and each ring buffer slot records its heap position so
+	 * that the oldest value can be replaced in place and restored to order with
+	 * O(log(radius)) exchanges. Since each removal is immediately followed by an
+	 * addition, the oldest value is replaced when the new value is added.
+	 */
+	static final class SlidingMedian implements MovingWindowProcessor.Accumulator
+	{
+		private final int radius;
+		private final int windowLength;
+		private final double[] values;
+		private final int[] heap;
+		private final int[] positions;
+		private int oldest;
+
+		SlidingMedian(int radius)
+		{
+			this.radius = radius;
+			this.windowLength = 2 * radius + 1;
+			values = new double[windowLength];
+			heap = new int[windowLength];
+			positions = new int[windowLength];
+		}
 
+		// Sets all values to zero, which is trivially in heap order; the window is then filled by
+		// replacing each zero in turn, in order of the time at which values leave the window
+		@Override
+		public void clear()
+		{
+			for (int slot = 0; slot < windowLength; slot++) {
+				values[slot] = 0.0;
+				positions[slot] = slot - radius;
+				heap[slot] = slot;
+			}
+			oldest = 0;
+		}
+
+		@Override
+		public double getResult()
+		{
+			return values[heap[radius]];
+		}
+
+		// Replacement of the oldest value is deferred to the following addition
+		@Override
+		public void remove(double value)
+		{
+		}
+
+		// Replaces the oldest value in the window with value and restores heap order
+		@Override
+		public void add(double value)
+		{
+			int slot = oldest;
+			int p = positions[slot];
+			double previous = values[slot];
+			values[slot] = value;
+			oldest = (oldest + 1 == windowLength) ? 0 : oldest + 1;
+
+			if (p > 0) {
+				if (previous < value) {
+					minSortDown(2 * p);
+				} else if (minSortUp(p)) {
+					maxSortDown(-1);
 				}
+			} else if (p < 0) {
+				if (value < previous) {
+					maxSortDown(2 * p);
+				} else if (maxSortUp(p)) {
+					minSortDown(1);
+				}
+			} else if (radius > 0) {
+				maxSortDown(-1);
+				minSortDown(1);
+			}
+		}
+
+		private boolean isLess(int i, int j)
+		{
+			return values[heap[i + radius]] < values[heap[j + radius]];
+		}
+
+		// Exchanges heap positions i and j if the value at i is less than the value at j
+		private boolean exchangeIfLess(int i, int j)
+		{
+			if (isLess(i, j)) {
+				int slot = heap[i + radius];
+				heap[i + radius] = heap[j + radius];
+				heap[j + radius] = slot;
+				positions[heap[i + radius]] = i;
+				positions[heap[j + radius]] = j;
+				return true;
+			}
+			return false;
+		}
 
+		// Moves value at parent of position i>0 down the min-heap, where i is the first child to compare
+		private void minSortDown(int i)
+		{
+			for (; i <= radius; i *= 2) {
+				if (i > 1 && i < radius && isLess(i + 1, i)) {
+					i++;
+				}
+				if (!exchangeIfLess(i, i / 2)) {
+					break;
+				}
 			}
+		}
 
+		// Moves value at parent of position i<0 down the max-heap, where i is the first child to compare
+		private void maxSortDown(int i)
+		{
+			for (; i >= -radius; i *= 2) {
+				if (i < -1 && i > -radius && isLess(i, i - 1)) {
+					i--;
+				}
+				if (!exchangeIfLess(i / 2, i)) {
+					break;
+				}
+			}
 		}
 
-	}
+		// Moves value at position i>0 up the min-heap; returns true if it reaches the median position
+		private boolean minSortUp(int i)
+		{
+			while (i > 0 && exchangeIfLess(i, i / 2)) {
+				i /= 2;
+			}
+			return i == 0;
+		}
 
-	// Simple array indexing method that replicates out-of-bound indices with mirrored values around endpoints
-	private static double elementAt(double[] array, int arrayLength, int index)
-	{
-		int i = index;
-		if (i < 0) {
-			return array[-index];
-		} else if (i > arrayLength - 1) {
-			return array[2 * (arrayLength - 1) - index];
-		} else {
-			return array[index];
+		// Moves value at position i<0 up the max-heap; returns true if it reaches the median position
+		private boolean maxSortUp(int i)
+		{
+			while (i < 0 && exchangeIfLess(i / 2, i)) {
+				i /= 2;
+			}
+			return i == 0;
 		}
 	}
 
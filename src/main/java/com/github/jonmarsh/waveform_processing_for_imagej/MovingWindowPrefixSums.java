@@ -0,0 +1,214 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import ij.ImageStack;
+import ij.util.Tools;
+
+/**
+ * Prefix sums of the deviations and squared deviations of a mirrored record
+ * from a reference value, from which the sums over a window of any radius up to
+ * {@code maxRadius} centered at any point are obtained as differences of two
+ * prefix sums. This allows moving-window statistics to be computed at several
+ * radii from a single pass over each record. Prefix sums are accumulated in
+ * double-double arithmetic, with each square formed exactly, so that
+ * differences of nearby prefix sums of a long record retain full double
+ * precision, and central sums of squares within a window can be formed without
+ * cancellation when the window mean is far from the reference value.
+ * <p>
+ * An instance holds the prefix sums of one record at a time, and must not be
+ * shared among threads.
+ * </p>
+ *
+ * @author Jon N. Marsh
+ */
+final class MovingWindowPrefixSums
+{
+	private final int recordLength;
+	private final int maxRadius;
+
+	// prefix sums of extended record, as unevaluated sums hi+lo; element k is the sum of the first k values
+	private final double[] sumHi;
+	private final double[] sumLo;
+	private final double[] sumOfSquaresHi;
+	private final double[] sumOfSquaresLo;
+
+	/**
+	 * Creates prefix sums for records of length {@code recordLength} and
+	 * windows of radius up to {@code maxRadius}.
+	 *
+	 * @param recordLength length of each record; must be greater than
+	 *                     {@code maxRadius}
+	 * @param maxRadius    largest window radius
+	 */
+	MovingWindowPrefixSums(int recordLength, int maxRadius)
+	{
+		this.recordLength = recordLength;
+		this.maxRadius = maxRadius;
+		int extendedLength = recordLength + 2 * maxRadius;
+		sumHi = new double[extendedLength + 1];
+		sumLo = new double[extendedLength + 1];
+		sumOfSquaresHi = new double[extendedLength + 1];
+		sumOfSquaresLo = new double[extendedLength + 1];
+	}
+
+	/**
+	 * Computes prefix sums of the deviations of a record from
+	 * {@code reference}. On input, elements {@code maxRadius} through
+	 * {@code maxRadius+recordLength-1} of {@code extendedWaveform} hold the
+	 * record; the first and last {@code maxRadius} elements are overwritten
+	 * with values mirrored about the end points of the record.
+	 *
+	 * @param extendedWaveform array of length
+	 *                         {@code recordLength+2*maxRadius} holding the
+	 *                         record starting at index {@code maxRadius}
+	 * @param reference        value subtracted from each point
+	 */
+	void compute(double[] extendedWaveform, double reference)
+	{
+		// mirror waveform values about end points
+		for (int k = 1; k <= maxRadius; k++) {
+			extendedWaveform[maxRadius - k] = extendedWaveform[maxRadius + k];
+			extendedWaveform[maxRadius + recordLength - 1 + k] = extendedWaveform[maxRadius + recordLength - 1 - k];
+		}
+
+		double s1Hi = 0.0, s1Lo = 0.0;
+		double s2Hi = 0.0, s2Lo = 0.0;
+		int extendedLength = recordLength + 2 * maxRadius;
+		for (int k = 0; k < extendedLength; k++) {
+			double delta = extendedWaveform[k] - reference;
+
+			// two-sum of running sum and new value, with rounding error added to low-order part and renormalized
+			double t = s1Hi + delta;
+			double v = t - s1Hi;
+			double e = (s1Hi - (t - v)) + (delta - v) + s1Lo;
+			s1Hi = t + e;
+			s1Lo = e - (s1Hi - t);
+
+			// likewise for the exact square, held as square+squareError
+			double square = delta * delta;
+			double squareError = WaveformUtils.twoProductError(delta, delta, square);
+			t = s2Hi + square;
+			v = t - s2Hi;
+			e = (s2Hi - (t - v)) + (square - v) + (s2Lo + squareError);
+			s2Hi = t + e;
+			s2Lo = e - (s2Hi - t);
+
+			sumHi[k + 1] = s1Hi;
+			sumLo[k + 1] = s1Lo;
+			sumOfSquaresHi[k + 1] = s2Hi;
+			sumOfSquaresLo[k + 1] = s2Lo;
+		}
+	}
+
+	/**
+	 * Returns the sum of the squared deviations from the reference value in
+	 * the window of radius {@code radius} centered at point {@code j} of the
+	 * record.
+	 *
+	 * @param j      index of central point of window
+	 * @param radius radius of window; must not exceed {@code maxRadius}
+	 * @return sum of squared deviations in window
+	 */
+	double sumOfSquares(int j, int radius)
+	{
+		int to = j + maxRadius + radius + 1;
+		int from = j + maxRadius - radius;
+		return (sumOfSquaresHi[to] - sumOfSquaresHi[from]) + (sumOfSquaresLo[to] - sumOfSquaresLo[from]);
+	}
+
+	/**
+	 * Returns the sum of the squared deviations from their own mean of the
+	 * values in the window of radius {@code radius} centered at point
+	 * {@code j} of the record, computed as
+	 * {@code sumOfSquares-sum*sum/(2*radius+1)} in double-double arithmetic,
+	 * so that the result is accurate even when the window mean is far from the
+	 * reference value. The result is not negative.
+	 *
+	 * @param j      index of central point of window
+	 * @param radius radius of window; must not exceed {@code maxRadius}
+	 * @return sum of squared deviations from the window mean
+	 */
+	double centralSumOfSquares(int j, int radius)
+	{
+		int to = j + maxRadius + radius + 1;
+		int from = j + maxRadius - radius;
+		int windowLength = 2 * radius + 1;
+
+		// window sums as unevaluated sums hi+lo
+		double s1Hi = sumHi[to] - sumHi[from];
+		double v = s1Hi - sumHi[to];
+		double s1Lo = ((sumHi[to] - (s1Hi - v)) - (sumHi[from] + v)) + (sumLo[to] - sumLo[from]);
+		double s2Hi = sumOfSquaresHi[to] - sumOfSquaresHi[from];
+		v = s2Hi - sumOfSquaresHi[to];
+		double s2Lo = ((sumOfSquaresHi[to] - (s2Hi - v)) - (sumOfSquaresHi[from] + v)) + (sumOfSquaresLo[to] - sumOfSquaresLo[from]);
+
+		// sum*sum/windowLength as q+qLo
+		double p = s1Hi * s1Hi;
+		double pLo = WaveformUtils.twoProductError(s1Hi, s1Hi, p) + 2.0 * s1Hi * s1Lo;
+		double q = p / windowLength;
+		double qw = q * windowLength;
+		double qLo = (((p - qw) - WaveformUtils.twoProductError(q, windowLength, qw)) + pLo) / windowLength;
+
+		double m2 = (s2Hi - q) + (s2Lo - qLo);
+		return (m2 > 0.0) ? m2 : 0.0;
+	}
+
+	/**
+	 * Parses a list of window radii delimited by spaces, tabs, or commas, as
+	 * entered in the multi-scale fields of the moving-window plug-in dialogs.
+	 * Returns null if the list is empty, or if any entry is not an integer
+	 * greater than or equal to {@code minRadius}.
+	 *
+	 * @param text      list of radii
+	 * @param minRadius smallest allowed radius
+	 * @return array of radii, or null if the list is invalid
+	 */
+	static int[] parseRadii(String text, int minRadius)
+	{
+		if (text == null) {
+			return null;
+		}
+		String[] entries = Tools.split(text, " ,\t");
+		int[] radii = new int[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			double value = Tools.parseDouble(entries[i]);
+			if (Double.isNaN(value) || value != Math.rint(value) || value < minRadius || value > Integer.MAX_VALUE) {
+				return null;
+			}
+			radii[i] = (int)value;
+		}
+		return (radii.length > 0) ? radii : null;
+	}
+
+	/**
+	 * Returns the largest of {@code radii}.
+	 *
+	 * @param radii array of radii
+	 * @return largest radius
+	 */
+	static int maxRadius(int[] radii)
+	{
+		int max = radii[0];
+		for (int r : radii) {
+			max = Math.max(max, r);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns true if every slice of a multi-scale result stack has been
+	 * filled in, so that the stack can be displayed.
+	 *
+	 * @param stack result stack
+	 * @return true if no slice of {@code stack} is null
+	 */
+	static boolean hasAllSlices(ImageStack stack)
+	{
+		for (int i = 1; i <= stack.getSize(); i++) {
+			if (stack.getPixels(i) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,362 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.function.Supplier;
+
+/**
+ * Streaming engine for moving-window statistics. A window of length
+ * {@code 2*radius+1} is moved along each record one point at a time; at each
+ * step the oldest value is removed from an {@link Accumulator}, the newest
+ * value is added, and the statistic of the window is written as the output
+ * value at the central point. At positions where portions of the window lie
+ * outside the bounds of a record, the record values are mirrored about the end
+ * points, as in the moving-window plug-ins.
+ * <p>
+ * Whole records are copied once into an array extended by mirrored values at
+ * each end, so the traversal contains no boundary tests. For records that are
+ * too long to hold in memory at once, or that arrive in pieces, a
+ * {@link Stream} accepts a record in chunks of arbitrary size and produces the
+ * same output values.
+ * </p>
+ * <p>
+ * Any statistic that can be updated as single values enter and leave the
+ * window can be implemented as an {@code Accumulator}, and will then be
+ * computed in one streaming pass per record, with the cost per point
+ * determined only by the cost of the accumulator's updates.
+ * </p>
+ *
+ * @author Jon N. Marsh
+ */
+public final class MovingWindowProcessor
+{
+	/**
+	 * Running statistic of the values in a moving window. Values leave the
+	 * window in the order in which they entered it. After {@link #clear()},
+	 * the window is filled by {@code 2*radius+1} calls to {@link #add(double)};
+	 * thereafter, each call to {@link #remove(double)} is immediately followed
+	 * by a call to {@code add}, so implementations may defer the work of a
+	 * removal until the following addition. {@link #getResult()} is called
+	 * only when the window is full.
+	 */
+	public interface Accumulator
+	{
+		/**
+		 * Removes all values from the window.
+		 */
+		void clear();
+
+		/**
+		 * Adds a new value at the leading edge of the window.
+		 *
+		 * @param value value entering the window
+		 */
+		void add(double value);
+
+		/**
+		 * Removes the oldest value from the trailing edge of the window.
+		 *
+		 * @param value value leaving the window, which is the oldest value
+		 *              added
+		 */
+		void remove(double value);
+
+		/**
+		 * Returns the statistic of the values currently in the window.
+		 *
+		 * @return statistic of current window
+		 */
+		double getResult();
+	}
+
+	private MovingWindowProcessor()
+	{
+	}
+
+	/**
+	 * Computes a moving-window statistic for each record in {@code waveforms},
+	 * where each record is of length {@code recordLength}, and replaces the
+	 * value at the central point of the window with the statistic. The moving
+	 * window is of length {@code 2*radius+1}. Records are processed in
+	 * parallel, with one accumulator per thread obtained from
+	 * {@code accumulatorFactory}. Input waveforms are left unchanged if the
+	 * array representing them is null, {@code radius<0},
+	 * {@code recordLength<=radius}, or {@code waveforms.length} is not evenly
+	 * divisible by {@code recordLength}.
+	 *
+	 * @param waveforms          one-dimensional array composed of a series of
+	 *                           concatenated records, each of size equal to
+	 *                           {@code recordLength}
+	 * @param recordLength       size of each record in {@code waveforms}
+	 * @param radius             length of moving window is equal to
+	 *                           {@code 2*radius+1}
+	 * @param accumulatorFactory supplies a new accumulator for a window of
+	 *                           length {@code 2*radius+1}
+	 */
+	public static void execute(double[] waveforms, int recordLength, int radius, Supplier<? extends Accumulator> accumulatorFactory)
+	{
+		if (waveforms != null && radius >= 0 && recordLength > radius && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				Accumulator accumulator = accumulatorFactory.get();
+				double[] extendedWaveform = new double[recordLength + 2 * radius];
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// copy current waveform
+					System.arraycopy(waveforms, offset, extendedWaveform, radius, recordLength);
+
+					// compute values directly into original array
+					processRecord(extendedWaveform, recordLength, radius, accumulator, waveforms, offset);
+
+				}
+			});
+
+		}
+	}
+
+	/**
+	 * Computes a moving-window statistic for each record in {@code waveforms},
+	 * as described in
+	 * {@link #execute(double[], int, int, Supplier) execute}. Internal
+	 * computations are performed on a double-precision copy of one record at a
+	 * time, so no double-precision copy of the entire input array is required.
+	 *
+	 * @param waveforms          one-dimensional array composed of a series of
+	 *                           concatenated records, each of size equal to
+	 *                           {@code recordLength}
+	 * @param recordLength       size of each record in {@code waveforms}
+	 * @param radius             length of moving window is equal to
+	 *                           {@code 2*radius+1}
+	 * @param accumulatorFactory supplies a new accumulator for a window of
+	 *                           length {@code 2*radius+1}
+	 */
+	public static void execute(float[] waveforms, int recordLength, int radius, Supplier<? extends Accumulator> accumulatorFactory)
+	{
+		if (waveforms != null && radius >= 0 && recordLength > radius && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				Accumulator accumulator = accumulatorFactory.get();
+				double[] extendedWaveform = new double[recordLength + 2 * radius];
+				double[] result = new double[recordLength];
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// initialize double-precision copy of current waveform
+					for (int j = 0; j < recordLength; j++) {
+						extendedWaveform[radius + j] = waveforms[offset + j];
+					}
+
+					// compute values and copy back into original array
+					processRecord(extendedWaveform, recordLength, radius, accumulator, result, 0);
+					for (int j = 0; j < recordLength; j++) {
+						waveforms[offset + j] = (float)result[j];
+					}
+
+				}
+			});
+
+		}
+	}
+
+	/**
+	 * Computes a moving-window statistic of a single record. On input,
+	 * elements {@code radius} through {@code radius+recordLength-1} of
+	 * {@code extendedWaveform} hold the record; the first and last
+	 * {@code radius} elements are overwritten with values mirrored about the
+	 * end points of the record. The {@code recordLength} output values are
+	 * written into {@code output} starting at index {@code outputOffset}.
+	 *
+	 * @param extendedWaveform array of length {@code recordLength+2*radius}
+	 *                         holding the record starting at index
+	 *                         {@code radius}
+	 * @param recordLength     length of record; must be greater than
+	 *                         {@code radius}
+	 * @param radius           length of moving window is equal to
+	 *                         {@code 2*radius+1}
+	 * @param accumulator      accumulator for a window of length
+	 *                         {@code 2*radius+1}
+	 * @param output           output array
+	 * @param outputOffset     index of first output value in {@code output}
+	 */
+	public static void processRecord(double[] extendedWaveform, int recordLength, int radius, Accumulator accumulator, double[] output, int outputOffset)
+	{
+		int windowLength = 2 * radius + 1;
+
+		// mirror waveform values about end points
+		for (int k = 1; k <= radius; k++) {
+			extendedWaveform[radius - k] = extendedWaveform[radius + k];
+			extendedWaveform[radius + recordLength - 1 + k] = extendedWaveform[radius + recordLength - 1 - k];
+		}
+
+		// fill window centered at first point
+		accumulator.clear();
+		for (int k = 0; k < windowLength; k++) {
+			accumulator.add(extendedWaveform[k]);
+		}
+		output[outputOffset] = accumulator.getResult();
+
+		// move window; window for point j spans extended indices j to j+2*radius
+		for (int j = 1; j < recordLength; j++) {
+			accumulator.remove(extendedWaveform[j - 1]);
+			accumulator.add(extendedWaveform[j + 2 * radius]);
+			output[outputOffset + j] = accumulator.getResult();
+		}
+	}
+
+	/**
+	 * Computes a moving-window statistic of a record supplied in consecutive
+	 * chunks of arbitrary length, producing the same output values as
+	 * {@link MovingWindowProcessor#processRecord processRecord}. Output values
+	 * are produced as soon as the window centered on them is available, i.e.
+	 * with a delay of {@code radius} points, and the last {@code radius}
+	 * values are produced by {@link #finish(double[], int) finish}, which uses
+	 * values mirrored about the last point. Only the last {@code 2*radius+2}
+	 * input values are retained, so a record of any length can be processed.
+	 * A record must contain at least {@code radius+1} points.
+	 */
+	public static final class Stream
+	{
+		private final int radius;
+		private final int windowLength;
+		private final Accumulator accumulator;
+
+		// values entering the window, indexed by position in the mirrored sequence modulo history.length
+		private final double[] history;
+
+		// number of record values received, and number of values added to the accumulator
+		private long numReceived;
+		private long numAdded;
+
+		/**
+		 * Creates a stream for a window of length {@code 2*radius+1}.
+		 *
+		 * @param radius      length of moving window is equal to
+		 *                    {@code 2*radius+1}
+		 * @param accumulator accumulator for a window of length
+		 *                    {@code 2*radius+1}
+		 */
+		public Stream(int radius, Accumulator accumulator)
+		{
+			this.radius = radius;
+			this.windowLength = 2 * radius + 1;
+			this.accumulator = accumulator;
+			this.history = new double[windowLength + 1];
+			reset();
+		}
+
+		/**
+		 * Discards all values, so that a new record can be processed.
+		 */
+		public void reset()
+		{
+			accumulator.clear();
+			numReceived = 0;
+			numAdded = 0;
+		}
+
+		/**
+		 * Processes the next chunk of the record, consisting of
+		 * {@code input[from]} through {@code input[to-1]}, and writes any
+		 * output values that become available into {@code output} starting at
+		 * index {@code outputOffset}. At most {@code to-from} values are
+		 * written.
+		 *
+		 * @param input        array containing chunk of record
+		 * @param from         index of first value of chunk, inclusive
+		 * @param to           index of last value of chunk, exclusive
+		 * @param output       output array
+		 * @param outputOffset index in {@code output} at which to write the
+		 *                     first output value
+		 * @return number of output values written
+		 */
+		public int write(double[] input, int from, int to, double[] output, int outputOffset)
+		{
+			int numOutputs = 0;
+			for (int i = from; i < to; i++) {
+				long n = numReceived++;
+				if (n < radius) {
+
+					// wait until values to be mirrored about the first point have been received
+					history[(int)(n % history.length)] = input[i];
+
+				} else if (n == radius) {
+
+					// start mirrored sequence x[radius],...,x[1], followed by x[0],...,x[radius]
+					history[(int)(n % history.length)] = input[i];
+					double[] firstValues = new double[radius + 1];
+					for (int k = 0; k <= radius; k++) {
+						firstValues[k] = history[k];
+					}
+					for (int k = radius; k >= 1; k--) {
+						push(firstValues[k]);
+					}
+					for (int k = 0; k <= radius; k++) {
+						push(firstValues[k]);
+					}
+					output[outputOffset + numOutputs++] = accumulator.getResult();
+
+				} else {
+
+					push(input[i]);
+					output[outputOffset + numOutputs++] = accumulator.getResult();
+
+				}
+			}
+			return numOutputs;
+		}
+
+		/**
+		 * Completes the record by mirroring values about its last point, and
+		 * writes the remaining {@code radius} output values into
+		 * {@code output} starting at index {@code outputOffset}. The stream is
+		 * then reset.
+		 *
+		 * @param output       output array
+		 * @param outputOffset index in {@code output} at which to write the
+		 *                     first output value
+		 * @return number of output values written
+		 * @throws IllegalStateException if fewer than {@code radius+1} values
+		 *                               have been written
+		 */
+		public int finish(double[] output, int outputOffset)
+		{
+			if (numReceived <= radius) {
+				throw new IllegalStateException("record must contain at least radius+1 points");
+			}
+
+			// position in mirrored sequence of last record value
+			long last = numAdded - 1;
+			for (int k = 1; k <= radius; k++) {
+				push(history[(int)((last - k) % history.length)]);
+				output[outputOffset + k - 1] = accumulator.getResult();
+			}
+			reset();
+			return radius;
+		}
+
+		// Adds value at next position of mirrored sequence, first removing oldest value once the window is full
+		private void push(double value)
+		{
+			if (numAdded >= windowLength) {
+				accumulator.remove(history[(int)((numAdded - windowLength) % history.length)]);
+			}
+			history[(int)(numAdded % history.length)] = value;
+			accumulator.add(value);
+			numAdded++;
+		}
+	}
+
+}
@@ -7,7 +7,6 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 
 /**
@@ -16,7 +15,9 @@ import java.awt.AWTEvent;
  * that index. The input data are overwritten by the new computed values. The
  * length of the moving window is equal to {@code 2*radius+1}. At positions
  * where portions of the moving window lie outside the bounds of the waveform,
- * the waveform values are mirrored about the end points.
+ * the waveform values are mirrored about the end points. The maximum and
+ * minimum in each window are tracked with monotonic double-ended queues, so
+ * the cost per point is independent of the window length.
  * <p>
  * @author Jon N. Marsh
  */
@@ -73,13 +74,8 @@ public class MovingWindowRange implements ExtendedPlugInFilter, DialogListener
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		execute(pixelsDouble, width, radius);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		execute(pixels, width, radius);
 	}
 
 	/**
@@ -108,53 +104,125 @@ public class MovingWindowRange implements ExtendedPlugInFilter, DialogListener
 
 		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius >= 0) {
 
-			// compute number of records
-			int numRecords = waveforms.length / recordLength;
-
-			// loop over all records
-			for (int i = 0; i < numRecords; i++) {
-
-				// compute row offset
-				int offset = i * recordLength;
-
-				// initialize copy of current waveform
-				double[] currentWaveformCopy = new double[recordLength];
-				for (int j = 0; j < recordLength; j++) {
-					currentWaveformCopy[j] = waveforms[offset + j];
-				}
-
-				// move window and compute range
-				for (int j = 0; j < recordLength; j++) {
-
-					// initialize max and min
-					int index;
-					double max = Double.NEGATIVE_INFINITY;
-					double min = Double.POSITIVE_INFINITY;
-
-					// compute the range at the current index (brute force algorithm, but fast enough for this simple metric)
-					for (int k = -radius; k <= radius; k++) {
-						index = j + k;
-						if (index < 0) {
-							index = -index;
-						} else if (index > recordLength - 1) {
-							index = 2 * (recordLength - 1) - index;
-						}
-						if (currentWaveformCopy[index] > max) {
-							max = currentWaveformCopy[index];
-						}
-						if (currentWaveformCopy[index] < min) {
-							min = currentWaveformCopy[index];
-						}
-					}
-
-					waveforms[offset + j] = max - min;
-
-				}
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new RangeAccumulator(windowLength));
+
+		}
+
+	}
+
+	/**
+	 * Applies a moving window to each record in {@code waveforms} and replaces
+	 * the original value at that point with the range within the window, as described in {@link #execute(double[], int, int) execute}. Internal
+	 * computations are performed on a double-precision copy of one record at
+	 * a time, so no double-precision copy of the entire input array is
+	 * required.
+	 * <p>
+	 * @param waveforms	   one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @param radius       length of two-sided window function is equal to
+	 *                     {@code 2*radius+1}
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius)
+	{
+		int windowLength = 2 * radius + 1;
+
+		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius >= 0) {
+
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new RangeAccumulator(windowLength));
+
+		}
+
+	}
+
+	/**
+	 * Accumulator for the range of the values in a moving window. Candidate
+	 * maxima (minima) are kept in ring buffers in order of position and
+	 * decreasing (increasing) value, so that the head of each queue is the
+	 * extremum of the current window; each value enters and leaves each queue
+	 * at most once, so the cost per point is independent of the window length.
+	 */
+	static final class RangeAccumulator implements MovingWindowProcessor.Accumulator
+	{
+		private final int capacity;
+		private final double[] maxValues;
+		private final double[] minValues;
+		private final long[] maxPositions;
+		private final long[] minPositions;
+		private int maxHead, maxSize;
+		private int minHead, minSize;
+
+		// positions of next value to be added and next value to be removed
+		private long numAdded;
+		private long numRemoved;
+
+		/**
+		 * Creates an accumulator for a window of length {@code windowLength}.
+		 *
+		 * @param windowLength length of moving window
+		 */
+		RangeAccumulator(int windowLength)
+		{
+			capacity = windowLength;
+			maxValues = new double[windowLength];
+			minValues = new double[windowLength];
+			maxPositions = new long[windowLength];
+			minPositions = new long[windowLength];
+		}
+
+		@Override
+		public void clear()
+		{
+			maxHead = 0;
+			maxSize = 0;
+			minHead = 0;
+			minSize = 0;
+			numAdded = 0;
+			numRemoved = 0;
+		}
 
+		@Override
+		public void add(double value)
+		{
+			// discard candidates that can no longer be the maximum or minimum, and append current value
+			while (maxSize > 0 && maxValues[(maxHead + maxSize - 1) % capacity] <= value) {
+				maxSize--;
+			}
+			int tail = (maxHead + maxSize) % capacity;
+			maxValues[tail] = value;
+			maxPositions[tail] = numAdded;
+			maxSize++;
+			while (minSize > 0 && minValues[(minHead + minSize - 1) % capacity] >= value) {
+				minSize--;
 			}
+			tail = (minHead + minSize) % capacity;
+			minValues[tail] = value;
+			minPositions[tail] = numAdded;
+			minSize++;
+			numAdded++;
+		}
 
+		@Override
+		public void remove(double value)
+		{
+			// discard candidates that have left the window
+			if (maxSize > 0 && maxPositions[maxHead] == numRemoved) {
+				maxHead = (maxHead + 1) % capacity;
+				maxSize--;
+			}
+			if (minSize > 0 && minPositions[minHead] == numRemoved) {
+				minHead = (minHead + 1) % capacity;
+				minSize--;
+			}
+			numRemoved++;
 		}
 
+		@Override
+		public double getResult()
+		{
+			return maxValues[maxHead] - minValues[minHead];
+		}
 	}
 
 	@Override
@@ -2,15 +2,15 @@ package com.github.jonmarsh.waveform_processing_for_imagej;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.gui.DialogListener;
 import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.awt.TextField;
-import java.util.Arrays;
 
 /**
  * This plugin filter moves a sliding gate along each waveform (horizontal line)
@@ -20,7 +20,14 @@ import java.util.Arrays;
  * optionally log-compressed. The input data are overwritten by the new computed
  * values. The length of the moving window is equal to {@code 2*radius+1}. At
  * positions where portions of the moving window lie outside the bounds of the
- * waveform, the waveform values are mirrored about the end points.
+ * waveform, the waveform values are mirrored about the end points. The sums
+ * are computed by convolving the squared waveform values with the squared
+ * window weights, either directly, with a running sum (for windows with equal
+ * weights), or by FFT convolution; see {@link MovingWindowConvolution}. In
+ * multi-scale mode, the sums are computed for each of a list of radii in a
+ * single pass over each waveform, and the results are returned in a new
+ * hyperstack with one channel per radius; for the {@code RECTANGLE} window,
+ * the sums at all radii are obtained from shared prefix sums.
  * <p>
  * @author Jon N. Marsh
  */
@@ -33,6 +40,13 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 	private static double windowParameter = 0.5;
 	private static TextField windowParameterTextField;
 	private static boolean logOutput = true;
+	private static boolean multiScale = false;
+	private static String radiiList = "1, 2, 4, 8, 16, 32";
+	private static int[] radii;
+	private int height, stackSize;
+	private String title;
+	private ImageStack resultStack;
+	private PlugInFilterRunner pfr;
 	private GenericDialog gd;
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 
@@ -40,6 +54,14 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 	public int setup(String arg, ImagePlus imp)
 	{
 		if (arg.equals("final")) {
+			// show results only if every slice was produced
+			if (resultStack != null && MovingWindowPrefixSums.hasAllSlices(resultStack)) {
+				ImagePlus resultImp = new ImagePlus(title + " sum of squares", resultStack);
+				resultImp.setDimensions(radii.length, stackSize, 1);
+				resultImp.setOpenAsHyperStack(true);
+				resultImp.show();
+			}
+			resultStack = null;
 			IJ.resetMinAndMax();
 			return DONE;
 		}
@@ -50,6 +72,9 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 		}
 
 		width = imp.getWidth();
+		height = imp.getHeight();
+		stackSize = imp.getStackSize();
+		title = imp.getTitle();
 
 		return flags;
 	}
@@ -64,6 +89,8 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 		windowParameterTextField = (TextField)(gd.getNumericFields().get(1));
 		windowParameterTextField.setEnabled(WaveformUtils.WindowType.values()[windowChoice].usesParameter());
 		gd.addCheckbox("Log10 output", logOutput);
+		gd.addCheckbox("Multi-scale output (preview shows first radius)", multiScale);
+		gd.addStringField("Radii", radiiList, 20);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -72,6 +99,20 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 			return DONE;
 		}
 
+		if (multiScale) {
+
+			// results are written into a new stack with one slice per radius and input slice, so any
+			// preview of the first radius is discarded and the input image is left unchanged
+			this.pfr = pfr;
+			resultStack = new ImageStack(width, height, radii.length * stackSize);
+			for (int i = 1; i <= stackSize; i++) {
+				for (int s = 0; s < radii.length; s++) {
+					resultStack.setSliceLabel("radius " + radii[s], (i - 1) * radii.length + s + 1);
+				}
+			}
+			return flags - KEEP_PREVIEW + NO_CHANGES;
+		}
+
 		return flags;
 	}
 
@@ -82,22 +123,31 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 		windowChoice = gd.getNextChoiceIndex();
 		windowParameter = gd.getNextNumber();
 		logOutput = gd.getNextBoolean();
+		multiScale = gd.getNextBoolean();
+		radiiList = gd.getNextString();
+		radii = MovingWindowPrefixSums.parseRadii(radiiList, 0);
 
 		windowParameterTextField.setEnabled(WaveformUtils.WindowType.values()[windowChoice].usesParameter());
 
-		return (!gd.invalidNumber() && radius >= 0);
+		return (!gd.invalidNumber() && radius >= 0 && (!multiScale || isValidMultiScale(width, width, radii)));
 	}
 
 	@Override
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
-
-		execute(pixelsDouble, width, radius, WaveformUtils.WindowType.values()[windowChoice], windowParameter, logOutput);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
+		WaveformUtils.WindowType windowType = WaveformUtils.WindowType.values()[windowChoice];
+
+		if (resultStack != null) {
+			float[][] results = executeMultiScale(pixels, width, radii, windowType, windowParameter, logOutput);
+			if (results != null) {
+				int firstIndex = (pfr.getSliceNumber() - 1) * radii.length + 1;
+				for (int s = 0; s < radii.length; s++) {
+					resultStack.setProcessor(new FloatProcessor(width, height, results[s]), firstIndex + s);
+				}
+			}
+		} else {
+			execute(pixels, width, multiScale ? radii[0] : radius, windowType, windowParameter, logOutput);
 		}
 	}
 
@@ -133,57 +183,408 @@ public class MovingWindowSumOfSquares implements ExtendedPlugInFilter, DialogLis
 
 			// initialize single-sided window weight array (normalized)
 			double[] weights = WaveformUtils.windowFunctionSingleSided(windowType, radius, windowParameter, true);
+			double[] squaredWeights = new double[weights.length];
+			for (int k = 0; k < weights.length; k++) {
+				squaredWeights[k] = weights[k] * weights[k];
+			}
+			MovingWindowConvolution convolution = new MovingWindowConvolution(squaredWeights, recordLength);
 
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 
-			// loop over all records
-			for (int i = 0; i < numRecords; i++) {
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] extendedWaveform = new double[recordLength + 2 * radius];
+				double[] workspace = convolution.createWorkspace();
 
-				// compute row offset
-				int offset = i * recordLength;
+				for (int i = fromRecord; i < toRecord; i++) {
 
-				// initialize double-precision copy of current waveform
-				double[] currentWaveformCopy = Arrays.copyOfRange(waveforms, offset, offset + recordLength);
+					// compute row offset
+					int offset = i * recordLength;
 
-				// move window and compute means
-				for (int j = 0; j < recordLength; j++) {
+					// compute values directly into original array
+					if (convolution.getAlgorithm() == MovingWindowConvolution.Algorithm.DIRECT) {
+						System.arraycopy(waveforms, offset, extendedWaveform, radius, recordLength);
+						movingSumOfSquares(extendedWaveform, recordLength, radius, weights, waveforms, offset);
+					} else {
+						for (int j = 0; j < recordLength; j++) {
+							extendedWaveform[radius + j] = waveforms[offset + j] * waveforms[offset + j];
+						}
+						convolution.convolve(extendedWaveform, workspace, waveforms, offset);
+						clampToNonnegative(waveforms, offset, offset + recordLength);
+					}
+					if (logOutput) {
+						for (int j = offset; j < offset + recordLength; j++) {
+							waveforms[j] = Math.log10(waveforms[j]);
+						}
+					}
 
-					// initialize running sum (at center of windowed segment)
-					int index = j;
-					double x = currentWaveformCopy[index] * weights[0];
-					double sum = x * x;
+				}
+			});
+
+		}
+
+	}
+
+	/**
+	 * Applies a moving window with weights specified by {@code windowType} to
+	 * each record in {@code waveforms} and replaces the value at the central
+	 * point of the window with the sum of the squared weighted values, as described in {@link #execute(double[], int, int, WaveformUtils.WindowType, double, boolean) execute}. Internal
+	 * computations are performed on a double-precision copy of one record at
+	 * a time, so no double-precision copy of the entire input array is
+	 * required.
+	 * <p>
+	 * @param waveforms	      one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param radius          length of two-sided window function is equal to
+	 *                        {@code 2*radius+1}
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 * @param logOutput	      true for {@code log}<SUB>{@code 10}</SUB> output
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius, WaveformUtils.WindowType windowType, double windowParameter, boolean logOutput)
+	{
+		int windowLength = 2 * radius + 1;
+
+		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius >= 0) {
 
-					// finish computing the sum at the current index
-					for (int k = -radius; k < 0; k++) {
-						index = j + k;
-						if (index < 0) {
-							index = -index;
+			// initialize single-sided window weight array (normalized)
+			double[] weights = WaveformUtils.windowFunctionSingleSided(windowType, radius, windowParameter, true);
+			double[] squaredWeights = new double[weights.length];
+			for (int k = 0; k < weights.length; k++) {
+				squaredWeights[k] = weights[k] * weights[k];
+			}
+			MovingWindowConvolution convolution = new MovingWindowConvolution(squaredWeights, recordLength);
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] extendedWaveform = new double[recordLength + 2 * radius];
+				double[] workspace = convolution.createWorkspace();
+				double[] result = new double[recordLength];
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// compute values from double-precision copy of current waveform, and copy back into original array
+					if (convolution.getAlgorithm() == MovingWindowConvolution.Algorithm.DIRECT) {
+						for (int j = 0; j < recordLength; j++) {
+							extendedWaveform[radius + j] = waveforms[offset + j];
 						}
-						x = weights[-k] * currentWaveformCopy[index];
-						sum += x * x;
-					}
-					for (int k = 1; k <= radius; k++) {
-						index = j + k;
-						if (index > recordLength - 1) {
-							index = 2 * (recordLength - 1) - index;
+						movingSumOfSquares(extendedWaveform, recordLength, radius, weights, result, 0);
+					} else {
+						for (int j = 0; j < recordLength; j++) {
+							double x = waveforms[offset + j];
+							extendedWaveform[radius + j] = x * x;
 						}
-						x = weights[k] * currentWaveformCopy[index];
-						sum += x * x;
+						convolution.convolve(extendedWaveform, workspace, result, 0);
+						clampToNonnegative(result, 0, recordLength);
+					}
+					for (int j = 0; j < recordLength; j++) {
+						waveforms[offset + j] = (float)(logOutput ? Math.log10(result[j]) : result[j]);
 					}
 
+				}
+			});
+
+		}
+
+	}
+
+	/**
+	 * Computes the moving-window sum of squares of each record in
+	 * {@code waveforms} for each radius in {@code radii}, as described in
+	 * {@link #execute(double[], int, int, WaveformUtils.WindowType, double, boolean) execute},
+	 * and returns the results in new arrays, one per radius; {@code waveforms}
+	 * is unchanged. Each record is read and mirrored once for all radii. For
+	 * the {@code RECTANGLE} window, prefix sums of the squared values are
+	 * computed in a single pass, from which the window sums at every radius
+	 * are obtained by differencing; for other windows, the squared values are
+	 * convolved with the squared weights at each radius. Returns null if
+	 * {@code waveforms} or {@code radii} is null or empty, any radius is less
+	 * than {@code 0}, {@code 2*max(radii)+1>=recordLength}, or
+	 * {@code waveforms.length} is not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms	      one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param radii           radii of moving windows
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 * @param logOutput	      true for {@code log}<SUB>{@code 10}</SUB> output
+	 * @return array of {@code radii.length} arrays, each of the same size as
+	 *         {@code waveforms}, holding the sums of squares for the
+	 *         corresponding radius
+	 */
+	public static final double[][] executeMultiScale(double[] waveforms, int recordLength, int[] radii, WaveformUtils.WindowType windowType, double windowParameter, boolean logOutput)
+	{
+		if (isValidMultiScale(waveforms == null ? -1 : waveforms.length, recordLength, radii)) {
+
+			MultiScaleSumOfSquares multiScaleSums = new MultiScaleSumOfSquares(recordLength, radii, windowType, windowParameter);
+			double[][] results = new double[radii.length][waveforms.length];
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				MultiScaleSumOfSquares.Workspace workspace = multiScaleSums.createWorkspace();
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// copy current waveform and compute values at each radius directly into result arrays
+					System.arraycopy(waveforms, offset, workspace.extendedWaveform, multiScaleSums.maxRadius, recordLength);
+					multiScaleSums.compute(workspace, results, offset);
 					if (logOutput) {
-						sum = Math.log10(sum);
+						for (double[] result : results) {
+							for (int j = offset; j < offset + recordLength; j++) {
+								result[j] = Math.log10(result[j]);
+							}
+						}
+					}
+
+				}
+			});
+
+			return results;
+
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the moving-window sum of squares of each record in
+	 * {@code waveforms} for each radius in {@code radii}, as described in
+	 * {@link #executeMultiScale(double[], int, int[], WaveformUtils.WindowType, double, boolean) executeMultiScale}.
+	 * Internal computations are performed on a double-precision copy of one
+	 * record at a time.
+	 * <p>
+	 * @param waveforms	      one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param radii           radii of moving windows
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 * @param logOutput	      true for {@code log}<SUB>{@code 10}</SUB> output
+	 * @return array of {@code radii.length} arrays, each of the same size as
+	 *         {@code waveforms}, holding the sums of squares for the
+	 *         corresponding radius
+	 */
+	public static final float[][] executeMultiScale(float[] waveforms, int recordLength, int[] radii, WaveformUtils.WindowType windowType, double windowParameter, boolean logOutput)
+	{
+		if (isValidMultiScale(waveforms == null ? -1 : waveforms.length, recordLength, radii)) {
+
+			MultiScaleSumOfSquares multiScaleSums = new MultiScaleSumOfSquares(recordLength, radii, windowType, windowParameter);
+			float[][] results = new float[radii.length][waveforms.length];
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				MultiScaleSumOfSquares.Workspace workspace = multiScaleSums.createWorkspace();
+				double[][] result = new double[radii.length][recordLength];
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// initialize double-precision copy of current waveform, compute values at each radius,
+					// and copy into result arrays
+					for (int j = 0; j < recordLength; j++) {
+						workspace.extendedWaveform[multiScaleSums.maxRadius + j] = waveforms[offset + j];
+					}
+					multiScaleSums.compute(workspace, result, 0);
+					for (int s = 0; s < radii.length; s++) {
+						for (int j = 0; j < recordLength; j++) {
+							results[s][offset + j] = (float)(logOutput ? Math.log10(result[s][j]) : result[s][j]);
+						}
+					}
+
+				}
+			});
+
+			return results;
+
+		}
+
+		return null;
+	}
+
+	private static boolean isValidMultiScale(int length, int recordLength, int[] radii)
+	{
+		if (length < 0 || radii == null || radii.length == 0 || recordLength <= 0 || length % recordLength != 0) {
+			return false;
+		}
+		for (int r : radii) {
+			if (r < 0 || recordLength <= 2 * r + 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Sums of squares of one record at several radii. Each record is copied once
+	 * into an array extended by the largest radius. For the RECTANGLE window,
+	 * all radii are computed from one set of prefix sums; otherwise, the record
+	 * is copied from that array into a shorter array for each radius and
+	 * processed as in execute.
+	 */
+	private static final class MultiScaleSumOfSquares
+	{
+		private final int recordLength;
+		private final int[] radii;
+		private final int maxRadius;
+		private final boolean isRectangle;
+		private final double[][] weights;
+		private final MovingWindowConvolution[] convolutions;
+
+		MultiScaleSumOfSquares(int recordLength, int[] radii, WaveformUtils.WindowType windowType, double windowParameter)
+		{
+			this.recordLength = recordLength;
+			this.radii = radii.clone();
+			this.maxRadius = MovingWindowPrefixSums.maxRadius(radii);
+			this.isRectangle = (windowType == WaveformUtils.WindowType.RECTANGLE);
+			weights = new double[radii.length][];
+			convolutions = new MovingWindowConvolution[radii.length];
+			if (!isRectangle) {
+				for (int s = 0; s < radii.length; s++) {
+					weights[s] = WaveformUtils.windowFunctionSingleSided(windowType, radii[s], windowParameter, true);
+					double[] squaredWeights = new double[weights[s].length];
+					for (int k = 0; k < weights[s].length; k++) {
+						squaredWeights[k] = weights[s][k] * weights[s][k];
 					}
+					convolutions[s] = new MovingWindowConvolution(squaredWeights, recordLength);
+				}
+			}
+		}
 
-					waveforms[offset + j] = sum;
+		Workspace createWorkspace()
+		{
+			return new Workspace(this);
+		}
+
+		// Computes sums of squares of record held in workspace.extendedWaveform starting at index maxRadius,
+		// writing results for radius s into output[s] starting at outputOffset
+		void compute(Workspace workspace, double[][] output, int outputOffset)
+		{
+			double[] e = workspace.extendedWaveform;
+			if (isRectangle) {
+				workspace.sums.compute(e, 0.0);
+				for (int s = 0; s < radii.length; s++) {
+					double windowLength = 2 * radii[s] + 1;
+					double weightSquared = 1.0 / (windowLength * windowLength);
+					for (int j = 0; j < recordLength; j++) {
+						output[s][outputOffset + j] = Math.max(0.0, weightSquared * workspace.sums.sumOfSquares(j, radii[s]));
+					}
+				}
+			} else {
+				for (int s = 0; s < radii.length; s++) {
+					int radius = radii[s];
+					double[] extendedWaveform = workspace.extendedWaveforms[s];
+					if (convolutions[s].getAlgorithm() == MovingWindowConvolution.Algorithm.DIRECT) {
+						System.arraycopy(e, maxRadius, extendedWaveform, radius, recordLength);
+						movingSumOfSquares(extendedWaveform, recordLength, radius, weights[s], output[s], outputOffset);
+					} else {
+						for (int j = 0; j < recordLength; j++) {
+							double x = e[maxRadius + j];
+							extendedWaveform[radius + j] = x * x;
+						}
+						convolutions[s].convolve(extendedWaveform, workspace.convolutionWorkspaces[s], output[s], outputOffset);
+						clampToNonnegative(output[s], outputOffset, outputOffset + recordLength);
+					}
+				}
+			}
+		}
 
+		// Temporary arrays used by one thread
+		private static final class Workspace
+		{
+			private final double[] extendedWaveform;
+			private final MovingWindowPrefixSums sums;
+			private final double[][] extendedWaveforms;
+			private final double[][] convolutionWorkspaces;
+
+			Workspace(MultiScaleSumOfSquares m)
+			{
+				extendedWaveform = new double[m.recordLength + 2 * m.maxRadius];
+				if (m.isRectangle) {
+					sums = new MovingWindowPrefixSums(m.recordLength, m.maxRadius);
+					extendedWaveforms = null;
+					convolutionWorkspaces = null;
+				} else {
+					sums = null;
+					extendedWaveforms = new double[m.radii.length][];
+					convolutionWorkspaces = new double[m.radii.length][];
+					for (int s = 0; s < m.radii.length; s++) {
+						extendedWaveforms[s] = new double[m.recordLength + 2 * m.radii[s]];
+						convolutionWorkspaces[s] = m.convolutions[s].createWorkspace();
+					}
 				}
+			}
+		}
+	}
 
+	// Computes moving weighted sum of squares of a single waveform directly, writing results into output starting
+	// at outputOffset; extendedWaveform holds the waveform starting at index radius, and its first and last radius
+	// points are overwritten with values mirrored about the end points; weights is the normalized single-sided window
+	private static void movingSumOfSquares(double[] extendedWaveform, int recordLength, int radius, double[] weights, double[] output, int outputOffset)
+	{
+		// mirror waveform values about end points
+		for (int k = 1; k <= radius; k++) {
+			extendedWaveform[radius - k] = extendedWaveform[radius + k];
+			extendedWaveform[radius + recordLength - 1 + k] = extendedWaveform[radius + recordLength - 1 - k];
+		}
+
+		// move window and compute sums
+		for (int j = 0; j < recordLength; j++) {
+
+			// initialize running sum (at center of windowed segment)
+			int center = j + radius;
+			double x = extendedWaveform[center] * weights[0];
+			double sum = x * x;
+
+			// finish computing the sum at the current index
+			for (int k = radius; k > 0; k--) {
+				x = weights[k] * extendedWaveform[center - k];
+				sum += x * x;
 			}
+			for (int k = 1; k <= radius; k++) {
+				x = weights[k] * extendedWaveform[center + k];
+				sum += x * x;
+			}
+
+			output[outputOffset + j] = sum;
 
 		}
+	}
 
+	// Sets negative values in a range of an array to zero; sums of squares computed by FFT convolution or by
+	// differencing running sums may be slightly negative where the waveform is zero, which would give NaN log output
+	private static void clampToNonnegative(double[] a, int from, int to)
+	{
+		for (int j = from; j < to; j++) {
+			if (a[j] < 0.0) {
+				a[j] = 0.0;
+			}
+		}
 	}
 
 	@Override
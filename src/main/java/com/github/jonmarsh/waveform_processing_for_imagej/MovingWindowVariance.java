@@ -2,14 +2,14 @@ package com.github.jonmarsh.waveform_processing_for_imagej;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.gui.DialogListener;
 import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
-import java.util.Arrays;
 
 /**
  * This plug-in filter moves a sliding gate along each waveform (horizontal
@@ -18,7 +18,11 @@ import java.util.Arrays;
  * by the new computed values. The length of the moving window is equal to
  * {@code 2*radius+1}. At positions where portions of the moving window lie
  * outside the bounds of the waveform, the waveform values are mirrored about
- * the end points.
+ * the end points. Running sums are updated as the window moves, so the cost
+ * per point is independent of the window length. In multi-scale mode, the
+ * variance is computed for each of a list of radii from shared prefix sums in
+ * a single pass over each waveform, and the results are returned in a new
+ * hyperstack with one channel per radius.
  * <p>
  * @author Jon N. Marsh
  */
@@ -27,6 +31,13 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 	private int width;
 	private static int radius = 1;
 	private static boolean useUnbiasedEstimateOfVariance = false;
+	private static boolean multiScale = false;
+	private static String radiiList = "1, 2, 4, 8, 16, 32";
+	private static int[] radii;
+	private int height, stackSize;
+	private String title;
+	private ImageStack resultStack;
+	private PlugInFilterRunner pfr;
 	private GenericDialog gd;
 	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + KEEP_PREVIEW + FINAL_PROCESSING;
 
@@ -34,6 +45,14 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 	public int setup(String arg, ImagePlus imp)
 	{
 		if (arg.equals("final")) {
+			// show results only if every slice was produced
+			if (resultStack != null && MovingWindowPrefixSums.hasAllSlices(resultStack)) {
+				ImagePlus resultImp = new ImagePlus(title + " variance", resultStack);
+				resultImp.setDimensions(radii.length, stackSize, 1);
+				resultImp.setOpenAsHyperStack(true);
+				resultImp.show();
+			}
+			resultStack = null;
 			IJ.resetMinAndMax();
 			return DONE;
 		}
@@ -44,6 +63,9 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 		}
 
 		width = imp.getWidth();
+		height = imp.getHeight();
+		stackSize = imp.getStackSize();
+		title = imp.getTitle();
 
 		return flags;
 	}
@@ -54,6 +76,8 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 		gd = new GenericDialog("Moving Window Variance...");
 		gd.addNumericField("Radius", radius, 0);
 		gd.addCheckbox("Use unbiased estimate of variance", useUnbiasedEstimateOfVariance);
+		gd.addCheckbox("Multi-scale output (preview shows first radius)", multiScale);
+		gd.addStringField("Radii", radiiList, 20);
 		gd.addPreviewCheckbox(pfr);
 		gd.addDialogListener(this);
 
@@ -62,6 +86,20 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 			return DONE;
 		}
 
+		if (multiScale) {
+
+			// results are written into a new stack with one slice per radius and input slice, so any
+			// preview of the first radius is discarded and the input image is left unchanged
+			this.pfr = pfr;
+			resultStack = new ImageStack(width, height, radii.length * stackSize);
+			for (int i = 1; i <= stackSize; i++) {
+				for (int s = 0; s < radii.length; s++) {
+					resultStack.setSliceLabel("radius " + radii[s], (i - 1) * radii.length + s + 1);
+				}
+			}
+			return flags - KEEP_PREVIEW + NO_CHANGES;
+		}
+
 		return flags;
 	}
 
@@ -70,20 +108,28 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 	{
 		radius = (int)gd.getNextNumber();
 		useUnbiasedEstimateOfVariance = gd.getNextBoolean();
+		multiScale = gd.getNextBoolean();
+		radiiList = gd.getNextString();
+		radii = MovingWindowPrefixSums.parseRadii(radiiList, 1);
 
-		return (!gd.invalidNumber() && radius >= 0);
+		return (!gd.invalidNumber() && radius >= 0 && (!multiScale || isValidMultiScale(width, width, radii)));
 	}
 
 	@Override
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		execute(pixelsDouble, width, radius, useUnbiasedEstimateOfVariance);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
+		if (resultStack != null) {
+			float[][] results = executeMultiScale(pixels, width, radii, useUnbiasedEstimateOfVariance);
+			if (results != null) {
+				int firstIndex = (pfr.getSliceNumber() - 1) * radii.length + 1;
+				for (int s = 0; s < radii.length; s++) {
+					resultStack.setProcessor(new FloatProcessor(width, height, results[s]), firstIndex + s);
+				}
+			}
+		} else {
+			execute(pixels, width, multiScale ? radii[0] : radius, useUnbiasedEstimateOfVariance);
 		}
 	}
 
@@ -97,9 +143,13 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 	 * {@code waveforms.length} is not evenly divisible by {@code recordLength}.
 	 * At positions where a part of the moving window lies outside the bounds of
 	 * the waveform, the waveform values are mirrored around the appropriate end
-	 * point. This method is adapted from an algorithm described by D. H. D.
-	 * West in Communications of the ACM, 22, 9, 532-535 (1979): "Updating Mean
-	 * and Variance Estimates: An Improved Method."
+	 * point. The variance is computed from compensated running sums of the
+	 * deviations and squared deviations of the values in the window from a
+	 * reference value, which are updated as each point enters and leaves the
+	 * window. Once per window length, the reference value is reset to the mean
+	 * of the current window and the sums are recomputed directly, which bounds
+	 * accumulated rounding error and avoids loss of precision when the local
+	 * mean is large compared with the local standard deviation.
 	 * <p>
 	 * @param waveforms	                    one-dimensional array composed of a
 	 *                                      series of concatenated records, each
@@ -124,57 +174,340 @@ public class MovingWindowVariance implements ExtendedPlugInFilter, DialogListene
 
 		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius > 0) {
 
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new VarianceAccumulator(windowLength, norm));
+
+		}
+
+	}
+
+	/**
+	 * Applies a moving window to each record in {@code waveforms} and replaces
+	 * the value at the central point of the window with the variance in the
+	 * window, as described in {@link #execute(double[], int, int, boolean) execute}. Internal
+	 * computations are performed on a double-precision copy of one record at
+	 * a time, so no double-precision copy of the entire input array is
+	 * required.
+	 * <p>
+	 * @param waveforms	                    one-dimensional array composed of a
+	 *                                      series of concatenated records, each
+	 *                                      of size equal to
+	 *                                      {@code recordLength}
+	 * @param recordLength                  size of each record in
+	 *                                      {@code waveforms}
+	 * @param radius                        radius of moving window; length of
+	 *                                      two-sided window function is equal
+	 *                                      to {@code 2*radius+1}
+	 * @param useUnbiasedEstimateOfVariance if checked, the unbiased estimate of
+	 *                                      variance is returned (i.e. use
+	 *                                      {@code n-1} in the denominator of
+	 *                                      the computation; if unchecked,
+	 *                                      {@code n} is used)
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius, boolean useUnbiasedEstimateOfVariance)
+	{
+		int windowLength = 2 * radius + 1;
+
+		double norm = useUnbiasedEstimateOfVariance ? 1.0 / (windowLength - 1) : 1.0 / windowLength;
+
+		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius > 0) {
+
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new VarianceAccumulator(windowLength, norm));
+
+		}
+
+	}
+
+	/**
+	 * Computes the moving-window variance of each record in {@code waveforms}
+	 * for each radius in {@code radii}, as described in
+	 * {@link #execute(double[], int, int, boolean) execute}, and returns the
+	 * results in new arrays, one per radius; {@code waveforms} is unchanged.
+	 * Each record is mirrored and traversed once to compute prefix sums of its
+	 * deviations and squared deviations from the record mean, from which the
+	 * window sums at every radius are obtained by differencing, so the cost per
+	 * point is independent of the window lengths. Returns null if
+	 * {@code waveforms} or {@code radii} is null or empty, any radius is less
+	 * than {@code 1}, {@code 2*max(radii)+1>=recordLength}, or
+	 * {@code waveforms.length} is not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms	                    one-dimensional array composed of a
+	 *                                      series of concatenated records, each
+	 *                                      of size equal to
+	 *                                      {@code recordLength}
+	 * @param recordLength                  size of each record in
+	 *                                      {@code waveforms}
+	 * @param radii                         radii of moving windows
+	 * @param useUnbiasedEstimateOfVariance if true, use {@code n-1} in the
+	 *                                      denominator of the computation;
+	 *                                      otherwise {@code n} is used
+	 * @return array of {@code radii.length} arrays, each of the same size as
+	 *         {@code waveforms}, holding the variance for the corresponding
+	 *         radius
+	 */
+	public static final double[][] executeMultiScale(double[] waveforms, int recordLength, int[] radii, boolean useUnbiasedEstimateOfVariance)
+	{
+		if (isValidMultiScale(waveforms == null ? -1 : waveforms.length, recordLength, radii)) {
+
+			int maxRadius = MovingWindowPrefixSums.maxRadius(radii);
+			double[][] results = new double[radii.length][waveforms.length];
+
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 
-			// loop over all records
-			for (int i = 0; i < numRecords; i++) {
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] extendedWaveform = new double[recordLength + 2 * maxRadius];
+				MovingWindowPrefixSums sums = new MovingWindowPrefixSums(recordLength, maxRadius);
 
-				// compute row offset
-				int offset = i * recordLength;
+				for (int i = fromRecord; i < toRecord; i++) {
 
-				// initialize double-precision copy of current waveform
-				double[] currentWaveformCopy = Arrays.copyOfRange(waveforms, offset, offset + recordLength);
+					// compute row offset
+					int offset = i * recordLength;
 
-				// move window and compute means
-				for (int j = 0; j < recordLength; j++) {
+					// copy current waveform and compute its prefix sums
+					System.arraycopy(waveforms, offset, extendedWaveform, maxRadius, recordLength);
+					sums.compute(extendedWaveform, recordMean(extendedWaveform, maxRadius, recordLength));
 
-					// initialize variables at center of windowed segment
-					long n = 1;
-					double mean = currentWaveformCopy[j];
-					double m2 = 0.0;
-					double delta;
+					// compute values at each radius directly into result arrays
+					for (int s = 0; s < radii.length; s++) {
+						multiScaleVariance(sums, recordLength, radii[s], useUnbiasedEstimateOfVariance, results[s], offset);
+					}
 
-					// finish computations at the current index
-					for (int k = -radius; k < 0; k++) {
-						int index = j + k;
-						if (index < 0) {
-							index = -index;
-						}
-						n += 1;
-						delta = currentWaveformCopy[index] - mean;
-						mean += delta / n;
-						m2 += delta * (currentWaveformCopy[index] - mean);
+				}
+			});
+
+			return results;
+
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the moving-window variance of each record in {@code waveforms}
+	 * for each radius in {@code radii}, as described in
+	 * {@link #executeMultiScale(double[], int, int[], boolean) executeMultiScale}.
+	 * Internal computations are performed on a double-precision copy of one
+	 * record at a time.
+	 * <p>
+	 * @param waveforms	                    one-dimensional array composed of a
+	 *                                      series of concatenated records, each
+	 *                                      of size equal to
+	 *                                      {@code recordLength}
+	 * @param recordLength                  size of each record in
+	 *                                      {@code waveforms}
+	 * @param radii                         radii of moving windows
+	 * @param useUnbiasedEstimateOfVariance if true, use {@code n-1} in the
+	 *                                      denominator of the computation;
+	 *                                      otherwise {@code n} is used
+	 * @return array of {@code radii.length} arrays, each of the same size as
+	 *         {@code waveforms}, holding the variance for the corresponding
+	 *         radius
+	 */
+	public static final float[][] executeMultiScale(float[] waveforms, int recordLength, int[] radii, boolean useUnbiasedEstimateOfVariance)
+	{
+		if (isValidMultiScale(waveforms == null ? -1 : waveforms.length, recordLength, radii)) {
+
+			int maxRadius = MovingWindowPrefixSums.maxRadius(radii);
+			float[][] results = new float[radii.length][waveforms.length];
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] extendedWaveform = new double[recordLength + 2 * maxRadius];
+				double[] result = new double[recordLength];
+				MovingWindowPrefixSums sums = new MovingWindowPrefixSums(recordLength, maxRadius);
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// initialize double-precision copy of current waveform and compute its prefix sums
+					for (int j = 0; j < recordLength; j++) {
+						extendedWaveform[maxRadius + j] = waveforms[offset + j];
 					}
-					for (int k = 1; k <= radius; k++) {
-						int index = j + k;
-						if (index > recordLength - 1) {
-							index = 2 * (recordLength - 1) - index;
+					sums.compute(extendedWaveform, recordMean(extendedWaveform, maxRadius, recordLength));
+
+					// compute values at each radius and copy into result arrays
+					for (int s = 0; s < radii.length; s++) {
+						multiScaleVariance(sums, recordLength, radii[s], useUnbiasedEstimateOfVariance, result, 0);
+						for (int j = 0; j < recordLength; j++) {
+							results[s][offset + j] = (float)result[j];
 						}
-						n += 1;
-						delta = currentWaveformCopy[index] - mean;
-						mean += delta / n;
-						m2 += delta * (currentWaveformCopy[index] - mean);
 					}
 
-					waveforms[offset + j] = m2 * norm;
-
 				}
+			});
+
+			return results;
+
+		}
+
+		return null;
+	}
+
+	private static boolean isValidMultiScale(int length, int recordLength, int[] radii)
+	{
+		if (length < 0 || radii == null || radii.length == 0 || recordLength <= 0 || length % recordLength != 0) {
+			return false;
+		}
+		for (int r : radii) {
+			if (r <= 0 || recordLength <= 2 * r + 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Returns mean of record held in extendedWaveform starting at index offset
+	private static double recordMean(double[] extendedWaveform, int offset, int recordLength)
+	{
+		double sum = 0.0;
+		for (int j = offset; j < offset + recordLength; j++) {
+			sum += extendedWaveform[j];
+		}
+		return sum / recordLength;
+	}
 
+	// Computes moving variance of a single waveform for one radius from its prefix sums, writing results into
+	// output starting at outputOffset
+	private static void multiScaleVariance(MovingWindowPrefixSums sums, int recordLength, int radius, boolean useUnbiasedEstimateOfVariance, double[] output, int outputOffset)
+	{
+		int windowLength = 2 * radius + 1;
+		double norm = useUnbiasedEstimateOfVariance ? 1.0 / (windowLength - 1) : 1.0 / windowLength;
+
+		for (int j = 0; j < recordLength; j++) {
+			output[outputOffset + j] = sums.centralSumOfSquares(j, radius) * norm;
+		}
+	}
+
+	/**
+	 * Accumulator for the variance of the values in a moving window, computed
+	 * from running sums of deviations and squared deviations from a reference
+	 * value, with Neumaier compensation terms. Once per window length, and
+	 * whenever the window mean has moved so far from the reference value that
+	 * forming the variance would cancel most of its significant bits, the
+	 * reference value is reset to the mean of the window and the sums are
+	 * recomputed directly from the values in the window.
+	 */
+	static final class VarianceAccumulator implements MovingWindowProcessor.Accumulator
+	{
+		// largest tolerated ratio of squared sum of deviations (over window length) to sum of squared deviations from mean
+		private static final double MAX_CANCELLATION_RATIO = 0x1p20;
+
+		private final int windowLength;
+		private final double norm;
+
+		// values in window, oldest at index head
+		private final double[] values;
+		private int head, size;
+
+		private double reference;
+		private double sum, sumCompensation;
+		private double sumOfSquares, sumOfSquaresCompensation;
+
+		// value removed from window whose update is combined with that of the following addition
+		private boolean hasRemovedValue;
+		private double removedValue;
+
+		// number of results returned since window was filled
+		private long numResults;
+
+		/**
+		 * Creates an accumulator for a window of length {@code windowLength}.
+		 *
+		 * @param windowLength length of moving window
+		 * @param norm         reciprocal of the number of degrees of freedom
+		 */
+		VarianceAccumulator(int windowLength, double norm)
+		{
+			this.windowLength = windowLength;
+			this.norm = norm;
+			values = new double[windowLength];
+		}
+
+		@Override
+		public void clear()
+		{
+			head = 0;
+			size = 0;
+			hasRemovedValue = false;
+			numResults = 0;
+		}
+
+		@Override
+		public void add(double value)
+		{
+			values[(head + size) % windowLength] = value;
+			size++;
+			if (hasRemovedValue) {
+				hasRemovedValue = false;
+
+				// add point entering window and remove point leaving window
+				double deltaIn = value - reference;
+				double deltaOut = removedValue - reference;
+
+				double x = deltaIn - deltaOut;
+				double t = sum + x;
+				sumCompensation += (Math.abs(sum) >= Math.abs(x)) ? (sum - t) + x : (x - t) + sum;
+				sum = t;
+
+				x = (deltaIn - deltaOut) * (deltaIn + deltaOut);
+				t = sumOfSquares + x;
+				sumOfSquaresCompensation += (Math.abs(sumOfSquares) >= Math.abs(x)) ? (sumOfSquares - t) + x : (x - t) + sumOfSquares;
+				sumOfSquares = t;
+			}
+		}
+
+		@Override
+		public void remove(double value)
+		{
+			head = (head + 1) % windowLength;
+			size--;
+			hasRemovedValue = true;
+			removedValue = value;
+		}
+
+		@Override
+		public double getResult()
+		{
+			if (numResults++ % windowLength == 0) {
+				resetReference();
+			}
+
+			double s1 = sum + sumCompensation;
+			double meanSquare = s1 * s1 / windowLength;
+			double m2 = (sumOfSquares + sumOfSquaresCompensation) - meanSquare;
+			if (meanSquare > MAX_CANCELLATION_RATIO * Math.max(m2, 0.0)) {
+				resetReference();
+				s1 = sum;
+				m2 = sumOfSquares - s1 * s1 / windowLength;
 			}
 
+			return (m2 > 0.0) ? m2 * norm : 0.0;
 		}
 
+		// recomputes sums directly, using mean of window as reference value
+		private void resetReference()
+		{
+			double mean = 0.0;
+			for (int k = 0; k < windowLength; k++) {
+				mean += values[(head + k) % windowLength];
+			}
+			reference = mean / windowLength;
+			sum = 0.0;
+			sumOfSquares = 0.0;
+			for (int k = 0; k < windowLength; k++) {
+				double delta = values[(head + k) % windowLength] - reference;
+				sum += delta;
+				sumOfSquares += delta * delta;
+			}
+			sumCompensation = 0.0;
+			sumOfSquaresCompensation = 0.0;
+		}
 	}
 
 	@Override
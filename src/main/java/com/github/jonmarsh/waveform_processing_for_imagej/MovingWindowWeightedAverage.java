@@ -7,10 +7,8 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.awt.TextField;
-import java.util.Arrays;
 
 /**
  * This plug-in filter moves a sliding gate along each waveform (horizontal
@@ -20,7 +18,9 @@ import java.util.Arrays;
  * new computed values. The length of the moving window is equal to
  * {@code 2*radius+1}. At positions where portions of the moving window lie
  * outside the bounds of the waveform, the waveform values are mirrored about
- * the end points.
+ * the end points. Depending on the window type and length, the weighted sums
+ * are computed directly, with a running sum (for windows with equal weights),
+ * or by FFT convolution; see {@link MovingWindowConvolution}.
  * <p>
  * @author Jon N. Marsh
  */
@@ -89,13 +89,8 @@ public class MovingWindowWeightedAverage implements ExtendedPlugInFilter, Dialog
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		execute(pixelsDouble, width, radius, WaveformUtils.WindowType.values()[windowChoice], windowParameter);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		execute(pixels, width, radius, WaveformUtils.WindowType.values()[windowChoice], windowParameter);
 	}
 
 	/**
@@ -128,46 +123,88 @@ public class MovingWindowWeightedAverage implements ExtendedPlugInFilter, Dialog
 
 			// initialize single-sided window weight array (normalized)
 			double[] weights = WaveformUtils.windowFunctionSingleSided(windowType, radius, windowParameter, true);
+			MovingWindowConvolution convolution = new MovingWindowConvolution(weights, recordLength);
 
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 
-			// loop over all records
-			for (int i = 0; i < numRecords; i++) {
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] extendedWaveform = new double[recordLength + 2 * radius];
+				double[] workspace = convolution.createWorkspace();
 
-				// compute row offset
-				int offset = i * recordLength;
+				for (int i = fromRecord; i < toRecord; i++) {
 
-				// initialize copy of current waveform
-				double[] currentWaveformCopy = Arrays.copyOfRange(waveforms, offset, offset + recordLength);
+					// compute row offset
+					int offset = i * recordLength;
 
-				// move window and compute means
-				for (int j = 0; j < recordLength; j++) {
+					// copy current waveform
+					System.arraycopy(waveforms, offset, extendedWaveform, radius, recordLength);
 
-					// initialize running sum (at center of windowed segment)
-					double sum = currentWaveformCopy[j] * weights[0];
+					// compute values directly into original array
+					convolution.convolve(extendedWaveform, workspace, waveforms, offset);
 
-					// finish computing the sum at the current index
-					for (int k = -radius; k < 0; k++) {
-						int index = j + k;
-						if (index < 0) {
-							index = -index;
-						}
-						sum += weights[-k] * currentWaveformCopy[index];
-					}
-					for (int k = 1; k <= radius; k++) {
-						int index = j + k;
-						if (index > recordLength - 1) {
-							index = 2 * (recordLength - 1) - index;
-						}
-						sum += weights[k] * currentWaveformCopy[index];
+				}
+			});
+
+		}
+
+	}
+
+	/**
+	 * Applies a moving window with weights specified by {@code windowType} to
+	 * each record in {@code waveforms}, as described in {@link #execute(double[], int, int, WaveformUtils.WindowType, double) execute}. Internal
+	 * computations are performed on a double-precision copy of one record at
+	 * a time, so no double-precision copy of the entire input array is
+	 * required.
+	 * <p>
+	 * @param waveforms	      one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param radius          length of two-sided window function is equal to
+	 *                        {@code 2*radius+1}
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius, WaveformUtils.WindowType windowType, double windowParameter)
+	{
+		int windowLength = 2 * radius + 1;
+
+		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius >= 0) {
+
+			// initialize single-sided window weight array (normalized)
+			double[] weights = WaveformUtils.windowFunctionSingleSided(windowType, radius, windowParameter, true);
+			MovingWindowConvolution convolution = new MovingWindowConvolution(weights, recordLength);
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] extendedWaveform = new double[recordLength + 2 * radius];
+				double[] workspace = convolution.createWorkspace();
+				double[] result = new double[recordLength];
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// initialize double-precision copy of current waveform
+					for (int j = 0; j < recordLength; j++) {
+						extendedWaveform[radius + j] = waveforms[offset + j];
 					}
 
-					waveforms[offset + j] = sum;
+					// compute values and copy back into original array
+					convolution.convolve(extendedWaveform, workspace, result, 0);
+					for (int j = 0; j < recordLength; j++) {
+						waveforms[offset + j] = (float)result[j];
+					}
 
 				}
-
-			}
+			});
 
 		}
 
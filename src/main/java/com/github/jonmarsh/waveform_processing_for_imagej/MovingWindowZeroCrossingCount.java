@@ -7,9 +7,7 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
-import java.util.Arrays;
 
 /**
  * This plug-in filter moves a sliding gate along each waveform (horizontal
@@ -75,13 +73,8 @@ public class MovingWindowZeroCrossingCount implements ExtendedPlugInFilter, Dial
 	public void run(ImageProcessor ip)
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		execute(pixelsDouble, width, radius);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		execute(pixels, width, radius);
 	}
 
 	/**
@@ -109,74 +102,98 @@ public class MovingWindowZeroCrossingCount implements ExtendedPlugInFilter, Dial
 
 		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius >= 0) {
 
-			// compute number of records
-			int numRecords = waveforms.length / recordLength;
-
-			// loop over all records
-			for (int i = 0; i < numRecords; i++) {
-
-				// compute row offset
-				int offset = i * recordLength;
-
-				// initialize copy of current waveform
-				double[] currentWaveformCopy = new double[recordLength];
-				for (int j = 0; j < recordLength; j++) {
-					currentWaveformCopy[j] = waveforms[offset + j];
-				}
-
-				// initialize zero-crossing count when window is centered at array index 0
-				int count = 0;
-				int index;
-				for (int j = -radius; j < radius; j++) {
-					index = j;
-					int index1 = j + 1;
-					if (index < 0) {
-						index = -index;
-						if (index1 < 0) {
-							index1 = -index1;
-						}
-					}
-					if (currentWaveformCopy[index] * currentWaveformCopy[index1] < 0.0) {
-						count++;
-					}
-				}
-				waveforms[offset] = count;
-				double lastValue = currentWaveformCopy[radius];
-				double firstValue = lastValue; // reflect around boundary point
-
-				// move window and count zero-crossings
-				for (int j = 1; j < recordLength; j++) {
-
-					// check if window moved past a zero crossing on the left
-					index = j - radius;
-					if (index < 0) {
-						index = -index;
-					}
-					double newFirstValue = currentWaveformCopy[index];
-					if (firstValue * newFirstValue < 0.0) {
-						count--;
-					}
-					firstValue = newFirstValue;
-
-					// check if window moved over a new zero crossing on the right
-					index = j + radius;
-					if (index > recordLength - 1) {
-						index = 2 * (recordLength - 1) - index;
-					}
-					double newLastValue = currentWaveformCopy[index];
-					if (lastValue * newLastValue < 0.0) {
-						count++;
-					}
-					lastValue = newLastValue;
-
-					waveforms[offset + j] = count;
-
-				}
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new ZeroCrossingCountAccumulator(windowLength));
+
+		}
+
+	}
+
+	/**
+	 * Applies a moving window to each record in {@code waveforms} and replaces
+	 * the value at the central point of the window with the number of
+	 * zero-crossings in the window, as described in {@link #execute(double[], int, int) execute}. Internal
+	 * computations are performed on a double-precision copy of one record at
+	 * a time, so no double-precision copy of the entire input array is
+	 * required.
+	 * <p>
+	 * @param waveforms	   one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @param radius       length of two-sided window function is equal to
+	 *                     {@code 2*radius+1}
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int radius)
+	{
+		int windowLength = 2 * radius + 1;
+
+		if (waveforms != null && recordLength > windowLength && waveforms.length % recordLength == 0 && radius >= 0) {
+
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, () -> new ZeroCrossingCountAccumulator(windowLength));
+
+		}
 
+	}
+
+	/**
+	 * Accumulator for the number of zero-crossings between adjacent values in
+	 * a moving window. For each value in the window, a flag records whether it
+	 * and the preceding value have opposite signs; when the oldest value
+	 * leaves the window, the flag of the value following it is cleared.
+	 */
+	static final class ZeroCrossingCountAccumulator implements MovingWindowProcessor.Accumulator
+	{
+		private final boolean[] crossings;
+		private int head, size;
+		private int count;
+		private double lastValue;
+
+		/**
+		 * Creates an accumulator for a window of length {@code windowLength}.
+		 *
+		 * @param windowLength length of moving window
+		 */
+		ZeroCrossingCountAccumulator(int windowLength)
+		{
+			crossings = new boolean[windowLength];
+		}
+
+		@Override
+		public void clear()
+		{
+			head = 0;
+			size = 0;
+			count = 0;
+		}
+
+		@Override
+		public void add(double value)
+		{
+			boolean isCrossing = size > 0 && lastValue * value < 0.0;
+			if (isCrossing) {
+				count++;
 			}
+			crossings[(head + size) % crossings.length] = isCrossing;
+			size++;
+			lastValue = value;
+		}
 
+		@Override
+		public void remove(double value)
+		{
+			head = (head + 1) % crossings.length;
+			size--;
+			if (size > 0 && crossings[head]) {
+				crossings[head] = false;
+				count--;
+			}
 		}
 
+		@Override
+		public double getResult()
+		{
+			return count;
+		}
 	}
 
 	@Override
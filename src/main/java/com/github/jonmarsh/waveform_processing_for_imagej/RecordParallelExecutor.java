@@ -0,0 +1,140 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import ij.Prefs;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Executes independent per-record computations on the records of a waveform
+ * array in parallel. The records are divided into contiguous ranges, one per
+ * thread, and each range is processed by a single call to
+ * {@link RecordRangeTask#process(int, int)}, so any scratch buffers a task
+ * needs are allocated once per range (i.e., once per thread) rather than once
+ * per record. This complements {@code PARALLELIZE_STACKS}, which only divides
+ * work among the slices of a stack, and allows a single very large slice to be
+ * processed using all available processors.
+ * <p>
+ * By default, the number of threads is the number set in ImageJ under
+ * <i>Edit&gt;Options&gt;Memory &amp; Threads</i>; it may be overridden with
+ * {@link #setNumberOfThreads(int)}.
+ *
+ * @author Jon N. Marsh
+ */
+public final class RecordParallelExecutor
+{
+	/**
+	 * Computation performed on a contiguous range of records.
+	 */
+	public interface RecordRangeTask
+	{
+		/**
+		 * Processes records with indices {@code fromRecord} (inclusive) to
+		 * {@code toRecord} (exclusive).
+		 *
+		 * @param fromRecord index of first record to process, inclusive
+		 * @param toRecord   index of last record to process, exclusive
+		 */
+		void process(int fromRecord, int toRecord);
+	}
+
+	private static int numberOfThreads = 0;
+	private static ForkJoinPool pool = null;
+
+	private RecordParallelExecutor()
+	{
+	}
+
+	/**
+	 * Sets the maximum number of threads used to process records. Values less
+	 * than 1 revert to the number of threads set in ImageJ preferences.
+	 *
+	 * @param n maximum number of threads
+	 */
+	public static synchronized void setNumberOfThreads(int n)
+	{
+		numberOfThreads = Math.max(n, 0);
+	}
+
+	/**
+	 * Returns the maximum number of threads used to process records.
+	 *
+	 * @return maximum number of threads
+	 */
+	public static synchronized int getNumberOfThreads()
+	{
+		return (numberOfThreads > 0) ? numberOfThreads : Math.max(Prefs.getThreads(), 1);
+	}
+
+	/**
+	 * Processes {@code numRecords} records by dividing them into contiguous
+	 * ranges and calling {@code task.process} on each range in parallel. The
+	 * method returns when all ranges have been processed. If only one thread
+	 * is available, or if there are fewer than two records, the task is called
+	 * once on the full range in the calling thread. Any runtime exception
+	 * thrown by the task is rethrown in the calling thread.
+	 *
+	 * @param numRecords number of records to process
+	 * @param task       computation to perform on each range of records
+	 */
+	public static void execute(int numRecords, RecordRangeTask task)
+	{
+		int numRanges = Math.min(getNumberOfThreads(), numRecords);
+
+		if (numRanges <= 1) {
+			if (numRecords > 0) {
+				task.process(0, numRecords);
+			}
+			return;
+		}
+
+		getPool().invoke(new RangeAction(task, numRecords, numRanges, 0, numRanges));
+	}
+
+	// Returns shared pool, replacing it if the number of threads has changed; a
+	// replaced pool is not shut down, since other threads may still be using it,
+	// but its idle worker threads terminate on their own
+	private static synchronized ForkJoinPool getPool()
+	{
+		int parallelism = getNumberOfThreads();
+		if (pool == null || pool.getParallelism() != parallelism) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	// Recursively splits ranges [fromRange, toRange) in half until a single range remains
+	private static final class RangeAction extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final RecordRangeTask task;
+		private final int numRecords;
+		private final int numRanges;
+		private final int fromRange;
+		private final int toRange;
+
+		RangeAction(RecordRangeTask task, int numRecords, int numRanges, int fromRange, int toRange)
+		{
+			this.task = task;
+			this.numRecords = numRecords;
+			this.numRanges = numRanges;
+			this.fromRange = fromRange;
+			this.toRange = toRange;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (toRange - fromRange == 1) {
+				int fromRecord = (int)((long)numRecords * fromRange / numRanges);
+				int toRecord = (int)((long)numRecords * toRange / numRanges);
+				task.process(fromRecord, toRecord);
+			} else {
+				int middle = (fromRange + toRange) >>> 1;
+				invokeAll(new RangeAction(task, numRecords, numRanges, fromRange, middle),
+						new RangeAction(task, numRecords, numRanges, middle, toRange));
+			}
+		}
+	}
+
+}
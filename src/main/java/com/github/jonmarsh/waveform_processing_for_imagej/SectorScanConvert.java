@@ -12,6 +12,7 @@ import java.awt.Panel;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -48,6 +49,7 @@ public class SectorScanConvert implements ExtendedPlugInFilter
 	int recordLength, height, stackSize, rMin, rMax, trueXMin, trueXMax, trueYMin, trueYMax, convertedWidth, convertedHeight;
 	String name;
 	PlugInFilterRunner pfr;
+	LookupTable lookupTable;
 	int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + FINAL_PROCESSING;
 
 	@Override
@@ -144,52 +146,22 @@ public class SectorScanConvert implements ExtendedPlugInFilter
 		}
 		resizedStack = resizedImp.getStack();
 
+		// the mapping is the same for every slice, so it is computed once and shared by all threads
+		lookupTable = new LookupTable(convertedWidth, convertedHeight, trueXMin, trueYMin, rMin, rMax, maxHalfAngleInRadians, interpolate, rotateRight);
+
 		return flags;
 	}
 
 	@Override
 	public void run(ImageProcessor ip) 
 	{
-		ImageProcessor resized_ip;
 		int currentSlice = pfr.getSliceNumber();
-		int trueX;
-		int trueY;
-		double radiusIndex;
-		double angleIndex;
-		float[] pixels;
-		float[] converted_pixels;
 
 		// scan conversion of the resized image adds processing time but gives nicer results
 		ip.setInterpolationMethod(interpolate ? ImageProcessor.BILINEAR : ImageProcessor.NONE);
-		resized_ip = ip.resize(convertedWidth, convertedHeight);
-		pixels = (float[])resized_ip.getPixels();
-		converted_pixels = new float[pixels.length];
-		for (int y=0; y<convertedHeight; y++) {
-			trueY = y + trueYMin;
-			for (int x=0; x<convertedWidth; x++) {
-				trueX = x + trueXMin;
-				radiusIndex = getRadiusIndex(trueX, trueY, rMin, rMax, convertedWidth);
-				if ((radiusIndex < (double)convertedWidth) && (radiusIndex >= 0.0)) {
-					angleIndex = getAngleIndex(trueX, trueY, convertedHeight, maxHalfAngleInRadians);
-					if ((angleIndex < (double)convertedHeight) && (angleIndex >= 0.0)) {
-						converted_pixels[ (y*convertedWidth) + x ] = Float.intBitsToFloat(resized_ip.getPixelInterpolated(radiusIndex, angleIndex));
-					}
-				}
-			}
-		}
-
+		ImageProcessor resized_ip = ip.resize(convertedWidth, convertedHeight);
 		float[] temp = (float[])resizedStack.getProcessor(currentSlice).getPixels();
-		if (rotateRight) {
-			for (int i=0; i<convertedHeight; i++) {
-				int offset = i*convertedWidth;
-				for (int j=0; j<convertedWidth; j++) {
-					temp[j*convertedHeight+(convertedHeight-i-1)] = converted_pixels[offset+j];
-				}
-			}	
-		} else {
-			System.arraycopy(converted_pixels, 0, temp, 0, pixels.length);
-		}
-		
+		lookupTable.apply((float[])resized_ip.getPixels(), temp);
 	}
 
 	@Override
@@ -198,7 +170,7 @@ public class SectorScanConvert implements ExtendedPlugInFilter
 	}
 
 	// Returns fractional row (i.e. "angle") of rotational scan point corresponding to real-world (integer) cartesian point [x,y]
-	private double getAngleIndex(int x, int y, int numberOfAngles, double maxHalfAngleInRadians) 
+	private static double getAngleIndex(int x, int y, int numberOfAngles, double maxHalfAngleInRadians) 
 	{
 		double angleInRadians = Math.atan2((double)y, (double)x);
 		double a = (double)numberOfAngles/2.0;
@@ -206,11 +178,166 @@ public class SectorScanConvert implements ExtendedPlugInFilter
 	} 
 	
 	// Returns fractional column (i.e. "radius") of rotational scan point corresponding to real-world (integer) cartesian point [x,y]
-	private double getRadiusIndex(int x, int y, int rMin, int rMax, int maxRowIndex) 
+	private static double getRadiusIndex(int x, int y, int rMin, int rMax, int maxRowIndex) 
 	{
 		double radius = Math.sqrt(x*x + y*y);
 		double rRatio = (radius-(double)rMin)/(double)(rMax-rMin);
 		return (rRatio*(double)maxRowIndex);
 	} 
 
+	/**
+	 * Precomputed mapping from the pixels of a resized input slice to the
+	 * pixels of the scan-converted slice. For every output pixel inside the
+	 * sector, the table holds the index of the output pixel, the index of the
+	 * source pixel at the lower left of the interpolation cell, and (when
+	 * interpolating) the fractional offsets within the cell. Applying the table
+	 * gives the same values as {@link ImageProcessor#getPixelInterpolated(double, double)}
+	 * with bilinear or no interpolation, without any trigonometric functions.
+	 * Instances are immutable and may be shared among threads.
+	 */
+	static final class LookupTable
+	{
+		private final int width;
+		private final int[] destination;
+		private final int[] source;
+		private final double[] xFraction;
+		private final double[] yFraction;
+
+		/**
+		 * Computes the table for a resized slice and a scan-converted slice of
+		 * {@code width} by {@code height} pixels.
+		 *
+		 * @param width                 width of the resized and converted slices
+		 * @param height                height of the resized and converted slices
+		 * @param xMin                  cartesian x coordinate of the first column
+		 * @param yMin                  cartesian y coordinate of the first row
+		 * @param rMin                  radius of the first displayed point
+		 * @param rMax                  radius of the last displayed point
+		 * @param maxHalfAngleInRadians half the span of the sector
+		 * @param interpolate           true for bilinear interpolation, false
+		 *                              for nearest-neighbor values
+		 * @param rotateRight           true to rotate the output right by 90
+		 *                              degrees
+		 */
+		LookupTable(int width, int height, int xMin, int yMin, int rMin, int rMax, double maxHalfAngleInRadians, boolean interpolate, boolean rotateRight)
+		{
+			this.width = width;
+			int[] destinationIndices = new int[width * height];
+			int[] sourceIndices = new int[width * height];
+			double[] xFractions = interpolate ? new double[width * height] : null;
+			double[] yFractions = interpolate ? new double[width * height] : null;
+			int count = 0;
+			for (int y = 0; y < height; y++) {
+				int trueY = y + yMin;
+				for (int x = 0; x < width; x++) {
+					int trueX = x + xMin;
+					double radiusIndex = getRadiusIndex(trueX, trueY, rMin, rMax, width);
+					if (!((radiusIndex < (double)width) && (radiusIndex >= 0.0))) {
+						continue;
+					}
+					double angleIndex = getAngleIndex(trueX, trueY, height, maxHalfAngleInRadians);
+					if (!((angleIndex < (double)height) && (angleIndex >= 0.0))) {
+						continue;
+					}
+
+					// points outside the source cells are zero, as with getPixelInterpolated
+					int sourceX;
+					int sourceY;
+					if (interpolate) {
+						if (radiusIndex >= width - 1 || angleIndex >= height - 1) {
+							continue;
+						}
+						sourceX = (int)radiusIndex;
+						sourceY = (int)angleIndex;
+						xFractions[count] = radiusIndex - sourceX;
+						yFractions[count] = angleIndex - sourceY;
+					} else {
+						sourceX = (int)(radiusIndex + 0.5);
+						sourceY = (int)(angleIndex + 0.5);
+						if (sourceX >= width || sourceY >= height) {
+							continue;
+						}
+					}
+					sourceIndices[count] = sourceY * width + sourceX;
+					destinationIndices[count] = rotateRight ? x * height + (height - y - 1) : y * width + x;
+					count++;
+				}
+			}
+			destination = Arrays.copyOf(destinationIndices, count);
+			source = Arrays.copyOf(sourceIndices, count);
+			xFraction = interpolate ? Arrays.copyOf(xFractions, count) : null;
+			yFraction = interpolate ? Arrays.copyOf(yFractions, count) : null;
+		}
+
+		/**
+		 * Returns the number of output pixels inside the sector.
+		 *
+		 * @return number of table entries
+		 */
+		int size()
+		{
+			return destination.length;
+		}
+
+		/**
+		 * Writes the scan-converted values of {@code pixels} to {@code output}.
+		 * Output pixels outside the sector are not modified.
+		 *
+		 * @param pixels pixels of the resized slice
+		 * @param output pixels of the scan-converted slice
+		 */
+		void apply(float[] pixels, float[] output)
+		{
+			if (xFraction == null) {
+				for (int k = 0; k < destination.length; k++) {
+					output[destination[k]] = pixels[source[k]];
+				}
+				return;
+			}
+			for (int k = 0; k < destination.length; k++) {
+				int index = source[k];
+				double xf = xFraction[k];
+				double yf = yFraction[k];
+				double lowerLeft = pixels[index];
+				double lowerRight = pixels[index + 1];
+				double upperLeft = pixels[index + width];
+				double upperRight = pixels[index + width + 1];
+				double upper = upperLeft + xf * (upperRight - upperLeft);
+				double lower = lowerLeft + xf * (lowerRight - lowerLeft);
+				double value = lower + yf * (upper - lower);
+				if (Double.isNaN(value)) {
+					value = interpolateWithNaN(lowerLeft, lowerRight, upperLeft, upperRight, xf, yf);
+				}
+				output[destination[k]] = (float)value;
+			}
+		}
+
+		// Bilinear interpolation using the nearer neighbor in place of NaN values, as in FloatProcessor
+		private static double interpolateWithNaN(double lowerLeft, double lowerRight, double upperLeft, double upperRight, double xf, double yf)
+		{
+			double upper;
+			if (Double.isNaN(upperLeft) && xf >= 0.5) {
+				upper = upperRight;
+			} else if (Double.isNaN(upperRight) && xf < 0.5) {
+				upper = upperLeft;
+			} else {
+				upper = upperLeft + xf * (upperRight - upperLeft);
+			}
+			double lower;
+			if (Double.isNaN(lowerLeft) && xf >= 0.5) {
+				lower = lowerRight;
+			} else if (Double.isNaN(lowerRight) && xf < 0.5) {
+				lower = lowerLeft;
+			} else {
+				lower = lowerLeft + xf * (lowerRight - lowerLeft);
+			}
+			if (Double.isNaN(lower) && yf >= 0.5) {
+				return upper;
+			} else if (Double.isNaN(upper) && yf < 0.5) {
+				return lower;
+			}
+			return lower + yf * (upper - lower);
+		}
+	}
+
 }
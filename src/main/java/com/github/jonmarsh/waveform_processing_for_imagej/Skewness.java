@@ -7,7 +7,6 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 
 /**
@@ -96,9 +95,8 @@ public class Skewness implements ExtendedPlugInFilter, DialogListener
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		double[] kurtoses = execute(pixelsDouble, width, isSampleSkewness);
+		double[] kurtoses = execute(pixels, width, isSampleSkewness);
 		for (int i = 0; i < height; i++) {
 			resultPixels[i * resultWidth + (currentSlice - 1)] = (float)kurtoses[i];
 		}
@@ -110,7 +108,9 @@ public class Skewness implements ExtendedPlugInFilter, DialogListener
 	 * The skewness is computed using a numerically stable algorithm for
 	 * computing higher order statistical moments described by
 	 * <a href="http://people.xiph.org/~tterribe/notes/homs.html">Timothy B.
-	 * Terriberry (2007)</a>. Output is null if {@code waveforms==null}, {@code recordLength<=2},
+	 * Terriberry (2007)</a>; records of at least {@code 2^20} elements are
+	 * divided among several threads and their partial moments merged (see
+	 * {@link Moments}). Output is null if {@code waveforms==null}, {@code recordLength<=2},
 	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
 	 * not evenly divisible by {@code recordLength}.
 	 * <p>
@@ -150,8 +150,91 @@ public class Skewness implements ExtendedPlugInFilter, DialogListener
 		return null;
 	}
 
+	/**
+	 * Returns an array representing the skewness of each record in
+	 * {@code waveforms}, where each record has {@code recordLength} elements.
+	 * The skewness is computed using a numerically stable algorithm for
+	 * computing higher order statistical moments described by
+	 * <a href="http://people.xiph.org/~tterribe/notes/homs.html">Timothy B.
+	 * Terriberry (2007)</a>; records of at least {@code 2^20} elements are
+	 * divided among several threads and their partial moments merged (see
+	 * {@link Moments}). Output is null if {@code waveforms==null}, {@code recordLength<=2},
+	 * {@code waveforms.length<recordLength}, or if {@code waveforms.length} is
+	 * not evenly divisible by {@code recordLength}.
+	 * <p>
+	 * @param waveforms        one-dimensional array composed of a series of
+	 *                         concatenated records, each of size equal to
+	 *                         {@code recordLength}
+	 * @param recordLength     size of each record in {@code waveforms}
+	 * @param isSampleSkewness set true to output sample skewness, false to
+	 *                         output population skewness
+	 * @return array of skewness values of input waveforms
+	 */
+	public static double[] execute(float[] waveforms, int recordLength, boolean isSampleSkewness)
+	{
+		if (waveforms != null && recordLength > 2 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output array
+			double[] skewnesses = new double[numRecords];
+
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
+
+				// compute row offset
+				int offset = i * recordLength;
+
+				// find skewness of current waveform
+				skewnesses[i] = (float)skewness(waveforms, offset, offset + recordLength, isSampleSkewness);
+
+			}
+
+			return skewnesses;
+
+		}
+
+		return null;
+	}
+
 	private static double skewness(double[] a, int from, int to, boolean isSampleSkewness)
 	{
+		// divide very long records among several threads
+		if (to - from >= Moments.PARALLEL_RECORD_LENGTH) {
+			return Moments.compute(a, from, to).getSkewness(isSampleSkewness);
+		}
+
+		long n = 0;
+		double mean = 0.0;
+		double m2 = 0.0;
+		double m3 = 0.0;
+
+		for (int i = from; i < to; i++) {
+			n++;
+			double delta = a[i] - mean;
+			double deltaOverN = delta / n;
+			double term1 = delta * deltaOverN * (n - 1);
+			mean += deltaOverN;
+			m3 += term1 * deltaOverN * (n - 2) - 3.0 * deltaOverN * m2;
+			m2 += term1;
+		}
+
+		double output = (m3 / n) / Math.pow(m2 / n, 1.5);
+		if (!isSampleSkewness) {
+			output *= Math.sqrt(n * (n - 1)) / (n - 2);
+		}
+
+		return output;
+	}
+
+	private static double skewness(float[] a, int from, int to, boolean isSampleSkewness)
+	{
+		// divide very long records among several threads
+		if (to - from >= Moments.PARALLEL_RECORD_LENGTH) {
+			return Moments.compute(a, from, to).getSkewness(isSampleSkewness);
+		}
+
 		long n = 0;
 		double mean = 0.0;
 		double m2 = 0.0;
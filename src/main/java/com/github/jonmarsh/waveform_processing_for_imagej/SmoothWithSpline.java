@@ -131,21 +131,17 @@ public class SmoothWithSpline implements ExtendedPlugInFilter, DialogListener
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 			
-			// peform computations on a row-by-row basis
-			for (int i = 0; i < numRecords; i++) {
+			// peform computations on ranges of records in parallel, allocating a spline workspace once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				SmoothingSpline spline = new SmoothingSpline(recordLength, 1.0, stdev, smoothingParameter);
+				for (int i = fromRecord; i < toRecord; i++) {
 				
-				// offset to current record
-				int offset = i * recordLength;
+					// smooth current record in place
+					int offset = i * recordLength;
+					spline.smooth(waveforms, offset, waveforms, offset);
 				
-				// compute interpolant coefficients
-				double[][] coeffs = WaveformUtils.smoothingSplineInterpolantUniformSpacing(waveforms, offset, offset + recordLength, stdev, 1.0, smoothingParameter);
-				
-				// copy 'a' coefficients into result array
-				for (int j=0; j<recordLength; j++) {
-					waveforms[offset + j] = (float)coeffs[0][j];
 				}
-				
-			}
+			});
 			
 		}
 
@@ -186,19 +182,17 @@ public class SmoothWithSpline implements ExtendedPlugInFilter, DialogListener
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 			
-			// peform computations on a row-by-row basis
-			for (int i = 0; i < numRecords; i++) {
-				
-				// offset to current record
-				int offset = i * recordLength;
+			// peform computations on ranges of records in parallel, allocating a spline workspace once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				SmoothingSpline spline = new SmoothingSpline(recordLength, 1.0, stdev, smoothingParameter);
+				for (int i = fromRecord; i < toRecord; i++) {
 				
-				// compute interpolant coefficients
-				double[][] coeffs = WaveformUtils.smoothingSplineInterpolantUniformSpacing(waveforms, offset, offset + recordLength, stdev, 1.0, smoothingParameter);
+					// smooth current record in place
+					int offset = i * recordLength;
+					spline.smooth(waveforms, offset, waveforms, offset);
 				
-				// copy 'a' coefficients into result array
-				System.arraycopy(coeffs[0], 0, waveforms, offset, recordLength);
-				
-			}
+				}
+			});
 			
 		}
 
@@ -0,0 +1,339 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.Arrays;
+
+/**
+ * Workspace for computing the smoothing spline of a series of records of equal
+ * length and uniform spacing, using the method described by Reinsch in
+ * Numerische Mathematik 10, 177-183 (1967). The work arrays of the algorithm
+ * are allocated once and reused for every record, and the coefficients are
+ * written into caller-supplied buffers.
+ * <p>
+ * Reinsch's algorithm finds the Lagrange multiplier {@code p} of the smoothing
+ * constraint by a Newton-like iteration that starts from zero and stops at the
+ * first multiplier for which the constraint is met. Every record is solved this
+ * way, so each record gives exactly the same result as
+ * {@link WaveformUtils#smoothingSplineInterpolantUniformSpacing(double[], int, int, double, double, double)}.
+ * </p>
+ * An instance must not be shared among threads; create one per thread, for
+ * example one for each range of records processed by
+ * {@link RecordParallelExecutor}.
+ *
+ * @author Jon N. Marsh
+ */
+public final class SmoothingSpline
+{
+	private final int n;
+	private final double dx;
+	private final double standardDeviation;
+	private final double smoothingParameter;
+
+	// multiplier found for the most recent record, or zero
+	private double lastP;
+
+	// Reinsch work arrays; elements that the algorithm never writes stay zero
+	private final double[] d;
+	private final double[] r;
+	private final double[] r1;
+	private final double[] r2;
+	private final double[] u;
+	private final double[] v;
+
+	/**
+	 * Creates a workspace for records of {@code n} points.
+	 *
+	 * @param n                  number of points in each record; must be at
+	 *                           least {@code 2}
+	 * @param dx                 inter-element spacing
+	 * @param standardDeviation  standard deviation of the noisy parts of the
+	 *                           records
+	 * @param smoothingParameter positive value set to {@code 0} for no
+	 *                           smoothing, {@code 1.0} for "typical" smoothing;
+	 *                           negative value will result in zero values for
+	 *                           all interpolant coefficients
+	 * @throws IllegalArgumentException if {@code n<2}
+	 */
+	public SmoothingSpline(int n, double dx, double standardDeviation, double smoothingParameter)
+	{
+		if (n < 2) {
+			throw new IllegalArgumentException("a smoothing spline requires at least two points");
+		}
+		this.n = n;
+		this.dx = dx;
+		this.standardDeviation = standardDeviation;
+		this.smoothingParameter = smoothingParameter;
+		d = new double[n];
+		r = new double[n + 2];
+		r1 = new double[n + 2];
+		r2 = new double[n + 2];
+		u = new double[n + 2];
+		v = new double[n + 2];
+	}
+
+	/**
+	 * Returns the number of points in each record.
+	 *
+	 * @return number of points
+	 */
+	public int getLength()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns the Lagrange multiplier found for the most recent record, or
+	 * zero if no record has been smoothed since this workspace was created.
+	 *
+	 * @return Lagrange multiplier of the most recent record
+	 */
+	public double getLagrangeMultiplier()
+	{
+		return lastP;
+	}
+
+	/**
+	 * Computes the spline coefficients of the {@code n} values of {@code y[]}
+	 * starting at index {@code from}, and writes them to elements
+	 * {@code offset} through {@code offset+n-1} of each row of
+	 * {@code coeffs}. Row {@code 0} receives the smoothed values, and rows
+	 * {@code 1}, {@code 2}, and {@code 3} receive the first, second, and third
+	 * order polynomial coefficients, as returned by
+	 * {@link WaveformUtils#smoothingSplineInterpolantUniformSpacing(double[], int, int, double, double, double)}.
+	 *
+	 * @param y      input values
+	 * @param from   index of first value in {@code y[]}
+	 * @param coeffs array with four rows, each of length at least
+	 *               {@code offset+n}
+	 * @param offset index at which to write the coefficients of the first
+	 *               point
+	 */
+	public void solve(double[] y, int from, double[][] coeffs, int offset)
+	{
+		if (smoothingParameter == 0.0) {
+			UniformCubicSpline.getInstance(n, dx).solve(y, from, coeffs, offset);
+			return;
+		}
+		if (smoothingParameter < 0.0) {
+			clear(coeffs, offset);
+			return;
+		}
+		differences(y, from);
+		double p = iterate();
+		for (int i = 0; i < n; i++) {
+			coeffs[0][offset + i] = y[from + i] - p * v[i + 1];
+		}
+		finish(coeffs, offset);
+	}
+
+	/**
+	 * Computes the spline coefficients of the {@code n} values of {@code y[]}
+	 * starting at index {@code from}, as described in
+	 * {@link #solve(double[], int, double[][], int) solve}.
+	 *
+	 * @param y      input values
+	 * @param from   index of first value in {@code y[]}
+	 * @param coeffs array with four rows, each of length at least
+	 *               {@code offset+n}
+	 * @param offset index at which to write the coefficients of the first
+	 *               point
+	 */
+	public void solve(float[] y, int from, double[][] coeffs, int offset)
+	{
+		if (smoothingParameter == 0.0) {
+			UniformCubicSpline.getInstance(n, dx).solve(y, from, coeffs, offset);
+			return;
+		}
+		if (smoothingParameter < 0.0) {
+			clear(coeffs, offset);
+			return;
+		}
+		differences(y, from);
+		double p = iterate();
+		for (int i = 0; i < n; i++) {
+			coeffs[0][offset + i] = y[from + i] - p * v[i + 1];
+		}
+		finish(coeffs, offset);
+	}
+
+	/**
+	 * Computes the smoothed values of the {@code n} values of {@code y[]}
+	 * starting at index {@code from}, and writes them to elements
+	 * {@code offset} through {@code offset+n-1} of {@code result}. The
+	 * polynomial coefficients are not computed. {@code result} may be the same
+	 * array as {@code y}, with the same offset, to smooth a record in place.
+	 *
+	 * @param y      input values
+	 * @param from   index of first value in {@code y[]}
+	 * @param result output array, of length at least {@code offset+n}
+	 * @param offset index at which to write the first smoothed value
+	 */
+	public void smooth(double[] y, int from, double[] result, int offset)
+	{
+		if (smoothingParameter == 0.0) {
+			System.arraycopy(y, from, result, offset, n);
+			return;
+		}
+		if (smoothingParameter < 0.0) {
+			Arrays.fill(result, offset, offset + n, 0.0);
+			return;
+		}
+		differences(y, from);
+		double p = iterate();
+		for (int i = 0; i < n; i++) {
+			result[offset + i] = y[from + i] - p * v[i + 1];
+		}
+	}
+
+	/**
+	 * Computes the smoothed values of the {@code n} values of {@code y[]}
+	 * starting at index {@code from}, as described in
+	 * {@link #smooth(double[], int, double[], int) smooth}. Internal
+	 * computations are performed with double precision.
+	 *
+	 * @param y      input values
+	 * @param from   index of first value in {@code y[]}
+	 * @param result output array, of length at least {@code offset+n}
+	 * @param offset index at which to write the first smoothed value
+	 */
+	public void smooth(float[] y, int from, float[] result, int offset)
+	{
+		if (smoothingParameter == 0.0) {
+			System.arraycopy(y, from, result, offset, n);
+			return;
+		}
+		if (smoothingParameter < 0.0) {
+			Arrays.fill(result, offset, offset + n, 0.0f);
+			return;
+		}
+		differences(y, from);
+		double p = iterate();
+		for (int i = 0; i < n; i++) {
+			result[offset + i] = (float)(y[from + i] - p * v[i + 1]);
+		}
+	}
+
+	// Second differences of the input, stored in d[]
+	private void differences(double[] y, int from)
+	{
+		double dxInverse = 1.0 / dx;
+		double f = (y[from + 1] - y[from]) * dxInverse;
+		for (int i = 0; i < n - 2; i++) {
+			double e = f;
+			f = (y[from + i + 2] - y[from + i + 1]) * dxInverse;
+			d[i] = f - e;
+		}
+	}
+
+	// Second differences of float input, with the first differences taken in single precision as in WaveformUtils
+	private void differences(float[] y, int from)
+	{
+		double dxInverse = 1.0 / dx;
+		double f = (y[from + 1] - y[from]) * dxInverse;
+		for (int i = 0; i < n - 2; i++) {
+			double e = f;
+			f = (y[from + i + 2] - y[from + i + 1]) * dxInverse;
+			d[i] = f - e;
+		}
+	}
+
+	// Reinsch iteration on the second differences in d[], leaving the second
+	// order coefficients in u[1..n] and the scaled residuals in v[1..n];
+	// returns the Lagrange multiplier
+	private double iterate()
+	{
+		int i;
+		double e, f, f2, g, h, p;
+		double s = smoothingParameter * n;
+		double dxInverse = 1.0 / dx;
+		double dyOverDx = standardDeviation * dxInverse;
+		double dd = dyOverDx * dyOverDx;
+		double cc = -4.0 * dd;
+		double bb = 6.0 * dd;
+		double t1 = dx / 3.0;
+		double t = 4.0 * t1;
+		double variance = standardDeviation * standardDeviation;
+
+		f2 = -s;
+		f = g = 0.0;
+		h = dx;
+		p = 0.0;
+
+		for (;;) {
+			for (i = 2; i < n; i++) {
+				r1[i - 1] = f * r[i - 1];
+				r2[i - 2] = g * r[i - 2];
+				r[i] = 1.0 / (p * bb + t - f * r1[i - 1] - g * r2[i - 2]);
+				u[i] = d[i - 2] - r1[i - 1] * u[i - 1] - r2[i - 2] * u[i - 2];
+				f = p * cc + t1 - h * r1[i - 1];
+				g = h;
+				h = dd * p;
+			}
+			for (i = n - 1; i > 1; i--) {
+				u[i] = r[i] * u[i] - r1[i] * u[i + 1] - r2[i] * u[i + 2];
+			}
+			e = 0.0;
+			h = 0.0;
+			for (i = 1; i < n; i++) {
+				g = h;
+				h = (u[i + 1] - u[i]) * dxInverse;
+				v[i] = (h - g) * variance;
+				e += v[i] * (h - g);
+			}
+			g = v[n] = -h * variance;
+			e -= g * h;
+			g = f2;
+			f2 = e * p * p;
+
+			if (f2 >= s || f2 <= g) {
+				break;
+			}
+
+			f = 0.0;
+			h = (v[2] - v[1]) * dxInverse;
+			for (i = 2; i < n; i++) {
+				g = h;
+				h = (v[i + 1] - v[i]) * dxInverse;
+				g = h - g - r1[i - 1] * r[i - 1] - r2[i - 2] * r[i - 2];
+				f += g * r[i] * g;
+				r[i] = g;
+			}
+			h = e - p * f;
+
+			if (h <= 0.0) {
+				break;
+			}
+
+			p += (s - f2) / ((Math.sqrt(s / e) + p) * h);
+		}
+
+		lastP = p;
+		return p;
+	}
+
+	// Fills in the second, third, and first order coefficients from u[] and the smoothed values
+	private void finish(double[][] coeffs, int offset)
+	{
+		final double[] c0 = coeffs[0];
+		final double[] c1 = coeffs[1];
+		final double[] c2 = coeffs[2];
+		final double[] c3 = coeffs[3];
+		double dxInverse = 1.0 / dx;
+		for (int i = 0; i < n; i++) {
+			c2[offset + i] = u[i + 1];
+		}
+		for (int i = 0; i < n - 1; i++) {
+			c3[offset + i] = (c2[offset + i + 1] - c2[offset + i]) / (3.0 * dx);
+			c1[offset + i] = (c0[offset + i + 1] - c0[offset + i]) * dxInverse - (dx * c3[offset + i] + c2[offset + i]) * dx;
+		}
+		c1[offset + n - 1] = 0.0;
+		c3[offset + n - 1] = 0.0;
+	}
+
+	private void clear(double[][] coeffs, int offset)
+	{
+		for (double[] row : coeffs) {
+			Arrays.fill(row, offset, offset + n, 0.0);
+		}
+	}
+
+}
@@ -158,27 +158,25 @@ public class SmoothingSplineResize implements ExtendedPlugInFilter, DialogListen
 		// initialize output array
 		float[] interpolatedWaveforms = new float[numRecords * interpolatedRecordLength];
 
-		// peform computations on a row-by-row basis
-		for (int i = 0; i < numRecords; i++) {
+		// peform computations on ranges of records in parallel, allocating a spline workspace once per range
+		double dx = ((double)(recordLength - 1)) / ((double)(interpolatedRecordLength - 1));
+		RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+			SmoothingSpline spline = new SmoothingSpline(recordLength, 1.0, stdev, smoothingParameter);
+			double[][] coeffs = new double[4][recordLength];
+			for (int i = fromRecord; i < toRecord; i++) {
 
-			// offset to current record
-			int offset1 = i * recordLength;
-			int offset2 = i * interpolatedRecordLength;
+				// offset to current record
+				int offset1 = i * recordLength;
+				int offset2 = i * interpolatedRecordLength;
 
-			// compute interpolant coefficients
-			double[][] coeffs = WaveformUtils.smoothingSplineInterpolantUniformSpacing(waveforms, offset1, offset1 + recordLength, stdev, 1.0, smoothingParameter);
+				// compute interpolant coefficients
+				spline.solve(waveforms, offset1, coeffs, 0);
 
-			// compute interpolated values for the rest of this row
-			double dx = ((double)(recordLength - 1)) / ((double)(interpolatedRecordLength - 1));
+				// compute interpolated values for the rest of this row
+				WaveformUtils.cubicSplineValuesUniformGrid(coeffs, 0, recordLength, 1.0, dx, interpolatedWaveforms, offset2, interpolatedRecordLength);
 
-			for (int j = 0; j < interpolatedRecordLength; j++) {
-				double xx = j * dx;
-				int k = (int)Math.floor(xx);
-				double h = xx - k;
-				interpolatedWaveforms[offset2 + j] = (float)(coeffs[0][k] + h * (coeffs[1][k] + h * (coeffs[2][k] + h * coeffs[3][k])));
 			}
-
-		}
+		});
 
 		return interpolatedWaveforms;
 	}
@@ -228,27 +226,25 @@ public class SmoothingSplineResize implements ExtendedPlugInFilter, DialogListen
 		// initialize output array
 		double[] interpolatedWaveforms = new double[numRecords * interpolatedRecordLength];
 
-		// peform computations on a row-by-row basis
-		for (int i = 0; i < numRecords; i++) {
+		// peform computations on ranges of records in parallel, allocating a spline workspace once per range
+		double dx = ((double)(recordLength - 1)) / ((double)(interpolatedRecordLength - 1));
+		RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+			SmoothingSpline spline = new SmoothingSpline(recordLength, 1.0, stdev, smoothingParameter);
+			double[][] coeffs = new double[4][recordLength];
+			for (int i = fromRecord; i < toRecord; i++) {
 
-			// offset to current record
-			int offset1 = i * recordLength;
-			int offset2 = i * interpolatedRecordLength;
+				// offset to current record
+				int offset1 = i * recordLength;
+				int offset2 = i * interpolatedRecordLength;
 
-			// compute interpolant coefficients
-			double[][] coeffs = WaveformUtils.smoothingSplineInterpolantUniformSpacing(waveforms, offset1, offset1 + recordLength, stdev, 1.0, smoothingParameter);
+				// compute interpolant coefficients
+				spline.solve(waveforms, offset1, coeffs, 0);
 
-			// compute interpolated values for the rest of this row
-			double dx = ((double)(recordLength - 1)) / ((double)(interpolatedRecordLength - 1));
+				// compute interpolated values for the rest of this row
+				WaveformUtils.cubicSplineValuesUniformGrid(coeffs, 0, recordLength, 1.0, dx, interpolatedWaveforms, offset2, interpolatedRecordLength);
 
-			for (int j = 0; j < interpolatedRecordLength; j++) {
-				double xx = j * dx;
-				int k = (int)Math.floor(xx);
-				double h = xx - k;
-				interpolatedWaveforms[offset2 + j] = (coeffs[0][k] + h * (coeffs[1][k] + h * (coeffs[2][k] + h * coeffs[3][k])));
 			}
-
-		}
+		});
 
 		return interpolatedWaveforms;
 	}
@@ -7,12 +7,9 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.awt.TextField;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import java.util.Arrays;
 
 /**
  * Computes the (positive) frequency at which the power spectrum is maximum for
@@ -43,6 +40,8 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
 	private static int windowChoice = WaveformUtils.WindowType.RECTANGLE.ordinal();
 	private static double windowParameter = 0.5;
 	private static TextField windowParameterTextField;
+	private static final String[] paddingTypes = WaveformUtils.PaddingType.stringValues();
+	private static int paddingChoice = WaveformUtils.PaddingType.POWER_OF_2.ordinal();
     private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + FINAL_PROCESSING;
 	
 	@Override
@@ -86,6 +85,7 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
 		gd.addNumericField("Window parameter", windowParameter, 4);
 		windowParameterTextField = (TextField)(gd.getNumericFields().get(1));
 		windowParameterTextField.setEnabled(WaveformUtils.WindowType.values()[windowChoice].usesParameter());
+		gd.addChoice("Pad records to", paddingTypes, paddingTypes[paddingChoice]);
 		gd.addDialogListener(this);
 		
         gd.showDialog();
@@ -102,6 +102,7 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
 		deltaT = gd.getNextNumber();
 		windowChoice = gd.getNextChoiceIndex();
 		windowParameter = gd.getNextNumber();
+		paddingChoice = gd.getNextChoiceIndex();
 
 		windowParameterTextField.setEnabled(WaveformUtils.WindowType.values()[windowChoice].usesParameter());
 		
@@ -113,9 +114,8 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
     {
         int currentSlice = pfr.getSliceNumber();
         float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		double[] spectralMaxValues = execute(pixelsDouble, width, deltaT, WaveformUtils.WindowType.values()[windowChoice], windowParameter);
+		double[] spectralMaxValues = execute(pixels, width, deltaT, WaveformUtils.WindowType.values()[windowChoice], windowParameter, WaveformUtils.PaddingType.values()[paddingChoice]);
 		for (int i=0; i<height; i++) {
 			resultPixels[i*resultWidth+(currentSlice-1)] = (float)spectralMaxValues[i];
 		}
@@ -146,6 +146,31 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
 	 *
 	 */
 	public static double[] execute(double[] waveforms, int recordLength, double deltaT, WaveformUtils.WindowType windowType, double windowParameter)
+	{
+		return execute(waveforms, recordLength, deltaT, windowType, windowParameter, WaveformUtils.PaddingType.POWER_OF_2);
+	}
+	
+	/**
+	 * Returns an array representing the value at which the power spectrum is
+	 * largest for each record in {@code waveforms}, as described in
+	 * {@link #execute(double[], int, double, WaveformUtils.WindowType, double) execute},
+	 * except that input waveforms are zero-padded to the length determined by
+	 * {@code paddingType}. Note that the frequency resolution of the power
+	 * spectrum is determined by the padded length.
+	 *
+	 * @param waveforms       one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param deltaT          sampling interval
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 * @param paddingType     method of choosing padded record length
+	 * @return array of frequency values at which power spectrum is largest for
+	 *         each input waveform
+	 */
+	public static double[] execute(double[] waveforms, int recordLength, double deltaT, WaveformUtils.WindowType windowType, double windowParameter, WaveformUtils.PaddingType paddingType)
 	{
 		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length%recordLength == 0) {
 			
@@ -156,7 +181,7 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
 			double[] spectralMaxValues = new double[numRecords];
 			
 			// determine padded record length
-			int paddedLength = recordLength + WaveformUtils.amountToPadToNextPowerOf2(recordLength);
+			int paddedLength = paddingType.paddedLength(recordLength);
 			
 			// generate window function values
 			double[] window = WaveformUtils.windowFunction(windowType, recordLength, windowParameter, false);
@@ -164,39 +189,147 @@ public class SpectralMaximum implements ExtendedPlugInFilter, DialogListener
 			// compute frequency spacing
 			double deltaF = 1.0/(paddedLength*deltaT);
 			
-			// loop over all records
-			for (int i=0; i<numRecords; i++) {
+			// obtain FFT plan once for all records
+			FFTPlan plan = FFTPlan.getPlan(paddedLength);
+
+			// process ranges of records in parallel, allocating temporary padded array once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] a = new double[paddedLength];
+			
+
+				for (int i=fromRecord; i<toRecord; i++) {
 				
-				// compute row offset
-				int offset = i*recordLength;
+					// compute row offset
+					int offset = i*recordLength;
 				
-				// initialize temporary arrays
-				double[] realPadded = new double[paddedLength];
-				double[] imagPadded = new double[paddedLength];
-				for (int j=0; j<recordLength; j++) {
-					realPadded[j] = waveforms[offset+j]*window[j];
-				}
+					// copy windowed record into temporary padded array, and reset padded portion to zero
+					for (int j=0; j<recordLength; j++) {
+						a[j] = waveforms[offset+j]*window[j];
+					}
+					Arrays.fill(a, recordLength, paddedLength, 0.0);
 				
-				// compute FFT
-//				WaveformUtils.fftComplexPowerOf2(realPadded, imagPadded, true);
-				FastFourierTransformer.transformInPlace(new double[][]{realPadded, imagPadded}, DftNormalization.STANDARD, TransformType.FORWARD);
+					// compute real-input FFT; spectrum is returned in packed format
+					plan.realTransform(a, true);
 				
-				// find frequency of the power spectrum max value
-				double magSqrd = realPadded[i]*realPadded[0] + imagPadded[i]*imagPadded[0];
-				double freq = 0.0;
-				double maxValue = magSqrd;
-				double maxFreq = freq;
-				for (int j=1; j<(paddedLength/2)+1; j++) {
-					magSqrd = realPadded[j]*realPadded[j] + imagPadded[j]*imagPadded[j];
-					freq += deltaF;
-					if (magSqrd > maxValue) {
-						maxValue = magSqrd;
-						maxFreq = freq;
+					// find frequency of the power spectrum max value
+					double magSqrd = a[0]*a[0];
+					double freq = 0.0;
+					double maxValue = magSqrd;
+					double maxFreq = freq;
+					for (int j=1; j<(paddedLength+1)/2; j++) {
+						magSqrd = a[2*j-1]*a[2*j-1] + a[2*j]*a[2*j];
+						freq += deltaF;
+						if (magSqrd > maxValue) {
+							maxValue = magSqrd;
+							maxFreq = freq;
+						}
 					}
+					if (paddedLength%2 == 0) {
+						magSqrd = a[paddedLength-1]*a[paddedLength-1];
+						freq += deltaF;
+						if (magSqrd > maxValue) {
+							maxValue = magSqrd;
+							maxFreq = freq;
+						}
+					}
+					spectralMaxValues[i] = maxFreq;
+
 				}
-				spectralMaxValues[i] = maxFreq;
+			});
+			
+			return spectralMaxValues;
+				
+		}
+		
+		return null;
+	}
+
+	/**
+	 * Returns an array representing the value at which the power spectrum is
+	 * largest for each record in {@code waveforms}, as described in
+	 * {@link #execute(double[], int, double, WaveformUtils.WindowType, double) execute},
+	 * except that input waveforms are zero-padded to the length determined by
+	 * {@code paddingType}. Note that the frequency resolution of the power
+	 * spectrum is determined by the padded length.
+	 *
+	 * @param waveforms       one-dimensional array composed of a series of
+	 *                        concatenated records, each of size equal to
+	 *                        {@code recordLength}
+	 * @param recordLength    size of each record in {@code waveforms}
+	 * @param deltaT          sampling interval
+	 * @param windowType      window function
+	 * @param windowParameter used only for window functions that require it,
+	 *                        ignored otherwise
+	 * @param paddingType     method of choosing padded record length
+	 * @return array of frequency values at which power spectrum is largest for
+	 *         each input waveform
+	 */
+	public static double[] execute(float[] waveforms, int recordLength, double deltaT, WaveformUtils.WindowType windowType, double windowParameter, WaveformUtils.PaddingType paddingType)
+	{
+		if (waveforms != null && recordLength > 0 && waveforms.length >= recordLength && waveforms.length%recordLength == 0) {
+			
+			// compute number of records
+			int numRecords = waveforms.length/recordLength;
+			
+			// allocate output array
+			double[] spectralMaxValues = new double[numRecords];
+			
+			// determine padded record length
+			int paddedLength = paddingType.paddedLength(recordLength);
+			
+			// generate window function values
+			double[] window = WaveformUtils.windowFunction(windowType, recordLength, windowParameter, false);
+			
+			// compute frequency spacing
+			double deltaF = 1.0/(paddedLength*deltaT);
+			
+			// obtain FFT plan once for all records
+			FFTPlan plan = FFTPlan.getPlan(paddedLength);
+
+			// process ranges of records in parallel, allocating temporary padded array once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] a = new double[paddedLength];
+			
 
-			}
+				for (int i=fromRecord; i<toRecord; i++) {
+				
+					// compute row offset
+					int offset = i*recordLength;
+				
+					// copy windowed record into temporary padded array, and reset padded portion to zero
+					for (int j=0; j<recordLength; j++) {
+						a[j] = waveforms[offset+j]*window[j];
+					}
+					Arrays.fill(a, recordLength, paddedLength, 0.0);
+				
+					// compute real-input FFT; spectrum is returned in packed format
+					plan.realTransform(a, true);
+				
+					// find frequency of the power spectrum max value
+					double magSqrd = a[0]*a[0];
+					double freq = 0.0;
+					double maxValue = magSqrd;
+					double maxFreq = freq;
+					for (int j=1; j<(paddedLength+1)/2; j++) {
+						magSqrd = a[2*j-1]*a[2*j-1] + a[2*j]*a[2*j];
+						freq += deltaF;
+						if (magSqrd > maxValue) {
+							maxValue = magSqrd;
+							maxFreq = freq;
+						}
+					}
+					if (paddedLength%2 == 0) {
+						magSqrd = a[paddedLength-1]*a[paddedLength-1];
+						freq += deltaF;
+						if (magSqrd > maxValue) {
+							maxValue = magSqrd;
+							maxFreq = freq;
+						}
+					}
+					spectralMaxValues[i] = maxFreq;
+
+				}
+			});
 			
 			return spectralMaxValues;
 				
@@ -7,9 +7,7 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
-import java.util.Arrays;
 
 /**
  * Subtracts the specified quantity of each waveform in an image from every 
@@ -75,13 +73,8 @@ public class SubtractFromWaveform implements ExtendedPlugInFilter, DialogListene
 	public void run(ImageProcessor ip) 
 	{
 		float[] pixels = (float[])ip.getPixels();
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		execute(pixelsDouble, width, operationChoice);
-		
-		for (int i=0; i<pixels.length; i++) {
-			pixels[i] = (float)pixelsDouble[i];
-		}
+		execute(pixels, width, operationChoice);
 	}
 	
 	public static final void execute(double[] waveforms, int recordLength, int operation)
@@ -110,14 +103,16 @@ public class SubtractFromWaveform implements ExtendedPlugInFilter, DialogListene
 				}
 
 				case MEDIAN: {
+					// temporary array for selection, reused for all records
+					double[] temp = new double[recordLength];
+
 					for (int i = 0; i < numRecords; i++) {
 
 						// offset to current record
 						int offset = i * recordLength;
 
 						// compute median for current record
-						double[] temp = Arrays.copyOfRange(waveforms, offset, offset + recordLength);
-						double median = WaveformUtils.medianAndSort(temp);
+						double median = WaveformUtils.median(waveforms, offset, offset + recordLength, temp);
 
 						// subtract mean from current record in place
 						WaveformUtils.addScalarInPlace(waveforms, offset, offset + recordLength, -median);
@@ -170,6 +165,121 @@ public class SubtractFromWaveform implements ExtendedPlugInFilter, DialogListene
 
 	}
 
+	/**
+	 * Subtracts the specified quantity of each record in {@code waveforms}
+	 * from every element in the record, in place. The quantities to subtract
+	 * are computed with double-precision accumulators, so results are the same
+	 * as those of {@link #execute(double[], int, int) execute} applied to a
+	 * double-precision copy of {@code waveforms}, without requiring such a
+	 * copy. No action is performed if {@code waveforms} is {@code null},
+	 * {@code recordLength<=0}, {@code waveforms.length<recordLength}, or
+	 * {@code waveforms.length} is not evenly divisible by
+	 * {@code recordLength}.
+	 *
+	 * @param waveforms    one-dimensional array composed of a series of
+	 *                     concatenated records, each of size equal to
+	 *                     {@code recordLength}
+	 * @param recordLength size of each record in {@code waveforms}
+	 * @param operation    {@code MEAN}, {@code MEDIAN}, or
+	 *                     {@code LINEAR_FIT}
+	 */
+	public static final void execute(float[] waveforms, int recordLength, int operation)
+	{
+		if (waveforms != null && waveforms.length >= recordLength && recordLength > 0 && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			switch (operation) {
+
+				case MEAN: {
+					for (int i = 0; i < numRecords; i++) {
+
+						// offset to current record
+						int offset = i * recordLength;
+
+						// compute mean for current record
+						double sum = 0.0;
+						for (int j = 0; j < recordLength; j++) {
+							sum += waveforms[offset + j];
+						}
+						double mean = sum / recordLength;
+
+						// subtract mean from current record in place
+						for (int j = 0; j < recordLength; j++) {
+							waveforms[offset + j] = (float)(waveforms[offset + j] - mean);
+						}
+					}
+
+					break;
+				}
+
+				case MEDIAN: {
+					// temporary array for selection, reused for all records
+					float[] temp = new float[recordLength];
+
+					for (int i = 0; i < numRecords; i++) {
+
+						// offset to current record
+						int offset = i * recordLength;
+
+						// compute median for current record
+						System.arraycopy(waveforms, offset, temp, 0, recordLength);
+						double median = WaveformUtils.medianInPlace(temp, 0, recordLength);
+
+						// subtract median from current record in place
+						for (int j = 0; j < recordLength; j++) {
+							waveforms[offset + j] = (float)(waveforms[offset + j] - median);
+						}
+					}
+
+					break;
+				}
+
+				case LINEAR_FIT: {
+					// precompute global parameters for linear fit
+					double n = (double) recordLength;
+					double sumX = 0.5 * n * (n - 1.0);
+					double sumXsumX = sumX * sumX;
+					double sumXX = sumX * (2.0 * n - 1.0) / 3.0;
+
+					for (int i = 0; i < numRecords; i++) {
+
+						// offset to current record
+						int offset = i * recordLength;
+
+						// compute linear fit parameters for current record
+						double sumY = 0.0;
+						double sumXY = 0.0;
+						for (int j = 0; j < recordLength; j++) {
+							sumY += waveforms[offset + j];
+							sumXY += j * (double)waveforms[offset + j];
+						}
+						double slope = (n * sumXY - sumX * sumY) / (n * sumXX - sumXsumX);
+						double intercept = (sumY - slope * sumX) / n;
+
+						// subtract linear fit from current record in place
+						double value = intercept;
+						for (int j = 0; j < recordLength; j++) {
+							waveforms[offset + j] = (float)(waveforms[offset + j] - value);
+							value += slope;
+						}
+
+					}
+
+					break;
+				}
+
+				default: {
+					break;
+				}
+				
+			}
+
+		}
+
+	}
+
 	@Override
 	public void setNPasses(int nPasses) {}
 }
@@ -0,0 +1,247 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factorization of the tridiagonal system that determines the natural cubic
+ * spline through {@code n} uniformly spaced points. The system depends only on
+ * the number of points and their spacing, so it is factored once and the
+ * factorization is used to compute the spline coefficients of any number of
+ * records of the same length, writing the coefficients into caller-supplied
+ * buffers. Instances are immutable and may be shared among threads; use
+ * {@link #getInstance(int, double) getInstance} to obtain a cached instance.
+ * <p>
+ * The coefficients are identical to those computed by
+ * {@link WaveformUtils#cubicSplineInterpolantUniformSpacing(double[], int, int, double)},
+ * using the algorithm described in R.L. Burden, J.D. Faires, <u>Numerical
+ * Analysis</u>, 4th Ed., 1989, PWS-Kent, ISBN 0-53491-585-X, pp 126-131.
+ * </p>
+ *
+ * @author Jon N. Marsh
+ */
+public final class UniformCubicSpline
+{
+	// maximum number of cached factorizations; the cache is cleared when it is full
+	private static final int MAX_CACHE_SIZE = 64;
+	private static final ConcurrentHashMap<Key, UniformCubicSpline> cache = new ConcurrentHashMap<>();
+
+	private final int n;
+	private final double dx;
+
+	// elimination multipliers and pivots of the forward sweep
+	private final double[] mu;
+	private final double[] g;
+
+	/**
+	 * Creates the factorization for {@code n} points with spacing {@code dx}.
+	 *
+	 * @param n  number of points; must be at least {@code 2}
+	 * @param dx interelement spacing
+	 * @throws IllegalArgumentException if {@code n<2}
+	 */
+	public UniformCubicSpline(int n, double dx)
+	{
+		if (n < 2) {
+			throw new IllegalArgumentException("a cubic spline requires at least two points");
+		}
+		this.n = n;
+		this.dx = dx;
+		mu = new double[n - 1];
+		g = new double[n - 1];
+		for (int i = 1; i < n - 1; i++) {
+			g[i] = dx * (4.0 - mu[i - 1]);
+			mu[i] = dx / g[i];
+		}
+	}
+
+	/**
+	 * Returns a factorization for {@code n} points with spacing {@code dx},
+	 * from a cache shared by all threads.
+	 *
+	 * @param n  number of points; must be at least {@code 2}
+	 * @param dx interelement spacing
+	 * @return factorization for the given length and spacing
+	 * @throws IllegalArgumentException if {@code n<2}
+	 */
+	public static UniformCubicSpline getInstance(int n, double dx)
+	{
+		Key key = new Key(n, dx);
+		UniformCubicSpline spline = cache.get(key);
+		if (spline == null) {
+			spline = new UniformCubicSpline(n, dx);
+			if (cache.size() >= MAX_CACHE_SIZE) {
+				cache.clear();
+			}
+			cache.putIfAbsent(key, spline);
+		}
+		return spline;
+	}
+
+	/**
+	 * Returns the number of points.
+	 *
+	 * @return number of points
+	 */
+	public int getLength()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns the interelement spacing.
+	 *
+	 * @return interelement spacing
+	 */
+	public double getSpacing()
+	{
+		return dx;
+	}
+
+	/**
+	 * Computes the spline coefficients of the {@code n} values of {@code y[]}
+	 * starting at index {@code from}, and writes them to elements
+	 * {@code offset} through {@code offset+n-1} of each row of
+	 * {@code coeffs}. Row {@code 0} receives a copy of the values, and rows
+	 * {@code 1}, {@code 2}, and {@code 3} receive the first, second, and third
+	 * order polynomial coefficients.
+	 *
+	 * @param y      input values
+	 * @param from   index of first value in {@code y[]}
+	 * @param coeffs array with four rows, each of length at least
+	 *               {@code offset+n}
+	 * @param offset index at which to write the coefficients of the first
+	 *               point
+	 */
+	public void solve(double[] y, int from, double[][] coeffs, int offset)
+	{
+		final double[] c0 = coeffs[0];
+		final double[] c1 = coeffs[1];
+		final double[] c2 = coeffs[2];
+		final double[] c3 = coeffs[3];
+
+		// forward sweep, storing intermediate values in the second order coefficients
+		c2[offset] = 0.0;
+		for (int i = 1; i < n - 1; i++) {
+			c2[offset + i] = (3.0 * (y[from + i + 1] - 2.0 * y[from + i] + y[from + i - 1]) / dx - dx * c2[offset + i - 1]) / g[i];
+		}
+		c2[offset + n - 1] = 0.0;
+
+		// back substitution
+		for (int j = n - 2; j >= 0; j--) {
+			c2[offset + j] -= mu[j] * c2[offset + j + 1];
+			c1[offset + j] = (y[from + j + 1] - y[from + j]) / dx - dx * (c2[offset + j + 1] + 2.0 * c2[offset + j]) / 3.0;
+			c3[offset + j] = (c2[offset + j + 1] - c2[offset + j]) / 3.0 * dx;
+		}
+		c1[offset + n - 1] = 0.0;
+		c3[offset + n - 1] = 0.0;
+		System.arraycopy(y, from, c0, offset, n);
+	}
+
+	/**
+	 * Computes the spline coefficients of the {@code n} values of {@code y[]}
+	 * starting at index {@code from}, as described in
+	 * {@link #solve(double[], int, double[][], int) solve}.
+	 *
+	 * @param y      input values
+	 * @param from   index of first value in {@code y[]}
+	 * @param coeffs array with four rows, each of length at least
+	 *               {@code offset+n}
+	 * @param offset index at which to write the coefficients of the first
+	 *               point
+	 */
+	public void solve(float[] y, int from, double[][] coeffs, int offset)
+	{
+		final double[] c0 = coeffs[0];
+		final double[] c1 = coeffs[1];
+		final double[] c2 = coeffs[2];
+		final double[] c3 = coeffs[3];
+
+		// forward sweep, storing intermediate values in the second order coefficients
+		c2[offset] = 0.0;
+		for (int i = 1; i < n - 1; i++) {
+			c2[offset + i] = (3.0 * (y[from + i + 1] - 2.0 * y[from + i] + y[from + i - 1]) / dx - dx * c2[offset + i - 1]) / g[i];
+		}
+		c2[offset + n - 1] = 0.0;
+
+		// back substitution
+		for (int j = n - 2; j >= 0; j--) {
+			c2[offset + j] -= mu[j] * c2[offset + j + 1];
+			c1[offset + j] = (y[from + j + 1] - y[from + j]) / dx - dx * (c2[offset + j + 1] + 2.0 * c2[offset + j]) / 3.0;
+			c3[offset + j] = (c2[offset + j + 1] - c2[offset + j]) / 3.0 * dx;
+		}
+		c1[offset + n - 1] = 0.0;
+		c3[offset + n - 1] = 0.0;
+		for (int j = 0; j < n; j++) {
+			c0[offset + j] = y[from + j];
+		}
+	}
+
+	/**
+	 * Computes the spline coefficients of records {@code fromRecord}
+	 * (inclusive) to {@code toRecord} (exclusive) of {@code waveforms}, a
+	 * series of concatenated records of length {@code n}. The coefficients of
+	 * record {@code fromRecord+k} are written to elements {@code k*n} through
+	 * {@code (k+1)*n-1} of each row of {@code coeffs}, as described in
+	 * {@link #solve(double[], int, double[][], int) solve}.
+	 *
+	 * @param waveforms  concatenated records, each of length {@code n}
+	 * @param fromRecord index of first record, inclusive
+	 * @param toRecord   index of last record, exclusive
+	 * @param coeffs     array with four rows, each of length at least
+	 *                   {@code (toRecord-fromRecord)*n}
+	 */
+	public void solve(double[] waveforms, int fromRecord, int toRecord, double[][] coeffs)
+	{
+		for (int i = fromRecord; i < toRecord; i++) {
+			solve(waveforms, i * n, coeffs, (i - fromRecord) * n);
+		}
+	}
+
+	/**
+	 * Computes the spline coefficients of records {@code fromRecord}
+	 * (inclusive) to {@code toRecord} (exclusive) of {@code waveforms}, as
+	 * described in {@link #solve(double[], int, int, double[][]) solve}.
+	 *
+	 * @param waveforms  concatenated records, each of length {@code n}
+	 * @param fromRecord index of first record, inclusive
+	 * @param toRecord   index of last record, exclusive
+	 * @param coeffs     array with four rows, each of length at least
+	 *                   {@code (toRecord-fromRecord)*n}
+	 */
+	public void solve(float[] waveforms, int fromRecord, int toRecord, double[][] coeffs)
+	{
+		for (int i = fromRecord; i < toRecord; i++) {
+			solve(waveforms, i * n, coeffs, (i - fromRecord) * n);
+		}
+	}
+
+	// Cache key combining number of points and exact spacing
+	private static final class Key
+	{
+		private final int n;
+		private final long dxBits;
+
+		Key(int n, double dx)
+		{
+			this.n = n;
+			this.dxBits = Double.doubleToLongBits(dx);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)o;
+			return n == other.n && dxBits == other.dxBits;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * n + (int)(dxBits ^ (dxBits >>> 32));
+		}
+	}
+
+}
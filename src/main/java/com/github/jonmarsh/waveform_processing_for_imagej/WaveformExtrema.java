@@ -11,6 +11,7 @@ import ij.process.ImageProcessor;
 import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Computes the positions and values of the extrema in each input waveform and
@@ -140,17 +141,15 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[]) ip.getPixels();	// CONVERT_TO_FLOAT flag is set, so this always works
-		double[] pixelsDouble = Tools.toDouble(pixels);
 
-		SignalExtrema[] results = execute(pixelsDouble, width, interpolationChoice);
+		ExtremaTable results = executeCompact(pixels, width, interpolationChoice);
 
 		if (outputMaximaPositions) {
 			float[] maxPositionPixels = (float[])(maxPositionStack.getProcessor(currentSlice).getPixels());
 			for (int i = 0; i < height; i++) {
 				int offset = i * width;
-				ArrayList<WaveformPoint> maxList = results[i].maximaList;
-				for (int j = 0; j < maxList.size(); j++) {
-					maxPositionPixels[offset + j] = (float) (maxList.get(j).getFullIndex());
+				for (int k = results.maximaOffsets[i]; k < results.maximaOffsets[i + 1]; k++) {
+					maxPositionPixels[offset + k - results.maximaOffsets[i]] = (float) (results.maximaBaseIndices[k] + results.maximaFractionalIndices[k]);
 				}
 			}
 		}
@@ -158,9 +157,8 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 			float[] maxValuePixels = (float[])(maxValueStack.getProcessor(currentSlice).getPixels());
 			for (int i = 0; i < height; i++) {
 				int offset = i * width;
-				ArrayList<WaveformPoint> maxList = results[i].maximaList;
-				for (int j = 0; j < maxList.size(); j++) {
-					maxValuePixels[offset + j] = (float) (maxList.get(j).getValue());
+				for (int k = results.maximaOffsets[i]; k < results.maximaOffsets[i + 1]; k++) {
+					maxValuePixels[offset + k - results.maximaOffsets[i]] = (float) (results.maximaValues[k]);
 				}
 			}
 		}
@@ -168,9 +166,8 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 			float[] minPositionPixels = (float[])(minPositionStack.getProcessor(currentSlice).getPixels());
 			for (int i = 0; i < height; i++) {
 				int offset = i * width;
-				ArrayList<WaveformPoint> minList = results[i].minimaList;
-				for (int j = 0; j < minList.size(); j++) {
-					minPositionPixels[offset + j] = (float) (minList.get(j).getFullIndex());
+				for (int k = results.minimaOffsets[i]; k < results.minimaOffsets[i + 1]; k++) {
+					minPositionPixels[offset + k - results.minimaOffsets[i]] = (float) (results.minimaBaseIndices[k] + results.minimaFractionalIndices[k]);
 				}
 			}
 		}
@@ -178,9 +175,8 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 			float[] minValuePixels = (float[])(minValueStack.getProcessor(currentSlice).getPixels());
 			for (int i = 0; i < height; i++) {
 				int offset = i * width;
-				ArrayList<WaveformPoint> minList = results[i].minimaList;
-				for (int j = 0; j < minList.size(); j++) {
-					minValuePixels[offset + j] = (float) (minList.get(j).getValue());
+				for (int k = results.minimaOffsets[i]; k < results.minimaOffsets[i + 1]; k++) {
+					minValuePixels[offset + k - results.minimaOffsets[i]] = (float) (results.minimaValues[k]);
 				}
 			}
 		}
@@ -208,83 +204,385 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 	 *         {@code recordLength}.
 	 */
 	public static SignalExtrema[] execute(double[] waveforms, int recordLength, int interpolationMethod)
-	{	
+	{
+		ExtremaTable table = executeCompact(waveforms, recordLength, interpolationMethod);
+		return (table != null) ? table.toSignalExtrema() : null;
+	}
+
+	/**
+	 * Computes the positions and values of extrema (both maxima and minima) in
+	 * each record in {@code waveforms}, where each record has
+	 * {@code recordLength} elements, and returns them in an
+	 * {@link ExtremaTable}, which holds the extrema of all records in a few
+	 * primitive arrays rather than as one object per extremum.
+	 *
+	 * @param waveforms           one-dimensional array composed of a series of
+	 *                            concatenated records, each of size equal to
+	 *                            {@code recordLength}
+	 * @param recordLength        size of each record in {@code waveforms}
+	 * @param interpolationMethod {@link #NONE} for no interpolation or
+	 *                            {@link #CUBIC_SPLINE} for natural cubic spline
+	 *                            interpolation between points in a waveform
+	 * @return extrema positions and values of all records. Output is null if
+	 *         {@code waveforms==null}, {@code recordLength<=3},
+	 *         {@code waveforms.length<recordLength}, or if
+	 *         {@code waveforms.length} is not evenly divisible by
+	 *         {@code recordLength}.
+	 */
+	public static ExtremaTable executeCompact(double[] waveforms, int recordLength, int interpolationMethod)
+	{
 		if (waveforms != null && recordLength > 3 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
 
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 
-			// allocate output array of extrema data
-			SignalExtrema[] extrema = new SignalExtrema[numRecords];
+			// allocate output table and workspace, reused for all records
+			ExtremaTable table = new ExtremaTable(numRecords, recordLength);
+			ExtremaFinder finder = new ExtremaFinder(recordLength, interpolationMethod);
 
 			// loop over all records
 			for (int i = 0; i < numRecords; i++) {
+				finder.find(waveforms, i * recordLength, table);
+			}
+
+			return table;
+
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the positions and values of extrema (both maxima and minima) in
+	 * each record in {@code waveforms}, as described in
+	 * {@link #executeCompact(double[], int, int) executeCompact}.
+	 *
+	 * @param waveforms           one-dimensional array composed of a series of
+	 *                            concatenated records, each of size equal to
+	 *                            {@code recordLength}
+	 * @param recordLength        size of each record in {@code waveforms}
+	 * @param interpolationMethod {@link #NONE} for no interpolation or
+	 *                            {@link #CUBIC_SPLINE} for natural cubic spline
+	 *                            interpolation between points in a waveform
+	 * @return extrema positions and values of all records. Output is null if
+	 *         {@code waveforms==null}, {@code recordLength<=3},
+	 *         {@code waveforms.length<recordLength}, or if
+	 *         {@code waveforms.length} is not evenly divisible by
+	 *         {@code recordLength}.
+	 */
+	public static ExtremaTable executeCompact(float[] waveforms, int recordLength, int interpolationMethod)
+	{
+		if (waveforms != null && recordLength > 3 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output table and workspace, reused for all records
+			ExtremaTable table = new ExtremaTable(numRecords, recordLength);
+			ExtremaFinder finder = new ExtremaFinder(recordLength, interpolationMethod);
+			double[] record = new double[recordLength];
 
-				// compute row offset
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
 				int offset = i * recordLength;
+				for (int j = 0; j < recordLength; j++) {
+					record[j] = waveforms[offset + j];
+				}
+				finder.find(record, 0, table);
+			}
 
-				// initialize lists to hold extrema data
-				ArrayList<WaveformPoint> maximaList = new ArrayList<>();
-				ArrayList<WaveformPoint> minimaList = new ArrayList<>();
-
-				switch (interpolationMethod) {
-
-					case NONE: {
-						double yl = waveforms[offset];
-						double ym = waveforms[offset + 1];
-						for (int j = 1; j < recordLength - 1; j++) {
-							double yr = waveforms[offset + j + 1];
-							if (yl < ym && yr <= ym) {
-								maximaList.add(new WaveformPoint(j, 0.0, ym));
-							} else if (yl > ym && yr >= ym) {
-								minimaList.add(new WaveformPoint(j, 0.0, ym));
-							}
-							yl = ym;
-							ym = yr;
+			return table;
+
+		}
+
+		return null;
+	}
+
+	// Finds the extrema of one record at a time, using workspace allocated once for all records
+	private static final class ExtremaFinder
+	{
+		private final int recordLength;
+		private final int interpolationMethod;
+		private final UniformCubicSpline spline;
+		private final double[][] splineCoeffs;
+		private final double[] roots = new double[2];
+
+		ExtremaFinder(int recordLength, int interpolationMethod)
+		{
+			this.recordLength = recordLength;
+			this.interpolationMethod = interpolationMethod;
+			spline = (interpolationMethod == CUBIC_SPLINE) ? UniformCubicSpline.getInstance(recordLength, 1.0) : null;
+			splineCoeffs = (interpolationMethod == CUBIC_SPLINE) ? new double[4][recordLength] : null;
+		}
+
+		// Appends extrema of the record starting at waveforms[offset] to the table
+		void find(double[] waveforms, int offset, ExtremaTable table)
+		{
+			switch (interpolationMethod) {
+
+				case NONE: {
+					double yl = waveforms[offset];
+					double ym = waveforms[offset + 1];
+					for (int j = 1; j < recordLength - 1; j++) {
+						double yr = waveforms[offset + j + 1];
+						if (yl < ym && yr <= ym) {
+							table.addMaximum(j, 0.0, ym);
+						} else if (yl > ym && yr >= ym) {
+							table.addMinimum(j, 0.0, ym);
 						}
-						break;
+						yl = ym;
+						ym = yr;
 					}
+					break;
+				}
 
-					case CUBIC_SPLINE: {
-						// get spline coefficients for this waveform
-						double[][] splineCoeffs = WaveformUtils.cubicSplineInterpolantUniformSpacing(waveforms, offset, offset + recordLength, 1.0);
-						// loop over intervals between knots
-						for (int j = 0; j < recordLength - 1; j++) {
-							// determine roots of derivative in this interval
-							double[] r = WaveformUtils.quadraticRoots(3.0 * splineCoeffs[3][j], 2.0 * splineCoeffs[2][j], splineCoeffs[1][j]);
-							if (r.length > 0) {
-								for (int k = 0; k < r.length; k++) {
-									// make sure root lies within this interval
-									if (r[k] >= 0 && j + r[k] < j + 1) {
-										// determine curvature of function
-										double curvature = 2.0 * splineCoeffs[2][j] + r[k] * 6.0 * splineCoeffs[3][j];
-										if (curvature < 0.0) {
-											maximaList.add(new WaveformPoint(j, r[k], splineCoeffs[0][j] + r[k] * (splineCoeffs[1][j] + r[k] * (splineCoeffs[2][j] + r[k] * splineCoeffs[3][j]))));
-										} else {
-											minimaList.add(new WaveformPoint(j, r[k], splineCoeffs[0][j] + r[k] * (splineCoeffs[1][j] + r[k] * (splineCoeffs[2][j] + r[k] * splineCoeffs[3][j]))));
-										}
-									}
+				case CUBIC_SPLINE: {
+					// get spline coefficients for this waveform
+					spline.solve(waveforms, offset, splineCoeffs, 0);
+					final double[] c0 = splineCoeffs[0];
+					final double[] c1 = splineCoeffs[1];
+					final double[] c2 = splineCoeffs[2];
+					final double[] c3 = splineCoeffs[3];
+					// loop over intervals between knots
+					for (int j = 0; j < recordLength - 1; j++) {
+						// determine roots of derivative in this interval
+						int numRoots = WaveformUtils.quadraticRoots(3.0 * c3[j], 2.0 * c2[j], c1[j], roots);
+						for (int k = 0; k < numRoots; k++) {
+							double r = roots[k];
+							// make sure root lies within this interval
+							if (r >= 0 && j + r < j + 1) {
+								// determine curvature of function
+								double curvature = 2.0 * c2[j] + r * 6.0 * c3[j];
+								double value = c0[j] + r * (c1[j] + r * (c2[j] + r * c3[j]));
+								if (curvature < 0.0) {
+									table.addMaximum(j, r, value);
+								} else {
+									table.addMinimum(j, r, value);
 								}
 							}
 						}
-						break;
-					}
-
-					default: {
-						break;
 					}
+					break;
+				}
 
+				default: {
+					break;
 				}
 
-				extrema[i] = new SignalExtrema(maximaList, minimaList);
+			}
+
+			table.endRecord();
+		}
+	}
+
+	/**
+	 * Positions and values of the local extrema of a series of records, stored
+	 * in compressed-row form: the maxima of record {@code i} occupy elements
+	 * {@code maximaOffsets[i]} (inclusive) through {@code maximaOffsets[i+1]}
+	 * (exclusive) of the arrays {@code maximaBaseIndices},
+	 * {@code maximaFractionalIndices}, and {@code maximaValues}, in order of
+	 * occurrence, and likewise for the minima. As in {@link WaveformPoint},
+	 * each position is split into an integer base index and a fractional index
+	 * between {@code 0} (inclusive) and {@code 1.0} (exclusive), so as to
+	 * preserve the numerical precision of the extrema locations. The arrays
+	 * holding positions and values may be longer than the total number of
+	 * extrema; elements beyond {@code maximaOffsets[numRecords]} are unused.
+	 */
+	public static final class ExtremaTable
+	{
+		private final int numRecords;
+		private int currentRecord;
+		private final int[] maximaOffsets;
+		private final int[] minimaOffsets;
+		private int[] maximaBaseIndices, minimaBaseIndices;
+		private double[] maximaFractionalIndices, minimaFractionalIndices;
+		private double[] maximaValues, minimaValues;
+		private int numMaxima, numMinima;
+
+		ExtremaTable(int numRecords, int recordLength)
+		{
+			this.numRecords = numRecords;
+			maximaOffsets = new int[numRecords + 1];
+			minimaOffsets = new int[numRecords + 1];
+
+			// initial capacity; arrays grow as needed
+			int capacity = Math.max(numRecords * Math.min(recordLength / 2, 16), 16);
+			maximaBaseIndices = new int[capacity];
+			maximaFractionalIndices = new double[capacity];
+			maximaValues = new double[capacity];
+			minimaBaseIndices = new int[capacity];
+			minimaFractionalIndices = new double[capacity];
+			minimaValues = new double[capacity];
+		}
+
+		void addMaximum(int baseIndex, double fractionalIndex, double value)
+		{
+			if (numMaxima == maximaValues.length) {
+				int capacity = 2 * numMaxima;
+				maximaBaseIndices = Arrays.copyOf(maximaBaseIndices, capacity);
+				maximaFractionalIndices = Arrays.copyOf(maximaFractionalIndices, capacity);
+				maximaValues = Arrays.copyOf(maximaValues, capacity);
+			}
+			maximaBaseIndices[numMaxima] = baseIndex;
+			maximaFractionalIndices[numMaxima] = fractionalIndex;
+			maximaValues[numMaxima++] = value;
+		}
 
+		void addMinimum(int baseIndex, double fractionalIndex, double value)
+		{
+			if (numMinima == minimaValues.length) {
+				int capacity = 2 * numMinima;
+				minimaBaseIndices = Arrays.copyOf(minimaBaseIndices, capacity);
+				minimaFractionalIndices = Arrays.copyOf(minimaFractionalIndices, capacity);
+				minimaValues = Arrays.copyOf(minimaValues, capacity);
 			}
+			minimaBaseIndices[numMinima] = baseIndex;
+			minimaFractionalIndices[numMinima] = fractionalIndex;
+			minimaValues[numMinima++] = value;
+		}
 
+		// Marks the end of the extrema of the current record
+		void endRecord()
+		{
+			currentRecord++;
+			maximaOffsets[currentRecord] = numMaxima;
+			minimaOffsets[currentRecord] = numMinima;
+		}
+
+		/**
+		 * Returns the number of records.
+		 *
+		 * @return number of records
+		 */
+		public int getNumRecords()
+		{
+			return numRecords;
+		}
+
+		/**
+		 * Returns the offsets of the maxima of each record; the maxima of
+		 * record {@code i} have indices {@code maximaOffsets[i]} (inclusive)
+		 * to {@code maximaOffsets[i+1]} (exclusive). The returned array is not
+		 * a copy.
+		 *
+		 * @return array of {@code numRecords+1} offsets
+		 */
+		public int[] getMaximaOffsets()
+		{
+			return maximaOffsets;
+		}
+
+		/**
+		 * Returns the integer parts of the positions of the maxima of all
+		 * records. The returned array is not a copy.
+		 *
+		 * @return base indices of maxima
+		 */
+		public int[] getMaximaBaseIndices()
+		{
+			return maximaBaseIndices;
+		}
+
+		/**
+		 * Returns the fractional parts of the positions of the maxima of all
+		 * records. The returned array is not a copy.
+		 *
+		 * @return fractional indices of maxima
+		 */
+		public double[] getMaximaFractionalIndices()
+		{
+			return maximaFractionalIndices;
+		}
+
+		/**
+		 * Returns the values of the maxima of all records. The returned array
+		 * is not a copy.
+		 *
+		 * @return values of maxima
+		 */
+		public double[] getMaximaValues()
+		{
+			return maximaValues;
+		}
+
+		/**
+		 * Returns the offsets of the minima of each record; the minima of
+		 * record {@code i} have indices {@code minimaOffsets[i]} (inclusive)
+		 * to {@code minimaOffsets[i+1]} (exclusive). The returned array is not
+		 * a copy.
+		 *
+		 * @return array of {@code numRecords+1} offsets
+		 */
+		public int[] getMinimaOffsets()
+		{
+			return minimaOffsets;
+		}
+
+		/**
+		 * Returns the integer parts of the positions of the minima of all
+		 * records. The returned array is not a copy.
+		 *
+		 * @return base indices of minima
+		 */
+		public int[] getMinimaBaseIndices()
+		{
+			return minimaBaseIndices;
+		}
+
+		/**
+		 * Returns the fractional parts of the positions of the minima of all
+		 * records. The returned array is not a copy.
+		 *
+		 * @return fractional indices of minima
+		 */
+		public double[] getMinimaFractionalIndices()
+		{
+			return minimaFractionalIndices;
+		}
+
+		/**
+		 * Returns the values of the minima of all records. The returned array
+		 * is not a copy.
+		 *
+		 * @return values of minima
+		 */
+		public double[] getMinimaValues()
+		{
+			return minimaValues;
+		}
+
+		/**
+		 * Returns a {@link SignalExtrema} view of each record. The lists of
+		 * {@link WaveformPoint}s of a view are created only if requested.
+		 *
+		 * @return array of extrema of each record
+		 */
+		public SignalExtrema[] toSignalExtrema()
+		{
+			SignalExtrema[] extrema = new SignalExtrema[numRecords];
+			for (int i = 0; i < numRecords; i++) {
+				extrema[i] = new SignalExtrema(this, i);
+			}
 			return extrema;
+		}
 
+		private static ArrayList<WaveformPoint> toList(int[] offsets, int[] baseIndices, double[] fractionalIndices, double[] values, int record)
+		{
+			ArrayList<WaveformPoint> list = new ArrayList<>(offsets[record + 1] - offsets[record]);
+			for (int k = offsets[record]; k < offsets[record + 1]; k++) {
+				list.add(new WaveformPoint(baseIndices[k], fractionalIndices[k], values[k]));
+			}
+			return list;
 		}
 
-		return null;
+		private static double[] fullIndices(int[] offsets, int[] baseIndices, double[] fractionalIndices, int record)
+		{
+			double[] output = new double[offsets[record + 1] - offsets[record]];
+			for (int k = 0; k < output.length; k++) {
+				output[k] = baseIndices[offsets[record] + k] + fractionalIndices[offsets[record] + k];
+			}
+			return output;
+		}
 	}
 
 	/**
@@ -292,20 +590,25 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 	 * extrema of a single waveform. Minima and maxima positions are each stored
 	 * as an {@link java.util.ArrayList} of {@link WaveformPoint}s so as to
 	 * preserve the numerical precision of the extrema locations. These
-	 * positions should be listed in order of occurrence.
+	 * positions should be listed in order of occurrence. Instances returned by
+	 * {@link #execute(double[], int, int) execute} are views of one record of
+	 * an {@link ExtremaTable}, whose lists are created when first requested.
 	 */
 	public static final class SignalExtrema
 	{
 		private ArrayList<WaveformPoint> maximaList;
 		private ArrayList<WaveformPoint> minimaList;
 
+		// source of extrema for views of an ExtremaTable, or null
+		private final ExtremaTable table;
+		private final int record;
+
 		/**
 		 * Initializes empty lists of waveform extrema positions and values.
 		 */
 		public SignalExtrema()
 		{
-			maximaList = new ArrayList<>();
-			minimaList = new ArrayList<>();
+			this(new ArrayList<>(), new ArrayList<>());
 		}
 
 		/**
@@ -342,10 +645,22 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 		{
 			this.maximaList = maximaList;
 			this.minimaList = minimaList;
+			this.table = null;
+			this.record = 0;
+		}
+
+		// Creates a view of the extrema of one record of a table
+		SignalExtrema(ExtremaTable table, int record)
+		{
+			this.table = table;
+			this.record = record;
 		}
 
 		public ArrayList<WaveformPoint> getMaxima()
 		{
+			if (maximaList == null) {
+				maximaList = ExtremaTable.toList(table.maximaOffsets, table.maximaBaseIndices, table.maximaFractionalIndices, table.maximaValues, record);
+			}
 			return maximaList;
 		}
 
@@ -356,6 +671,9 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 
 		public ArrayList<WaveformPoint> getMinima()
 		{
+			if (minimaList == null) {
+				minimaList = ExtremaTable.toList(table.minimaOffsets, table.minimaBaseIndices, table.minimaFractionalIndices, table.minimaValues, record);
+			}
 			return minimaList;
 		}
 
@@ -366,6 +684,9 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 
 		public double[] getMaximaPositionsAsPrimitiveDoubleArray()
 		{
+			if (maximaList == null) {
+				return ExtremaTable.fullIndices(table.maximaOffsets, table.maximaBaseIndices, table.maximaFractionalIndices, record);
+			}
 			double[] output = new double[maximaList.size()];
 			for (int i = 0; i < maximaList.size(); i++) {
 				output[i] = maximaList.get(i).getFullIndex();
@@ -375,6 +696,9 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 
 		public double[] getMaximaValuesAsPrimitiveDoubleArray()
 		{
+			if (maximaList == null) {
+				return Arrays.copyOfRange(table.maximaValues, table.maximaOffsets[record], table.maximaOffsets[record + 1]);
+			}
 			double[] output = new double[maximaList.size()];
 			for (int i = 0; i < maximaList.size(); i++) {
 				output[i] = maximaList.get(i).getValue();
@@ -384,6 +708,9 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 
 		public double[] getMinimaPositionsAsPrimitiveDoubleArray()
 		{
+			if (minimaList == null) {
+				return ExtremaTable.fullIndices(table.minimaOffsets, table.minimaBaseIndices, table.minimaFractionalIndices, record);
+			}
 			double[] output = new double[minimaList.size()];
 			for (int i = 0; i < minimaList.size(); i++) {
 				output[i] = minimaList.get(i).getFullIndex();
@@ -393,6 +720,9 @@ public class WaveformExtrema implements ExtendedPlugInFilter, DialogListener
 
 		public double[] getMinimaValuesAsPrimitiveDoubleArray()
 		{
+			if (minimaList == null) {
+				return Arrays.copyOfRange(table.minimaValues, table.minimaOffsets[record], table.minimaOffsets[record + 1]);
+			}
 			double[] output = new double[minimaList.size()];
 			for (int i = 0; i < minimaList.size(); i++) {
 				output[i] = minimaList.get(i).getValue();
@@ -0,0 +1,444 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.gui.DialogListener;
+import ij.gui.GenericDialog;
+import ij.plugin.filter.ExtendedPlugInFilter;
+import ij.plugin.filter.PlugInFilterRunner;
+import ij.process.ImageProcessor;
+import java.awt.AWTEvent;
+
+/**
+ * Computes a selected set of statistics of each input waveform in a single
+ * pass over each waveform, and returns the results in a new image with one
+ * slice per statistic. Each row in the input image is assumed to represent a
+ * single waveform. The value of a statistic for the {@code i}<SUP>th</SUP>
+ * waveform (row) and {@code j}<SUP>th</SUP> slice is displayed in the
+ * {@code i}<SUP>th</SUP> row and {@code j}<SUP>th</SUP> column of the
+ * corresponding slice of the output image. The statistics are the same as those
+ * computed separately by {@link MeanValue}, {@link Variance},
+ * {@link Skewness}, {@link Kurtosis}, {@link MinimumValue},
+ * {@link MaximumValue}, {@link MinimumIndex}, {@link MaximumIndex},
+ * {@link Range}, {@link SumOfSquares}, and {@link ZeroCrossingCount}.
+ * <p>
+ * Central moments are updated as each point is read, using the numerically
+ * stable algorithm for computing higher order statistical moments described by
+ * <a href="http://people.xiph.org/~tterribe/notes/homs.html">Timothy B.
+ * Terriberry (2007)</a>, and only up to the highest order required by the
+ * selected statistics.
+ * <p>
+ * @author Jon N. Marsh
+ */
+public class WaveformStatistics implements ExtendedPlugInFilter, DialogListener
+{
+	/**
+	 * Statistics that can be computed
+	 */
+	public static enum Statistic
+	{
+		MEAN("Mean"),
+		VARIANCE("Variance"),
+		SKEWNESS("Skewness"),
+		KURTOSIS("Kurtosis"),
+		MINIMUM("Minimum value"),
+		MAXIMUM("Maximum value"),
+		MINIMUM_INDEX("Minimum position"),
+		MAXIMUM_INDEX("Maximum position"),
+		RANGE("Range"),
+		SUM_OF_SQUARES("Sum of squared values"),
+		ZERO_CROSSING_COUNT("Zero crossing count");
+
+		private final String stringValue;
+
+		private Statistic(String stringValue)
+		{
+			this.stringValue = stringValue;
+		}
+
+		/**
+		 * Static method for retrieving array of nicely formatted names of all
+		 * elements.
+		 *
+		 * @return array of nicely formatted name strings of all statistics in
+		 *         the enumeration
+		 */
+		public static String[] stringValues()
+		{
+			Statistic[] v = Statistic.values();
+			String[] s = new String[v.length];
+
+			for (int i = 0; i < v.length; i++) {
+				s[i] = v[i].toString();
+			}
+
+			return s;
+		}
+
+		/**
+		 *
+		 * @return nicely formatted {@code String} representation of the
+		 *         statistic name
+		 */
+		@Override
+		public String toString()
+		{
+			return stringValue;
+		}
+	}
+
+	private ImagePlus resultImp;
+	private ImageStack resultStack;
+	private int width, height, stackSize;
+	private String title;
+	private GenericDialog gd;
+	private static final String[] statisticLabels = Statistic.stringValues();
+	private static final String[] statisticHeading = {"Statistics"};
+	private static boolean[] selectedStatistics = new boolean[]{true, true, false, false, true, true, false, false, false, false, false};
+	private static boolean useUnbiasedEstimateOfVariance = false;
+	private static final String[] skewnessLabels = {"sample skewness", "population skewness"};
+	private static boolean isSampleSkewness = true;
+	private static Statistic[] statistics;
+	private PlugInFilterRunner pfr;
+	private final int flags = DOES_32 + DOES_STACKS + PARALLELIZE_STACKS + FINAL_PROCESSING;
+
+	@Override
+	public int setup(String arg, ImagePlus imp)
+	{
+		// perform final processing here
+		if (arg.equals("final")) {
+			if (resultImp != null) {
+				resultImp.show();
+				IJ.resetMinAndMax();
+				return DONE;
+			}
+		}
+
+		if (imp == null) {
+			IJ.noImage();
+			return DONE;
+		}
+
+		width = imp.getWidth();
+		height = imp.getHeight();
+		stackSize = imp.getStackSize();
+		title = imp.getTitle();
+
+		return flags;
+	}
+
+	@Override
+	public int showDialog(ImagePlus imp, String command, PlugInFilterRunner pfr)
+	{
+		this.pfr = pfr;
+		gd = new GenericDialog("Waveform Statistics");
+		gd.addCheckboxGroup(statisticLabels.length, 1, statisticLabels, selectedStatistics, statisticHeading);
+		gd.addCheckbox("Use unbiased estimate of variance", useUnbiasedEstimateOfVariance);
+		gd.addRadioButtonGroup("Skewness", skewnessLabels, 2, 1, skewnessLabels[isSampleSkewness ? 0 : 1]);
+		gd.addDialogListener(this);
+
+		gd.showDialog();
+		if (gd.wasCanceled() || statistics == null || statistics.length == 0 || width < minimumRecordLength(statistics)) {
+			return DONE;
+		}
+
+		// one slice per selected statistic, with one column per input slice
+		resultImp = IJ.createImage(title + " statistics", "32-bit", stackSize, height, statistics.length);
+		resultStack = resultImp.getStack();
+		for (int s = 0; s < statistics.length; s++) {
+			resultStack.setSliceLabel(statistics[s].toString(), s + 1);
+		}
+
+		return flags;
+	}
+
+	@Override
+	public boolean dialogItemChanged(GenericDialog gd, AWTEvent e)
+	{
+		int numSelected = 0;
+		for (int s = 0; s < selectedStatistics.length; s++) {
+			selectedStatistics[s] = gd.getNextBoolean();
+			if (selectedStatistics[s]) {
+				numSelected++;
+			}
+		}
+		useUnbiasedEstimateOfVariance = gd.getNextBoolean();
+		isSampleSkewness = gd.getNextRadioButton().equals(skewnessLabels[0]);
+
+		statistics = new Statistic[numSelected];
+		for (int s = 0, k = 0; s < selectedStatistics.length; s++) {
+			if (selectedStatistics[s]) {
+				statistics[k++] = Statistic.values()[s];
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public void run(ImageProcessor ip)
+	{
+		int currentSlice = pfr.getSliceNumber();
+		float[] pixels = (float[])ip.getPixels();
+
+		double[][] results = execute(pixels, width, statistics, useUnbiasedEstimateOfVariance, isSampleSkewness);
+		for (int s = 0; s < statistics.length; s++) {
+			float[] resultPixels = (float[])resultStack.getPixels(s + 1);
+			for (int i = 0; i < height; i++) {
+				resultPixels[i * stackSize + (currentSlice - 1)] = (float)results[s][i];
+			}
+		}
+	}
+
+	/**
+	 * Computes the selected statistics of each record in {@code waveforms},
+	 * where each record has {@code recordLength} elements, in a single pass
+	 * over each record. The returned array has one element per statistic, in
+	 * the order given in {@code statistics}, each of which is an array of the
+	 * values of that statistic for each record. Output is null if
+	 * {@code waveforms==null}, {@code statistics==null},
+	 * {@code waveforms.length<recordLength}, {@code waveforms.length} is not
+	 * evenly divisible by {@code recordLength}, or {@code recordLength} is less
+	 * than the minimum length required by the selected statistics (three for
+	 * skewness, two for variance, kurtosis, and zero crossing count, and one
+	 * otherwise).
+	 * <p>
+	 * @param waveforms                     one-dimensional array composed of a
+	 *                                      series of concatenated records, each
+	 *                                      of size equal to
+	 *                                      {@code recordLength}
+	 * @param recordLength                  size of each record in
+	 *                                      {@code waveforms}
+	 * @param statistics                    statistics to compute
+	 * @param useUnbiasedEstimateOfVariance if true, use {@code n-1} in the
+	 *                                      denominator of the variance;
+	 *                                      otherwise {@code n} is used
+	 * @param isSampleSkewness              set true to output sample skewness,
+	 *                                      false to output population skewness
+	 * @return array of arrays of statistic values, indexed by statistic and
+	 *         then by record
+	 */
+	public static double[][] execute(double[] waveforms, int recordLength, Statistic[] statistics, boolean useUnbiasedEstimateOfVariance, boolean isSampleSkewness)
+	{
+		if (waveforms != null && statistics != null && recordLength >= minimumRecordLength(statistics) && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output arrays
+			double[][] results = new double[statistics.length][numRecords];
+
+			// process ranges of records in parallel
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				for (int i = fromRecord; i < toRecord; i++) {
+					measure(waveforms, i * recordLength, recordLength, statistics, useUnbiasedEstimateOfVariance, isSampleSkewness, results, i);
+				}
+			});
+
+			return results;
+
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the selected statistics of each record in {@code waveforms}, as
+	 * described in
+	 * {@link #execute(double[], int, Statistic[], boolean, boolean) execute}.
+	 * Internal computations are performed on a double-precision copy of one
+	 * record at a time, so no double-precision copy of the entire input array
+	 * is required.
+	 * <p>
+	 * @param waveforms                     one-dimensional array composed of a
+	 *                                      series of concatenated records, each
+	 *                                      of size equal to
+	 *                                      {@code recordLength}
+	 * @param recordLength                  size of each record in
+	 *                                      {@code waveforms}
+	 * @param statistics                    statistics to compute
+	 * @param useUnbiasedEstimateOfVariance if true, use {@code n-1} in the
+	 *                                      denominator of the variance;
+	 *                                      otherwise {@code n} is used
+	 * @param isSampleSkewness              set true to output sample skewness,
+	 *                                      false to output population skewness
+	 * @return array of arrays of statistic values, indexed by statistic and
+	 *         then by record
+	 */
+	public static double[][] execute(float[] waveforms, int recordLength, Statistic[] statistics, boolean useUnbiasedEstimateOfVariance, boolean isSampleSkewness)
+	{
+		if (waveforms != null && statistics != null && recordLength >= minimumRecordLength(statistics) && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output arrays
+			double[][] results = new double[statistics.length][numRecords];
+
+			// process ranges of records in parallel, allocating temporary arrays once per range
+			RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+				double[] currentWaveformCopy = new double[recordLength];
+
+				for (int i = fromRecord; i < toRecord; i++) {
+
+					// compute row offset
+					int offset = i * recordLength;
+
+					// initialize double-precision copy of current waveform
+					for (int j = 0; j < recordLength; j++) {
+						currentWaveformCopy[j] = waveforms[offset + j];
+					}
+
+					measure(currentWaveformCopy, 0, recordLength, statistics, useUnbiasedEstimateOfVariance, isSampleSkewness, results, i);
+
+				}
+			});
+
+			return results;
+
+		}
+
+		return null;
+	}
+
+	// Returns the shortest record length for which all of the statistics are defined
+	private static int minimumRecordLength(Statistic[] statistics)
+	{
+		int minLength = 1;
+		for (Statistic statistic : statistics) {
+			switch (statistic) {
+				case SKEWNESS:
+					minLength = Math.max(minLength, 3);
+					break;
+				case VARIANCE:
+				case KURTOSIS:
+				case ZERO_CROSSING_COUNT:
+					minLength = Math.max(minLength, 2);
+					break;
+				default:
+			}
+		}
+		return minLength;
+	}
+
+	// Computes statistics of the record a[offset],...,a[offset+recordLength-1] in a single pass, writing the
+	// value of statistics[s] into results[s][record]
+	private static void measure(double[] a, int offset, int recordLength, Statistic[] statistics, boolean useUnbiasedEstimateOfVariance, boolean isSampleSkewness, double[][] results, int record)
+	{
+		// highest order of central moment required
+		int order = 0;
+		for (Statistic statistic : statistics) {
+			switch (statistic) {
+				case VARIANCE:
+					order = Math.max(order, 2);
+					break;
+				case SKEWNESS:
+					order = Math.max(order, 3);
+					break;
+				case KURTOSIS:
+					order = 4;
+					break;
+				default:
+			}
+		}
+
+		double sum = 0.0;
+		double sumOfSquares = 0.0;
+		double min = a[offset];
+		double max = min;
+		int minIndex = 0;
+		int maxIndex = 0;
+		int zeroCrossingCount = 0;
+		double previousValue = min;
+
+		long n = 0;
+		double mean = 0.0;
+		double m2 = 0.0;
+		double m3 = 0.0;
+		double m4 = 0.0;
+
+		for (int j = 0; j < recordLength; j++) {
+			double x = a[offset + j];
+
+			sum += x;
+			sumOfSquares += x * x;
+			if (x < min) {
+				min = x;
+				minIndex = j;
+			}
+			if (x > max) {
+				max = x;
+				maxIndex = j;
+			}
+			if (previousValue * x < 0.0) {
+				zeroCrossingCount++;
+			}
+			previousValue = x;
+
+			if (order >= 2) {
+				n++;
+				double delta = x - mean;
+				double deltaOverN = delta / n;
+				double term1 = delta * deltaOverN * (n - 1);
+				mean += deltaOverN;
+				if (order == 4) {
+					double deltaOverNSquared = deltaOverN * deltaOverN;
+					m4 += term1 * deltaOverNSquared * (n * (n - 3) + 3.0) + 6.0 * deltaOverNSquared * m2 - 4.0 * deltaOverN * m3;
+				}
+				if (order >= 3) {
+					m3 += deltaOverN * (term1 * (n - 2) - 3.0 * m2);
+				}
+				m2 += term1;
+			}
+		}
+
+		for (int s = 0; s < statistics.length; s++) {
+			double value;
+			switch (statistics[s]) {
+				case MEAN:
+					value = sum / recordLength;
+					break;
+				case VARIANCE:
+					value = m2 / (useUnbiasedEstimateOfVariance ? n - 1 : n);
+					break;
+				case SKEWNESS:
+					value = (m3 / n) / Math.pow(m2 / n, 1.5);
+					if (!isSampleSkewness) {
+						value *= Math.sqrt(n * (n - 1)) / (n - 2);
+					}
+					break;
+				case KURTOSIS:
+					value = ((n * m4) / (m2 * m2)) - 3.0;
+					break;
+				case MINIMUM:
+					value = min;
+					break;
+				case MAXIMUM:
+					value = max;
+					break;
+				case MINIMUM_INDEX:
+					value = minIndex;
+					break;
+				case MAXIMUM_INDEX:
+					value = maxIndex;
+					break;
+				case RANGE:
+					value = max - min;
+					break;
+				case SUM_OF_SQUARES:
+					value = sumOfSquares;
+					break;
+				default:
+					value = zeroCrossingCount;
+			}
+			results[s][record] = value;
+		}
+	}
+
+	@Override
+	public void setNPasses(int nPasses)
+	{
+	}
+
+}
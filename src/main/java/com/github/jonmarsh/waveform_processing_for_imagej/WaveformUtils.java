@@ -26,9 +26,6 @@ import java.util.Arrays;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 import org.apache.commons.math3.util.FastMath;
 import org.apache.commons.math3.util.MathUtils;
 
@@ -137,6 +134,79 @@ public class WaveformUtils
 
 	}
 
+	/**
+	 * Methods of choosing the padded length of records before FFT-based
+	 * processing
+	 */
+	public static enum PaddingType
+	{
+		POWER_OF_2("Next power of 2"),
+		FAST_LENGTH("Next fast length"),
+		NONE("None");
+
+		private final String stringValue;
+
+		private PaddingType(String stringValue)
+		{
+			this.stringValue = stringValue;
+		}
+
+		/**
+		 * Static method for retrieving array of nicely formatted names of all
+		 * elements.
+		 *
+		 * @return array of nicely formatted name strings of all padding types
+		 *         in the enumeration
+		 */
+		public static String[] stringValues()
+		{
+			PaddingType[] p = PaddingType.values();
+			String[] s = new String[p.length];
+
+			for (int i = 0; i < p.length; i++) {
+				s[i] = p[i].toString();
+			}
+
+			return s;
+		}
+
+		/**
+		 * Returns the length to which records of length {@code n} are padded.
+		 * {@code POWER_OF_2} pads to the next highest power of 2,
+		 * {@code FAST_LENGTH} pads to the next highest even length with no
+		 * prime factors greater than 7 (see
+		 * {@link FFTPlan#nextFastLength(int)}), and {@code NONE} leaves the
+		 * length unchanged. Note that without padding, FFT-based filtering is
+		 * circular, so the ends of each record may affect each other.
+		 *
+		 * @param n record length
+		 * @return padded record length
+		 */
+		public int paddedLength(int n)
+		{
+			switch (this) {
+				case POWER_OF_2:
+					return n + amountToPadToNextPowerOf2(n);
+				case FAST_LENGTH:
+					return FFTPlan.nextFastLength(n);
+				default:
+					return n;
+			}
+		}
+
+		/**
+		 *
+		 * @return nicely formatted {@code String} representation of the
+		 *         padding type
+		 */
+		@Override
+		public String toString()
+		{
+			return stringValue;
+		}
+
+	}
+
 	//--------------------addScalar Methods-----------------------------------//
 	/**
 	 * Adds the specified value to each element in the input array and returns
@@ -416,10 +486,12 @@ public class WaveformUtils
 	 * Computes the mean and variance of the specified range of an array and
 	 * returns the result as a two-element double array:
 	 * {@code {mean, variance}}, using a numerically stable algorithm described
-	 * by <a href="http://www.jstor.org/stable/1266577">Welford</a>. No error
-	 * checking is performed on range limits; if the values are negative or
-	 * outside the range of the array, unexpected results may occur or a runtime
-	 * exception may be thrown.
+	 * by <a href="http://www.jstor.org/stable/1266577">Welford</a>. Ranges of
+	 * at least {@code 2^20} elements are divided among several threads and
+	 * their partial results merged; see {@link Moments}. No error checking is
+	 * performed on range limits; if the values are negative or outside the
+	 * range of the array, unexpected results may occur or a runtime exception
+	 * may be thrown.
 	 *
 	 * @param a	                  input array
 	 * @param useUnbiasedEstimate set to true to return unbiased estimate of
@@ -434,6 +506,12 @@ public class WaveformUtils
 	 */
 	public static final double[] meanAndVariance(double[] a, boolean useUnbiasedEstimate, int from, int to)
 	{
+		// divide very long ranges among several threads
+		if (to - from >= Moments.PARALLEL_RECORD_LENGTH) {
+			Moments moments = Moments.compute(a, from, to);
+			return new double[]{moments.getMean(), moments.getVariance(useUnbiasedEstimate)};
+		}
+
 		long n = 0;
 		double mean = 0.0;
 		double m2 = 0.0;
@@ -471,10 +549,12 @@ public class WaveformUtils
 	 * Computes the mean and variance of the specified range of an array and
 	 * returns the result as a two-element double array:
 	 * {@code {mean, variance}}, using a numerically stable algorithm described
-	 * by <a href="http://www.jstor.org/stable/1266577">Welford</a>. No error
-	 * checking is performed on range limits; if the values are negative or
-	 * outside the range of the array, unexpected results may occur or a runtime
-	 * exception may be thrown.
+	 * by <a href="http://www.jstor.org/stable/1266577">Welford</a>. Ranges of
+	 * at least {@code 2^20} elements are divided among several threads and
+	 * their partial results merged; see {@link Moments}. No error checking is
+	 * performed on range limits; if the values are negative or outside the
+	 * range of the array, unexpected results may occur or a runtime exception
+	 * may be thrown.
 	 *
 	 * @param a	                  input array
 	 * @param useUnbiasedEstimate normalize by {@code n-1} instead of {@code n}
@@ -488,6 +568,12 @@ public class WaveformUtils
 	 */
 	public static final double[] meanAndVariance(float[] a, boolean useUnbiasedEstimate, int from, int to)
 	{
+		// divide very long ranges among several threads
+		if (to - from >= Moments.PARALLEL_RECORD_LENGTH) {
+			Moments moments = Moments.compute(a, from, to);
+			return new double[]{moments.getMean(), moments.getVariance(useUnbiasedEstimate)};
+		}
+
 		long n = 0;
 		double mean = 0.0;
 		double m2 = 0.0;
@@ -530,7 +616,9 @@ public class WaveformUtils
 	 * middle two values of the sorted array. No error checking is performed on
 	 * range limits; if the values are negative or outside the range of the
 	 * array, unexpected results may occur or a runtime exception may be thrown.
-	 * The input array is left unchanged.
+	 * The input array is left unchanged. The median is found by selection in a
+	 * copy of the range, in linear expected time; see
+	 * {@link #select(double[], int, int, int) select}.
 	 *
 	 * @param a    input array
 	 * @param from initial index of the range to compute the median, inclusive
@@ -539,24 +627,88 @@ public class WaveformUtils
 	 *         range is zero, method returns {@code NaN}
 	 */
 	public static final double median(double[] a, int from, int to)
+	{
+		if (a != null && to - from > 0) {
+			return median(a, from, to, new double[to - from]);
+		} else {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Computes the median value in the specified range of an array, as
+	 * described in {@link #median(double[], int, int) median}, using
+	 * {@code scratch} to hold a copy of the range, so that repeated calls
+	 * need not allocate memory. The input array is left unchanged.
+	 *
+	 * @param a       input array
+	 * @param from    initial index of the range to compute the median,
+	 *                inclusive
+	 * @param to      final index of the range to compute the median,
+	 *                exclusive
+	 * @param scratch array of length at least {@code to-from}, whose contents
+	 *                are overwritten
+	 * @return median value in the specified range of input array; if array
+	 *         range is zero, method returns {@code NaN}
+	 */
+	public static final double median(double[] a, int from, int to, double[] scratch)
 	{
 		if (a != null) {
 			int n = to - from;
-			if (n > 1) {
-				int halfN = n / 2;
-				final double[] temp = new double[n];
-				System.arraycopy(a, from, temp, 0, n);
-				Arrays.sort(temp);
-				if (n % 2 == 0) {
-					return (0.5 * (temp[halfN] + temp[halfN - 1]));
-				} else {
-					return temp[halfN];
+			System.arraycopy(a, from, scratch, 0, n);
+			return medianInPlace(scratch, 0, n);
+		} else {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Computes the median value in the specified range of an array, as
+	 * described in {@link #median(double[], int, int) median}, reordering the
+	 * range in place instead of copying it. As with {@link Arrays#sort},
+	 * {@code NaN} values are ordered after all other values.
+	 *
+	 * @param a    input array; the specified range is reordered in place
+	 * @param from initial index of the range to compute the median, inclusive
+	 * @param to   final index of the range to compute the median, exclusive
+	 * @return median value in the specified range of input array; if array
+	 *         range is zero, method returns {@code NaN}
+	 */
+	public static final double medianInPlace(double[] a, int from, int to)
+	{
+		int n = to - from;
+		if (n > 1) {
+			int halfN = n / 2;
+
+			// move NaN values to end of range, which is where sorting would put them
+			int end = to;
+			for (int i = to - 1; i >= from; i--) {
+				if (Double.isNaN(a[i])) {
+					double temp = a[i];
+					a[i] = a[--end];
+					a[end] = temp;
 				}
-			} else if (n == 1) {
-				return a[from];
-			} else {
+			}
+			if (from + halfN >= end) {
 				return Double.NaN;
 			}
+
+			double upper = select(a, from, end, halfN);
+			if (n % 2 == 0) {
+
+				// lower middle value is largest value preceding upper middle value after selection
+				double lower = a[from];
+				for (int i = from + 1; i < from + halfN; i++) {
+					if (a[i] > lower) {
+						lower = a[i];
+					}
+				}
+				return (0.5 * (upper + lower));
+			} else {
+				return upper;
+			}
+		} else if (n == 1) {
+			return a[from];
 		} else {
 			return Double.NaN;
 		}
@@ -620,7 +772,9 @@ public class WaveformUtils
 	 * range limits; if the values are negative or outside the range of the
 	 * array, unexpected results may occur or a runtime exception may be thrown.
 	 * The input array is left unchanged. {@code null} input returns
-	 * {@code Double.NaN}.
+	 * {@code Double.NaN}. The median is found by selection in a copy of the
+	 * range, in linear expected time; see
+	 * {@link #select(float[], int, int, int) select}.
 	 *
 	 * @param a    input array
 	 * @param from initial index of the range to compute the median, inclusive
@@ -629,26 +783,92 @@ public class WaveformUtils
 	 *         range is zero, method returns {@code NaN}
 	 */
 	public static final float median(float[] a, int from, int to)
+	{
+		if (a != null && to - from > 0) {
+			return median(a, from, to, new float[to - from]);
+		} else {
+			return Float.NaN;
+		}
+	}
+
+	/**
+	 * Computes the median value in the specified range of an array, as
+	 * described in {@link #median(float[], int, int) median}, using
+	 * {@code scratch} to hold a copy of the range, so that repeated calls
+	 * need not allocate memory. The input array is left unchanged.
+	 *
+	 * @param a       input array
+	 * @param from    initial index of the range to compute the median,
+	 *                inclusive
+	 * @param to      final index of the range to compute the median,
+	 *                exclusive
+	 * @param scratch array of length at least {@code to-from}, whose contents
+	 *                are overwritten
+	 * @return median value in the specified range of input array; if array
+	 *         range is zero, method returns {@code NaN}
+	 */
+	public static final float median(float[] a, int from, int to, float[] scratch)
 	{
 		if (a != null) {
 			int n = to - from;
-			if (n > 1) {
-				int halfN = n / 2;
-				final float[] temp = new float[n];
-				System.arraycopy(a, from, temp, 0, n);
-				Arrays.sort(temp);
-				if (n % 2 == 0) {
-					return (0.5f * (temp[halfN] + temp[halfN - 1]));
-				} else {
-					return temp[halfN];
+			System.arraycopy(a, from, scratch, 0, n);
+			return (float)medianInPlace(scratch, 0, n);
+		} else {
+			return Float.NaN;
+		}
+	}
+
+	/**
+	 * Computes the median value in the specified range of an array, as
+	 * described in {@link #median(float[], int, int) median}, reordering the
+	 * range in place instead of copying it. As with {@link Arrays#sort},
+	 * {@code NaN} values are ordered after all other values. If the range
+	 * length is even, the average of the middle two values is computed in
+	 * double precision.
+	 *
+	 * @param a    input array; the specified range is reordered in place
+	 * @param from initial index of the range to compute the median, inclusive
+	 * @param to   final index of the range to compute the median, exclusive
+	 * @return median value in the specified range of input array; if array
+	 *         range is zero, method returns {@code NaN}
+	 */
+	public static final double medianInPlace(float[] a, int from, int to)
+	{
+		int n = to - from;
+		if (n > 1) {
+			int halfN = n / 2;
+
+			// move NaN values to end of range, which is where sorting would put them
+			int end = to;
+			for (int i = to - 1; i >= from; i--) {
+				if (Float.isNaN(a[i])) {
+					float temp = a[i];
+					a[i] = a[--end];
+					a[end] = temp;
 				}
-			} else if (n == 1) {
-				return a[from];
+			}
+			if (from + halfN >= end) {
+				return Double.NaN;
+			}
+
+			float upper = select(a, from, end, halfN);
+			if (n % 2 == 0) {
+
+				// lower middle value is largest value preceding upper middle value after selection
+				float lower = a[from];
+				for (int i = from + 1; i < from + halfN; i++) {
+					if (a[i] > lower) {
+						lower = a[i];
+					}
+				}
+				return (0.5 * ((double)upper + (double)lower));
 			} else {
-				return Float.NaN;
+				return upper;
 			}
+		} else if (n == 1) {
+			return a[from];
 		} else {
-			return Float.NaN;
+			return Double.NaN;
 		}
 	}
 
@@ -684,6 +904,310 @@ public class WaveformUtils
 		}
 	}
 
+	/**
+	 * Computes the median of the unsigned 8-bit values in the specified range
+	 * of an array, from a histogram of the values, in time proportional to
+	 * the length of the range. If the range length is even, the value returned
+	 * is equal to the average of the middle two values of the sorted range.
+	 * The input array is left unchanged.
+	 *
+	 * @param a         input array of unsigned 8-bit values
+	 * @param from      initial index of the range to compute the median,
+	 *                  inclusive
+	 * @param to        final index of the range to compute the median,
+	 *                  exclusive
+	 * @param histogram array of length at least {@code 256}, whose contents
+	 *                  are overwritten, or {@code null} to allocate a new one
+	 * @return median value in the specified range of input array; if array
+	 *         range is zero, method returns {@code NaN}
+	 */
+	public static final double median(byte[] a, int from, int to, int[] histogram)
+	{
+		if (a == null || to - from <= 0) {
+			return Double.NaN;
+		}
+		if (histogram == null) {
+			histogram = new int[256];
+		}
+		Arrays.fill(histogram, 0, 256, 0);
+		for (int i = from; i < to; i++) {
+			histogram[a[i] & 0xff]++;
+		}
+		return histogramMedian(histogram, 0, to - from);
+	}
+
+	/**
+	 * Computes the median of the unsigned 16-bit values in the specified range
+	 * of an array, from a histogram of the values. The histogram spans only
+	 * the range of values present, so the time required is proportional to the
+	 * length of the range plus the difference between its maximum and minimum
+	 * values; if that difference is large compared with the length of the
+	 * range, the median is found by selection instead. If the range length is
+	 * even, the value returned is equal to the average of the middle two
+	 * values of the sorted range. The input array is left unchanged.
+	 *
+	 * @param a         input array of unsigned 16-bit values
+	 * @param from      initial index of the range to compute the median,
+	 *                  inclusive
+	 * @param to        final index of the range to compute the median,
+	 *                  exclusive
+	 * @param histogram array of length at least {@code 65536}, whose contents
+	 *                  are overwritten, or {@code null} to allocate one as
+	 *                  needed
+	 * @return median value in the specified range of input array; if array
+	 *         range is zero, method returns {@code NaN}
+	 */
+	public static final double median(short[] a, int from, int to, int[] histogram)
+	{
+		int n = to - from;
+		if (a == null || n <= 0) {
+			return Double.NaN;
+		}
+		int min = 0xffff;
+		int max = 0;
+		for (int i = from; i < to; i++) {
+			int value = a[i] & 0xffff;
+			if (value < min) {
+				min = value;
+			}
+			if (value > max) {
+				max = value;
+			}
+		}
+		int numBins = max - min + 1;
+		if (numBins > 4 * n + 256) {
+			float[] temp = new float[n];
+			for (int i = 0; i < n; i++) {
+				temp[i] = a[from + i] & 0xffff;
+			}
+			return medianInPlace(temp, 0, n);
+		}
+		if (histogram == null || histogram.length < numBins) {
+			histogram = new int[numBins];
+		} else {
+			Arrays.fill(histogram, 0, numBins, 0);
+		}
+		for (int i = from; i < to; i++) {
+			histogram[(a[i] & 0xffff) - min]++;
+		}
+		return min + histogramMedian(histogram, 0, n);
+	}
+
+	// Returns median of n values from their histogram, in units of bins relative to bin offset
+	private static double histogramMedian(int[] histogram, int offset, int n)
+	{
+		int halfN = n / 2;
+
+		// find bin containing the value of rank halfN (zero-based), i.e. the upper middle value
+		int count = 0;
+		int bin = offset;
+		while (count + histogram[bin] <= halfN) {
+			count += histogram[bin++];
+		}
+		int upper = bin - offset;
+		if (n % 2 == 1 || count < halfN) {
+
+			// lower middle value, if any, is in the same bin
+			return upper;
+		}
+
+		// lower middle value is in the nearest non-empty bin below
+		int lowerBin = bin - 1;
+		while (histogram[lowerBin] == 0) {
+			lowerBin--;
+		}
+		return 0.5 * (upper + (lowerBin - offset));
+	}
+
+	//--------------------select Methods--------------------------------------//
+	/**
+	 * Partially reorders the specified range of an array so that the element
+	 * at index {@code from+k} is the one that would be there if the range were
+	 * sorted, with no larger element before it and no smaller element after
+	 * it, and returns that element (the {@code k}<SUP>th</SUP> smallest in the
+	 * range, counting from zero). Uses the Floyd-Rivest algorithm, which
+	 * partitions around pivots chosen from a recursively selected sample and
+	 * requires linear expected time; if partitioning fails to make progress,
+	 * the remaining subrange is sorted, which bounds the worst-case time at
+	 * {@code O(n log n)}. The range must not contain {@code NaN} values. No
+	 * error checking is performed on range limits.
+	 * <p>
+	 * R. W. Floyd and R. L. Rivest, "Algorithm 489: The algorithm SELECT - for
+	 * finding the ith smallest of n elements," Communications of the ACM, 18,
+	 * 3, 173 (1975).
+	 *
+	 * @param a    input array; the specified range is reordered in place
+	 * @param from initial index of the range, inclusive
+	 * @param to   final index of the range, exclusive
+	 * @param k    rank of element to select, from {@code 0} to
+	 *             {@code to-from-1}
+	 * @return {@code k}<SUP>th</SUP> smallest element in the range
+	 */
+	public static final double select(double[] a, int from, int to, int k)
+	{
+		floydRivestSelect(a, from, to - 1, from + k, selectionBudget(to - from));
+		return a[from + k];
+	}
+
+	/**
+	 * Partially reorders the specified range of an array so that the element
+	 * at index {@code from+k} is the {@code k}<SUP>th</SUP> smallest in the
+	 * range, as described in {@link #select(double[], int, int, int) select},
+	 * and returns that element.
+	 *
+	 * @param a    input array; the specified range is reordered in place
+	 * @param from initial index of the range, inclusive
+	 * @param to   final index of the range, exclusive
+	 * @param k    rank of element to select, from {@code 0} to
+	 *             {@code to-from-1}
+	 * @return {@code k}<SUP>th</SUP> smallest element in the range
+	 */
+	public static final float select(float[] a, int from, int to, int k)
+	{
+		floydRivestSelect(a, from, to - 1, from + k, selectionBudget(to - from));
+		return a[from + k];
+	}
+
+	// Number of partitioning steps allowed before falling back to sorting
+	private static int selectionBudget(int n)
+	{
+		return 4 * (32 - Integer.numberOfLeadingZeros(Math.max(n, 1))) + 16;
+	}
+
+	// Places the k-th smallest element of a[left..right] (inclusive) at index k
+	private static void floydRivestSelect(double[] a, int left, int right, int k, int budget)
+	{
+		while (right > left) {
+			if (--budget < 0) {
+				Arrays.sort(a, left, right + 1);
+				return;
+			}
+			if (right - left > 600) {
+
+				// select from a sample, so that the pivot is close to the k-th smallest element
+				double n = right - left + 1;
+				double i = k - left + 1;
+				double z = Math.log(n);
+				double s = 0.5 * Math.exp(2.0 * z / 3.0);
+				double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * Math.signum(i - n / 2.0);
+				int newLeft = Math.max(left, (int)(k - i * s / n + sd));
+				int newRight = Math.min(right, (int)(k + (n - i) * s / n + sd));
+				floydRivestSelect(a, newLeft, newRight, k, selectionBudget(newRight - newLeft + 1));
+			}
+
+			// partition around a[k]
+			double t = a[k];
+			int i = left;
+			int j = right;
+			double temp = a[left];
+			a[left] = a[k];
+			a[k] = temp;
+			if (a[right] > t) {
+				temp = a[right];
+				a[right] = a[left];
+				a[left] = temp;
+			}
+			while (i < j) {
+				temp = a[i];
+				a[i] = a[j];
+				a[j] = temp;
+				i++;
+				j--;
+				while (a[i] < t) {
+					i++;
+				}
+				while (a[j] > t) {
+					j--;
+				}
+			}
+			if (a[left] == t) {
+				temp = a[left];
+				a[left] = a[j];
+				a[j] = temp;
+			} else {
+				j++;
+				temp = a[j];
+				a[j] = a[right];
+				a[right] = temp;
+			}
+
+			// continue in the part containing index k
+			if (j <= k) {
+				left = j + 1;
+			}
+			if (k <= j) {
+				right = j - 1;
+			}
+		}
+	}
+
+	// Places the k-th smallest element of a[left..right] (inclusive) at index k
+	private static void floydRivestSelect(float[] a, int left, int right, int k, int budget)
+	{
+		while (right > left) {
+			if (--budget < 0) {
+				Arrays.sort(a, left, right + 1);
+				return;
+			}
+			if (right - left > 600) {
+
+				// select from a sample, so that the pivot is close to the k-th smallest element
+				double n = right - left + 1;
+				double i = k - left + 1;
+				double z = Math.log(n);
+				double s = 0.5 * Math.exp(2.0 * z / 3.0);
+				double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * Math.signum(i - n / 2.0);
+				int newLeft = Math.max(left, (int)(k - i * s / n + sd));
+				int newRight = Math.min(right, (int)(k + (n - i) * s / n + sd));
+				floydRivestSelect(a, newLeft, newRight, k, selectionBudget(newRight - newLeft + 1));
+			}
+
+			// partition around a[k]
+			float t = a[k];
+			int i = left;
+			int j = right;
+			float temp = a[left];
+			a[left] = a[k];
+			a[k] = temp;
+			if (a[right] > t) {
+				temp = a[right];
+				a[right] = a[left];
+				a[left] = temp;
+			}
+			while (i < j) {
+				temp = a[i];
+				a[i] = a[j];
+				a[j] = temp;
+				i++;
+				j--;
+				while (a[i] < t) {
+					i++;
+				}
+				while (a[j] > t) {
+					j--;
+				}
+			}
+			if (a[left] == t) {
+				temp = a[left];
+				a[left] = a[j];
+				a[j] = temp;
+			} else {
+				j++;
+				temp = a[j];
+				a[j] = a[right];
+				a[right] = temp;
+			}
+
+			// continue in the part containing index k
+			if (j <= k) {
+				left = j + 1;
+			}
+			if (k <= j) {
+				right = j - 1;
+			}
+		}
+	}
+
 	//--------------------hilbertTransform Methods----------------------------//
 	/**
 	 * Computes discrete Hilbert transform of the input array (in place) using
@@ -698,34 +1222,67 @@ public class WaveformUtils
 	 */
 	public static final void fastHilbertTransformPowerOf2(double[] a, boolean isForward)
 	{
-		int n = a.length;
-		int nOver2 = n / 2;
-		double c = isForward ? 1.0 : -1.0;
+		fastHilbertTransform(a, isForward, FFTPlan.getPlan(a.length));
+	}
 
-		// create zero-valued imaginary component
-		double[] aIm = new double[n];
+	/**
+	 * Computes discrete Hilbert transform of the first
+	 * {@code plan.getLength()} elements of the input array (in place) using
+	 * FFTs with the specified plan. This avoids looking up the plan for every
+	 * call when many records of the same length are transformed. For
+	 * efficiency, no error checking is performed on the length of the input
+	 * array; if it is less than {@code plan.getLength()}, a runtime exception
+	 * may be thrown.
+	 *
+	 * @param a         input array
+	 * @param isForward true for forward Hilbert transform, false for inverse
+	 *                  Hilbert transform
+	 * @param plan      FFT plan
+	 */
+	public static final void fastHilbertTransform(double[] a, boolean isForward, FFTPlan plan)
+	{
+		int n = plan.getLength();
+		double c = isForward ? 1.0 : -1.0;
 
-		// perform FFT
-		FastFourierTransformer.transformInPlace(new double[][]{a, aIm}, DftNormalization.STANDARD, TransformType.FORWARD);
+		// perform real-input FFT; spectrum is returned in packed format
+		plan.realTransform(a, true);
 
 		// zero out DC and Nyquist components
-		a[0] = aIm[0] = a[nOver2] = aIm[nOver2] = 0.0;
-
-		// multiply positive frequency components by -I
-		for (int i = 1; i < nOver2; i++) {
-			double temp = a[i];
-			a[i] = c * aIm[i];
-			aIm[i] = -c * temp;
+		a[0] = 0.0;
+		if (n % 2 == 0) {
+			a[n - 1] = 0.0;
 		}
 
-		// multiply negative frequency components by I
-		for (int i = nOver2 + 1; i < n; i++) {
-			double temp = a[i];
-			a[i] = -c * aIm[i];
-			aIm[i] = c * temp;
+		// multiply positive frequency components by -I (negative frequency
+		// components are implied by Hermitian symmetry)
+		for (int i = 1; i < (n + 1) / 2; i++) {
+			double temp = a[2 * i - 1];
+			a[2 * i - 1] = c * a[2 * i];
+			a[2 * i] = -c * temp;
 		}
 
-		FastFourierTransformer.transformInPlace(new double[][]{a, aIm}, DftNormalization.STANDARD, TransformType.INVERSE);
+		plan.realTransform(a, false);
+	}
+
+	//--------------------realFFT Methods-------------------------------------//
+	/**
+	 * Computes the discrete Fourier transform of a real-valued input array (or
+	 * its inverse) in place, using a transform of half the length. The input
+	 * array length <b>must</b> be equal to a power of 2, otherwise a runtime
+	 * exception may be thrown. The spectrum is stored in the packed format
+	 * described in {@link FFTPlan#realTransform(double[], boolean)}. When many
+	 * records of the same length are to be transformed, it is more efficient
+	 * to obtain the {@link FFTPlan} once and use it directly.
+	 *
+	 * @param a         input array; real-valued samples for forward transform,
+	 *                  packed spectrum for inverse transform
+	 * @param isForward true for forward transform, false for inverse transform
+	 */
+	public static final void fastRealFFTPowerOf2(double[] a, boolean isForward)
+	{
+		if (a.length > 1) {
+			FFTPlan.getPlan(a.length).realTransform(a, isForward);
+		}
 	}
 
 	/**
@@ -1011,18 +1568,26 @@ public class WaveformUtils
 		int n = to - from;
 
 		double[] re = Arrays.copyOfRange(a, from, to);
-		if (filterCoefficients.length != n) {
+		if (filterCoefficients.length != n || n == 0) {
 			return re;
 		}
 
-		double[] im = new double[n];
-
-		FastFourierTransformer.transformInPlace(new double[][]{re, im}, DftNormalization.STANDARD, TransformType.FORWARD);
-		for (int i = 0; i < n; i++) {
-			re[i] *= filterCoefficients[i];
-			im[i] *= filterCoefficients[i];
+		// because input is real-valued, only the real part of the filtered
+		// result is kept, which is equivalent to filtering with the symmetric
+		// part of the filter coefficients; this allows the use of a real-input
+		// FFT with packed spectrum
+		FFTPlan plan = FFTPlan.getPlan(n);
+		plan.realTransform(re, true);
+		re[0] *= filterCoefficients[0];
+		for (int i = 1; i < (n + 1) / 2; i++) {
+			double c = 0.5 * (filterCoefficients[i] + filterCoefficients[n - i]);
+			re[2 * i - 1] *= c;
+			re[2 * i] *= c;
+		}
+		if (n % 2 == 0) {
+			re[n - 1] *= filterCoefficients[n / 2];
 		}
-		FastFourierTransformer.transformInPlace(new double[][]{re, im}, DftNormalization.STANDARD, TransformType.INVERSE);
+		plan.realTransform(re, false);
 
 		return re;
 	}
@@ -1325,7 +1890,10 @@ public class WaveformUtils
 	 * <p>
 	 * The cubic spline interpolation algorithm implemented is as described in
 	 * R.L. Burden, J.D. Faires, <u>Numerical Analysis</u>, 4th Ed., 1989,
-	 * PWS-Kent, ISBN 0-53491-585-X, pp 126-131.
+	 * PWS-Kent, ISBN 0-53491-585-X, pp 126-131. The tridiagonal system is
+	 * factored once for each length and spacing and cached; see
+	 * {@link UniformCubicSpline}, which can also write the coefficients of
+	 * many records into a caller-supplied buffer.
 	 * </p>
 	 *
 	 * @param y    waveform values evaluated at points given in {@code x[]}
@@ -1342,30 +1910,8 @@ public class WaveformUtils
 	 */
 	public static final double[][] cubicSplineInterpolantUniformSpacing(double[] y, int from, int to, double dx)
 	{
-		final int n = to - from;
-
-		final double mu[] = new double[n - 1];
-		final double z[] = new double[n];
-		mu[0] = 0d;
-		z[0] = 0d;
-		for (int i = 1; i < n - 1; i++) {
-			double g = dx * (4.0 - mu[i - 1]);
-			mu[i] = dx / g;
-			z[i] = (3.0 * (y[from + i + 1] - 2.0 * y[from + i] + y[from + i - 1]) / dx - dx * z[i - 1]) / g;
-		}
-
-		// cubic spline coefficients: coeffs[1] is linear, coeffs[2] quadratic, coeffs[3] is cubic (original y's are constants)
-		final double coeffs[][] = new double[4][n];
-
-		z[n - 1] = 0d;
-		coeffs[2][n - 1] = 0d;
-
-		for (int j = n - 2; j >= 0; j--) {
-			coeffs[2][j] = z[j] - mu[j] * coeffs[2][j + 1];
-			coeffs[1][j] = (y[from + j + 1] - y[from + j]) / dx - dx * (coeffs[2][j + 1] + 2.0 * coeffs[2][j]) / 3.0;
-			coeffs[3][j] = (coeffs[2][j + 1] - coeffs[2][j]) / 3.0 * dx;
-		}
-		System.arraycopy(y, from, coeffs[0], 0, n);
+		final double coeffs[][] = new double[4][to - from];
+		UniformCubicSpline.getInstance(to - from, dx).solve(y, from, coeffs, 0);
 
 		return coeffs;
 	}
@@ -1412,7 +1958,10 @@ public class WaveformUtils
 	 * <p>
 	 * The cubic spline interpolation algorithm implemented is as described in
 	 * R.L. Burden, J.D. Faires, <u>Numerical Analysis</u>, 4th Ed., 1989,
-	 * PWS-Kent, ISBN 0-53491-585-X, pp 126-131.
+	 * PWS-Kent, ISBN 0-53491-585-X, pp 126-131. The tridiagonal system is
+	 * factored once for each length and spacing and cached; see
+	 * {@link UniformCubicSpline}, which can also write the coefficients of
+	 * many records into a caller-supplied buffer.
 	 * </p>
 	 *
 	 * @param y    waveform values evaluated at points given in {@code x[]}
@@ -1429,32 +1978,8 @@ public class WaveformUtils
 	 */
 	public static final double[][] cubicSplineInterpolantUniformSpacing(float[] y, int from, int to, double dx)
 	{
-		final int n = to - from;
-
-		final double mu[] = new double[n - 1];
-		final double z[] = new double[n];
-		mu[0] = 0d;
-		z[0] = 0d;
-		for (int i = 1; i < n - 1; i++) {
-			double g = dx * (4.0 - mu[i - 1]);
-			mu[i] = dx / g;
-			z[i] = (3.0 * (y[from + i + 1] - 2.0 * y[from + i] + y[from + i - 1]) / dx - dx * z[i - 1]) / g;
-		}
-
-		// cubic spline coefficients: coeffs[1] is linear, coeffs[2] quadratic, coeffs[3] is cubic (original y's are constants)
-		final double coeffs[][] = new double[4][n];
-
-		z[n - 1] = 0d;
-		coeffs[2][n - 1] = 0d;
-
-		for (int j = n - 2; j >= 0; j--) {
-			coeffs[2][j] = z[j] - mu[j] * coeffs[2][j + 1];
-			coeffs[1][j] = (y[from + j + 1] - y[from + j]) / dx - dx * (coeffs[2][j + 1] + 2.0 * coeffs[2][j]) / 3.0;
-			coeffs[3][j] = (coeffs[2][j + 1] - coeffs[2][j]) / 3.0 * dx;
-		}
-		for (int j = 0; j < n; j++) {
-			coeffs[0][j] = y[from + j];
-		}
+		final double coeffs[][] = new double[4][to - from];
+		UniformCubicSpline.getInstance(to - from, dx).solve(y, from, coeffs, 0);
 
 		return coeffs;
 	}
@@ -1892,104 +2417,10 @@ public class WaveformUtils
 			double dx,
 			double smoothingParameter)
 	{
-		// revert to cubic spline smoothing if smoothingParameter is zero
-		if (smoothingParameter == 0.0) {
-			return cubicSplineInterpolantUniformSpacing(y, from, to, dx);
-		}
-
-		int i;
 		int n = to - from;
-		double e, f, f2, g, h, p;
-		double s = smoothingParameter * n;
-		double dxInverse = 1.0 / dx;
-		double dyOverDx = standardDeviation * dxInverse;
-		double dd = dyOverDx * dyOverDx;
-		double cc = -4.0 * dd;
-		double bb = 6.0 * dd;
-		double t1 = dx / 3.0;
-		double t = 4.0 * t1;
-		double variance = standardDeviation * standardDeviation;
 		double[][] coeffs = new double[4][n];
-		double[] r = new double[n + 2];
-		double[] r1 = new double[n + 2];
-		double[] r2 = new double[n + 2];
-		double[] u = new double[n + 2];
-		double[] v = new double[n + 2];
-
-		if (smoothingParameter >= 0) {
-
-			f = (y[from + 1] - y[from]) * dxInverse;
-			for (i = 0; i < n - 2; i++) {
-				e = f;
-				f = (y[from + i + 2] - y[from + i + 1]) * dxInverse;
-				coeffs[0][i] = f - e;
-			}
-
-			f2 = -s;
-			h = dx;
-			g = p = 0.0;
-
-			for (;;) {
-				for (i = 2; i < n; i++) {
-					r1[i - 1] = f * r[i - 1];
-					r2[i - 2] = g * r[i - 2];
-					r[i] = 1.0 / (p * bb + t - f * r1[i - 1] - g * r2[i - 2]);
-					u[i] = coeffs[0][i - 2] - r1[i - 1] * u[i - 1] - r2[i - 2] * u[i - 2];
-					f = p * cc + t1 - h * r1[i - 1];
-					g = h;
-					h = dd * p;
-				}
-				for (i = n - 1; i > 1; i--) {
-					u[i] = r[i] * u[i] - r1[i] * u[i + 1] - r2[i] * u[i + 2];
-				}
-				e = 0.0;
-				h = 0.0;
-				for (i = 1; i < n; i++) {
-					g = h;
-					h = (u[i + 1] - u[i]) * dxInverse;
-					v[i] = (h - g) * variance;
-					e += v[i] * (h - g);
-				}
-				g = v[n] = -h * variance;
-				e -= g * h;
-				g = f2;
-				f2 = e * p * p;
-
-				if (f2 >= s || f2 <= g) {
-					break;
-				}
-
-				f = 0.0;
-				h = (v[2] - v[1]) * dxInverse;
-				for (i = 2; i < n; i++) {
-					g = h;
-					h = (v[i + 1] - v[i]) * dxInverse;
-					g = h - g - r1[i - 1] * r[i - 1] - r2[i - 2] * r[i - 2];
-					f += g * r[i] * g;
-					r[i] = g;
-				}
-				h = e - p * f;
-
-				if (h <= 0.0) {
-					break;
-				}
-
-				p += (s - f2) / ((Math.sqrt(s / e) + p) * h);
-			}
-
-			for (i = 0; i < n; i++) {
-				coeffs[0][i] = y[from + i] - p * v[i + 1];
-				coeffs[2][i] = u[i + 1];
-			}
-			for (i = 0; i < n - 1; i++) {
-				coeffs[3][i] = (coeffs[2][i + 1] - coeffs[2][i]) / (3.0 * dx);
-				coeffs[1][i] = (coeffs[0][i + 1] - coeffs[0][i]) * dxInverse - (dx * coeffs[3][i] + coeffs[2][i]) * dx;
-			}
-
-		}
-
+		new SmoothingSpline(n, dx, standardDeviation, smoothingParameter).solve(y, from, coeffs, 0);
 		return coeffs;
-
 	}
 
 	/**
@@ -2077,104 +2508,174 @@ public class WaveformUtils
 			double dx,
 			double smoothingParameter)
 	{
-		// revert to cubic spline smoothing if smoothingParameter is zero
-		if (smoothingParameter == 0.0) {
-			return cubicSplineInterpolantUniformSpacing(y, from, to, dx);
-		}
-
-		int i;
 		int n = to - from;
-		double e, f, f2, g, h, p;
-		double s = smoothingParameter * n;
-		double dxInverse = 1.0 / dx;
-		double dyOverDx = standardDeviation * dxInverse;
-		double dd = dyOverDx * dyOverDx;
-		double cc = -4.0 * dd;
-		double bb = 6.0 * dd;
-		double t1 = dx / 3.0;
-		double t = 4.0 * t1;
-		double variance = standardDeviation * standardDeviation;
 		double[][] coeffs = new double[4][n];
-		double[] r = new double[n + 2];
-		double[] r1 = new double[n + 2];
-		double[] r2 = new double[n + 2];
-		double[] u = new double[n + 2];
-		double[] v = new double[n + 2];
-
-		if (smoothingParameter >= 0) {
-
-			f = (y[from + 1] - y[from]) * dxInverse;
-			for (i = 0; i < n - 2; i++) {
-				e = f;
-				f = (y[from + i + 2] - y[from + i + 1]) * dxInverse;
-				coeffs[0][i] = f - e;
-			}
-
-			f2 = -s;
-			h = dx;
-			g = p = 0.0;
-
-			for (;;) {
-				for (i = 2; i < n; i++) {
-					r1[i - 1] = f * r[i - 1];
-					r2[i - 2] = g * r[i - 2];
-					r[i] = 1.0 / (p * bb + t - f * r1[i - 1] - g * r2[i - 2]);
-					u[i] = coeffs[0][i - 2] - r1[i - 1] * u[i - 1] - r2[i - 2] * u[i - 2];
-					f = p * cc + t1 - h * r1[i - 1];
-					g = h;
-					h = dd * p;
-				}
-				for (i = n - 1; i > 1; i--) {
-					u[i] = r[i] * u[i] - r1[i] * u[i + 1] - r2[i] * u[i + 2];
-				}
-				e = 0.0;
-				h = 0.0;
-				for (i = 1; i < n; i++) {
-					g = h;
-					h = (u[i + 1] - u[i]) * dxInverse;
-					v[i] = (h - g) * variance;
-					e += v[i] * (h - g);
-				}
-				g = v[n] = -h * variance;
-				e -= g * h;
-				g = f2;
-				f2 = e * p * p;
+		new SmoothingSpline(n, dx, standardDeviation, smoothingParameter).solve(y, from, coeffs, 0);
+		return coeffs;
+	}
 
-				if (f2 >= s || f2 <= g) {
-					break;
-				}
+	//--------------------cubicSplineValuesUniformGrid Methods----------------//
+	/**
+	 * Evaluates a piecewise cubic polynomial at {@code numPoints} uniformly
+	 * spaced points {@code x=j*step}, {@code j=0,1,...,numPoints-1}, and writes
+	 * the values to {@code result[]} starting at index {@code resultOffset}.
+	 * The polynomial has {@code n} knots at {@code x=i*dx}, with coefficients
+	 * in elements {@code offset} through {@code offset+n-1} of the rows of
+	 * {@code coeffs}, as returned by
+	 * {@link #cubicSplineInterpolantUniformSpacing(double[], double)} or
+	 * {@link #smoothingSplineInterpolantUniformSpacing(double[], double, double, double)}.
+	 * Each point is evaluated on the interval starting at knot
+	 * {@code min(floor(x/dx),n-1)}, as with Horner's rule at every point.
+	 * Within each interval, the first point is evaluated with Horner's rule and
+	 * the remaining points by forward differencing, with three additions per
+	 * point, and the interval index is advanced by comparison rather than
+	 * division. The rounding error of the forward differences stays small
+	 * because each interval is restarted from its own coefficients. No error
+	 * checking is performed on range limits; if the values are negative or
+	 * outside the range of the arrays, a runtime exception may be thrown.
+	 *
+	 * @param coeffs       array with four rows of polynomial coefficients
+	 * @param offset       index of the coefficients of the first knot
+	 * @param n            number of knots
+	 * @param dx           spacing between knots
+	 * @param step         spacing between evaluation points
+	 * @param result       output array
+	 * @param resultOffset index at which to write the first value
+	 * @param numPoints    number of points at which to evaluate the polynomial
+	 */
+	public static final void cubicSplineValuesUniformGrid(double[][] coeffs,
+			int offset,
+			int n,
+			double dx,
+			double step,
+			double[] result,
+			int resultOffset,
+			int numPoints)
+	{
+		final double[] a = coeffs[0];
+		final double[] b = coeffs[1];
+		final double[] c = coeffs[2];
+		final double[] d = coeffs[3];
+		double step2 = step * step;
+		double step3 = step2 * step;
+		int k = 0;
+		int j = 0;
+		while (j < numPoints) {
+
+			// advance to the interval containing the current point
+			double x = j * step;
+			while (k < n - 1 && x >= (k + 1) * dx) {
+				k++;
+			}
 
-				f = 0.0;
-				h = (v[2] - v[1]) * dxInverse;
-				for (i = 2; i < n; i++) {
-					g = h;
-					h = (v[i + 1] - v[i]) * dxInverse;
-					g = h - g - r1[i - 1] * r[i - 1] - r2[i - 2] * r[i - 2];
-					f += g * r[i] * g;
-					r[i] = g;
+			// find the points that lie in this interval
+			int end = j + 1;
+			if (k < n - 1) {
+				double next = (k + 1) * dx;
+				while (end < numPoints && end * step < next) {
+					end++;
 				}
-				h = e - p * f;
+			} else {
+				end = numPoints;
+			}
 
-				if (h <= 0.0) {
-					break;
-				}
+			// initial value and forward differences at the first point
+			int i = offset + k;
+			double h = x - k * dx;
+			double value = a[i] + h * (b[i] + h * (c[i] + h * d[i]));
+			double delta1 = b[i] * step + c[i] * (2.0 * h * step + step2) + d[i] * (3.0 * h * (h * step + step2) + step3);
+			double delta2 = 2.0 * c[i] * step2 + 6.0 * d[i] * (h * step2 + step3);
+			double delta3 = 6.0 * d[i] * step3;
+			for (; j < end; j++) {
+				result[resultOffset + j] = value;
+				value += delta1;
+				delta1 += delta2;
+				delta2 += delta3;
+			}
+
+		}
+	}
 
-				p += (s - f2) / ((Math.sqrt(s / e) + p) * h);
+	/**
+	 * Evaluates a piecewise cubic polynomial at {@code numPoints} uniformly
+	 * spaced points {@code x=j*step}, {@code j=0,1,...,numPoints-1}, and writes
+	 * the values to {@code result[]} starting at index {@code resultOffset}.
+	 * The polynomial has {@code n} knots at {@code x=i*dx}, with coefficients
+	 * in elements {@code offset} through {@code offset+n-1} of the rows of
+	 * {@code coeffs}, as returned by
+	 * {@link #cubicSplineInterpolantUniformSpacing(double[], double)} or
+	 * {@link #smoothingSplineInterpolantUniformSpacing(double[], double, double, double)}.
+	 * Internal computations are performed with double precision. Each point
+	 * is evaluated on the interval starting at knot
+	 * {@code min(floor(x/dx),n-1)}, as with Horner's rule at every point.
+	 * Within each interval, the first point is evaluated with Horner's rule and
+	 * the remaining points by forward differencing, with three additions per
+	 * point, and the interval index is advanced by comparison rather than
+	 * division. The rounding error of the forward differences stays small
+	 * because each interval is restarted from its own coefficients. No error
+	 * checking is performed on range limits; if the values are negative or
+	 * outside the range of the arrays, a runtime exception may be thrown.
+	 *
+	 * @param coeffs       array with four rows of polynomial coefficients
+	 * @param offset       index of the coefficients of the first knot
+	 * @param n            number of knots
+	 * @param dx           spacing between knots
+	 * @param step         spacing between evaluation points
+	 * @param result       output array
+	 * @param resultOffset index at which to write the first value
+	 * @param numPoints    number of points at which to evaluate the polynomial
+	 */
+	public static final void cubicSplineValuesUniformGrid(double[][] coeffs,
+			int offset,
+			int n,
+			double dx,
+			double step,
+			float[] result,
+			int resultOffset,
+			int numPoints)
+	{
+		final double[] a = coeffs[0];
+		final double[] b = coeffs[1];
+		final double[] c = coeffs[2];
+		final double[] d = coeffs[3];
+		double step2 = step * step;
+		double step3 = step2 * step;
+		int k = 0;
+		int j = 0;
+		while (j < numPoints) {
+
+			// advance to the interval containing the current point
+			double x = j * step;
+			while (k < n - 1 && x >= (k + 1) * dx) {
+				k++;
 			}
 
-			for (i = 0; i < n; i++) {
-				coeffs[0][i] = y[from + i] - p * v[i + 1];
-				coeffs[2][i] = u[i + 1];
+			// find the points that lie in this interval
+			int end = j + 1;
+			if (k < n - 1) {
+				double next = (k + 1) * dx;
+				while (end < numPoints && end * step < next) {
+					end++;
+				}
+			} else {
+				end = numPoints;
 			}
-			for (i = 0; i < n - 1; i++) {
-				coeffs[3][i] = (coeffs[2][i + 1] - coeffs[2][i]) / (3.0 * dx);
-				coeffs[1][i] = (coeffs[0][i + 1] - coeffs[0][i]) * dxInverse - (dx * coeffs[3][i] + coeffs[2][i]) * dx;
+
+			// initial value and forward differences at the first point
+			int i = offset + k;
+			double h = x - k * dx;
+			double value = a[i] + h * (b[i] + h * (c[i] + h * d[i]));
+			double delta1 = b[i] * step + c[i] * (2.0 * h * step + step2) + d[i] * (3.0 * h * (h * step + step2) + step3);
+			double delta2 = 2.0 * c[i] * step2 + 6.0 * d[i] * (h * step2 + step3);
+			double delta3 = 6.0 * d[i] * step3;
+			for (; j < end; j++) {
+				result[resultOffset + j] = (float)value;
+				value += delta1;
+				delta1 += delta2;
+				delta2 += delta3;
 			}
 
 		}
-
-		return coeffs;
-
 	}
 
 	//--------------------simpleDerivative Methods----------------------------//
@@ -2611,6 +3112,48 @@ public class WaveformUtils
 		}
 	}
 
+	/**
+	 * Returns the coefficients of a window function that can be written as a
+	 * finite sum of cosines,
+	 * {@code w[i]=c[0]+c[1]*cos(2*PI*i/n)+c[2]*cos(4*PI*i/n)+...}, before
+	 * normalization, where {@code c} is the returned array and the window
+	 * formulae are those given for
+	 * {@link #windowFunction(WindowType, int, double, boolean) windowFunction}.
+	 * The {@code BLACKMAN}, {@code BLACKMAN_HARRIS}, {@code BLACKMAN_NUTTALL},
+	 * {@code EXACT_BLACKMAN}, {@code FLAT_TOP}, {@code HAMMING},
+	 * {@code HANNING}, and {@code RECTANGLE} windows are of this form. The
+	 * Fourier transform of such a window is nonzero only at
+	 * {@code c.length*2-1} frequencies, so windowing can be applied in the
+	 * frequency domain as a short convolution.
+	 *
+	 * @param windowType window function enumerated type constant
+	 * @return array of cosine coefficients, or {@code null} if the window
+	 *         function is not a sum of cosines
+	 */
+	public static final double[] cosineSumCoefficients(WindowType windowType)
+	{
+		switch (windowType) {
+			case BLACKMAN:
+				return new double[]{0.42, -0.5, 0.08};
+			case BLACKMAN_HARRIS:
+				return new double[]{0.42323, -0.49755, 0.07922};
+			case BLACKMAN_NUTTALL:
+				return new double[]{0.3635819, -0.4891775, 0.1365995, -0.0106411};
+			case EXACT_BLACKMAN:
+				return new double[]{7938.0 / 18608.0, -9240.0 / 18608.0, 1430.0 / 18608.0};
+			case FLAT_TOP:
+				return new double[]{0.21557895, -0.41663158, 0.277263158, -0.083578947, 0.006947368};
+			case HAMMING:
+				return new double[]{0.54, -0.46};
+			case HANNING:
+				return new double[]{0.5, -0.5};
+			case RECTANGLE:
+				return new double[]{1.0};
+			default:
+				return null;
+		}
+	}
+
 	/**
 	 * Returns an array of values for the desired window function of odd length
 	 * centered at index {@code 0}. The returned array is equivalent to positive
@@ -2878,7 +3421,8 @@ public class WaveformUtils
 	 * roots, the function returns a zero-length array. Note that the
 	 * discriminant {@code b*b-4*a*c} contains the potential for catastrophic
 	 * cancellation if its two terms are nearly equal, so in this case the
-	 * algorithm uses {@code BigDecimal}s and methods described by W. Kahan in
+	 * algorithm recovers the rounding errors of both products by Dekker's exact
+	 * multiplication, without allocating memory, as described by W. Kahan in
 	 * "On the Cost of Floating-Point Computation Without Extra-Precise
 	 * Arithmetic"
 	 * (<a href="http://www.cs.berkeley.edu/~wkahan/Qdrtcs.pdf">www.cs.berkeley.edu/~wkahan/Qdrtcs.pdf/</a>),
@@ -2892,31 +3436,58 @@ public class WaveformUtils
 	 *         zero-length array if there are no real-valued roots
 	 */
 	public static final double[] quadraticRoots(double a, double b, double c)
+	{
+		double[] roots = new double[2];
+		int numRoots = quadraticRoots(a, b, c, roots);
+		return (numRoots == 2) ? roots : Arrays.copyOf(roots, numRoots);
+	}
+
+	/**
+	 * Computes real roots for quadratic equation of the form
+	 * {@code ax^2 + bx + c = 0}, as described in
+	 * {@link #quadraticRoots(double, double, double) quadraticRoots}, and
+	 * writes them to {@code roots} in order from least to greatest instead of
+	 * returning a new array, so that the roots of many equations can be found
+	 * without allocating memory.
+	 *
+	 * @param a     quadratic coefficient
+	 * @param b     linear coefficient
+	 * @param c     constant term
+	 * @param roots array of length at least {@code 2} that receives the
+	 *              distinct roots
+	 * @return number of distinct roots written to {@code roots}
+	 */
+	public static final int quadraticRoots(double a, double b, double c, double[] roots)
 	{
 		if (a == 0.0) {
 			if (b == 0.0) {
-				return new double[0];
+				return 0;
 			} else {
-				return new double[]{-c / b};
+				roots[0] = -c / b;
+				return 1;
 			}
 		} else if (b == 0.0) {
 			if (c == 0.0) {
-				return new double[]{0.0};
+				roots[0] = 0.0;
+				return 1;
+			} else if (c / a > 0.0) { // no real roots
+				return 0;
 			} else {
 				double q = Math.sqrt(-c / a);
-				return new double[]{-q, q};
+				roots[0] = -q;
+				roots[1] = q;
+				return 2;
 			}
 		} else if (c == 0.0) {
-			if (a == 0.0) {
-				return new double[]{0.0};
+			double r = -b / a;
+			if (r < 0.0) {
+				roots[0] = r;
+				roots[1] = 0.0;
 			} else {
-				double r = -b / a;
-				if (r < 0.0) {
-					return new double[]{r, 0.0};
-				} else {
-					return new double[]{0.0, r};
-				}
+				roots[0] = 0.0;
+				roots[1] = r;
 			}
+			return 2;
 		} else {
 			double p = b * b;
 			double q = 4.0 * a * c;
@@ -2924,28 +3495,36 @@ public class WaveformUtils
 			double sqrtD = Math.sqrt(d);
 			double pie = 3; // see reference cited in javadoc for the origin of this number
 			if (pie * Math.abs(d) < p + q) {
-				BigDecimal aBD = new BigDecimal(a, MathContext.DECIMAL64);
-				BigDecimal bBD = new BigDecimal(b, MathContext.DECIMAL64);
-				BigDecimal cBD = new BigDecimal(c, MathContext.DECIMAL64);
-				BigDecimal pBD = bBD.multiply(bBD);
-				BigDecimal qBD = aBD.multiply(cBD).multiply(new BigDecimal(4, MathContext.DECIMAL64));
-				BigDecimal dBD = pBD.subtract(qBD);
-				if (dBD.doubleValue() < 0) { // discriminant < 0.0
-					return new double[0];
-				} else if (dBD.doubleValue() == 0) { // discriminant is truly zero to double precision
-					return new double[]{-b / (2.0 * a)};
-				}
-				sqrtD = sqrt(dBD, MathContext.DECIMAL64).doubleValue();
+				// p and q are within a factor of two of each other, so p-q is exact; add the rounding errors of both products
+				double dLo = twoProductError(b, b, p) - twoProductError(4.0 * a, c, q);
+				double dSum = d + dLo;
+				if (dSum < 0.0) { // discriminant < 0.0
+					return 0;
+				} else if (dSum == 0.0) { // discriminant is truly zero to double precision
+					roots[0] = -b / (2.0 * a);
+					return 1;
+				}
+				// one Newton step on the square root of the unevaluated sum d+dLo
+				double r = Math.sqrt(dSum);
+				double rSquared = r * r;
+				sqrtD = r + (((d - rSquared) - twoProductError(r, r, rSquared)) + dLo) / (2.0 * r);
+			} else if (d < 0.0) { // discriminant < 0.0, and not close enough to zero to be in doubt
+				return 0;
 			}
 			double s = -0.5 * (b + Math.signum(b) * sqrtD);
 			double r1 = s / a;
 			double r2 = c / s;
 			if (r1 < r2) {
-				return new double[]{r1, r2};
+				roots[0] = r1;
+				roots[1] = r2;
+				return 2;
 			} else if (r1 > r2) {
-				return new double[]{r2, r1};
+				roots[0] = r2;
+				roots[1] = r1;
+				return 2;
 			} else {
-				return new double[]{r1};
+				roots[0] = r1;
+				return 1;
 			}
 		}
 	}
@@ -2982,6 +3561,24 @@ public class WaveformUtils
 		return new double[]{xh, xt};
 	}
 
+	/**
+	 * Returns the rounding error of the floating-point product
+	 * {@code product=a*b}, so that {@code a*b=product+error} exactly, using
+	 * Dekker's splitting of each factor into half-width fragments (see
+	 * {@link #break2(double) break2}). Results are not exact if either factor
+	 * exceeds about {@code 2^996} in magnitude or if the product underflows.
+	 */
+	static double twoProductError(double a, double b, double product)
+	{
+		double bigA = a * 134217729; //... = a*(2^27 + 1)
+		double aHi = bigA - (bigA - a);
+		double aLo = a - aHi;
+		double bigB = b * 134217729;
+		double bHi = bigB - (bigB - b);
+		double bLo = b - bHi;
+		return (((aHi * bHi - product) + aHi * bLo) + aLo * bHi) + aLo * bLo;
+	}
+
 	/**
 	 * Computes real roots to the cubic equation
 	 * {@code x^3 + a*x^2 + b*x + c = 0}, given real coefficients {@code a},
@@ -3000,27 +3597,53 @@ public class WaveformUtils
 	 * @return array of distinct roots in order from least to greatest
 	 */
 	public static final double[] cubicRoots(double a, double b, double c)
+	{
+		double[] roots = new double[3];
+		int numRoots = cubicRoots(a, b, c, roots);
+		return (numRoots == 3) ? roots : Arrays.copyOf(roots, numRoots);
+	}
+
+	/**
+	 * Computes real roots to the cubic equation
+	 * {@code x^3 + a*x^2 + b*x + c = 0}, as described in
+	 * {@link #cubicRoots(double, double, double) cubicRoots}, and writes them
+	 * to {@code roots} in order from least to greatest instead of returning a
+	 * new array, so that the roots of many equations can be found without
+	 * allocating memory.
+	 *
+	 * @param a     quadratic coefficient
+	 * @param b     linear coefficient
+	 * @param c     constant term
+	 * @param roots array of length at least {@code 3} that receives the
+	 *              distinct roots
+	 * @return number of distinct roots written to {@code roots}
+	 */
+	public static final int cubicRoots(double a, double b, double c, double[] roots)
 	{
 		if (c == 0.0) {
-			double[] qr = quadraticRoots(1.0, a, b);
-			if (qr.length == 2) {
-				if (qr[0] != 0.0 && qr[1] != 0.0) {
-					double[] output = new double[]{0.0, qr[0], qr[1]};
-					Arrays.sort(output);
-					return output;
-				} else if (qr[0] * qr[1] == 0.0) { // the zero root is already present in qr
-					return qr;
-				}
-			} else if (qr.length == 1) {
-				if (qr[0] > 0.0) {
-					return new double[]{0.0, qr[0]};
-				} else if (qr[0] < 0.0) {
-					return new double[]{qr[0], 0.0};
+			int numRoots = quadraticRoots(1.0, a, b, roots);
+			if (numRoots == 2) {
+				if (roots[0] != 0.0 && roots[1] != 0.0) {
+					roots[2] = 0.0;
+					Arrays.sort(roots, 0, 3);
+					return 3;
+				} else if (roots[0] * roots[1] == 0.0) { // the zero root is already present in roots
+					return 2;
+				}
+			} else if (numRoots == 1) {
+				if (roots[0] > 0.0) {
+					roots[1] = roots[0];
+					roots[0] = 0.0;
+					return 2;
+				} else if (roots[0] < 0.0) {
+					roots[1] = 0.0;
+					return 2;
 				} else {
-					return qr;
+					return 1;
 				}
 			} else {
-				return new double[]{0.0};
+				roots[0] = 0.0;
+				return 1;
 			}
 		}
 
@@ -3037,7 +3660,8 @@ public class WaveformUtils
 		double CQ3 = 2916 * q * q * q;
 
 		if (R == 0 && Q == 0) {
-			return new double[]{-a / 3.0};
+			roots[0] = -a / 3.0;
+			return 1;
 		} else if (CR2 == CQ3) {
 			/* this test is actually R2 == Q3, written in a form suitable
 			 for exact computation with integers */
@@ -3048,10 +3672,13 @@ public class WaveformUtils
 			double sqrtQ = Math.sqrt(Q);
 
 			if (R > 0) {
-				return new double[]{-2.0 * sqrtQ - a / 3.0, sqrtQ - a / 3.0};
+				roots[0] = -2.0 * sqrtQ - a / 3.0;
+				roots[1] = sqrtQ - a / 3.0;
 			} else {
-				return new double[]{-sqrtQ - a / 3.0, 2.0 * sqrtQ - a / 3.0};
+				roots[0] = -sqrtQ - a / 3.0;
+				roots[1] = 2.0 * sqrtQ - a / 3.0;
 			}
+			return 2;
 		} else if (R2 < Q3) {
 			double ratio = Math.signum(R) * Math.sqrt(R2 / Q3);
 			double theta = Math.acos(ratio);
@@ -3078,12 +3705,16 @@ public class WaveformUtils
 					x0 = temp;
 				}
 			}
-			return new double[]{x0, x1, x2};
+			roots[0] = x0;
+			roots[1] = x1;
+			roots[2] = x2;
+			return 3;
 		} else {
 			double sgnR = (R >= 0 ? 1 : -1);
 			double A = -sgnR * Math.pow(Math.abs(R) + Math.sqrt(R2 - Q3), 1.0 / 3.0);
 			double B = Q / A;
-			return new double[]{A + B - a / 3};
+			roots[0] = A + B - a / 3;
+			return 1;
 		}
 	}
 }
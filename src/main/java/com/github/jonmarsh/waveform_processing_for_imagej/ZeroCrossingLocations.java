@@ -8,10 +8,9 @@ import ij.gui.GenericDialog;
 import ij.plugin.filter.ExtendedPlugInFilter;
 import ij.plugin.filter.PlugInFilterRunner;
 import ij.process.ImageProcessor;
-import ij.util.Tools;
 import java.awt.AWTEvent;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Computes the positions of the zero-crossings (or "roots") in each input
@@ -99,15 +98,15 @@ public class ZeroCrossingLocations implements ExtendedPlugInFilter, DialogListen
 	{
 		int currentSlice = pfr.getSliceNumber();
 		float[] pixels = (float[]) ip.getPixels();	// CONVERT_TO_FLOAT flag is set, so this always works
-		double[] pixelsDouble = Tools.toDouble(pixels);
 		float[] rootsPixels = (float[]) (rootsStack.getProcessor(currentSlice).getPixels());
 
-		double[][][] results = execute(pixelsDouble, width, interpolationChoice);
+		RootTable results = executeCompact(pixels, width, interpolationChoice);
 		for (int i = 0; i < height; i++) {
 			int offset = i * width;
-			int w = Math.min(width, results[i].length);
+			int from = results.offsets[i];
+			int w = Math.min(width, results.offsets[i + 1] - from);
 			for (int j = 0; j < w; j++) {
-				rootsPixels[offset + j] = (float) (results[i][j][0] + results[i][j][1]);
+				rootsPixels[offset + j] = (float) (results.baseIndices[from + j] + results.fractionalIndices[from + j]);
 			}
 		}
 	}
@@ -143,84 +142,322 @@ public class ZeroCrossingLocations implements ExtendedPlugInFilter, DialogListen
 	 *         corresponding subarray is of length zero.
 	 */
 	public static double[][][] execute(double[] waveforms, int recordLength, int interpolationMethod)
+	{
+		RootTable table = executeCompact(waveforms, recordLength, interpolationMethod);
+		if (table != null) {
+
+			// copy roots of each record to an array of {baseIndex, fractionalIndex} pairs
+			double[][][] roots = new double[table.numRecords][][];
+			for (int i = 0; i < table.numRecords; i++) {
+				int from = table.offsets[i];
+				roots[i] = new double[table.offsets[i + 1] - from][];
+				for (int j = 0; j < roots[i].length; j++) {
+					roots[i][j] = new double[]{table.baseIndices[from + j], table.fractionalIndices[from + j]};
+				}
+			}
+
+			return roots;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the positions of zero-crossings in each record in
+	 * {@code waveforms}, where the number of elements in each record is given
+	 * by {@code recordLength}, and returns them in a {@link RootTable}, which
+	 * holds the roots of all records in a few primitive arrays rather than as
+	 * one array per root. In cubic spline mode, the roots of the spline
+	 * polynomial are only computed for intervals where the polynomial can
+	 * change sign, which is determined from its coefficients in the Bernstein
+	 * basis: a cubic on {@code [0,1]} lies within the range of its four
+	 * Bernstein coefficients, so if they all have the same sign, the interval
+	 * contains no root. The roots found are the same as if every interval were
+	 * solved.
+	 *
+	 * @param waveforms           one-dimensional array composed of a series of
+	 *                            concatenated records, each of size equal to
+	 *                            {@code recordLength}
+	 * @param recordLength        size of each record in {@code waveforms}
+	 * @param interpolationMethod {@link #LINEAR} for linear interpolation or
+	 *                            {@link #CUBIC_SPLINE} for natural cubic spline
+	 *                            interpolation between points in a waveform
+	 * @return zero-crossing positions of all records. Output is null if
+	 *         {@code waveforms==null}, {@code recordLength<=3},
+	 *         {@code waveforms.length<recordLength}, or if
+	 *         {@code waveforms.length} is not evenly divisible by
+	 *         {@code recordLength}.
+	 */
+	public static RootTable executeCompact(double[] waveforms, int recordLength, int interpolationMethod)
 	{
 		if (waveforms != null && recordLength > 3 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
 
 			// compute number of records
 			int numRecords = waveforms.length / recordLength;
 
-			// allocate output array of arrays of {baseIndex, fractionalIndex} pairs
-			double[][][] roots = new double[numRecords][][];
+			// allocate output table and workspace, reused for all records
+			RootTable table = new RootTable(numRecords);
+			RootFinder finder = new RootFinder(recordLength, interpolationMethod);
 
 			// loop over all records
 			for (int i = 0; i < numRecords; i++) {
+				finder.find(waveforms, i * recordLength, table);
+			}
+
+			return table;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the positions of zero-crossings in each record in
+	 * {@code waveforms}, as described in
+	 * {@link #executeCompact(double[], int, int) executeCompact}.
+	 *
+	 * @param waveforms           one-dimensional array composed of a series of
+	 *                            concatenated records, each of size equal to
+	 *                            {@code recordLength}
+	 * @param recordLength        size of each record in {@code waveforms}
+	 * @param interpolationMethod {@link #LINEAR} for linear interpolation or
+	 *                            {@link #CUBIC_SPLINE} for natural cubic spline
+	 *                            interpolation between points in a waveform
+	 * @return zero-crossing positions of all records. Output is null if
+	 *         {@code waveforms==null}, {@code recordLength<=3},
+	 *         {@code waveforms.length<recordLength}, or if
+	 *         {@code waveforms.length} is not evenly divisible by
+	 *         {@code recordLength}.
+	 */
+	public static RootTable executeCompact(float[] waveforms, int recordLength, int interpolationMethod)
+	{
+		if (waveforms != null && recordLength > 3 && waveforms.length >= recordLength && waveforms.length % recordLength == 0) {
+
+			// compute number of records
+			int numRecords = waveforms.length / recordLength;
+
+			// allocate output table and workspace, reused for all records
+			RootTable table = new RootTable(numRecords);
+			RootFinder finder = new RootFinder(recordLength, interpolationMethod);
+			double[] record = new double[recordLength];
 
-				// compute row offset
+			// loop over all records
+			for (int i = 0; i < numRecords; i++) {
 				int offset = i * recordLength;
+				for (int j = 0; j < recordLength; j++) {
+					record[j] = waveforms[offset + j];
+				}
+				finder.find(record, 0, table);
+			}
 
-				// initialize temporary ArrayList to hold roots
-				ArrayList<double[]> rootList = new ArrayList<>();
+			return table;
+		}
 
-				switch (interpolationMethod) {
+		return null;
+	}
 
-					case LINEAR: {
-						double y0 = waveforms[offset];
-						// loop over intervals between knots
-						for (int j = 0; j < recordLength - 1; j++) {
-							double y1 = waveforms[offset + j + 1];
-							if (y0 * y1 < 0.0) {	// zero-crossing occurs in this interval
-								rootList.add(new double[]{j, y0 / (y0 - y1)});
-							} else if (y0 == 0.0 && y1 != 0.0) {	// zero-crossing occurs at the beginning of the interval
-								rootList.add(new double[]{j, 0.0});
-							}
-							y0 = y1;
-						}
-						if (waveforms[offset + recordLength - 1] == 0.0 && waveforms[offset + recordLength - 2] != 0.0) {	// check last point to see if it's a zero crossing
-							rootList.add(new double[]{recordLength - 1, 0.0});
+	// Finds the zero-crossings of one record at a time, using workspace allocated once for all records
+	private static final class RootFinder
+	{
+		// relative tolerance of the Bernstein sign test, so that roots at the ends of an interval are not missed due to rounding
+		private static final double BRACKET_TOLERANCE = 1.0e-8;
+
+		private final int recordLength;
+		private final int interpolationMethod;
+		private final UniformCubicSpline spline;
+		private final double[][] splineCoeffs;
+		private final double[] roots = new double[3];
+
+		RootFinder(int recordLength, int interpolationMethod)
+		{
+			this.recordLength = recordLength;
+			this.interpolationMethod = interpolationMethod;
+			spline = (interpolationMethod == CUBIC_SPLINE) ? UniformCubicSpline.getInstance(recordLength, 1.0) : null;
+			splineCoeffs = (interpolationMethod == CUBIC_SPLINE) ? new double[4][recordLength] : null;
+		}
+
+		// Appends zero-crossings of the record starting at waveforms[offset] to the table
+		void find(double[] waveforms, int offset, RootTable table)
+		{
+			switch (interpolationMethod) {
+
+				case LINEAR: {
+					double y0 = waveforms[offset];
+					// loop over intervals between knots
+					for (int j = 0; j < recordLength - 1; j++) {
+						double y1 = waveforms[offset + j + 1];
+						if (y0 * y1 < 0.0) {	// zero-crossing occurs in this interval
+							table.add(j, y0 / (y0 - y1));
+						} else if (y0 == 0.0 && y1 != 0.0) {	// zero-crossing occurs at the beginning of the interval
+							table.add(j, 0.0);
 						}
-						break;
+						y0 = y1;
+					}
+					if (waveforms[offset + recordLength - 1] == 0.0 && waveforms[offset + recordLength - 2] != 0.0) {	// check last point to see if it's a zero crossing
+						table.add(recordLength - 1, 0.0);
 					}
+					break;
+				}
 
-					case CUBIC_SPLINE: {
-						// get spline coefficients for this waveform
-						double[][] splineCoeffs = WaveformUtils.cubicSplineInterpolantUniformSpacing(waveforms, offset, offset + recordLength, 1.0);
-						// loop over intervals between knots
-						for (int j = 0; j < recordLength - 1; j++) {
-							// determine roots of cubic polynomial in this interval
-							double q = 1.0 / splineCoeffs[3][j];
-							double[] r = WaveformUtils.cubicRoots(q * splineCoeffs[2][j], q * splineCoeffs[1][j], q * splineCoeffs[0][j]);
-							for (int k = 0; k < r.length; k++) {
-								if (r[k] >= 0 && j + r[k] < j + 1) {
-									rootList.add(new double[]{j, r[k]});
-								}
-							}
+				case CUBIC_SPLINE: {
+					// get spline coefficients for this waveform
+					spline.solve(waveforms, offset, splineCoeffs, 0);
+					final double[] c0 = splineCoeffs[0];
+					final double[] c1 = splineCoeffs[1];
+					final double[] c2 = splineCoeffs[2];
+					final double[] c3 = splineCoeffs[3];
+					// loop over intervals between knots
+					for (int j = 0; j < recordLength - 1; j++) {
+						// skip intervals where the Bernstein coefficients of the polynomial all have the same sign
+						double b0 = c0[j];
+						double b1 = c0[j] + c1[j] / 3.0;
+						double b2 = c0[j] + (2.0 * c1[j] + c2[j]) / 3.0;
+						double b3 = c0[j] + c1[j] + c2[j] + c3[j];
+						double tolerance = BRACKET_TOLERANCE * (Math.abs(c0[j]) + Math.abs(c1[j]) + Math.abs(c2[j]) + Math.abs(c3[j]));
+						if ((b0 > tolerance && b1 > tolerance && b2 > tolerance && b3 > tolerance) || (b0 < -tolerance && b1 < -tolerance && b2 < -tolerance && b3 < -tolerance)) {
+							continue;
 						}
-						// include last point if it equals zero and slope is nonzero
-						double penultimateX = Math.nextAfter(recordLength - 1, 0.0);
-						double h = penultimateX - (recordLength - 2);
-						double penultimateY = splineCoeffs[0][recordLength - 2] + h * (splineCoeffs[1][recordLength - 2] + h * (splineCoeffs[2][recordLength - 2] + h * splineCoeffs[3][recordLength - 2]));
-						if (waveforms[offset + recordLength - 1] == 0.0 && penultimateY != 0.0) {
-							rootList.add(new double[]{recordLength - 1, 0.0});
+						// determine roots of cubic polynomial in this interval
+						double q = 1.0 / c3[j];
+						int numRoots = WaveformUtils.cubicRoots(q * c2[j], q * c1[j], q * c0[j], roots);
+						for (int k = 0; k < numRoots; k++) {
+							if (roots[k] >= 0 && j + roots[k] < j + 1) {
+								table.add(j, roots[k]);
+							}
 						}
-						break;
 					}
-
-					default: {
-						break;
+					// include last point if it equals zero and slope is nonzero
+					double penultimateX = Math.nextAfter(recordLength - 1, 0.0);
+					double h = penultimateX - (recordLength - 2);
+					double penultimateY = c0[recordLength - 2] + h * (c1[recordLength - 2] + h * (c2[recordLength - 2] + h * c3[recordLength - 2]));
+					if (waveforms[offset + recordLength - 1] == 0.0 && penultimateY != 0.0) {
+						table.add(recordLength - 1, 0.0);
 					}
-
+					break;
 				}
 
-				roots[i] = new double[rootList.size()][2];
-				for (int j = 0; j < rootList.size(); j++) {
-					roots[i][j] = rootList.get(j);
+				default: {
+					break;
 				}
+
 			}
 
-			return roots;
+			table.endRecord();
 		}
+	}
 
-		return null;
+	/**
+	 * Zero-crossing positions of a series of records, stored in compressed-row
+	 * form: the roots of record {@code i} occupy elements {@code offsets[i]}
+	 * (inclusive) through {@code offsets[i+1]} (exclusive) of the arrays
+	 * {@code baseIndices} and {@code fractionalIndices}, in increasing order.
+	 * Each zero-crossing location is the sum of its integer base index and its
+	 * fractional index, which is greater than or equal to zero and less than
+	 * 1.0. The arrays holding positions may be longer than the total number of
+	 * roots; elements beyond {@code offsets[numRecords]} are unused.
+	 */
+	public static final class RootTable
+	{
+		private final int numRecords;
+		private int currentRecord;
+		private final int[] offsets;
+		private int[] baseIndices;
+		private double[] fractionalIndices;
+		private int numRoots;
+
+		RootTable(int numRecords)
+		{
+			this.numRecords = numRecords;
+			offsets = new int[numRecords + 1];
+			baseIndices = new int[Math.max(16 * numRecords, 16)];
+			fractionalIndices = new double[baseIndices.length];
+		}
+
+		void add(int baseIndex, double fractionalIndex)
+		{
+			if (numRoots == baseIndices.length) {
+				baseIndices = Arrays.copyOf(baseIndices, 2 * numRoots);
+				fractionalIndices = Arrays.copyOf(fractionalIndices, 2 * numRoots);
+			}
+			baseIndices[numRoots] = baseIndex;
+			fractionalIndices[numRoots++] = fractionalIndex;
+		}
+
+		// Marks the end of the roots of the current record
+		void endRecord()
+		{
+			offsets[++currentRecord] = numRoots;
+		}
+
+		/**
+		 * Returns the number of records.
+		 *
+		 * @return number of records
+		 */
+		public int getNumRecords()
+		{
+			return numRecords;
+		}
+
+		/**
+		 * Returns the number of zero-crossings in a record.
+		 *
+		 * @param record index of record
+		 * @return number of zero-crossings
+		 */
+		public int getCount(int record)
+		{
+			return offsets[record + 1] - offsets[record];
+		}
+
+		/**
+		 * Returns the offsets of the roots of each record; the roots of record
+		 * {@code i} have indices {@code offsets[i]} (inclusive) to
+		 * {@code offsets[i+1]} (exclusive). The returned array is not a copy.
+		 *
+		 * @return array of {@code numRecords+1} offsets
+		 */
+		public int[] getOffsets()
+		{
+			return offsets;
+		}
+
+		/**
+		 * Returns the integer parts of the positions of the roots of all
+		 * records. The returned array is not a copy.
+		 *
+		 * @return base indices of roots
+		 */
+		public int[] getBaseIndices()
+		{
+			return baseIndices;
+		}
+
+		/**
+		 * Returns the fractional parts of the positions of the roots of all
+		 * records. The returned array is not a copy.
+		 *
+		 * @return fractional indices of roots
+		 */
+		public double[] getFractionalIndices()
+		{
+			return fractionalIndices;
+		}
+
+		/**
+		 * Returns the positions of the roots of a record as the sums of their
+		 * base and fractional indices.
+		 *
+		 * @param record index of record
+		 * @return positions of roots
+		 */
+		public double[] getPositions(int record)
+		{
+			double[] output = new double[getCount(record)];
+			for (int k = 0; k < output.length; k++) {
+				output[k] = baseIndices[offsets[record] + k] + fractionalIndices[offsets[record] + k];
+			}
+			return output;
+		}
 	}
 
 	public final double[][] toDouble(BigDecimal[][] a)
@@ -0,0 +1,81 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class ButterworthFilterTest
+{
+	/**
+	 * Test of executeZeroPhase method, of class ButterworthFilter.
+	 */
+	@Test
+	public void testExecuteZeroPhase()
+	{
+		System.out.println("Test of ButterworthFilter.executeZeroPhase(float[], int, double, double, int, boolean)");
+		int recordLength = 4000;
+		double samplingIntervalMicrosec = 0.0025;
+		double cutoffFreqMHz = 20.0;
+
+		// gain at frequencies well below, at, and well above the cutoff frequency
+		double[] frequenciesMHz = new double[]{2.0, 20.0, 100.0};
+		double[] lowPassGains = new double[]{1.0, Math.sqrt(0.5), 0.0};
+		double[] highPassGains = new double[]{0.0, Math.sqrt(0.5), 1.0};
+		for (int numPoles = 1; numPoles <= 4; numPoles++) {
+			for (int f = 0; f < frequenciesMHz.length; f++) {
+				float[] lowPass = sinusoid(recordLength, samplingIntervalMicrosec, frequenciesMHz[f]);
+				float[] highPass = sinusoid(recordLength, samplingIntervalMicrosec, frequenciesMHz[f]);
+				float[] input = sinusoid(recordLength, samplingIntervalMicrosec, frequenciesMHz[f]);
+				ButterworthFilter.executeZeroPhase(lowPass, recordLength, samplingIntervalMicrosec, cutoffFreqMHz, numPoles, true);
+				ButterworthFilter.executeZeroPhase(highPass, recordLength, samplingIntervalMicrosec, cutoffFreqMHz, numPoles, false);
+
+				// zero phase shift, so output is a scaled copy of input away from the ends;
+				// a single-pole filter only attenuates 100 MHz by about 95%
+				double tolerance = (numPoles == 1) ? 0.07 : 0.01;
+				for (int i = recordLength / 4; i < 3 * recordLength / 4; i++) {
+					assertEquals(lowPassGains[f] * input[i], lowPass[i], tolerance);
+					assertEquals(highPassGains[f] * input[i], highPass[i], tolerance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that the zero-phase and frequency-domain filters agree for a
+	 * smooth, band-limited input.
+	 */
+	@Test
+	public void testExecuteZeroPhaseMatchesExecute()
+	{
+		System.out.println("Test of ButterworthFilter.executeZeroPhase(float[], int, double, double, int, boolean), comparison with execute");
+		int recordLength = 2048;
+		int numRecords = 3;
+		double samplingIntervalMicrosec = 0.0025;
+		float[] expResult = new float[recordLength * numRecords];
+		for (int i = 0; i < expResult.length; i++) {
+			double t = (i % recordLength) * samplingIntervalMicrosec;
+			expResult[i] = (float)(Math.sin(2.0 * Math.PI * 1.5 * t) + 0.3 * Math.cos(2.0 * Math.PI * 150.0 * t));
+		}
+		float[] result = expResult.clone();
+		ButterworthFilter.execute(expResult, recordLength, samplingIntervalMicrosec, 20.0, 2, true);
+		ButterworthFilter.executeZeroPhase(result, recordLength, samplingIntervalMicrosec, 20.0, 2, true);
+		for (int i = 0; i < numRecords; i++) {
+			for (int j = recordLength / 4; j < 3 * recordLength / 4; j++) {
+				assertEquals(expResult[i * recordLength + j], result[i * recordLength + j], 0.01f);
+			}
+		}
+	}
+
+	private static float[] sinusoid(int length, double samplingIntervalMicrosec, double frequencyMHz)
+	{
+		float[] a = new float[length];
+		for (int i = 0; i < length; i++) {
+			a[i] = (float)Math.sin(2.0 * Math.PI * frequencyMHz * i * samplingIntervalMicrosec + 0.4);
+		}
+		return a;
+	}
+
+}
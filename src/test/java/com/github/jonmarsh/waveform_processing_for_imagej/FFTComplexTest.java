@@ -60,4 +60,49 @@ public class FFTComplexTest
 		assertArrayEquals(expResultIm, result[1], Math.ulp(1.0));		
 	}
 	
+	/**
+	 * Test of execute method, of class FFTComplex, with float arrays, compared
+	 * with execute on double arrays.
+	 */
+	@Test
+	public void testExecute_float()
+	{
+		System.out.println("Test of FFTComplex.execute(float[], float[], boolean, int, PaddingType, float[], float[])");
+		int recordLength = 12;
+		int numRecords = 3;
+		float[] realWaveforms = new float[recordLength*numRecords];
+		float[] imagWaveforms = new float[recordLength*numRecords];
+		for (int i=0; i<realWaveforms.length; i++) {
+			realWaveforms[i] = (float)Math.sin(0.3*i);
+			imagWaveforms[i] = (float)Math.cos(0.7*i);
+		}
+		double[] realDouble = new double[realWaveforms.length];
+		double[] imagDouble = new double[imagWaveforms.length];
+		for (int i=0; i<realWaveforms.length; i++) {
+			realDouble[i] = realWaveforms[i];
+			imagDouble[i] = imagWaveforms[i];
+		}
+		for (WaveformUtils.PaddingType paddingType : WaveformUtils.PaddingType.values()) {
+			int paddedRecordLength = paddingType.paddedLength(recordLength);
+			for (boolean isForward : new boolean[] {true, false}) {
+				double[][] expResult = FFTComplex.execute(realDouble, imagDouble, isForward, recordLength, paddingType);
+				float[] realOutput = new float[paddedRecordLength*numRecords];
+				float[] imagOutput = new float[paddedRecordLength*numRecords];
+				FFTComplex.execute(realWaveforms, imagWaveforms, isForward, recordLength, paddingType, realOutput, imagOutput);
+				for (int i=0; i<realOutput.length; i++) {
+					assertEquals((float)expResult[0][i], realOutput[i], 0.0f);
+					assertEquals((float)expResult[1][i], imagOutput[i], 0.0f);
+				}
+				
+				// null imaginary part is taken to be zero
+				expResult = FFTComplex.execute(realDouble, new double[realDouble.length], isForward, recordLength, paddingType);
+				FFTComplex.execute(realWaveforms, null, isForward, recordLength, paddingType, realOutput, imagOutput);
+				for (int i=0; i<realOutput.length; i++) {
+					assertEquals((float)expResult[0][i], realOutput[i], 0.0f);
+					assertEquals((float)expResult[1][i], imagOutput[i], 0.0f);
+				}
+			}
+		}
+	}
+	
 }
@@ -0,0 +1,243 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class FFTPlanTest
+{
+	/**
+	 * Test of getPlan method, of class FFTPlan.
+	 */
+	@Test
+	public void testGetPlan()
+	{
+		System.out.println("Test of FFTPlan.getPlan(int)");
+		FFTPlan plan = FFTPlan.getPlan(1024);
+		assertEquals(1024, plan.getLength());
+		assertSame(plan, FFTPlan.getPlan(1024));
+
+		// plans obtained before the cache is cleared remain usable
+		for (int n = 1; n <= 200; n++) {
+			assertEquals(n, FFTPlan.getPlan(n).getLength());
+		}
+		double[] re = new double[1024];
+		double[] im = new double[1024];
+		re[1] = 1.0;
+		plan.transform(re, im, true);
+		assertEquals(Math.cos(2.0 * Math.PI / 1024), re[1], 1.0e-15);
+		assertEquals(-Math.sin(2.0 * Math.PI / 1024), im[1], 1.0e-15);
+	}
+
+	/**
+	 * Test of transform method, of class FFTPlan.
+	 */
+	@Test
+	public void testTransform()
+	{
+		System.out.println("Test of FFTPlan.transform(double[], double[], boolean)");
+		double[] re = new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0};
+		double[] im = new double[]{7.0, 6.0, 5.0, 4.0, 3.0, 2.0, 1.0, 0.0};
+		FFTPlan plan = FFTPlan.getPlan(8);
+		plan.transform(re, im, true);
+		double[] expResultRe = new double[]{36.0, 5.6568542494923797, 0.0, -2.3431457505076194, -4.0, -5.6568542494923806, -8.0, -13.6568542494923797};
+		double[] expResultIm = new double[]{28.0, 13.6568542494923797, 8.0, 5.6568542494923806, 4.0, 2.3431457505076194, 0.0, -5.6568542494923797};
+		assertArrayEquals(expResultRe, re, Math.ulp(36.0));
+		assertArrayEquals(expResultIm, im, Math.ulp(28.0));
+
+		plan.transform(re, im, false);
+		expResultRe = new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0};
+		expResultIm = new double[]{7.0, 6.0, 5.0, 4.0, 3.0, 2.0, 1.0, 0.0};
+		assertArrayEquals(expResultRe, re, Math.ulp(8.0));
+		assertArrayEquals(expResultIm, im, Math.ulp(8.0));
+	}
+
+	/**
+	 * Test of realTransform method, of class FFTPlan.
+	 */
+	@Test
+	public void testRealTransform()
+	{
+		System.out.println("Test of FFTPlan.realTransform(double[], boolean)");
+		int n = 32;
+		double[] a = new double[n];
+		for (int i = 0; i < n; i++) {
+			a[i] = Math.sin(0.3 * i) + 0.01 * i * i - 1.0;
+		}
+		double[] original = Arrays.copyOf(a, n);
+
+		// compare with complex transform of same data
+		double[] re = Arrays.copyOf(a, n);
+		double[] im = new double[n];
+		FFTPlan plan = FFTPlan.getPlan(n);
+		plan.transform(re, im, true);
+		plan.realTransform(a, true);
+		assertEquals(re[0], a[0], 1.0e-12);
+		for (int k = 1; k < n / 2; k++) {
+			assertEquals(re[k], a[2 * k - 1], 1.0e-12);
+			assertEquals(im[k], a[2 * k], 1.0e-12);
+		}
+		assertEquals(re[n / 2], a[n - 1], 1.0e-12);
+
+		plan.realTransform(a, false);
+		assertArrayEquals(original, a, 1.0e-14);
+	}
+
+	/**
+	 * Test of transform method, of class FFTPlan, for lengths that are not
+	 * powers of 2 (mixed-radix and Bluestein algorithms).
+	 */
+	@Test
+	public void testTransformArbitraryLength()
+	{
+		System.out.println("Test of FFTPlan.transform(double[], double[], boolean), arbitrary lengths");
+		int[] lengths = new int[]{3, 5, 6, 7, 12, 15, 35, 60, 105, 1250, 11, 13, 97, 1100};
+		for (int n : lengths) {
+			double[] re = new double[n];
+			double[] im = new double[n];
+			for (int i = 0; i < n; i++) {
+				re[i] = Math.cos(0.7 * i) + 0.001 * i;
+				im[i] = Math.sin(1.3 * i) - 0.5;
+			}
+			double[][] expResult = dft(re, im);
+			double[] originalRe = Arrays.copyOf(re, n);
+			double[] originalIm = Arrays.copyOf(im, n);
+
+			FFTPlan plan = FFTPlan.getPlan(n);
+			plan.transform(re, im, true);
+			assertArrayEquals(expResult[0], re, 1.0e-10 * n);
+			assertArrayEquals(expResult[1], im, 1.0e-10 * n);
+
+			plan.transform(re, im, false);
+			assertArrayEquals(originalRe, re, 1.0e-12);
+			assertArrayEquals(originalIm, im, 1.0e-12);
+		}
+	}
+
+	/**
+	 * Test of realTransform method, of class FFTPlan, for lengths that are not
+	 * powers of 2.
+	 */
+	@Test
+	public void testRealTransformArbitraryLength()
+	{
+		System.out.println("Test of FFTPlan.realTransform(double[], boolean), arbitrary lengths");
+		int[] lengths = new int[]{3, 6, 9, 10, 11, 22, 45, 97, 1100};
+		for (int n : lengths) {
+			double[] a = new double[n];
+			for (int i = 0; i < n; i++) {
+				a[i] = Math.cos(0.7 * i) + 0.001 * i;
+			}
+			double[][] expResult = dft(a, new double[n]);
+			double[] original = Arrays.copyOf(a, n);
+
+			FFTPlan plan = FFTPlan.getPlan(n);
+			plan.realTransform(a, true);
+			assertEquals(expResult[0][0], a[0], 1.0e-10 * n);
+			for (int k = 1; k < (n + 1) / 2; k++) {
+				assertEquals(expResult[0][k], a[2 * k - 1], 1.0e-10 * n);
+				assertEquals(expResult[1][k], a[2 * k], 1.0e-10 * n);
+			}
+			if (n % 2 == 0) {
+				assertEquals(expResult[0][n / 2], a[n - 1], 1.0e-10 * n);
+			}
+
+			plan.realTransform(a, false);
+			assertArrayEquals(original, a, 1.0e-12);
+		}
+	}
+
+	/**
+	 * Test of transform and realTransform methods, of class FFTPlan, for one
+	 * plan of each algorithm shared by several threads, compared with the
+	 * results computed on a single thread.
+	 */
+	@Test
+	public void testTransformConcurrent() throws InterruptedException
+	{
+		System.out.println("Test of FFTPlan.transform(double[], double[], boolean), concurrent");
+		int[] lengths = new int[]{256, 105, 97};
+		int numThreads = 4;
+		for (int n : lengths) {
+			FFTPlan plan = FFTPlan.getPlan(n);
+			double[][] re = new double[numThreads][n];
+			double[][] im = new double[numThreads][n];
+			double[][] a = new double[numThreads][n];
+			double[][][] expResult = new double[numThreads][][];
+			double[][] expRealResult = new double[numThreads][];
+			for (int t = 0; t < numThreads; t++) {
+				for (int i = 0; i < n; i++) {
+					re[t][i] = Math.cos(0.7 * i + t);
+					im[t][i] = Math.sin(1.3 * i - t);
+					a[t][i] = Math.cos(0.3 * i * (t + 1));
+				}
+				expResult[t] = new double[][]{Arrays.copyOf(re[t], n), Arrays.copyOf(im[t], n)};
+				expRealResult[t] = Arrays.copyOf(a[t], n);
+				for (int pass = 0; pass < 100; pass++) {
+					plan.transform(expResult[t][0], expResult[t][1], pass % 2 == 0);
+					plan.realTransform(expRealResult[t], pass % 2 == 0);
+				}
+			}
+			Thread[] threads = new Thread[numThreads];
+			for (int t = 0; t < numThreads; t++) {
+				int thread = t;
+				threads[t] = new Thread(() -> {
+					for (int pass = 0; pass < 100; pass++) {
+						plan.transform(re[thread], im[thread], pass % 2 == 0);
+						plan.realTransform(a[thread], pass % 2 == 0);
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			for (int t = 0; t < numThreads; t++) {
+				assertArrayEquals(expResult[t][0], re[t], 0.0);
+				assertArrayEquals(expResult[t][1], im[t], 0.0);
+				assertArrayEquals(expRealResult[t], a[t], 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Test of nextFastLength method, of class FFTPlan.
+	 */
+	@Test
+	public void testNextFastLength()
+	{
+		System.out.println("Test of FFTPlan.nextFastLength(int)");
+		assertEquals(1120, FFTPlan.nextFastLength(1100));
+		assertEquals(1250, FFTPlan.nextFastLength(1250));
+		assertEquals(3000, FFTPlan.nextFastLength(3000));
+		assertEquals(1050, FFTPlan.nextFastLength(1025));
+		assertEquals(12, FFTPlan.nextFastLength(11));
+		assertEquals(2, FFTPlan.nextFastLength(2));
+		assertTrue(FFTPlan.isFastLength(2 * 3 * 5 * 7));
+		assertFalse(FFTPlan.isFastLength(11));
+	}
+
+	/**
+	 * Direct evaluation of the discrete Fourier transform.
+	 */
+	private static double[][] dft(double[] re, double[] im)
+	{
+		int n = re.length;
+		double[][] output = new double[2][n];
+		for (int k = 0; k < n; k++) {
+			for (int j = 0; j < n; j++) {
+				double theta = 2.0 * Math.PI * (((long)j * k) % n) / n;
+				double c = Math.cos(theta);
+				double s = Math.sin(theta);
+				output[0][k] += c * re[j] + s * im[j];
+				output[1][k] += c * im[j] - s * re[j];
+			}
+		}
+		return output;
+	}
+
+}
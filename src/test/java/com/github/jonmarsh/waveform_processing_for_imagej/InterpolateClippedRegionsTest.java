@@ -15,6 +15,7 @@
  */
 package com.github.jonmarsh.waveform_processing_for_imagej;
 
+import java.util.Arrays;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -37,6 +38,116 @@ public class InterpolateClippedRegionsTest
 		double[] expResult = null;
 		double[] result = InterpolateClippedRegions.execute(waveforms, recordLength, threshold);
 		assertNull(result);
+		assertNull(InterpolateClippedRegions.execute(new double[8], 4, 1.0, 1));
 	}
-	
+
+	/**
+	 * Test of execute method, of class InterpolateClippedRegions, fitting the
+	 * whole record, compared with a spline through the valid values.
+	 */
+	@Test
+	public void testExecute_wholeRecord()
+	{
+		System.out.println("Test of InterpolateClippedRegions.execute(double[], int, double)");
+		int recordLength = 40;
+		double[] waveforms = clippedSine(recordLength, 3);
+		double[] result = InterpolateClippedRegions.execute(waveforms, recordLength, 0.9);
+
+		// first two records are clipped, third record is not
+		double[] x = new double[recordLength];
+		double[] y = new double[recordLength];
+		int numberValid = 0;
+		for (int j = 0; j < recordLength; j++) {
+			if (Math.abs(waveforms[j]) < 0.9) {
+				x[numberValid] = j;
+				y[numberValid++] = waveforms[j];
+			}
+		}
+		assertTrue(numberValid < recordLength);
+		double[][] coeffs = WaveformUtils.cubicSplineInterpolant(Arrays.copyOf(x, numberValid), Arrays.copyOf(y, numberValid));
+		for (int j = 0; j < recordLength; j++) {
+			int k = 0;
+			while (k < numberValid - 2 && x[k + 1] <= j) {
+				k++;
+			}
+			double h = j - x[k];
+			assertEquals((float)(coeffs[0][k] + h * (coeffs[1][k] + h * (coeffs[2][k] + h * coeffs[3][k]))), result[j], 0.0);
+		}
+		assertArrayEquals(Arrays.copyOfRange(waveforms, 2 * recordLength, 3 * recordLength), Arrays.copyOfRange(result, 2 * recordLength, 3 * recordLength), 0.0);
+
+		// fewer than four valid values
+		result = InterpolateClippedRegions.execute(new double[]{5.0, 0.5, 5.0, 0.5, 5.0, 0.5, 5.0, 5.0}, 8, 1.0);
+		assertArrayEquals(new double[8], result, 0.0);
+	}
+
+	/**
+	 * Test of execute method, of class InterpolateClippedRegions, fitting a
+	 * neighborhood of each clipped run, compared with fitting the whole record.
+	 */
+	@Test
+	public void testExecute_neighborhood()
+	{
+		System.out.println("Test of InterpolateClippedRegions.execute(double[], int, double, int)");
+		int recordLength = 200;
+		double[] waveforms = clippedSine(recordLength, 3);
+		double[] expResult = InterpolateClippedRegions.execute(waveforms, recordLength, 0.9);
+		double[] result = InterpolateClippedRegions.execute(waveforms, recordLength, 0.9, 12);
+		for (int j = 0; j < waveforms.length; j++) {
+			if (Math.abs(waveforms[j]) < 0.9) {
+				assertEquals(waveforms[j], result[j], 0.0);
+			} else {
+				assertEquals(expResult[j], result[j], 1.0e-4);
+			}
+		}
+
+		// a neighborhood as large as the record gives the whole-record fit
+		result = InterpolateClippedRegions.execute(waveforms, recordLength, 0.9, recordLength);
+		for (int j = 0; j < waveforms.length; j++) {
+			assertEquals(expResult[j], result[j], Math.abs(waveforms[j]) < 0.9 ? Math.ulp(1.0f) : 0.0);
+		}
+	}
+
+	/**
+	 * Test of execute method, of class InterpolateClippedRegions, on float
+	 * records in place, compared with execute on double records.
+	 */
+	@Test
+	public void testExecute_float()
+	{
+		System.out.println("Test of InterpolateClippedRegions.execute(float[], int, double, int)");
+		int recordLength = 200;
+		double[] doubleWaveforms = clippedSine(recordLength, 3);
+		float[] waveforms = new float[doubleWaveforms.length];
+		for (int j = 0; j < waveforms.length; j++) {
+			waveforms[j] = (float)doubleWaveforms[j];
+			doubleWaveforms[j] = waveforms[j];
+		}
+		for (int neighborhoodSize : new int[]{0, 12}) {
+			float[] result = waveforms.clone();
+			InterpolateClippedRegions.execute(result, recordLength, 0.9, neighborhoodSize);
+			double[] expResult = InterpolateClippedRegions.execute(doubleWaveforms, recordLength, 0.9, neighborhoodSize);
+			for (int j = 0; j < waveforms.length; j++) {
+				assertEquals((float)expResult[j], result[j], 0.0f);
+			}
+		}
+
+		// invalid neighborhood size leaves waveforms unchanged
+		float[] result = waveforms.clone();
+		InterpolateClippedRegions.execute(result, recordLength, 0.9, 1);
+		assertArrayEquals(waveforms, result, 0.0f);
+	}
+
+	// Records of a slowly varying sinusoid with amplitude slightly above one, clipped where it exceeds 0.9
+	private static double[] clippedSine(int recordLength, int numRecords)
+	{
+		double[] waveforms = new double[recordLength * numRecords];
+		for (int j = 0; j < recordLength; j++) {
+			double x = 12.0 * Math.PI * j / recordLength;
+			waveforms[j] = Math.min(1.0, 1.1 * Math.sin(x));
+			waveforms[recordLength + j] = Math.min(1.0, 1.1 * Math.cos(x + 0.5));
+			waveforms[2 * recordLength + j] = 0.8 * Math.sin(x);
+		}
+		return waveforms;
+	}
+
 }
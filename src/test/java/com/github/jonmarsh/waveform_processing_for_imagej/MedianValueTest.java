@@ -32,4 +32,19 @@ public class MedianValueTest
 		assertArrayEquals(expResult, result, 0.0);
 	}
 
+	/**
+	 * Test of execute method for 8-bit and 16-bit data, of class MedianValue.
+	 */
+	@Test
+	public void testExecute_byteArr_shortArr()
+	{
+		System.out.println("Test of MedianValue.execute(byte[], int) and execute(short[], int)");
+		byte[] bytes = new byte[] {1, 5, 3, (byte)200, 2, (byte)255, 4, 10, 0, 5};
+		assertArrayEquals(new double[] {3.0, 5.0}, MedianValue.execute(bytes, 5), 0.0);
+		assertArrayEquals(new double[] {3.0, 101.5, 128.5, 7.0, 2.5}, MedianValue.execute(bytes, 2), 0.0);
+		short[] shorts = new short[] {1, 5, 3, (short)60000, 2, (short)65535, 4, 10, 0, 5};
+		assertArrayEquals(new double[] {3.0, 5.0}, MedianValue.execute(shorts, 5), 0.0);
+		assertNull(MedianValue.execute(shorts, 3));
+	}
+
 }
@@ -0,0 +1,132 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class MomentsTest
+{
+	/**
+	 * Test of combine method, of class Moments, comparing accumulators merged
+	 * at arbitrary split points with sequential accumulation.
+	 */
+	@Test
+	public void testCombine()
+	{
+		System.out.println("Test of Moments.combine(Moments)");
+		Random random = new Random(3);
+		double[] a = new double[1000];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = 100.0 + Math.exp(random.nextGaussian());
+		}
+		Moments expResult = new Moments();
+		expResult.add(a, 0, a.length);
+		for (int split : new int[]{0, 1, 2, 499, 998, 1000}) {
+			Moments left = new Moments();
+			Moments right = new Moments();
+			left.add(a, 0, split);
+			right.add(a, split, a.length);
+			left.combine(right);
+			assertMomentsEqual(expResult, left);
+			assertEquals(a.length - split, right.getN());
+		}
+	}
+
+	/**
+	 * Test of compute method, of class Moments, compared with the sequential
+	 * plug-in computations, for ranges spanning several chunks.
+	 */
+	@Test
+	public void testCompute_doubleArr()
+	{
+		System.out.println("Test of Moments.compute(double[], int, int)");
+		Random random = new Random(4);
+		int recordLength = 5 * Moments.CHUNK_LENGTH + 123;
+		double[] waveforms = new double[2 * recordLength];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = 10.0 + random.nextGaussian() + 0.5 * random.nextDouble();
+		}
+		double[] kurtoses = Kurtosis.execute(waveforms, recordLength);
+		double[] skewnesses = Skewness.execute(waveforms, recordLength, false);
+		for (int k = 0; k < 2; k++) {
+			Moments result = Moments.compute(waveforms, k * recordLength, (k + 1) * recordLength);
+			double[] meanAndVariance = WaveformUtils.meanAndVariance(waveforms, true, k * recordLength, (k + 1) * recordLength);
+			assertEquals(recordLength, result.getN());
+			assertEquals(meanAndVariance[0], result.getMean(), 1.0e-12);
+			assertEquals(meanAndVariance[1], result.getVariance(true), 1.0e-12);
+			assertEquals(skewnesses[k], result.getSkewness(false), 1.0e-7);
+			assertEquals(kurtoses[k], result.getKurtosis(), 1.0e-10);
+			assertEquals(MinimumValue.execute(waveforms, recordLength)[k], result.getMin(), 0.0);
+			assertEquals(MaximumValue.execute(waveforms, recordLength)[k], result.getMax(), 0.0);
+		}
+
+		// result does not depend on the number of threads
+		int numberOfThreads = RecordParallelExecutor.getNumberOfThreads();
+		try {
+			RecordParallelExecutor.setNumberOfThreads(1);
+			Moments expResult = Moments.compute(waveforms, 0, waveforms.length);
+			RecordParallelExecutor.setNumberOfThreads(3);
+			Moments result = Moments.compute(waveforms, 0, waveforms.length);
+			assertEquals(expResult.getMean(), result.getMean(), 0.0);
+			assertEquals(expResult.getKurtosis(), result.getKurtosis(), 0.0);
+		} finally {
+			RecordParallelExecutor.setNumberOfThreads(numberOfThreads);
+		}
+	}
+
+	/**
+	 * Test of the moment-based plug-ins for records long enough to be divided
+	 * among threads, compared with sequential accumulation.
+	 */
+	@Test
+	public void testLongRecord()
+	{
+		System.out.println("Test of Kurtosis, Skewness and Variance for long records");
+		int recordLength = Moments.PARALLEL_RECORD_LENGTH;
+		float[] waveform = new float[recordLength];
+		for (int i = 0; i < recordLength; i++) {
+			waveform[i] = (float)(Math.sin(0.001 * i) + 0.1 * Math.cos(0.37 * i) * Math.sin(0.0001 * i));
+		}
+		Moments expResult = new Moments();
+		expResult.add(waveform, 0, recordLength);
+		assertEquals(expResult.getKurtosis(), Kurtosis.execute(waveform, recordLength)[0], 1.0e-10);
+		assertEquals(expResult.getSkewness(true), Skewness.execute(waveform, recordLength, true)[0], 1.0e-7);
+		assertEquals(expResult.getVariance(false), Variance.execute(waveform, recordLength, false)[0], 1.0e-12);
+	}
+
+	/**
+	 * Test of compute method, of class Moments, for short and empty ranges.
+	 */
+	@Test
+	public void testCompute_floatArr()
+	{
+		System.out.println("Test of Moments.compute(float[], int, int)");
+		float[] a = new float[]{2.0f, -1.0f, 4.0f, 3.0f};
+		Moments result = Moments.compute(a, 0, 4);
+		assertEquals(4, result.getN());
+		assertEquals(2.0, result.getMean(), 0.0);
+		assertEquals(3.5, result.getVariance(false), 1.0e-15);
+		assertEquals(-1.0, result.getMin(), 0.0);
+		assertEquals(4.0, result.getMax(), 0.0);
+
+		result = Moments.compute(a, 2, 2);
+		assertEquals(0, result.getN());
+		assertTrue(Double.isNaN(result.getMean()));
+	}
+
+	private static void assertMomentsEqual(Moments expected, Moments actual)
+	{
+		assertEquals(expected.getN(), actual.getN());
+		assertEquals(expected.getMean(), actual.getMean(), 1.0e-12);
+		assertEquals(expected.getVariance(false), actual.getVariance(false), 1.0e-12);
+		assertEquals(expected.getSkewness(true), actual.getSkewness(true), 1.0e-10);
+		assertEquals(expected.getKurtosis(), actual.getKurtosis(), 1.0e-10);
+		assertEquals(expected.getMin(), actual.getMin(), 0.0);
+		assertEquals(expected.getMax(), actual.getMax(), 0.0);
+	}
+
+}
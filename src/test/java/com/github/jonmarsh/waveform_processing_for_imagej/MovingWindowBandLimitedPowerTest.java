@@ -0,0 +1,108 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class MovingWindowBandLimitedPowerTest
+{
+	/**
+	 * Test of execute method, of class MovingWindowBandLimitedPower, comparing
+	 * sliding and direct evaluation with a brute-force windowed DFT.
+	 */
+	@Test
+	public void testExecute_7args()
+	{
+		System.out.println("Test of MovingWindowBandLimitedPower.execute(double[], int, int, int, int, WindowType, double)");
+		WaveformUtils.WindowType[] windowTypes = new WaveformUtils.WindowType[]{
+			WaveformUtils.WindowType.HAMMING,
+			WaveformUtils.WindowType.BLACKMAN_NUTTALL,
+			WaveformUtils.WindowType.FLAT_TOP,
+			WaveformUtils.WindowType.RECTANGLE,
+			WaveformUtils.WindowType.GAUSSIAN
+		};
+		int[][] parameters = new int[][]{
+			// recordLength, radius, loIndex, hiIndex
+			{200, 6, 10, 30},
+			{1500, 20, 100, 130},
+			{50, 30, 0, 5},
+			{64, 0, 3, 9}
+		};
+		int numRecords = 3;
+
+		for (WaveformUtils.WindowType windowType : windowTypes) {
+			for (int[] p : parameters) {
+				int recordLength = p[0];
+				int radius = p[1];
+				int loIndex = p[2];
+				int hiIndex = p[3];
+				double[] waveforms = new double[numRecords * recordLength];
+				for (int i = 0; i < waveforms.length; i++) {
+					waveforms[i] = Math.sin(0.37 * i) + 0.5 * Math.cos(1.9 * i + 0.3) + 0.01 * (i % 17);
+				}
+				double[] expResult = new double[waveforms.length];
+				for (int i = 0; i < numRecords; i++) {
+					double[] record = new double[recordLength];
+					System.arraycopy(waveforms, i * recordLength, record, 0, recordLength);
+					double[] result = bandLimitedPower(record, radius, loIndex, hiIndex, windowType, 0.3);
+					System.arraycopy(result, 0, expResult, i * recordLength, recordLength);
+				}
+
+				MovingWindowBandLimitedPower.execute(waveforms, recordLength, radius, loIndex, hiIndex, windowType, 0.3);
+				assertArrayEquals(expResult, waveforms, 1.0e-8);
+			}
+		}
+	}
+
+	/**
+	 * Test of execute method, of class MovingWindowBandLimitedPower, for float
+	 * input.
+	 */
+	@Test
+	public void testExecute_floatArr()
+	{
+		System.out.println("Test of MovingWindowBandLimitedPower.execute(float[], int, int, int, int, WindowType, double)");
+		int recordLength = 300;
+		double[] waveforms = new double[2 * recordLength];
+		float[] floatWaveforms = new float[waveforms.length];
+		for (int i = 0; i < waveforms.length; i++) {
+			floatWaveforms[i] = (float)(Math.sin(0.11 * i) + 0.2 * Math.cos(2.1 * i));
+			waveforms[i] = floatWaveforms[i];
+		}
+		MovingWindowBandLimitedPower.execute(waveforms, recordLength, 10, 5, 40, WaveformUtils.WindowType.HANNING, 0.0);
+		MovingWindowBandLimitedPower.execute(floatWaveforms, recordLength, 10, 5, 40, WaveformUtils.WindowType.HANNING, 0.0);
+		for (int i = 0; i < waveforms.length; i++) {
+			assertEquals((float)waveforms[i], floatWaveforms[i], 0.0f);
+		}
+	}
+
+	/**
+	 * Direct evaluation of mean log power spectrum in a moving window.
+	 */
+	private static double[] bandLimitedPower(double[] a, int radius, int loIndex, int hiIndex, WaveformUtils.WindowType windowType, double windowParameter)
+	{
+		int length = a.length;
+		double[] weights = WaveformUtils.windowFunction(windowType, 2 * radius + 1, windowParameter, true);
+		double[] result = new double[length];
+		for (int i = 0; i < length; i++) {
+			double sum = 0.0;
+			for (int k = loIndex; k < hiIndex; k++) {
+				double re = 0.0;
+				double im = 0.0;
+				for (int n = Math.max(i - radius, 0); n <= Math.min(i + radius, length - 1); n++) {
+					double theta = 2.0 * Math.PI * (((long)k * n) % length) / length;
+					double w = weights[n - i + radius] * a[n];
+					re += w * Math.cos(theta);
+					im -= w * Math.sin(theta);
+				}
+				sum += Math.log10(re * re + im * im);
+			}
+			result[i] = 10.0 * sum / (hiIndex - loIndex);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class MovingWindowConvolutionTest
+{
+	/**
+	 * Test of convolve method, of class MovingWindowConvolution, comparing all
+	 * algorithms with a brute-force computation.
+	 */
+	@Test
+	public void testConvolve()
+	{
+		System.out.println("Test of MovingWindowConvolution.convolve(double[], double[], double[], int)");
+		int[] recordLengths = new int[]{50, 301, 5000};
+		int[] radii = new int[]{0, 3, 24, 100, 1200};
+		for (int recordLength : recordLengths) {
+			double[] waveform = new double[recordLength];
+			for (int i = 0; i < recordLength; i++) {
+				waveform[i] = Math.sin(0.05 * i) + 0.3 * Math.cos(1.7 * i) + 2.0;
+			}
+			for (int radius : radii) {
+				if (2 * radius + 1 >= recordLength) {
+					continue;
+				}
+				for (WaveformUtils.WindowType windowType : new WaveformUtils.WindowType[]{WaveformUtils.WindowType.HANNING, WaveformUtils.WindowType.RECTANGLE}) {
+					double[] weights = WaveformUtils.windowFunctionSingleSided(windowType, radius, 0.0, true);
+					double[] expResult = convolve(waveform, weights);
+					for (MovingWindowConvolution.Algorithm algorithm : MovingWindowConvolution.Algorithm.values()) {
+						if (algorithm == MovingWindowConvolution.Algorithm.RUNNING_SUM && windowType != WaveformUtils.WindowType.RECTANGLE) {
+							continue;
+						}
+						MovingWindowConvolution convolution = new MovingWindowConvolution(weights, recordLength, algorithm);
+						assertEquals(algorithm, convolution.getAlgorithm());
+						double[] extendedWaveform = new double[recordLength + 2 * radius];
+						System.arraycopy(waveform, 0, extendedWaveform, radius, recordLength);
+						double[] result = new double[recordLength + 3];
+						convolution.convolve(extendedWaveform, convolution.createWorkspace(), result, 3);
+						for (int i = 0; i < recordLength; i++) {
+							assertEquals(expResult[i], result[i + 3], 1.0e-12);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of getAlgorithm method, of class MovingWindowConvolution, for
+	 * automatic selection.
+	 */
+	@Test
+	public void testGetAlgorithm()
+	{
+		System.out.println("Test of MovingWindowConvolution.getAlgorithm()");
+		assertEquals(MovingWindowConvolution.Algorithm.DIRECT, new MovingWindowConvolution(WaveformUtils.windowFunctionSingleSided(WaveformUtils.WindowType.HANNING, 2, 0.0, true), 4096).getAlgorithm());
+		assertEquals(MovingWindowConvolution.Algorithm.FFT, new MovingWindowConvolution(WaveformUtils.windowFunctionSingleSided(WaveformUtils.WindowType.HANNING, 200, 0.0, true), 4096).getAlgorithm());
+		assertEquals(MovingWindowConvolution.Algorithm.RUNNING_SUM, new MovingWindowConvolution(WaveformUtils.windowFunctionSingleSided(WaveformUtils.WindowType.RECTANGLE, 200, 0.0, true), 4096).getAlgorithm());
+	}
+
+	/**
+	 * Test of constructor, of class MovingWindowConvolution, for a running sum
+	 * with unequal weights.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testRunningSumUnequalWeights()
+	{
+		System.out.println("Test of MovingWindowConvolution(double[], int, Algorithm), unequal weights");
+		new MovingWindowConvolution(new double[]{0.5, 0.25}, 10, MovingWindowConvolution.Algorithm.RUNNING_SUM);
+	}
+
+	/**
+	 * Brute-force convolution with mirrored boundaries.
+	 */
+	private static double[] convolve(double[] waveform, double[] weights)
+	{
+		int n = waveform.length;
+		int radius = weights.length - 1;
+		double[] output = new double[n];
+		for (int j = 0; j < n; j++) {
+			for (int k = -radius; k <= radius; k++) {
+				int index = j + k;
+				if (index < 0) {
+					index = -index;
+				} else if (index > n - 1) {
+					index = 2 * (n - 1) - index;
+				}
+				output[j] += weights[Math.abs(k)] * waveform[index];
+			}
+		}
+		return output;
+	}
+
+}
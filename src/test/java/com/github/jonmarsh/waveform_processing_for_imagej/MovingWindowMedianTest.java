@@ -1,6 +1,8 @@
 package com.github.jonmarsh.waveform_processing_for_imagej;
 
 
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -46,4 +48,57 @@ public class MovingWindowMedianTest
 		assertArrayEquals(expResult, waveforms, 0.0);
 	}
 
+	/**
+	 * Test of execute method, of class MovingWindowMedian, for float input.
+	 */
+	@Test
+	public void testExecute_floatArr()
+	{
+		System.out.println("Test of MovingWindowMedian.execute(float[], int, int)");
+		float[] waveforms = new float[] {1.0f, 5.0f, 2.0f, 3.0f, 2.2f, -1.0f, 4.0f, 5.0f, 0.0f, 0.0f, 3.2f, -0.5f, 1.1f, 2.2f, 1.1f, 4.0f};
+		int recordLength = 8;
+		int radius = 2;
+		float[] expResult = new float[] {2.0f, 3.0f, 2.2f, 2.2f, 2.2f, 3.0f, 4.0f, 4.0f, 0.0f, 0.0f, 0.0f, 1.1f, 1.1f, 1.1f, 1.1f, 2.2f};
+		MovingWindowMedian.execute(waveforms, recordLength, radius);
+		assertArrayEquals(expResult, waveforms, 0.0f);
+	}
+
+	/**
+	 * Test of execute method, of class MovingWindowMedian, comparing with a
+	 * brute-force computation for noisy data with repeated values.
+	 */
+	@Test
+	public void testExecute_largeRadius()
+	{
+		System.out.println("Test of MovingWindowMedian.execute(), large radius");
+		int recordLength = 1000;
+		Random random = new Random(11);
+		double[] waveforms = new double[2 * recordLength];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = (i < recordLength) ? random.nextGaussian() : Math.round(4.0 * random.nextGaussian());
+		}
+		for (int radius : new int[]{1, 2, 7, 50, 150, 499}) {
+			double[] expResult = new double[waveforms.length];
+			double[] segment = new double[2 * radius + 1];
+			for (int i = 0; i < waveforms.length; i += recordLength) {
+				for (int j = 0; j < recordLength; j++) {
+					for (int k = -radius; k <= radius; k++) {
+						int index = j + k;
+						if (index < 0) {
+							index = -index;
+						} else if (index > recordLength - 1) {
+							index = 2 * (recordLength - 1) - index;
+						}
+						segment[k + radius] = waveforms[i + index];
+					}
+					Arrays.sort(segment);
+					expResult[i + j] = segment[radius];
+				}
+			}
+			double[] result = waveforms.clone();
+			MovingWindowMedian.execute(result, recordLength, radius);
+			assertArrayEquals(expResult, result, 0.0);
+		}
+	}
+
 }
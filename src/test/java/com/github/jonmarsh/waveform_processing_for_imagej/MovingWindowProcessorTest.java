@@ -0,0 +1,121 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class MovingWindowProcessorTest
+{
+	/**
+	 * Test of execute method, of class MovingWindowProcessor, with a moving
+	 * sum compared with a brute-force computation.
+	 */
+	@Test
+	public void testExecute_doubleArr()
+	{
+		System.out.println("Test of MovingWindowProcessor.execute(double[], int, int, Supplier)");
+		int recordLength = 40;
+		int numRecords = 3;
+		for (int radius = 0; radius < recordLength; radius += 7) {
+			double[] waveforms = new double[recordLength * numRecords];
+			for (int i = 0; i < waveforms.length; i++) {
+				waveforms[i] = (i * 37) % 11 - 5;
+			}
+			double[] expResult = new double[waveforms.length];
+			for (int i = 0; i < numRecords; i++) {
+				for (int j = 0; j < recordLength; j++) {
+					for (int k = j - radius; k <= j + radius; k++) {
+						int index = (k < 0) ? -k : (k > recordLength - 1) ? 2 * (recordLength - 1) - k : k;
+						expResult[i * recordLength + j] += waveforms[i * recordLength + index];
+					}
+				}
+			}
+			MovingWindowProcessor.execute(waveforms, recordLength, radius, SumAccumulator::new);
+			assertArrayEquals(expResult, waveforms, 0.0);
+		}
+	}
+
+	/**
+	 * Test of Stream class, of class MovingWindowProcessor, comparing records
+	 * written in chunks of various sizes with whole records.
+	 */
+	@Test
+	public void testStream()
+	{
+		System.out.println("Test of MovingWindowProcessor.Stream");
+		int recordLength = 500;
+		double[] waveform = new double[recordLength];
+		for (int i = 0; i < recordLength; i++) {
+			waveform[i] = Math.sin(0.13 * i) + 0.4 * Math.cos(1.3 * i);
+		}
+		for (int radius : new int[]{0, 1, 5, 60, 499}) {
+			double[] expResult = new double[recordLength];
+			double[] extendedWaveform = new double[recordLength + 2 * radius];
+			System.arraycopy(waveform, 0, extendedWaveform, radius, recordLength);
+			MovingWindowProcessor.processRecord(extendedWaveform, recordLength, radius, new MovingWindowRange.RangeAccumulator(2 * radius + 1), expResult, 0);
+
+			MovingWindowProcessor.Stream stream = new MovingWindowProcessor.Stream(radius, new MovingWindowRange.RangeAccumulator(2 * radius + 1));
+			for (int chunkLength : new int[]{1, 7, 64, recordLength}) {
+				double[] result = new double[recordLength];
+				int numOutputs = 0;
+				for (int from = 0; from < recordLength; from += chunkLength) {
+					numOutputs += stream.write(waveform, from, Math.min(from + chunkLength, recordLength), result, numOutputs);
+				}
+				numOutputs += stream.finish(result, numOutputs);
+				assertEquals(recordLength, numOutputs);
+				assertArrayEquals(expResult, result, 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Test of finish method, of class MovingWindowProcessor.Stream, for a
+	 * record that is too short.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testStreamFinishShortRecord()
+	{
+		System.out.println("Test of MovingWindowProcessor.Stream.finish(double[], int), short record");
+		MovingWindowProcessor.Stream stream = new MovingWindowProcessor.Stream(3, new SumAccumulator());
+		double[] output = new double[4];
+		stream.write(new double[]{1.0, 2.0, 3.0}, 0, 3, output, 0);
+		stream.finish(output, 0);
+	}
+
+	/**
+	 * Moving sum, as an example of an accumulator defined outside the
+	 * moving-window plug-ins.
+	 */
+	private static final class SumAccumulator implements MovingWindowProcessor.Accumulator
+	{
+		private double sum;
+
+		@Override
+		public void clear()
+		{
+			sum = 0.0;
+		}
+
+		@Override
+		public void add(double value)
+		{
+			sum += value;
+		}
+
+		@Override
+		public void remove(double value)
+		{
+			sum -= value;
+		}
+
+		@Override
+		public double getResult()
+		{
+			return sum;
+		}
+	}
+
+}
@@ -62,4 +62,42 @@ public class MovingWindowRangeTest
 		assertArrayEquals(expResult, waveforms, 0.0);
 	}
 
+	/**
+	 * Test of execute method, of class MovingWindowRange, comparing with a
+	 * brute-force computation for large radii.
+	 */
+	@Test
+	public void testExecute_largeRadius()
+	{
+		System.out.println("Test of MovingWindowRange.execute(), large radius");
+		int recordLength = 1000;
+		double[] waveforms = new double[3 * recordLength];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = Math.sin(0.013 * i) * Math.cos(0.21 * i) + ((i % 97 == 0) ? 2.0 : 0.0) - 0.0005 * i;
+		}
+		for (int radius : new int[]{1, 7, 200, 499}) {
+			double[] expResult = new double[waveforms.length];
+			for (int i = 0; i < waveforms.length; i += recordLength) {
+				for (int j = 0; j < recordLength; j++) {
+					double max = Double.NEGATIVE_INFINITY;
+					double min = Double.POSITIVE_INFINITY;
+					for (int k = -radius; k <= radius; k++) {
+						int index = j + k;
+						if (index < 0) {
+							index = -index;
+						} else if (index > recordLength - 1) {
+							index = 2 * (recordLength - 1) - index;
+						}
+						max = Math.max(max, waveforms[i + index]);
+						min = Math.min(min, waveforms[i + index]);
+					}
+					expResult[i + j] = max - min;
+				}
+			}
+			double[] result = waveforms.clone();
+			MovingWindowRange.execute(result, recordLength, radius);
+			assertArrayEquals(expResult, result, 0.0);
+		}
+	}
+
 }
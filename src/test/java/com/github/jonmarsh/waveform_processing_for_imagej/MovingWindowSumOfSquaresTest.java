@@ -76,4 +76,105 @@ public class MovingWindowSumOfSquaresTest
 		
 	}
 
+	/**
+	 * Test of executeMultiScale method, of class MovingWindowSumOfSquares,
+	 * compared with execute at each radius.
+	 */
+	@Test
+	public void testExecuteMultiScale()
+	{
+		System.out.println("Test of MovingWindowSumOfSquares.executeMultiScale(double[], int, int[], WindowType, double, boolean)");
+		int recordLength = 1500;
+		int numRecords = 2;
+		int[] radii = new int[]{0, 2, 12, 100, 300};
+		double[] waveforms = new double[recordLength * numRecords];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = Math.sin(0.02 * i) + 0.5 * Math.cos(0.9 * i) + 0.1;
+		}
+		for (WaveformUtils.WindowType windowType : new WaveformUtils.WindowType[]{WaveformUtils.WindowType.RECTANGLE, WaveformUtils.WindowType.HAMMING}) {
+			for (boolean logOutput : new boolean[]{false, true}) {
+				double[] input = waveforms.clone();
+				double[][] result = MovingWindowSumOfSquares.executeMultiScale(input, recordLength, radii, windowType, 0.0, logOutput);
+				assertArrayEquals(waveforms, input, 0.0);
+				for (int s = 0; s < radii.length; s++) {
+					double[] expResult = waveforms.clone();
+					MovingWindowSumOfSquares.execute(expResult, recordLength, radii[s], windowType, 0.0, logOutput);
+					for (int i = 0; i < waveforms.length; i++) {
+						assertEquals(expResult[i], result[s][i], 1.0e-10 * (1.0 + Math.abs(expResult[i])));
+					}
+				}
+			}
+		}
+		assertNull(MovingWindowSumOfSquares.executeMultiScale(waveforms, recordLength, new int[]{-1}, WaveformUtils.WindowType.RECTANGLE, 0.0, false));
+	}
+
+	/**
+	 * Test of execute method, of class MovingWindowSumOfSquares, for records
+	 * with a zero tail, compared with direct summation; sums computed by FFT
+	 * convolution or running sums must not go negative where the window
+	 * covers only zeros.
+	 */
+	@Test
+	public void testExecute_zeroTail()
+	{
+		System.out.println("Test of MovingWindowSumOfSquares.execute(double[]/float[], int, int, WindowType, double, boolean), zero tail");
+		int recordLength = 2000;
+		int numRecords = 2;
+		int radius = 200;
+		double[] waveforms = new double[recordLength * numRecords];
+		for (int i = 0; i < numRecords; i++) {
+			for (int j = 0; j < recordLength / 2; j++) {
+				waveforms[i * recordLength + j] = 1000.0 * Math.sin(0.05 * j + i) + 300.0 * Math.cos(0.7 * j);
+			}
+		}
+		for (WaveformUtils.WindowType windowType : new WaveformUtils.WindowType[]{WaveformUtils.WindowType.HAMMING, WaveformUtils.WindowType.RECTANGLE}) {
+
+			// direct summation over the waveform mirrored about its end points
+			double[] weights = WaveformUtils.windowFunctionSingleSided(windowType, radius, 0.0, true);
+			double[] expResult = new double[waveforms.length];
+			for (int i = 0; i < numRecords; i++) {
+				for (int j = 0; j < recordLength; j++) {
+					double sum = 0.0;
+					for (int k = -radius; k <= radius; k++) {
+						int m = Math.abs(j + k);
+						if (m > recordLength - 1) {
+							m = 2 * (recordLength - 1) - m;
+						}
+						double x = weights[Math.abs(k)] * waveforms[i * recordLength + m];
+						sum += x * x;
+					}
+					expResult[i * recordLength + j] = sum;
+				}
+			}
+
+			double[] result = waveforms.clone();
+			MovingWindowSumOfSquares.execute(result, recordLength, radius, windowType, 0.0, false);
+			for (int i = 0; i < waveforms.length; i++) {
+				assertTrue(result[i] >= 0.0);
+				assertEquals(expResult[i], result[i], 1.0e-10 * (1.0 + expResult[i]));
+			}
+			result = waveforms.clone();
+			MovingWindowSumOfSquares.execute(result, recordLength, radius, windowType, 0.0, true);
+			for (int i = 0; i < waveforms.length; i++) {
+				assertFalse(Double.isNaN(result[i]));
+			}
+
+			float[] resultFloat = new float[waveforms.length];
+			for (int i = 0; i < waveforms.length; i++) {
+				resultFloat[i] = (float)waveforms[i];
+			}
+			MovingWindowSumOfSquares.execute(resultFloat, recordLength, radius, windowType, 0.0, true);
+			for (int i = 0; i < waveforms.length; i++) {
+				assertFalse(Float.isNaN(resultFloat[i]));
+			}
+
+			double[][] multiScale = MovingWindowSumOfSquares.executeMultiScale(waveforms, recordLength, new int[]{radius, radius / 2}, windowType, 0.0, true);
+			for (double[] scale : multiScale) {
+				for (int i = 0; i < waveforms.length; i++) {
+					assertFalse(Double.isNaN(scale[i]));
+				}
+			}
+		}
+	}
+
 }
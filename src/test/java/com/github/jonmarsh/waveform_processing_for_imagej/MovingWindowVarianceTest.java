@@ -46,4 +46,130 @@ public class MovingWindowVarianceTest
 		assertArrayEquals(expResult, waveforms, Math.ulp(10.0));
 	}
 
+	/**
+	 * Test of execute method, of class MovingWindowVariance, comparing with a
+	 * two-pass computation for wide windows and a large offset.
+	 */
+	@Test
+	public void testExecute_largeRadius()
+	{
+		System.out.println("Test of MovingWindowVariance.execute(), large radius");
+		int recordLength = 2000;
+		double[] waveforms = new double[2 * recordLength];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = 1.0e6 + Math.sin(0.017 * i) * Math.cos(0.31 * i) + 0.001 * i;
+		}
+		for (int radius : new int[]{3, 250, 900}) {
+			double[] expResult = new double[waveforms.length];
+			for (int i = 0; i < waveforms.length; i += recordLength) {
+				for (int j = 0; j < recordLength; j++) {
+					double mean = 0.0;
+					for (int k = -radius; k <= radius; k++) {
+						mean += waveforms[i + mirror(j + k, recordLength)];
+					}
+					mean /= 2 * radius + 1;
+					double m2 = 0.0;
+					for (int k = -radius; k <= radius; k++) {
+						double delta = waveforms[i + mirror(j + k, recordLength)] - mean;
+						m2 += delta * delta;
+					}
+					expResult[i + j] = m2 / (2 * radius);
+				}
+			}
+			double[] result = waveforms.clone();
+			MovingWindowVariance.execute(result, recordLength, radius, true);
+			for (int i = 0; i < waveforms.length; i++) {
+				assertEquals(expResult[i], result[i], 1.0e-9 * expResult[i]);
+			}
+		}
+	}
+
+	private static int mirror(int index, int length)
+	{
+		if (index < 0) {
+			return -index;
+		} else if (index > length - 1) {
+			return 2 * (length - 1) - index;
+		}
+		return index;
+	}
+
+	/**
+	 * Test of executeMultiScale method, of class MovingWindowVariance,
+	 * compared with execute at each radius.
+	 */
+	@Test
+	public void testExecuteMultiScale()
+	{
+		System.out.println("Test of MovingWindowVariance.executeMultiScale(double[], int, int[], boolean)");
+		int recordLength = 2000;
+		int numRecords = 3;
+		int[] radii = new int[]{1, 3, 16, 64, 250};
+		double[] waveforms = new double[recordLength * numRecords];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = 1000.0 + Math.sin(0.01 * i) * (5.0 + Math.cos(0.37 * i)) + ((i / 500) % 2) * 200.0;
+		}
+		for (boolean unbiased : new boolean[]{false, true}) {
+			double[] input = waveforms.clone();
+			double[][] result = MovingWindowVariance.executeMultiScale(input, recordLength, radii, unbiased);
+			assertArrayEquals(waveforms, input, 0.0);
+			assertEquals(radii.length, result.length);
+			for (int s = 0; s < radii.length; s++) {
+				double[] expResult = waveforms.clone();
+				MovingWindowVariance.execute(expResult, recordLength, radii[s], unbiased);
+				for (int i = 0; i < waveforms.length; i++) {
+					assertEquals(expResult[i], result[s][i], 1.0e-9 * (1.0 + expResult[i]));
+				}
+			}
+			float[] floatInput = new float[waveforms.length];
+			for (int i = 0; i < waveforms.length; i++) {
+				floatInput[i] = (float)waveforms[i];
+			}
+			float[][] floatResult = MovingWindowVariance.executeMultiScale(floatInput, recordLength, radii, unbiased);
+			for (int s = 0; s < radii.length; s++) {
+				float[] expResult = floatInput.clone();
+				MovingWindowVariance.execute(expResult, recordLength, radii[s], unbiased);
+				assertArrayEquals(expResult, floatResult[s], 1.0e-3f);
+			}
+		}
+		assertNull(MovingWindowVariance.executeMultiScale(waveforms, recordLength, new int[]{1, 1000}, false));
+		assertNull(MovingWindowVariance.executeMultiScale(waveforms, recordLength, new int[]{0, 2}, false));
+	}
+
+	/**
+	 * Test of executeMultiScale method, of class MovingWindowVariance, with
+	 * small variations on large offsets of opposite sign, compared with a
+	 * direct two-pass computation in each window and with execute.
+	 */
+	@Test
+	public void testExecuteMultiScale_largeOffset()
+	{
+		System.out.println("Test of MovingWindowVariance.executeMultiScale(), large offset");
+		int recordLength = 256;
+		int radius = 4;
+		int windowLength = 2 * radius + 1;
+		double[] waveform = new double[recordLength];
+		for (int i = 0; i < recordLength; i++) {
+			waveform[i] = ((i < recordLength / 2) ? 1.0e6 : -1.0e6) + 1.0e-3 * Math.sin(0.7 * i);
+		}
+		double[][] result = MovingWindowVariance.executeMultiScale(waveform, recordLength, new int[]{radius}, true);
+		double[] singleScaleResult = waveform.clone();
+		MovingWindowVariance.execute(singleScaleResult, recordLength, radius, true);
+		for (int i = radius; i < recordLength - radius; i++) {
+			double mean = 0.0;
+			for (int k = i - radius; k <= i + radius; k++) {
+				mean += waveform[k];
+			}
+			mean /= windowLength;
+			double m2 = 0.0;
+			for (int k = i - radius; k <= i + radius; k++) {
+				m2 += (waveform[k] - mean) * (waveform[k] - mean);
+			}
+			double expResult = m2 / (windowLength - 1);
+			assertTrue(expResult > 1.0e-7);
+			assertEquals(expResult, result[0][i], 1.0e-6 * expResult);
+			assertEquals(expResult, singleScaleResult[i], 1.0e-6 * expResult);
+		}
+	}
+
 }
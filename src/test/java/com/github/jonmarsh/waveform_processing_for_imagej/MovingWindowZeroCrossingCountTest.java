@@ -80,5 +80,42 @@ public class MovingWindowZeroCrossingCountTest
 		MovingWindowZeroCrossingCount.execute(waveforms, recordLength, radius);
 		assertArrayEquals(expResult, waveforms, 0.0);
 	}
-	
+
+	/**
+	 * Test of execute method, of class MovingWindowZeroCrossingCount, with
+	 * windows that extend beyond both ends of the record, compared with a
+	 * brute-force count.
+	 */
+	@Test
+	public void testExecute_largeRadius()
+	{
+		System.out.println("Test of MovingWindowZeroCrossingCount, large radius");
+		int recordLength = 300;
+		int numRecords = 2;
+		for (int radius : new int[]{3, 40, 149}) {
+			double[] waveforms = new double[recordLength * numRecords];
+			for (int i = 0; i < waveforms.length; i++) {
+				waveforms[i] = (i % 23 == 0) ? 0.0 : Math.sin(0.3 * i) + 0.2 * Math.cos(2.3 * i);
+			}
+			double[] expResult = new double[waveforms.length];
+			for (int i = 0; i < numRecords; i++) {
+				int offset = i * recordLength;
+				for (int j = 0; j < recordLength; j++) {
+					for (int k = j - radius; k < j + radius; k++) {
+						if (waveforms[offset + mirror(k, recordLength)] * waveforms[offset + mirror(k + 1, recordLength)] < 0.0) {
+							expResult[offset + j]++;
+						}
+					}
+				}
+			}
+			MovingWindowZeroCrossingCount.execute(waveforms, recordLength, radius);
+			assertArrayEquals(expResult, waveforms, 0.0);
+		}
+	}
+
+	private static int mirror(int index, int length)
+	{
+		return (index < 0) ? -index : (index > length - 1) ? 2 * (length - 1) - index : index;
+	}
+
 }
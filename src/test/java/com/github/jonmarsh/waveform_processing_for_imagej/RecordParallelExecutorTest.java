@@ -0,0 +1,69 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class RecordParallelExecutorTest
+{
+	@After
+	public void tearDown()
+	{
+		RecordParallelExecutor.setNumberOfThreads(0);
+	}
+
+	/**
+	 * Test of execute method, of class RecordParallelExecutor.
+	 */
+	@Test
+	public void testExecute()
+	{
+		System.out.println("Test of RecordParallelExecutor.execute(int, RecordRangeTask)");
+		for (int numberOfThreads : new int[]{1, 3, 8}) {
+			RecordParallelExecutor.setNumberOfThreads(numberOfThreads);
+			assertEquals(numberOfThreads, RecordParallelExecutor.getNumberOfThreads());
+			for (int numRecords : new int[]{0, 1, 2, 7, 1003}) {
+				AtomicIntegerArray counts = new AtomicIntegerArray(numRecords);
+				RecordParallelExecutor.execute(numRecords, (fromRecord, toRecord) -> {
+					assertTrue(fromRecord < toRecord);
+					for (int i = fromRecord; i < toRecord; i++) {
+						counts.incrementAndGet(i);
+					}
+				});
+				for (int i = 0; i < numRecords; i++) {
+					assertEquals(1, counts.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that results of a plugin are independent of the number of threads.
+	 */
+	@Test
+	public void testExecuteMatchesSingleThread()
+	{
+		System.out.println("Test of RecordParallelExecutor.execute(int, RecordRangeTask), plugin results");
+		int recordLength = 100;
+		double[] waveforms = new double[recordLength * 37];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = Math.sin(0.37 * i) + 0.1 * Math.cos(2.3 * i);
+		}
+
+		RecordParallelExecutor.setNumberOfThreads(1);
+		double[] expResult = waveforms.clone();
+		MovingWindowVariance.execute(expResult, recordLength, 5, true);
+
+		RecordParallelExecutor.setNumberOfThreads(4);
+		double[] result = waveforms.clone();
+		MovingWindowVariance.execute(result, recordLength, 5, true);
+
+		assertArrayEquals(expResult, result, 0.0);
+	}
+
+}
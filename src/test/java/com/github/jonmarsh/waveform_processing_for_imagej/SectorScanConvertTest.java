@@ -0,0 +1,74 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class SectorScanConvertTest
+{
+	/**
+	 * Test of apply method, of class SectorScanConvert.LookupTable, compared
+	 * with per-pixel conversion using getPixelInterpolated.
+	 */
+	@Test
+	public void testLookupTable_apply()
+	{
+		System.out.println("Test of SectorScanConvert.LookupTable.apply(float[], float[])");
+		int rMin = 20;
+		int rMax = 120;
+		double maxHalfAngleInRadians = Math.toRadians(40.0);
+		int xMin = (int)(rMin * Math.cos(maxHalfAngleInRadians));
+		int yMin = (int)(rMax * Math.sin(-maxHalfAngleInRadians));
+		int width = rMax - xMin;
+		int height = -2 * yMin;
+
+		Random random = new Random(10);
+		float[] pixels = new float[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = (float)random.nextGaussian();
+		}
+		pixels[40 * width + 50] = Float.NaN;
+		pixels[41 * width + 70] = Float.NaN;
+
+		for (boolean interpolate : new boolean[]{true, false}) {
+			FloatProcessor ip = new FloatProcessor(width, height, pixels);
+			ip.setInterpolationMethod(interpolate ? ImageProcessor.BILINEAR : ImageProcessor.NONE);
+			float[] expResult = new float[pixels.length];
+			for (int y = 0; y < height; y++) {
+				int trueY = y + yMin;
+				for (int x = 0; x < width; x++) {
+					int trueX = x + xMin;
+					double radiusIndex = (Math.sqrt(trueX * trueX + trueY * trueY) - rMin) / (rMax - rMin) * width;
+					double a = height / 2.0;
+					double angleIndex = a * Math.atan2(trueY, trueX) / maxHalfAngleInRadians + a;
+					if (radiusIndex < width && radiusIndex >= 0.0 && angleIndex < height && angleIndex >= 0.0) {
+						expResult[y * width + x] = Float.intBitsToFloat(ip.getPixelInterpolated(radiusIndex, angleIndex));
+					}
+				}
+			}
+
+			SectorScanConvert.LookupTable table = new SectorScanConvert.LookupTable(width, height, xMin, yMin, rMin, rMax, maxHalfAngleInRadians, interpolate, false);
+			assertTrue(table.size() > 0 && table.size() < pixels.length);
+			float[] result = new float[pixels.length];
+			table.apply(pixels, result);
+			assertArrayEquals(expResult, result, 0.0f);
+
+			// rotated output
+			table = new SectorScanConvert.LookupTable(width, height, xMin, yMin, rMin, rMax, maxHalfAngleInRadians, interpolate, true);
+			result = new float[pixels.length];
+			table.apply(pixels, result);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					assertEquals(expResult[y * width + x], result[x * height + (height - y - 1)], 0.0f);
+				}
+			}
+		}
+	}
+
+}
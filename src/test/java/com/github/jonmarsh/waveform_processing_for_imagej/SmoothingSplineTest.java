@@ -0,0 +1,142 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class SmoothingSplineTest
+{
+	/**
+	 * Test of solve method, of class SmoothingSpline, for a new workspace,
+	 * compared with
+	 * WaveformUtils.smoothingSplineInterpolantUniformSpacing.
+	 */
+	@Test
+	public void testSolve()
+	{
+		System.out.println("Test of SmoothingSpline.solve(double[], int, double[][], int)");
+		int n = 50;
+		double[] y = bScan(n, 3, 5);
+		float[] yFloat = new float[y.length];
+		for (int i = 0; i < y.length; i++) {
+			yFloat[i] = (float)y[i];
+		}
+		for (double smoothingParameter : new double[]{0.0, 0.7, 2.0, -1.0}) {
+			double[][] result = new double[4][n + 1];
+			for (int r = 0; r < 3; r++) {
+				SmoothingSpline spline = new SmoothingSpline(n, 0.5, 0.2, smoothingParameter);
+				spline.solve(y, r * n, result, 1);
+				double[][] expResult = WaveformUtils.smoothingSplineInterpolantUniformSpacing(y, r * n, (r + 1) * n, 0.2, 0.5, smoothingParameter);
+				assertCoefficientsEqual(expResult, result, 1, 0.0);
+
+				spline = new SmoothingSpline(n, 0.5, 0.2, smoothingParameter);
+				spline.solve(yFloat, r * n, result, 1);
+				expResult = WaveformUtils.smoothingSplineInterpolantUniformSpacing(yFloat, r * n, (r + 1) * n, 0.2, 0.5, smoothingParameter);
+				assertCoefficientsEqual(expResult, result, 1, 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Test of solve method, of class SmoothingSpline, for consecutive records
+	 * solved by one workspace, which gives the same results as
+	 * WaveformUtils.smoothingSplineInterpolantUniformSpacing for every record.
+	 */
+	@Test
+	public void testSolve_consecutiveRecords()
+	{
+		System.out.println("Test of SmoothingSpline.solve(double[], int, double[][], int), consecutive records");
+		int n = 200;
+		int numRecords = 10;
+		double[] y = bScan(n, numRecords, 4);
+		for (double smoothingParameter : new double[]{1.0, 3.0}) {
+			SmoothingSpline spline = new SmoothingSpline(n, 1.0, 0.2, smoothingParameter);
+			double[][] result = new double[4][n];
+			for (int r = 0; r < numRecords; r++) {
+				spline.solve(y, r * n, result, 0);
+				double[][] expResult = WaveformUtils.smoothingSplineInterpolantUniformSpacing(y, r * n, (r + 1) * n, 0.2, 1.0, smoothingParameter);
+				assertCoefficientsEqual(expResult, result, 0, 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Test of smooth method, of class SmoothingSpline, in place, compared with
+	 * the values computed by solve.
+	 */
+	@Test
+	public void testSmooth_floatArr()
+	{
+		System.out.println("Test of SmoothingSpline.smooth(float[], int, float[], int)");
+		int n = 64;
+		int numRecords = 4;
+		double[] y = bScan(n, numRecords, 7);
+		float[] waveforms = new float[y.length];
+		for (int i = 0; i < y.length; i++) {
+			waveforms[i] = (float)y[i];
+		}
+		float[] expResult = new float[y.length];
+		SmoothingSpline spline = new SmoothingSpline(n, 1.0, 0.3, 1.5);
+		double[][] coeffs = new double[4][n];
+		for (int r = 0; r < numRecords; r++) {
+			spline.solve(waveforms, r * n, coeffs, 0);
+			for (int j = 0; j < n; j++) {
+				expResult[r * n + j] = (float)coeffs[0][j];
+			}
+		}
+		for (int r = 0; r < numRecords; r++) {
+			spline.smooth(waveforms, r * n, waveforms, r * n);
+		}
+		assertArrayEquals(expResult, waveforms, 0.0f);
+	}
+
+	/**
+	 * Test of execute method, of class SmoothWithSpline, for different numbers
+	 * of threads.
+	 */
+	@Test
+	public void testSmoothWithSpline_threads()
+	{
+		System.out.println("Test of SmoothWithSpline.execute(double[], int, double, double), number of threads");
+		int n = 100;
+		double[] expResult = bScan(n, 53, 8);
+		double[] result = expResult.clone();
+		int numberOfThreads = RecordParallelExecutor.getNumberOfThreads();
+		try {
+			RecordParallelExecutor.setNumberOfThreads(1);
+			SmoothWithSpline.execute(expResult, n, 1.0, 0.2);
+			RecordParallelExecutor.setNumberOfThreads(3);
+			SmoothWithSpline.execute(result, n, 1.0, 0.2);
+		} finally {
+			RecordParallelExecutor.setNumberOfThreads(numberOfThreads);
+		}
+		assertArrayEquals(expResult, result, 0.0);
+	}
+
+	// Slowly varying damped oscillation plus noise, as in neighbouring A-lines of a B-scan
+	private static double[] bScan(int n, int numRecords, long seed)
+	{
+		Random random = new Random(seed);
+		double[] y = new double[n * numRecords];
+		for (int r = 0; r < numRecords; r++) {
+			for (int j = 0; j < n; j++) {
+				y[r * n + j] = Math.sin(0.15 * j + 0.01 * r) * Math.exp(-j / (0.6 * n)) + 0.2 * random.nextGaussian();
+			}
+		}
+		return y;
+	}
+
+	private static void assertCoefficientsEqual(double[][] expected, double[][] actual, int offset, double delta)
+	{
+		for (int k = 0; k < 4; k++) {
+			for (int j = 0; j < expected[k].length; j++) {
+				assertEquals(expected[k][j], actual[k][offset + j], delta);
+			}
+		}
+	}
+
+}
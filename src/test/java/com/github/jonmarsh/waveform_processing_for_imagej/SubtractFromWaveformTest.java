@@ -46,4 +46,28 @@ public class SubtractFromWaveformTest
 		assertArrayEquals(expResult, waveforms, Math.ulp(5.0));
 	}
 	
+
+	/**
+	 * Test of execute method, of class SubtractFromWaveform, for float input.
+	 */
+	@Test
+	public void testExecute_floatArr()
+	{
+		System.out.println("execute(float[], int, int)");
+		float[] original = new float[] {1.0f, 5.0f, 2.0f, 3.0f, 2.2f, -1.0f, 4.0f, 5.0f, 0.0f, 0.0f, 3.2f, -0.5f, 1.1f, 2.2f, 1.1f, 4.0f};
+		int recordLength = 8;
+		for (int operation : new int[] {SubtractFromWaveform.MEAN, SubtractFromWaveform.MEDIAN, SubtractFromWaveform.LINEAR_FIT}) {
+			double[] expResult = new double[original.length];
+			for (int i=0; i<original.length; i++) {
+				expResult[i] = original[i];
+			}
+			SubtractFromWaveform.execute(expResult, recordLength, operation);
+			float[] waveforms = original.clone();
+			SubtractFromWaveform.execute(waveforms, recordLength, operation);
+			for (int i=0; i<original.length; i++) {
+				assertEquals((float)expResult[i], waveforms[i], 0.0f);
+			}
+		}
+	}
+
 }
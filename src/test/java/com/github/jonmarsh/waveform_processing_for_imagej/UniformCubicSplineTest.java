@@ -0,0 +1,83 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class UniformCubicSplineTest
+{
+	/**
+	 * Test of solve method, of class UniformCubicSpline, compared with
+	 * the non-uniform cubic spline at unit spacing.
+	 */
+	@Test
+	public void testSolve_doubleArr()
+	{
+		System.out.println("Test of UniformCubicSpline.solve(double[], int, double[][], int)");
+		int n = 37;
+		double[] y = new double[n + 5];
+		double[] x = new double[n];
+		for (int i = 0; i < y.length; i++) {
+			y[i] = Math.sin(0.4 * i) + 0.01 * i * i;
+		}
+		for (int i = 0; i < n; i++) {
+			x[i] = i;
+		}
+		double[] yRange = new double[n];
+		System.arraycopy(y, 3, yRange, 0, n);
+		double[][] expResult = WaveformUtils.cubicSplineInterpolant(x, yRange);
+		double[][] result = new double[4][n + 2];
+		UniformCubicSpline.getInstance(n, 1.0).solve(y, 3, result, 2);
+		for (int k = 0; k < 4; k++) {
+			for (int j = 0; j < n - 1; j++) {
+				assertEquals(expResult[k][j], result[k][j + 2], 1.0e-12);
+			}
+		}
+	}
+
+	/**
+	 * Test of batched solve method, of class UniformCubicSpline, compared with
+	 * WaveformUtils.cubicSplineInterpolantUniformSpacing for each record.
+	 */
+	@Test
+	public void testSolve_floatArr_batch()
+	{
+		System.out.println("Test of UniformCubicSpline.solve(float[], int, int, double[][])");
+		int n = 20;
+		int numRecords = 6;
+		double dx = 0.25;
+		float[] waveforms = new float[n * numRecords];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = (float)Math.cos(0.3 * i * i / n);
+		}
+		UniformCubicSpline spline = UniformCubicSpline.getInstance(n, dx);
+		assertSame(spline, UniformCubicSpline.getInstance(n, dx));
+		assertEquals(n, spline.getLength());
+		assertEquals(dx, spline.getSpacing(), 0.0);
+
+		double[][] result = new double[4][3 * n];
+		spline.solve(waveforms, 2, 5, result);
+		for (int r = 2; r < 5; r++) {
+			double[][] expResult = WaveformUtils.cubicSplineInterpolantUniformSpacing(waveforms, r * n, (r + 1) * n, dx);
+			for (int k = 0; k < 4; k++) {
+				for (int j = 0; j < n; j++) {
+					assertEquals(expResult[k][j], result[k][(r - 2) * n + j], 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of constructor, of class UniformCubicSpline, for too few points.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructor_tooShort()
+	{
+		System.out.println("Test of UniformCubicSpline(int, double), too few points");
+		UniformCubicSpline.getInstance(1, 1.0);
+	}
+
+}
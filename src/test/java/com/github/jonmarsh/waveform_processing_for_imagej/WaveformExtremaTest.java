@@ -16,6 +16,7 @@
  */
 package com.github.jonmarsh.waveform_processing_for_imagej;
 
+import java.util.Arrays;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -107,4 +108,82 @@ public class WaveformExtremaTest
 		assertArrayEquals(expectedMinValues, resultMinValues, Math.ulp(1.0));
 	}
 	
+	/**
+	 * Test of executeCompact method, of class WaveformExtrema, for float and
+	 * double input. Each record is symmetric about its midpoint, so the
+	 * natural cubic spline has an extremum there, and any other extrema occur
+	 * in mirror-image pairs; spline values at the midpoint are computed
+	 * exactly in rational arithmetic.
+	 */
+	@Test
+	public void testExecuteCompact()
+	{
+		System.out.println("Test of WaveformExtrema.executeCompact(float[]/double[], int, int)");
+		int recordLength = 8;
+		double[] waveformsDouble = new double[]{
+			0.0, 1.0, 3.0, 5.0, 5.0, 3.0, 1.0, 0.0,
+			2.0, 1.0, -1.0, -3.0, -3.0, -1.0, 1.0, 2.0,
+			0.0, 3.0, 1.0, -1.0, -1.0, 1.0, 3.0, 0.0};
+		float[] waveforms = new float[waveformsDouble.length];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = (float)waveformsDouble[i];
+		}
+		
+		// samples that are greater (less) than their left neighbour and not less (greater) than their right neighbour
+		double[][] expMaxPositions = new double[][]{{3.0}, {}, {1.0, 6.0}};
+		double[][] expMaxValues = new double[][]{{5.0}, {}, {3.0, 3.0}};
+		double[][] expMinPositions = new double[][]{{}, {3.0}, {3.0}};
+		double[][] expMinValues = new double[][]{{}, {-3.0}, {-1.0}};
+		for (WaveformExtrema.ExtremaTable result : new WaveformExtrema.ExtremaTable[]{
+			WaveformExtrema.executeCompact(waveforms, recordLength, WaveformExtrema.NONE),
+			WaveformExtrema.executeCompact(waveformsDouble, recordLength, WaveformExtrema.NONE)}) {
+			assertEquals(3, result.getNumRecords());
+			for (int i = 0; i < 3; i++) {
+				assertArrayEquals(expMaxPositions[i], positions(result.getMaximaOffsets(), result.getMaximaBaseIndices(), result.getMaximaFractionalIndices(), i), 0.0);
+				assertArrayEquals(expMaxValues[i], values(result.getMaximaOffsets(), result.getMaximaValues(), i), 0.0);
+				assertArrayEquals(expMinPositions[i], positions(result.getMinimaOffsets(), result.getMinimaBaseIndices(), result.getMinimaFractionalIndices(), i), 0.0);
+				assertArrayEquals(expMinValues[i], values(result.getMinimaOffsets(), result.getMinimaValues(), i), 0.0);
+			}
+		}
+		
+		// spline extrema at the midpoint of each record, and a symmetric pair of maxima in the last record
+		for (WaveformExtrema.ExtremaTable result : new WaveformExtrema.ExtremaTable[]{
+			WaveformExtrema.executeCompact(waveforms, recordLength, WaveformExtrema.CUBIC_SPLINE),
+			WaveformExtrema.executeCompact(waveformsDouble, recordLength, WaveformExtrema.CUBIC_SPLINE)}) {
+			assertEquals(3, result.getNumRecords());
+			assertArrayEquals(new double[]{3.5}, positions(result.getMaximaOffsets(), result.getMaximaBaseIndices(), result.getMaximaFractionalIndices(), 0), 1.0e-12);
+			assertArrayEquals(new double[]{1507.0 / 284.0}, values(result.getMaximaOffsets(), result.getMaximaValues(), 0), 1.0e-12);
+			assertEquals(0, values(result.getMinimaOffsets(), result.getMinimaValues(), 0).length);
+			assertEquals(0, values(result.getMaximaOffsets(), result.getMaximaValues(), 1).length);
+			assertArrayEquals(new double[]{3.5}, positions(result.getMinimaOffsets(), result.getMinimaBaseIndices(), result.getMinimaFractionalIndices(), 1), 1.0e-12);
+			assertArrayEquals(new double[]{-939.0 / 284.0}, values(result.getMinimaOffsets(), result.getMinimaValues(), 1), 1.0e-12);
+			assertArrayEquals(new double[]{3.5}, positions(result.getMinimaOffsets(), result.getMinimaBaseIndices(), result.getMinimaFractionalIndices(), 2), 1.0e-12);
+			assertArrayEquals(new double[]{-359.0 / 284.0}, values(result.getMinimaOffsets(), result.getMinimaValues(), 2), 1.0e-12);
+			double[] maxPositions = positions(result.getMaximaOffsets(), result.getMaximaBaseIndices(), result.getMaximaFractionalIndices(), 2);
+			double[] maxValues = values(result.getMaximaOffsets(), result.getMaximaValues(), 2);
+			assertEquals(2, maxPositions.length);
+			assertTrue(maxPositions[0] > 1.0 && maxPositions[0] < 2.0);
+			assertEquals(7.0 - maxPositions[0], maxPositions[1], 1.0e-12);
+			assertTrue(maxValues[0] > 3.0);
+			assertEquals(maxValues[0], maxValues[1], 1.0e-12);
+		}
+		assertNull(WaveformExtrema.executeCompact(waveforms, 3, WaveformExtrema.NONE));
+	}
+	
+	// Positions of the extrema of record i of an ExtremaTable
+	private static double[] positions(int[] offsets, int[] baseIndices, double[] fractionalIndices, int i)
+	{
+		double[] positions = new double[offsets[i + 1] - offsets[i]];
+		for (int k = 0; k < positions.length; k++) {
+			positions[k] = baseIndices[offsets[i] + k] + fractionalIndices[offsets[i] + k];
+		}
+		return positions;
+	}
+	
+	// Values of the extrema of record i of an ExtremaTable
+	private static double[] values(int[] offsets, double[] values, int i)
+	{
+		return Arrays.copyOfRange(values, offsets[i], offsets[i + 1]);
+	}
+
 }
@@ -0,0 +1,92 @@
+package com.github.jonmarsh.waveform_processing_for_imagej;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jnm
+ */
+public class WaveformStatisticsTest
+{
+	/**
+	 * Test of execute method, of class WaveformStatistics, compared with the
+	 * individual measurement plug-ins.
+	 */
+	@Test
+	public void testExecute_doubleArr()
+	{
+		System.out.println("Test of WaveformStatistics.execute(double[], int, Statistic[], boolean, boolean)");
+		int recordLength = 257;
+		int numRecords = 5;
+		double[] waveforms = new double[recordLength * numRecords];
+		for (int i = 0; i < waveforms.length; i++) {
+			waveforms[i] = Math.sin(0.21 * i) * Math.exp(-0.001 * (i % recordLength)) + 0.3 * Math.cos(0.05 * i * i / recordLength) + 0.1 * (i / recordLength);
+		}
+		WaveformStatistics.Statistic[] statistics = WaveformStatistics.Statistic.values();
+		double[][] expResult = new double[statistics.length][];
+		for (boolean option : new boolean[]{false, true}) {
+			expResult[0] = MeanValue.execute(waveforms, recordLength);
+			expResult[1] = Variance.execute(waveforms, recordLength, option);
+			expResult[2] = Skewness.execute(waveforms, recordLength, option);
+			expResult[3] = Kurtosis.execute(waveforms, recordLength);
+			expResult[4] = MinimumValue.execute(waveforms, recordLength);
+			expResult[5] = MaximumValue.execute(waveforms, recordLength);
+			expResult[6] = toDouble(MinimumIndex.execute(waveforms, recordLength));
+			expResult[7] = toDouble(MaximumIndex.execute(waveforms, recordLength));
+			expResult[8] = Range.execute(waveforms, recordLength);
+			expResult[9] = SumOfSquares.execute(waveforms, recordLength);
+			expResult[10] = toDouble(ZeroCrossingCount.execute(waveforms, recordLength));
+
+			double[][] result = WaveformStatistics.execute(waveforms, recordLength, statistics, option, option);
+			for (int s = 0; s < statistics.length; s++) {
+				// Skewness.execute rounds its output to float precision
+				double tolerance = (statistics[s] == WaveformStatistics.Statistic.SKEWNESS) ? 1.0e-6 : 1.0e-12;
+				assertArrayEquals(statistics[s].toString(), expResult[s], result[s], tolerance);
+			}
+
+			// single statistics, in a different order
+			for (int s = 0; s < statistics.length; s++) {
+				WaveformStatistics.Statistic[] subset = new WaveformStatistics.Statistic[]{statistics[statistics.length - 1 - s], statistics[s]};
+				result = WaveformStatistics.execute(waveforms, recordLength, subset, option, option);
+				double tolerance = (statistics[s] == WaveformStatistics.Statistic.SKEWNESS) ? 1.0e-6 : 1.0e-12;
+				assertArrayEquals(expResult[s], result[1], tolerance);
+			}
+		}
+	}
+
+	/**
+	 * Test of execute method, of class WaveformStatistics, for float input
+	 * and invalid record lengths.
+	 */
+	@Test
+	public void testExecute_floatArr()
+	{
+		System.out.println("Test of WaveformStatistics.execute(float[], int, Statistic[], boolean, boolean)");
+		float[] waveforms = new float[]{1.0f, -2.0f, 3.0f, 0.0f, 5.0f, -1.0f, 2.0f, 2.0f};
+		WaveformStatistics.Statistic[] statistics = new WaveformStatistics.Statistic[]{
+			WaveformStatistics.Statistic.MEAN,
+			WaveformStatistics.Statistic.RANGE,
+			WaveformStatistics.Statistic.MAXIMUM_INDEX,
+			WaveformStatistics.Statistic.ZERO_CROSSING_COUNT
+		};
+		double[][] expResult = new double[][]{{0.5, 2.0}, {5.0, 6.0}, {2, 0}, {2, 2}};
+		double[][] result = WaveformStatistics.execute(waveforms, 4, statistics, false, true);
+		for (int s = 0; s < statistics.length; s++) {
+			assertArrayEquals(expResult[s], result[s], 0.0);
+		}
+
+		assertNull(WaveformStatistics.execute(waveforms, 2, new WaveformStatistics.Statistic[]{WaveformStatistics.Statistic.SKEWNESS}, false, true));
+		assertNull(WaveformStatistics.execute(waveforms, 3, statistics, false, true));
+	}
+
+	private static double[] toDouble(int[] a)
+	{
+		double[] b = new double[a.length];
+		for (int i = 0; i < a.length; i++) {
+			b[i] = a[i];
+		}
+		return b;
+	}
+
+}
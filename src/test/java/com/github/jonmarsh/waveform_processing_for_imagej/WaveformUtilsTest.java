@@ -1,6 +1,9 @@
 package com.github.jonmarsh.waveform_processing_for_imagej;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.Arrays;
+import java.util.Random;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.math3.util.FastMath;
 import org.junit.Test;
@@ -495,6 +498,144 @@ public class WaveformUtilsTest
 		assertArrayEquals(a, aSorted, 0.0f);
 	}
 	
+	/**
+	 * Test of select method, of class WaveformUtils, compared with sorting
+	 * for ranges above and below the sampling threshold, with and without
+	 * repeated values.
+	 */
+	@Test
+	public void testSelect_doubleArr()
+	{
+		System.out.println("Test of WaveformUtils.select(double[], int, int, int)");
+		Random random = new Random(5);
+		for (int n : new int[]{1, 2, 3, 10, 601, 2000, 10001}) {
+			for (int numLevels : new int[]{3, Integer.MAX_VALUE}) {
+				double[] a = new double[n + 4];
+				for (int i = 0; i < a.length; i++) {
+					a[i] = (numLevels == Integer.MAX_VALUE) ? random.nextGaussian() : random.nextInt(numLevels);
+				}
+				double[] sorted = Arrays.copyOfRange(a, 2, n + 2);
+				Arrays.sort(sorted);
+				for (int k : new int[]{0, n / 3, n / 2, n - 1}) {
+					double[] b = Arrays.copyOf(a, a.length);
+					double result = WaveformUtils.select(b, 2, n + 2, k);
+					assertEquals(sorted[k], result, 0.0);
+					for (int i = 2; i < n + 2; i++) {
+						assertTrue((i < k + 2) ? b[i] <= result : b[i] >= result);
+					}
+					assertEquals(a[0], b[0], 0.0);
+					assertEquals(a[n + 3], b[n + 3], 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of select method, of class WaveformUtils.
+	 */
+	@Test
+	public void testSelect_floatArr()
+	{
+		System.out.println("Test of WaveformUtils.select(float[], int, int, int)");
+		Random random = new Random(6);
+		for (int n : new int[]{1, 7, 1500}) {
+			float[] a = new float[n];
+			for (int i = 0; i < n; i++) {
+				a[i] = (float)random.nextGaussian();
+			}
+			float[] sorted = Arrays.copyOf(a, n);
+			Arrays.sort(sorted);
+			for (int k = 0; k < n; k += 1 + n / 5) {
+				float[] b = Arrays.copyOf(a, n);
+				assertEquals(sorted[k], WaveformUtils.select(b, 0, n, k), 0.0f);
+			}
+		}
+	}
+
+	/**
+	 * Test of median method with scratch array, of class WaveformUtils,
+	 * compared with sorting, including ranges that contain {@code NaN}.
+	 */
+	@Test
+	public void testMedian_doubleArr_int_int_doubleArr()
+	{
+		System.out.println("Test of WaveformUtils.median(double[], int, int, double[])");
+		Random random = new Random(7);
+		double[] scratch = new double[3001];
+		for (int n : new int[]{1, 2, 5, 6, 1000, 3001}) {
+			for (int numNaN : new int[]{0, 1, n / 2, n}) {
+				double[] a = new double[n];
+				for (int i = 0; i < n; i++) {
+					a[i] = (i < numNaN) ? Double.NaN : random.nextInt(50);
+				}
+				double[] aCopy = Arrays.copyOf(a, n);
+				double[] sorted = Arrays.copyOf(a, n);
+				Arrays.sort(sorted);
+				double expResult = (n % 2 == 0) ? 0.5 * (sorted[n / 2] + sorted[n / 2 - 1]) : sorted[n / 2];
+				assertEquals(expResult, WaveformUtils.median(a, 0, n, scratch), 0.0);
+				assertArrayEquals(aCopy, a, 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Test of medianInPlace method, of class WaveformUtils, comparing the
+	 * double-precision average of the middle two values with sorting.
+	 */
+	@Test
+	public void testMedianInPlace_floatArr()
+	{
+		System.out.println("Test of WaveformUtils.medianInPlace(float[], int, int)");
+		// sum of middle two values overflows in single precision
+		float[] a = new float[]{3.0e38f, 1.0f, 3.3e38f, 3.2e38f};
+		assertEquals(0.5 * ((double)3.0e38f + (double)3.2e38f), WaveformUtils.medianInPlace(a, 0, 4), 0.0);
+
+		Random random = new Random(8);
+		for (int n : new int[]{2, 9, 800}) {
+			a = new float[n];
+			for (int i = 0; i < n; i++) {
+				a[i] = (float)random.nextGaussian();
+			}
+			float[] sorted = Arrays.copyOf(a, n);
+			Arrays.sort(sorted);
+			double expResult = (n % 2 == 0) ? 0.5 * ((double)sorted[n / 2] + (double)sorted[n / 2 - 1]) : sorted[n / 2];
+			assertEquals(expResult, WaveformUtils.medianInPlace(a, 0, n), 0.0);
+		}
+	}
+
+	/**
+	 * Test of median method for unsigned 8-bit and 16-bit data, of class
+	 * WaveformUtils, compared with sorting.
+	 */
+	@Test
+	public void testMedian_byteArr_shortArr()
+	{
+		System.out.println("Test of WaveformUtils.median(byte[], int, int, int[]) and median(short[], int, int, int[])");
+		Random random = new Random(9);
+		int[] histogram = new int[65536];
+		for (int n : new int[]{1, 2, 7, 100, 1001}) {
+			for (int maxValue : new int[]{2, 256, 65536}) {
+				byte[] b = new byte[n];
+				short[] s = new short[n];
+				double[] values = new double[n];
+				for (int i = 0; i < n; i++) {
+					int value = random.nextInt(maxValue);
+					s[i] = (short)value;
+					values[i] = value;
+				}
+				assertEquals(WaveformUtils.median(values), WaveformUtils.median(s, 0, n, histogram), 0.0);
+				assertEquals(WaveformUtils.median(values), WaveformUtils.median(s, 0, n, null), 0.0);
+				for (int i = 0; i < n; i++) {
+					values[i] = random.nextInt(Math.min(maxValue, 256));
+					b[i] = (byte)values[i];
+				}
+				assertEquals(WaveformUtils.median(values), WaveformUtils.median(b, 0, n, histogram), 0.0);
+			}
+		}
+		assertTrue(Double.isNaN(WaveformUtils.median(new byte[4], 2, 2, null)));
+		assertTrue(Double.isNaN(WaveformUtils.median((short[])null, 0, 0, null)));
+	}
+
 	/**
 	 * Test of fastHilbertTransform method, of class WaveformUtils.
 	 */
@@ -514,6 +655,28 @@ public class WaveformUtilsTest
 
 	}
 
+	/**
+	 * Test of fastRealFFTPowerOf2 method, of class WaveformUtils.
+	 */
+	@Test
+	public void testFastRealFFTPowerOf2()
+	{
+		System.out.println("Test of WaveformUtils.fastRealFFTPowerOf2(double[], boolean)");
+		double[] a = new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0};
+		WaveformUtils.fastRealFFTPowerOf2(a, true);
+		double[] expResult = new double[]{36.0, -4.0, 9.6568542494923797, -4.0, 4.0, -4.0, 1.6568542494923806, -4.0};
+		assertArrayEquals(expResult, a, Math.ulp(36.0));
+
+		WaveformUtils.fastRealFFTPowerOf2(a, false);
+		expResult = new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0};
+		assertArrayEquals(expResult, a, Math.ulp(8.0));
+
+		a = new double[]{3.0, -1.0};
+		WaveformUtils.fastRealFFTPowerOf2(a, true);
+		expResult = new double[]{2.0, 4.0};
+		assertArrayEquals(expResult, a, 0.0);
+	}
+
 	/**
 	 * Test of amountToPadToNextPowerOf2 method, of class WaveformUtils.
 	 */
@@ -898,6 +1061,27 @@ public class WaveformUtilsTest
 		assertArrayEquals(expResult, result, Math.ulp(4.0));
 	}
 
+	/**
+	 * Test of cubicRoots method writing to a scratch buffer, of class
+	 * WaveformUtils, for equations with known roots: three distinct roots,
+	 * double roots (reported once), a triple root, and one real root with a
+	 * complex pair.
+	 */
+	@Test
+	public void testCubicRoots_doubleArr()
+	{
+		System.out.println("Test of WaveformUtils.cubicRoots(double, double, double, double[])");
+		double[][] coefficients = new double[][]{{0.0, 0.0, -27.0}, {-6.0, 11.0, -6.0}, {-3.0, 2.0, 0.0}, {1.0, -2.0, 0.0}, {-4.0, 4.0, 0.0}, {-5.0, 8.0, -4.0}, {0.0, 0.0, 0.0}, {-3.0, 3.0, -1.0}, {0.0, 1.0, 0.0}, {1.0, 0.0, 0.0}, {-1.0, 0.0, 0.0}, {-1.0, 1.0, -1.0}};
+		double[][] expResults = new double[][]{{3.0}, {1.0, 2.0, 3.0}, {0.0, 1.0, 2.0}, {-2.0, 0.0, 1.0}, {0.0, 2.0}, {1.0, 2.0}, {0.0}, {1.0}, {0.0}, {-1.0, 0.0}, {0.0, 1.0}, {1.0}};
+		double[] roots = new double[]{Double.NaN, Double.NaN, Double.NaN};
+		for (int i = 0; i < coefficients.length; i++) {
+			double[] abc = coefficients[i];
+			int numRoots = WaveformUtils.cubicRoots(abc[0], abc[1], abc[2], roots);
+			assertEquals(expResults[i].length, numRoots);
+			assertArrayEquals(expResults[i], Arrays.copyOf(roots, numRoots), 8.0 * Math.ulp(1.0));
+		}
+	}
+
 	/**
 	 * Test of cubicSplineInterpolant method, of class WaveformUtils.
 	 */
@@ -1130,6 +1314,61 @@ public class WaveformUtilsTest
 //		assertArrayEquals(expResultDCoeffs, resultDCoeffs, Math.ulp(1.0));
 	}
 
+	/**
+	 * Test of cubicSplineValuesUniformGrid method, of class WaveformUtils,
+	 * compared with Horner's rule at every point, for several resampling
+	 * factors.
+	 */
+	@Test
+	public void testCubicSplineValuesUniformGrid_doubleArr()
+	{
+		System.out.println("Test of WaveformUtils.cubicSplineValuesUniformGrid(double[][], int, int, double, double, double[], int, int)");
+		Random random = new Random(9);
+		int n = 40;
+		double[] y = new double[n + 2];
+		for (int i = 0; i < y.length; i++) {
+			y[i] = 10.0 * Math.sin(0.3 * i) + random.nextGaussian();
+		}
+		double[][] coeffs = new double[4][n + 3];
+		new SmoothingSpline(n, 0.5, 1.0, 1.0).solve(y, 2, coeffs, 3);
+		for (int numPoints : new int[]{n, 2 * n - 1, 8 * (n - 1) + 1, 7 * n + 3, 1000 * n, n / 2}) {
+			double step = 0.5 * (n - 1) / (numPoints - 1);
+			double[] expResult = new double[numPoints];
+			for (int j = 0; j < numPoints; j++) {
+				double x = j * step / 0.5;
+				int k = Math.min((int)Math.floor(x), n - 1);
+				double h = (x - k) * 0.5;
+				expResult[j] = coeffs[0][k + 3] + h * (coeffs[1][k + 3] + h * (coeffs[2][k + 3] + h * coeffs[3][k + 3]));
+			}
+			double[] result = new double[numPoints + 1];
+			WaveformUtils.cubicSplineValuesUniformGrid(coeffs, 3, n, 0.5, step, result, 1, numPoints);
+			assertEquals(0.0, result[0], 0.0);
+			assertArrayEquals(expResult, Arrays.copyOfRange(result, 1, numPoints + 1), 1.0e-11);
+			assertEquals(coeffs[0][n + 2], result[numPoints], 1.0e-11);
+		}
+	}
+
+	/**
+	 * Test of cubicSplineValuesUniformGrid method, of class WaveformUtils, at
+	 * the knots.
+	 */
+	@Test
+	public void testCubicSplineValuesUniformGrid_floatArr()
+	{
+		System.out.println("Test of WaveformUtils.cubicSplineValuesUniformGrid(double[][], int, int, double, double, float[], int, int)");
+		float[] y = new float[]{2.2f, 3.3f, 1.1f, 0.0f, 5.0f, 4.0f, 2.0f};
+		double[][] coeffs = WaveformUtils.cubicSplineInterpolantUniformSpacing(y, 1.0);
+		float[] result = new float[y.length];
+		WaveformUtils.cubicSplineValuesUniformGrid(coeffs, 0, y.length, 1.0, 1.0, result, 0, y.length);
+		assertArrayEquals(y, result, 0.0f);
+
+		result = new float[3 * (y.length - 1) + 1];
+		WaveformUtils.cubicSplineValuesUniformGrid(coeffs, 0, y.length, 1.0, 1.0 / 3.0, result, 0, result.length);
+		for (int i = 0; i < y.length; i++) {
+			assertEquals(y[i], result[3 * i], Math.ulp(5.0f));
+		}
+	}
+
 	/**
 	 * Test of simpleDerivative method, of class WaveformUtils.
 	 */
@@ -1768,11 +2007,75 @@ public class WaveformUtilsTest
 		result = WaveformUtils.quadraticRoots(a, b, c);
 		assertArrayEquals(expResult, result, Math.ulp(3.0));
 		
+		// roots of the quadratic with the double-precision value of b, 2.000000000000002220446...
 		a = 1.0;
 		b = 2.000000000000002;
 		c = 1.0;
-		expResult = new double[]{-1.00000004472136055, -0.999999955278641450};
+		expResult = new double[]{-1.0000000471216102, -0.999999952878392};
 		result = WaveformUtils.quadraticRoots(a, b, c);
 		assertArrayEquals(expResult, result, Math.ulp(1.0));
 	}
+
+	/**
+	 * Test of quadraticRoots method writing to a scratch buffer, of class
+	 * WaveformUtils, for equations with known roots: none (including clearly
+	 * negative discriminants), a double root, two distinct roots, a linear
+	 * equation, and Kahan's nearly-double root.
+	 */
+	@Test
+	public void testQuadraticRoots_doubleArr()
+	{
+		System.out.println("Test of WaveformUtils.quadraticRoots(double, double, double, double[])");
+		double[][] coefficients = new double[][]{{0.0, 0.0, 0.0}, {4.0, -20.0, 26.0}, {4.0, -20.0, 25.0}, {4.0, -20.0, 21.0}, {4.0, 7.0, 0.0}, {5.0, 0.0, -20.0}, {0.0, 3.0, -21.0}, {1.0, 0.0, 0.0}, {94906265.625, -189812534.0, 94906268.375}, {1.0, 1.0, 1.0}, {2.0, 0.0, 8.0}};
+		double[][] expResults = new double[][]{{}, {}, {2.5}, {1.5, 3.5}, {-1.75, 0.0}, {-2.0, 2.0}, {7.0}, {0.0}, {1.0, 1.000000028975958}, {}, {}};
+		double[] roots = new double[]{Double.NaN, Double.NaN};
+		for (int i = 0; i < coefficients.length; i++) {
+			double[] abc = coefficients[i];
+			int numRoots = WaveformUtils.quadraticRoots(abc[0], abc[1], abc[2], roots);
+			assertEquals(expResults[i].length, numRoots);
+			assertArrayEquals(expResults[i], Arrays.copyOf(roots, numRoots), 4.0 * Math.ulp(1.0));
+		}
+	}
+
+	/**
+	 * Test of quadraticRoots method, of class WaveformUtils, for nearly equal
+	 * roots, compared with roots computed from the exact discriminant of the
+	 * double-precision coefficients.
+	 */
+	@Test
+	public void testQuadraticRoots_illConditioned()
+	{
+		System.out.println("Test of WaveformUtils.quadraticRoots(double, double, double), ill-conditioned discriminant");
+		Random random = new Random(10);
+		double[] roots = new double[2];
+		for (int trial = 0; trial < 1000; trial++) {
+			// (x-u)(x-v) scaled by a, with u and v nearly equal
+			double a = Math.exp(4.0 * random.nextGaussian());
+			double u = random.nextGaussian();
+			double v = u * (1.0 + 1.0e-7 * random.nextGaussian());
+			double b = -a * (u + v);
+			double c = a * u * v;
+			BigDecimal aBD = new BigDecimal(a);
+			BigDecimal bBD = new BigDecimal(b);
+			BigDecimal cBD = new BigDecimal(c);
+			BigDecimal dBD = bBD.multiply(bBD).subtract(aBD.multiply(cBD).multiply(BigDecimal.valueOf(4)));
+			int numRoots = WaveformUtils.quadraticRoots(a, b, c, roots);
+			if (dBD.signum() < 0) {
+				assertEquals(0, numRoots);
+				continue;
+			}
+			MathContext mc = new MathContext(40);
+			BigDecimal sqrtD = new BigDecimal(Math.sqrt(dBD.doubleValue()));
+			for (int k = 0; k < 4; k++) {
+				sqrtD = sqrtD.add(dBD.divide(sqrtD, mc)).divide(BigDecimal.valueOf(2), mc);
+			}
+			BigDecimal sBD = bBD.add(sqrtD.multiply(BigDecimal.valueOf(Math.signum(b)))).multiply(BigDecimal.valueOf(-0.5));
+			double r1 = sBD.divide(aBD, mc).doubleValue();
+			double r2 = cBD.divide(sBD, mc).doubleValue();
+			double[] expResult = (r1 < r2) ? new double[]{r1, r2} : new double[]{r2, r1};
+			assertEquals(2, numRoots);
+			assertEquals(expResult[0], roots[0], 2.0 * Math.ulp(expResult[0]));
+			assertEquals(expResult[1], roots[1], 2.0 * Math.ulp(expResult[1]));
+		}
+	}
 }
@@ -115,4 +115,34 @@ public class ZeroCrossingLocationsTest
 		
 	}
 
+	/**
+	 * Test of executeCompact method, of class ZeroCrossingLocations, for
+	 * records with known spline roots: an antisymmetric record with a single
+	 * root at its midpoint, a record with roots at knots, and a positive
+	 * record with a shallow dip, whose intervals must all be rejected.
+	 */
+	@Test
+	public void testExecuteCompact()
+	{
+		System.out.println("Test of ZeroCrossingLocations.executeCompact(float[], int, int)");
+		int recordLength = 8;
+		float[] waveforms = new float[]{
+			-3.0f, -2.0f, -1.0f, -0.5f, 0.5f, 1.0f, 2.0f, 3.0f,
+			0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f,
+			2.0f, 1.0f, 0.5f, 0.25f, 0.25f, 0.5f, 1.0f, 2.0f};
+		for (int j = 1; j < recordLength - 1; j++) {
+			waveforms[recordLength + j] = (float)Math.sin(Math.PI * j / 7.0);
+		}
+		double[][] expResults = new double[][]{{3.5}, {0.0, 7.0}, {}};
+		ZeroCrossingLocations.RootTable result = ZeroCrossingLocations.executeCompact(waveforms, recordLength, ZeroCrossingLocations.CUBIC_SPLINE);
+		assertEquals(3, result.getNumRecords());
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(expResults[i], result.getPositions(i), 1.0e-12);
+		}
+
+		double[][][] roots = ZeroCrossingLocations.execute(new double[]{1.0, -1.0, 1.0, -1.0}, 4, ZeroCrossingLocations.LINEAR);
+		assertEquals(3, roots[0].length);
+		assertArrayEquals(new double[]{1.0, 0.5}, roots[0][1], 0.0);
+	}
+
 }